@@ -0,0 +1,207 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.bench;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.DataWriterAdapter;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.DimseRSP;
+import org.dcm4che3.net.PDVInputStream;
+import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.BasicCStoreSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks round trips of DIMSE messages over an association on the
+ * loopback interface, which exercises the PDU encoder and decoder on both
+ * sides of the association.
+ *
+ * @author agent <agent@local>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AssociationBenchmark {
+
+    private static final String TSUID = UID.ExplicitVRLittleEndian;
+
+    @Param({ "16378", "116794" })
+    public int maxPDULength;
+
+    @Param({ "512" })
+    public int size;
+
+    @Param({ "false", "true" })
+    public boolean nio;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Device scp;
+    private Device scu;
+    private Association as;
+    private Attributes dataset;
+    private String cuid;
+    private String iuid;
+
+    @Setup
+    public void setup() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        Connection scpConn = createConnection(freePort());
+        scp = createDevice("bench-scp", scpConn);
+        ApplicationEntity scpAE = scp.getApplicationEntity("BENCH-SCP");
+        scpAE.setAssociationAcceptor(true);
+        scpAE.addTransferCapability(new TransferCapability(null, "*",
+                TransferCapability.Role.SCP, "*"));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCEchoSCP());
+        serviceRegistry.addDicomService(new BasicCStoreSCP() {
+
+            @Override
+            protected void store(Association as, PresentationContext pc,
+                    Attributes rq, PDVInputStream data, Attributes rsp)
+                    throws IOException {
+                data.readDataset(pc.getTransferSyntax());
+            }
+        });
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+
+        scu = createDevice("bench-scu", createConnection(0));
+        ApplicationEntity scuAE = scu.getApplicationEntity("BENCH-SCU");
+        scuAE.setAssociationInitiator(true);
+
+        dataset = Datasets.createImage(size, size);
+        cuid = dataset.getString(Tag.SOPClassUID);
+        iuid = dataset.getString(Tag.SOPInstanceUID);
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET("BENCH-SCP");
+        rq.addPresentationContext(
+                new PresentationContext(1, UID.VerificationSOPClass, TSUID));
+        rq.addPresentationContext(new PresentationContext(3, cuid, TSUID));
+        as = scuAE.connect(scpConn, rq);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        if (as != null) {
+            as.release();
+            as.waitForSocketClose();
+        }
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Benchmark
+    public int cecho() throws Exception {
+        DimseRSP rsp = as.cecho();
+        rsp.next();
+        return rsp.getCommand().getInt(Tag.Status, -1);
+    }
+
+    @Benchmark
+    public int cstore() throws Exception {
+        DimseRSP rsp = as.cstore(cuid, iuid, 0,
+                new DataWriterAdapter(dataset), TSUID);
+        rsp.next();
+        return rsp.getCommand().getInt(Tag.Status, -1);
+    }
+
+    private Connection createConnection(int port) {
+        Connection conn = new Connection();
+        conn.setHostname("127.0.0.1");
+        if (port > 0)
+            conn.setPort(port);
+        conn.setReceivePDULength(maxPDULength);
+        conn.setSendPDULength(maxPDULength);
+        conn.setNioTransport(nio);
+        return conn;
+    }
+
+    private Device createDevice(String name, Connection conn) {
+        Device device = new Device(name);
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        device.addConnection(conn);
+        ApplicationEntity ae = new ApplicationEntity(name.toUpperCase());
+        ae.addConnection(conn);
+        device.addApplicationEntity(ae);
+        return device;
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket ss = new ServerSocket(0);
+        try {
+            return ss.getLocalPort();
+        } finally {
+            ss.close();
+        }
+    }
+}
@@ -0,0 +1,145 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.VR;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks access to {@link Attributes}: lookup of values by tag,
+ * setting values, {@link Attributes#addSelected} and C-FIND like
+ * {@link Attributes#matches} versus a precompiled {@link AttributesMatcher}.
+ *
+ * @author agent <agent@local>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AttributesBenchmark {
+
+    private static final int[] SELECTION = {
+        Tag.SpecificCharacterSet,
+        Tag.StudyDate,
+        Tag.StudyTime,
+        Tag.AccessionNumber,
+        Tag.ReferringPhysicianName,
+        Tag.StudyDescription,
+        Tag.PatientName,
+        Tag.PatientID,
+        Tag.PatientBirthDate,
+        Tag.PatientSex,
+        Tag.StudyInstanceUID,
+        Tag.StudyID,
+    };
+
+    private Attributes attrs;
+    private Attributes keys;
+    private AttributesMatcher matcher;
+
+    @Setup
+    public void setup() {
+        attrs = Datasets.createImage(64, 64);
+        keys = new Attributes(4);
+        keys.setString(Tag.PatientName, VR.PN, "müller*");
+        keys.setString(Tag.StudyDate, VR.DA, "20150101-20151231");
+        keys.setString(Tag.Modality, VR.CS, "CT");
+        keys.setString(Tag.StudyInstanceUID, VR.UI,
+                attrs.getString(Tag.StudyInstanceUID));
+        matcher = new AttributesMatcher(keys, true, false);
+    }
+
+    @Benchmark
+    public void getString(Blackhole bh) {
+        bh.consume(attrs.getString(Tag.PatientName));
+        bh.consume(attrs.getString(Tag.StudyInstanceUID));
+        bh.consume(attrs.getString(Tag.Modality));
+    }
+
+    @Benchmark
+    public void getInt(Blackhole bh) {
+        bh.consume(attrs.getInt(Tag.Rows, 0));
+        bh.consume(attrs.getInt(Tag.Columns, 0));
+        bh.consume(attrs.getInt(Tag.InstanceNumber, 0));
+    }
+
+    @Benchmark
+    public Attributes setString() {
+        Attributes dest = new Attributes();
+        dest.setString(Tag.PatientID, VR.LO, "PID-4711");
+        dest.setString(Tag.PatientName, VR.PN, "Müller^Hans");
+        dest.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3.4.5");
+        dest.setString(Tag.StudyDate, VR.DA, "20150312");
+        return dest;
+    }
+
+    @Benchmark
+    public Attributes addSelected() {
+        Attributes dest = new Attributes(SELECTION.length);
+        dest.addSelected(attrs, SELECTION);
+        return dest;
+    }
+
+    @Benchmark
+    public boolean matches() {
+        return attrs.matches(keys, true, false);
+    }
+
+    @Benchmark
+    public boolean matchesCompiled() {
+        return matcher.matches(attrs);
+    }
+}
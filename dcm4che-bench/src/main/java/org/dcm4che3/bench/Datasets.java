@@ -0,0 +1,151 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomEncodingOptions;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.UIDUtils;
+
+/**
+ * Generates synthetic data sets used as input by the benchmarks, in the
+ * same way as {@code dcmgen} derives instances from a seed by replacing
+ * its UIDs.
+ *
+ * @author agent <agent@local>
+ */
+class Datasets {
+
+    private Datasets() {}
+
+    /**
+     * Creates a CT Image with a Referenced Series, a Procedure Code
+     * Sequence and {@code rows} x {@code columns} 16 bit Pixel Data.
+     */
+    static Attributes createImage(int rows, int columns) {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SpecificCharacterSet, VR.CS, "ISO_IR 100");
+        attrs.setString(Tag.ImageType, VR.CS, "ORIGINAL", "PRIMARY", "AXIAL");
+        attrs.setString(Tag.SOPClassUID, VR.UI, UID.CTImageStorage);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+        attrs.setString(Tag.StudyDate, VR.DA, "20150312");
+        attrs.setString(Tag.StudyTime, VR.TM, "101112.131415");
+        attrs.setString(Tag.AccessionNumber, VR.SH, "A123456");
+        attrs.setString(Tag.Modality, VR.CS, "CT");
+        attrs.setString(Tag.Manufacturer, VR.LO, "dcm4che");
+        attrs.setString(Tag.ReferringPhysicianName, VR.PN, "Doe^John^^Dr.");
+        attrs.setString(Tag.StudyDescription, VR.LO, "CT Thorax");
+        Attributes code = new Attributes(3);
+        code.setString(Tag.CodeValue, VR.SH, "CTTHORAX");
+        code.setString(Tag.CodingSchemeDesignator, VR.SH, "99DCM4CHE");
+        code.setString(Tag.CodeMeaning, VR.LO, "CT Thorax");
+        attrs.newSequence(Tag.ProcedureCodeSequence, 1).add(code);
+        attrs.setString(Tag.PatientName, VR.PN, "Müller^Hans");
+        attrs.setString(Tag.PatientID, VR.LO, "PID-4711");
+        attrs.setString(Tag.IssuerOfPatientID, VR.LO, "DCM4CHE");
+        attrs.setString(Tag.PatientBirthDate, VR.DA, "19600101");
+        attrs.setString(Tag.PatientSex, VR.CS, "M");
+        attrs.setString(Tag.SliceThickness, VR.DS, "1.25");
+        attrs.setString(Tag.KVP, VR.DS, "120");
+        attrs.setString(Tag.StudyInstanceUID, VR.UI, UIDUtils.createUID());
+        attrs.setString(Tag.SeriesInstanceUID, VR.UI, UIDUtils.createUID());
+        attrs.setString(Tag.StudyID, VR.SH, "1");
+        attrs.setInt(Tag.SeriesNumber, VR.IS, 1);
+        attrs.setInt(Tag.InstanceNumber, VR.IS, 1);
+        attrs.setDouble(Tag.ImagePositionPatient, VR.DS, -250.0, -250.0, 42.5);
+        attrs.setDouble(Tag.ImageOrientationPatient, VR.DS,
+                1.0, 0.0, 0.0, 0.0, 1.0, 0.0);
+        attrs.setString(Tag.FrameOfReferenceUID, VR.UI, UIDUtils.createUID());
+        attrs.setInt(Tag.SamplesPerPixel, VR.US, 1);
+        attrs.setString(Tag.PhotometricInterpretation, VR.CS, "MONOCHROME2");
+        attrs.setInt(Tag.Rows, VR.US, rows);
+        attrs.setInt(Tag.Columns, VR.US, columns);
+        attrs.setDouble(Tag.PixelSpacing, VR.DS, 0.5, 0.5);
+        attrs.setInt(Tag.BitsAllocated, VR.US, 16);
+        attrs.setInt(Tag.BitsStored, VR.US, 12);
+        attrs.setInt(Tag.HighBit, VR.US, 11);
+        attrs.setInt(Tag.PixelRepresentation, VR.US, 0);
+        attrs.setString(Tag.WindowCenter, VR.DS, "40");
+        attrs.setString(Tag.WindowWidth, VR.DS, "400");
+        attrs.setString(Tag.RescaleIntercept, VR.DS, "-1024");
+        attrs.setString(Tag.RescaleSlope, VR.DS, "1");
+        attrs.setBytes(Tag.PixelData, VR.OW, pixelData(rows, columns));
+        return attrs;
+    }
+
+    /**
+     * Returns a copy of {@code seed} with new Study, Series and SOP Instance
+     * UIDs, as {@code dcmgen} does.
+     */
+    static Attributes nextInstance(Attributes seed, int instanceNumber) {
+        Attributes attrs = new Attributes(seed);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, UIDUtils.createUID());
+        attrs.setInt(Tag.InstanceNumber, VR.IS, instanceNumber);
+        return attrs;
+    }
+
+    static byte[] encode(Attributes attrs, String tsuid) throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(
+                attrs.calcLength(DicomEncodingOptions.DEFAULT, true) + 1024);
+        DicomOutputStream out = new DicomOutputStream(bout, tsuid);
+        try {
+            out.writeDataset(null, attrs);
+        } finally {
+            out.close();
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] pixelData(int rows, int columns) {
+        byte[] b = new byte[rows * columns * 2];
+        for (int i = 0, y = 0; y < rows; y++)
+            for (int x = 0; x < columns; x++, i += 2) {
+                int v = (x ^ y) & 0xfff;
+                b[i] = (byte) v;
+                b[i+1] = (byte) (v >> 8);
+            }
+        return b;
+    }
+}
@@ -47,7 +47,6 @@ import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
-import java.util.regex.Pattern;
 
 import org.dcm4che3.data.IOD.DataElement;
 import org.dcm4che3.data.IOD.DataElementType;
@@ -302,26 +301,48 @@ public class Attributes implements Serializable {
     }
 
     public void internalizeStringValues(boolean decode) {
+        deduplicateStringValues(StringDeduplicator.INTERN, decode);
+    }
+
+    /**
+     * Replaces string values, also of nested data sets, by equal instances
+     * returned by the specified {@link StringDeduplicator}, so data sets
+     * kept in memory share their values.
+     *
+     * @param dedup  deduplication strategy
+     * @param decode {@code true} to also decode not yet decoded values
+     *               of VRs deduplicated by {@code dedup}
+     */
+    public void deduplicateStringValues(StringDeduplicator dedup,
+            boolean decode) {
         SpecificCharacterSet cs = getSpecificCharacterSet();
-        for (int i = 0; i < values.length; i++) {
+        for (int i = 0; i < size; i++) {
             VR vr = vrs[i];
             Object value = values[i];
             if (vr.isStringType()) {
+                if (!dedup.deduplicates(vr))
+                    continue;
+                if (value instanceof ByteBufferValue) {
+                    if (!decode)
+                        continue;
+                    value = resolveValue(i);
+                }
                 if (value instanceof byte[]) {
                     if (!decode)
                         continue;
                     value = vr.toStrings((byte[]) value, bigEndian, cs);
                 }
                 if (value instanceof String)
-                    values[i] = ((String) value).intern();
+                    values[i] = dedup.deduplicate((String) value);
                 else if (value instanceof String[]) {
                     String[] ss = (String[]) value;
                     for (int j = 0; j < ss.length; j++)
-                        ss[j] = ss[j].intern();
+                        ss[j] = dedup.deduplicate(ss[j]);
+                    values[i] = ss;
                 }
             } else if (value instanceof Sequence)
                 for (Attributes item : (Sequence) value)
-                    item.internalizeStringValues(decode);
+                    item.deduplicateStringValues(dedup, decode);
         }
     }
 
@@ -335,7 +356,7 @@ public class Attributes implements Serializable {
                 for (Attributes item : (Sequence) value)
                     item.decodeStringValuesUsingSpecificCharacterSet();
             } else if ((vr = vrs[i]).useSpecificCharacterSet())
-                if (value instanceof byte[])
+                if ((value = resolveValue(i)) instanceof byte[])
                     values[i] =
                         vr.toStrings((byte[]) value, bigEndian, cs);
         }
@@ -441,18 +462,51 @@ public class Attributes implements Serializable {
         return creatorTag;
     }
 
-    private Object decodeStringValue(int index) {
+    /**
+     * Returns a copy of the bytes of a {@link ByteBufferValue} referencing
+     * the value in a - typically memory-mapped - buffer, leaving the
+     * {@code ByteBufferValue} in place, and replaces a {@link LazySequence}
+     * by the {@link Sequence} of its parsed Items.
+     */
+    private Object resolveValue(int index) {
         Object value = values[index];
+        if (value instanceof ByteBufferValue) {
+            value = ((ByteBufferValue) value).toBytes(vrs[index], bigEndian);
+        } else if (value instanceof LazySequence) {
+            // read the replacing Sequence after parse() released its lock
+            ((LazySequence) value).parse(this, tags[index]);
+            value = values[index];
+        }
+        return value;
+    }
+
+    private Object resolveLazySequence(int index) {
+        Object value = values[index];
+        return (value instanceof LazySequence) ? resolveValue(index) : value;
+    }
+
+    private Object decodeStringValue(int index) {
+        Object value = resolveValue(index);
         if (value instanceof byte[]) {
             value = vrs[index].toStrings((byte[]) value, bigEndian,
                     getSpecificCharacterSet(vrs[index]));
             if (value instanceof String && ((String) value).isEmpty())
                 value = Value.NULL;
-            values[index] = value;
+            cacheDecodedValue(index, value);
         }
         return value;
     }
 
+    /**
+     * Keeps the decoded value in place of its encoded bytes, unless the
+     * value is still backed by a {@link ByteBufferValue}, which is decoded
+     * on each access instead.
+     */
+    private void cacheDecodedValue(int index, Object value) {
+        if (!(values[index] instanceof ByteBufferValue))
+            values[index] = value;
+    }
+
     public SpecificCharacterSet getSpecificCharacterSet(VR vr) {
         return vr.useSpecificCharacterSet()
                 ? getSpecificCharacterSet()
@@ -460,7 +514,7 @@ public class Attributes implements Serializable {
     }
 
     private double[] decodeDSValue(int index) {
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return ByteUtils.EMPTY_DOUBLES;
 
@@ -474,7 +528,7 @@ public class Attributes implements Serializable {
         if (value instanceof String) {
             String s = (String) value;
             if (s.isEmpty()) {
-                values[index] = Value.NULL;
+                cacheDecodedValue(index, Value.NULL);
                 return ByteUtils.EMPTY_DOUBLES;
             }
             ds = new double[] { StringUtils.parseDS(s) };
@@ -488,12 +542,12 @@ public class Attributes implements Serializable {
                         : Double.NaN;
             }
         }
-        values[index] = ds;
+        cacheDecodedValue(index, ds);
         return ds;
     }
 
     private int[] decodeISValue(int index) {
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return ByteUtils.EMPTY_INTS;
 
@@ -507,7 +561,7 @@ public class Attributes implements Serializable {
         if (value instanceof String) {
             String s = (String) value;
             if (s.isEmpty()) {
-                values[index] = Value.NULL;
+                cacheDecodedValue(index, Value.NULL);
                 return ByteUtils.EMPTY_INTS;
             }
             is = new int[] { StringUtils.parseIS(s) };
@@ -521,7 +575,7 @@ public class Attributes implements Serializable {
                             : Integer.MIN_VALUE;
             }
         }
-        values[index] = is;
+        cacheDecodedValue(index, is);
         return is;
     }
 
@@ -530,7 +584,7 @@ public class Attributes implements Serializable {
         if (vr == prev)
             return;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (!(value == Value.NULL
                 || value instanceof byte[]
                 || vr.isStringType() 
@@ -541,7 +595,7 @@ public class Attributes implements Serializable {
         vrs[index] = vr;
     }
 
-    private static boolean isEmpty(Object value) {
+    static boolean isEmpty(Object value) {
         return (value instanceof Value) && ((Value) value).isEmpty();
     }
 
@@ -600,7 +654,7 @@ public class Attributes implements Serializable {
         
         if (vr != null)
             vr.vr = vrs[index];
-        return values[index];
+        return resolveValue(index);
     }
 
     public VR getVR(int tag) {
@@ -624,7 +678,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return null;
         
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return (Sequence) (values[index] = new Sequence(this, privateCreator, tag, 0));
         return value instanceof Sequence ? (Sequence) value : null;
@@ -639,7 +693,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return null;
         
-        Object value = values[index];
+        Object value = resolveValue(index);
         VR vr = vrs[index];
         
         try {
@@ -716,7 +770,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return defVal;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return defVal;
 
@@ -751,7 +805,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return null;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return StringUtils.EMPTY_STRING;
 
@@ -804,7 +858,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return defVal;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return defVal;
 
@@ -839,7 +893,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return null;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return ByteUtils.EMPTY_INTS;
 
@@ -886,7 +940,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return defVal;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return defVal;
 
@@ -921,7 +975,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return null;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return ByteUtils.EMPTY_FLOATS;
 
@@ -968,7 +1022,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return defVal;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return defVal;
 
@@ -1003,7 +1057,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return null;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return ByteUtils.EMPTY_DOUBLES;
 
@@ -1131,7 +1185,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return defVal;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return defVal;
 
@@ -1233,7 +1287,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return null;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return DateUtils.EMPTY_DATES;
 
@@ -1327,7 +1381,7 @@ public class Attributes implements Serializable {
         if (index < 0)
             return defVal;
 
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (value == Value.NULL)
             return defVal;
 
@@ -1353,7 +1407,7 @@ public class Attributes implements Serializable {
     }
 
     private DateRange toDateRange(String s, VR vr) {
-        String[] range = splitRange(s);
+        String[] range = splitRange(s, vr);
         TimeZone tz = getTimeZone();
         DatePrecision precision = new DatePrecision();
         Date start = range[0] == null ? null
@@ -1363,9 +1417,9 @@ public class Attributes implements Serializable {
         return new DateRange(start, end);
     }
 
-    private static String[] splitRange(String s) {
+    private static String[] splitRange(String s, VR vr) {
         String[] range = new String[2];
-        int delim = s.indexOf('-');
+        int delim = indexOfRangeDelimiter(s, vr);
         if (delim == -1)
             range[0] = range[1] = s;
         else {
@@ -1377,6 +1431,30 @@ public class Attributes implements Serializable {
         return range;
     }
 
+    /**
+     * Returns the index of the hyphen separating start and end of a DA, DT
+     * or TM range, or -1 if the value is not a range. In DT values, a hyphen
+     * followed by a valid UTC offset (&amp;ZZXX) is not a range delimiter.
+     */
+    static int indexOfRangeDelimiter(String s, VR vr) {
+        int index = s.indexOf('-');
+        if (vr == VR.DT)
+            while (index > 0 && isNegativeUTCOffset(s, index))
+                index = s.indexOf('-', index + 5);
+        return index;
+    }
+
+    private static boolean isNegativeUTCOffset(String s, int index) {
+        int end = index + 5;
+        if (end > s.length() || end < s.length() && s.charAt(end) != '-')
+            return false;
+        for (int i = index + 1; i < end; i++)
+            if (!Character.isDigit(s.charAt(i)))
+                return false;
+        return Integer.parseInt(s.substring(index + 1, index + 3)) <= 14
+                && Integer.parseInt(s.substring(index + 3, end)) < 60;
+    }
+
     public DateRange getDateRange(long tag) {
         return getDateRange(null, tag, null);
     }
@@ -1410,8 +1488,8 @@ public class Attributes implements Serializable {
     }
 
     private DateRange toDateRange(String da, String tm) {
-        String[] darange = splitRange(da);
-        String[] tmrange = splitRange(tm);
+        String[] darange = splitRange(da, VR.DA);
+        String[] tmrange = splitRange(tm, VR.TM);
         DatePrecision precision = new DatePrecision();
         TimeZone tz = getTimeZone();
         return new DateRange(
@@ -1534,7 +1612,7 @@ public class Attributes implements Serializable {
             return;
 
         for (int i = 0; i < size; i++) {
-            Object val = values[i];
+            Object val = resolveLazySequence(i);
             if (val instanceof Sequence) {
                 Sequence new_name = (Sequence) val;
                 for (Attributes item : new_name) {
@@ -1604,7 +1682,7 @@ public class Attributes implements Serializable {
                 } else {
                     String[] tmRange = null;
                     if (isRange((String) tm)) {
-                        tmRange = splitRange((String) tm);
+                        tmRange = splitRange((String) tm, VR.TM);
                         if (tmRange[0] == null)
                             tmRange[0] = "000000.000";
                         if (tmRange[1] == null)
@@ -1624,7 +1702,7 @@ public class Attributes implements Serializable {
                         }
                     } else {
                         if (tmRange != null) {
-                            String[] daRange = splitRange((String) da);
+                            String[] daRange = splitRange((String) da, VR.DA);
                             if (daRange[0] == null) {
                                 daRange[0] = "";
                                 tmRange[0] = updateTimeZoneTM(from, to, tmRange[0]);
@@ -2068,10 +2146,14 @@ public class Attributes implements Serializable {
             }
             int vallen = (value instanceof byte[])
                     ? ((byte[])value).length
+                    : (value instanceof ByteBufferValue)
+                    ? ((ByteBufferValue) value).length()
                     : -1;
             if (descriptor.isBulkData(privateCreator, tag, vr, vallen, itemPointer))
                 continue;
 
+            value = other.resolveLazySequence(i);
+
             if (value instanceof Sequence) {
                 Sequence src = (Sequence) value;
                 setWithoutBulkData(privateCreator, tag, src, descriptor);
@@ -2220,6 +2302,9 @@ public class Attributes implements Serializable {
             if (selection != null && !selection.contains(privateCreator, tag))
                 continue;
 
+            if (selection != null)
+                value = other.resolveLazySequence(i);
+
             if (merge || update) {
                 int j = indexOf(tag);
                 if (j >= 0) {
@@ -2361,8 +2446,8 @@ public class Attributes implements Serializable {
                 return equalDSValues(other, index, otherIndex);
             else
                 return equalStringValues(other, index, otherIndex);
-        Object v1 = values[index];
-        Object v2 = other.values[otherIndex];
+        Object v1 = resolveValue(index);
+        Object v2 = other.resolveValue(otherIndex);
         if (v1 instanceof byte[]) {
             if (v2 instanceof byte[] && ((byte[]) v1).length == ((byte[]) v2).length) {
                 if (bigEndian != other.bigEndian)
@@ -2468,6 +2553,8 @@ public class Attributes implements Serializable {
                 privateCreator = null;
             }
             Object value = values[i];
+            if (value instanceof ByteBufferValue && !vrs[i].isInlineBinary())
+                value = ((ByteBufferValue) value).toBytes(vrs[i], bigEndian);
             appendAttribute(privateCreator, tag, vrs[i], value,
                     sb.length() + maxWidth, sb, prefix);
             if (value instanceof Sequence)
@@ -2524,6 +2611,10 @@ public class Attributes implements Serializable {
         for (int i = 0; i < size; i++) {
             vr = vrs[i];
             val = values[i];
+            if (val instanceof LazySequence
+                    && (encOpts.groupLength
+                        || ((LazySequence) val).explicitVR() != explicitVR))
+                val = resolveValue(i);
             len = explicitVR ? vr.headerLength() : 8;
             if (val instanceof Value)
                 len += ((Value) val).calcLength(encOpts, explicitVR, vr);
@@ -2617,14 +2708,20 @@ public class Attributes implements Serializable {
                             groupLengths[groupLengthIndex++]);
                 }
             }
-            out.writeAttribute(tag, vrs[i], values[i], cs);
+            Object value = values[i];
+            if (value instanceof LazySequence
+                    && !((LazySequence) value).isWritableTo(out))
+                value = resolveValue(i);
+            out.writeAttribute(tag, vrs[i], value, cs);
         }
     }
 
     /**
      * Invokes {@link Visitor#visit} for each attribute in this instance. The
      * operation will be aborted if <code>visitor.visit()</code> returns
-     * <code>false</code> or throws an exception.
+     * <code>false</code> or throws an exception. Values are passed as
+     * stored, without copying values referenced as {@link ByteBufferValue}
+     * on the heap.
      * 
      * @param visitor
      * @param visitNestedDatasets
@@ -2651,7 +2748,7 @@ public class Attributes implements Serializable {
     private boolean accept(Visitor visitor, boolean visitNestedDatasets,
             int start, int end) throws Exception {
         for (int i = start; i < end; i++) {
-            if (!visitor.visit(this, tags[i], vrs[i], values[i]))
+            if (!visitor.visit(this, tags[i], vrs[i], resolveLazySequence(i)))
                 return false;
             if (visitNestedDatasets && (values[i] instanceof Sequence)) {
                 for (Attributes item : (Sequence) values[i]) {
@@ -2713,114 +2810,26 @@ public class Attributes implements Serializable {
         return fmi;
     }
 
-    public boolean matches(Attributes keys, boolean ignorePNCase,
-            boolean matchNoValue) {
-        int[] keyTags = keys.tags;
-        VR[] keyVrs = keys.vrs;
-        Object[] keyValues = keys.values;
-        int keysSize = keys.size;
-        String privateCreator = null;
-        int creatorTag = 0;
-        for (int i = 0; i < keysSize; i++) {
-            int tag = keyTags[i];
-            if (TagUtils.isPrivateCreator(tag))
-                continue;
-
-            if (TagUtils.isPrivateGroup(tag)) {
-                int tmp = TagUtils.creatorTagOf(tag);
-                if (creatorTag != tmp) {
-                    creatorTag = tmp;
-                    privateCreator = keys.getString(creatorTag, null);
-                }
-            } else {
-                creatorTag = 0;
-                privateCreator = null;
-            }
-
-            Object keyValue = keyValues[i];
-            if (isEmpty(keyValue))
-                continue;
-
-            if (keyVrs[i].isStringType()) {
-                if (!matches(privateCreator, tag, keyVrs[i], ignorePNCase,
-                        matchNoValue, keys.getStrings(privateCreator, tag, null)))
-                    return false;
-            } else if (keyValue instanceof Sequence) {
-                if (!matches(privateCreator, tag, ignorePNCase, matchNoValue,
-                        (Sequence) keyValue))
-                    return false;
-            } else {
-                throw new UnsupportedOperationException("Keys with VR: "
-                        + keyVrs[i] + " not supported");
-            }
-        }
-        return true;
-    }
-
-    private boolean matches(String privateCreator, int tag, VR vr,
-            boolean ignorePNCase, boolean matchNoValue, String[] keyVals) {
-        String[] vals = getStrings(privateCreator, tag, null);
-        if (vals == null || vals.length == 0)
-            return matchNoValue;
-
-        boolean ignoreCase = ignorePNCase && vr == VR.PN;
-        for (String keyVal : keyVals) {
-            if (vr == VR.PN)
-                keyVal = new PersonName(keyVals[0]).toString();
-    
-            if (StringUtils.containsWildCard(keyVal)) {
-                Pattern pattern = StringUtils.compilePattern(keyVal, ignoreCase);
-                for (String val : vals) {
-                    if (val == null)
-                        if (matchNoValue)
-                            return true;
-                        else
-                            continue;
-                    if (vr == VR.PN)
-                        val = new PersonName(val).toString();
-                    if (pattern.matcher(val).matches())
-                        return true;
-                }
-            } else {
-                for (String val : vals) {
-                    if (val == null)
-                        if (matchNoValue)
-                            return true;
-                        else
-                            continue;
-                    if (vr == VR.PN)
-                        val = new PersonName(val).toString();
-                    if (ignoreCase ? keyVal.equalsIgnoreCase(val)
-                                   : keyVal.equals(val))
-                        return true;
-                }
-            }
-        }
-        return false;
+    /**
+     * Returns a read-only compact copy of this data set, holding all Data
+     * Elements encoded in one {@code byte[]}.
+     *
+     * @return read-only compact copy of this data set
+     * @see FrozenAttributes#thaw()
+     */
+    public FrozenAttributes freeze() {
+        return FrozenAttributes.freeze(this);
     }
 
-    private boolean matches(String privateCreator, int tag, boolean ignorePNCase, 
-            boolean matchNoValue, Sequence keySeq) {
-        int n = keySeq.size();
-        if (n > 1)
-            throw new IllegalArgumentException("Keys contain Sequence "
-                    + TagUtils.toString(tag) + " with " + n + " Items");
-
-        Attributes keys = keySeq.get(0);
-        if (keys.isEmpty())
-            return true;
-
-        Object value = getValue(privateCreator, tag);
-        if (value == null || isEmpty(value))
-            return matchNoValue;
-
-        if (value instanceof Sequence) {
-            Sequence sq = (Sequence) value;
-            for (Attributes item : sq)
-                if (item.matches(keys, ignorePNCase, matchNoValue))
-                    return true;
-        }
-        return false;
+    /**
+     * Checks if this data set matches the specified C-FIND Matching Keys.
+     * Compiles the keys on each invocation - use {@link AttributesMatcher}
+     * to match several data sets against the same keys.
+     */
+    public boolean matches(Attributes keys, boolean ignorePNCase,
+            boolean matchNoValue) {
+        return new AttributesMatcher(keys, ignorePNCase, matchNoValue)
+                .matches(this);
     }
 
     private static final long serialVersionUID = 7868714416968825241L;
@@ -2882,7 +2891,7 @@ public class Attributes implements Serializable {
             }
             return;
         }
-        Object value = values[index];
+        Object value = resolveValue(index);
         if (isEmpty(value)) {
             if (el.type == IOD.DataElementType.TYPE_1) {
                 result.addMissingAttributeValue(el);
@@ -0,0 +1,375 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.dcm4che3.util.StringUtils;
+import org.dcm4che3.util.TagUtils;
+
+/**
+ * Matcher compiled once from C-FIND Matching Keys, which may be applied
+ * on any number of candidate data sets - also in their
+ * {@link FrozenAttributes frozen} form, without thawing them.
+ * <p>
+ * Wild card patterns are compiled and Person Name key values normalized on
+ * construction; multiple key values are kept in a hash set; DA, TM and DT
+ * key values specifying a range are parsed into a {@link DateRange} and
+ * keys of Sequences are compiled into nested matchers.
+ *
+ * @author agent <agent@local>
+ * @see Attributes#matches(Attributes, boolean, boolean)
+ */
+public class AttributesMatcher {
+
+    private final KeyMatcher[] keyMatchers;
+
+    public AttributesMatcher(Attributes keys, boolean ignorePNCase,
+            boolean matchNoValue) {
+        this.keyMatchers = compile(keys, ignorePNCase, matchNoValue);
+    }
+
+    public boolean matches(Attributes attrs) {
+        return matches(new AttributesCandidate(attrs));
+    }
+
+    public boolean matches(FrozenAttributes attrs) {
+        return matches(new FrozenCandidate(attrs));
+    }
+
+    private boolean matches(Candidate candidate) {
+        for (KeyMatcher keyMatcher : keyMatchers)
+            if (!keyMatcher.matches(candidate))
+                return false;
+        return true;
+    }
+
+    private static KeyMatcher[] compile(Attributes keys, boolean ignorePNCase,
+            boolean matchNoValue) {
+        List<KeyMatcher> list = new ArrayList<KeyMatcher>(keys.size());
+        int[] keyTags = keys.tags();
+        String privateCreator = null;
+        int creatorTag = 0;
+        for (int i = 0, n = keys.size(); i < n; i++) {
+            int tag = keyTags[i];
+            if (TagUtils.isPrivateCreator(tag))
+                continue;
+
+            if (TagUtils.isPrivateGroup(tag)) {
+                int tmp = TagUtils.creatorTagOf(tag);
+                if (creatorTag != tmp) {
+                    creatorTag = tmp;
+                    privateCreator = keys.getString(creatorTag, null);
+                }
+            } else {
+                creatorTag = 0;
+                privateCreator = null;
+            }
+
+            Object keyValue = keys.getValue(privateCreator, tag);
+            if (Attributes.isEmpty(keyValue))
+                continue;
+
+            VR vr = keys.getVR(privateCreator, tag);
+            if (vr.isStringType()) {
+                list.add(compile(keys, privateCreator, tag, vr,
+                        ignorePNCase, matchNoValue));
+            } else if (keyValue instanceof Sequence) {
+                KeyMatcher keyMatcher = compile(privateCreator, tag,
+                        (Sequence) keyValue, ignorePNCase, matchNoValue);
+                if (keyMatcher != null)
+                    list.add(keyMatcher);
+            } else {
+                throw new UnsupportedOperationException("Keys with VR: "
+                        + vr + " not supported");
+            }
+        }
+        return list.toArray(new KeyMatcher[list.size()]);
+    }
+
+    private static KeyMatcher compile(Attributes keys, String privateCreator,
+            int tag, VR vr, boolean ignorePNCase, boolean matchNoValue) {
+        String[] keyVals = keys.getStrings(privateCreator, tag, null);
+        if (isDateRange(vr, keyVals))
+            return new DateRangeMatcher(privateCreator, tag, matchNoValue,
+                    keys.getDateRange(privateCreator, tag));
+
+        boolean pn = vr == VR.PN;
+        boolean ignoreCase = ignorePNCase && pn;
+        List<Pattern> patterns = new ArrayList<Pattern>(1);
+        List<String> literals = new ArrayList<String>(keyVals.length);
+        for (String keyVal : keyVals) {
+            if (keyVal == null)
+                continue;
+            if (pn)
+                keyVal = new PersonName(keyVal).toString();
+            if (StringUtils.containsWildCard(keyVal))
+                patterns.add(StringUtils.compilePattern(keyVal, ignoreCase));
+            else
+                literals.add(keyVal);
+        }
+        return new StringMatcher(privateCreator, tag, pn, ignoreCase,
+                matchNoValue, literals,
+                patterns.toArray(new Pattern[patterns.size()]));
+    }
+
+    private static boolean isDateRange(VR vr, String[] keyVals) {
+        return (vr == VR.DA || vr == VR.DT || vr == VR.TM)
+                && keyVals.length == 1
+                && Attributes.indexOfRangeDelimiter(keyVals[0], vr) >= 0;
+    }
+
+    private static KeyMatcher compile(String privateCreator, int tag,
+            Sequence keySeq, boolean ignorePNCase, boolean matchNoValue) {
+        int n = keySeq.size();
+        if (n > 1)
+            throw new IllegalArgumentException("Keys contain Sequence "
+                    + TagUtils.toString(tag) + " with " + n + " Items");
+
+        Attributes item = keySeq.get(0);
+        if (item.isEmpty())
+            return null;
+
+        return new SequenceMatcher(privateCreator, tag, matchNoValue,
+                new AttributesMatcher(item, ignorePNCase, matchNoValue));
+    }
+
+    private static abstract class KeyMatcher {
+        final String privateCreator;
+        final int tag;
+        final boolean matchNoValue;
+
+        KeyMatcher(String privateCreator, int tag, boolean matchNoValue) {
+            this.privateCreator = privateCreator;
+            this.tag = tag;
+            this.matchNoValue = matchNoValue;
+        }
+
+        abstract boolean matches(Candidate candidate);
+    }
+
+    /**
+     * Read-only access to the values of a candidate data set, in mutable
+     * or frozen form.
+     */
+    private interface Candidate {
+        String[] getStrings(String privateCreator, int tag);
+
+        Date[] getDates(String privateCreator, int tag);
+
+        Sequence getSequence(String privateCreator, int tag);
+    }
+
+    private static final class AttributesCandidate implements Candidate {
+        final Attributes attrs;
+
+        AttributesCandidate(Attributes attrs) {
+            this.attrs = attrs;
+        }
+
+        @Override
+        public String[] getStrings(String privateCreator, int tag) {
+            return attrs.getStrings(privateCreator, tag, null);
+        }
+
+        @Override
+        public Date[] getDates(String privateCreator, int tag) {
+            return attrs.getDates(privateCreator, tag);
+        }
+
+        @Override
+        public Sequence getSequence(String privateCreator, int tag) {
+            Object value = attrs.getValue(privateCreator, tag);
+            return value instanceof Sequence ? (Sequence) value : null;
+        }
+    }
+
+    private static final class FrozenCandidate implements Candidate {
+        final FrozenAttributes attrs;
+
+        FrozenCandidate(FrozenAttributes attrs) {
+            this.attrs = attrs;
+        }
+
+        @Override
+        public String[] getStrings(String privateCreator, int tag) {
+            return attrs.getStrings(privateCreator, tag);
+        }
+
+        @Override
+        public Date[] getDates(String privateCreator, int tag) {
+            return attrs.getDates(privateCreator, tag);
+        }
+
+        @Override
+        public Sequence getSequence(String privateCreator, int tag) {
+            return attrs.getSequence(privateCreator, tag);
+        }
+    }
+
+    private static final class StringMatcher extends KeyMatcher {
+        final boolean pn;
+        final boolean ignoreCase;
+        final String[] literals;
+        final Set<String> literalSet;
+        final Pattern[] patterns;
+
+        StringMatcher(String privateCreator, int tag, boolean pn,
+                boolean ignoreCase, boolean matchNoValue,
+                List<String> literals, Pattern[] patterns) {
+            super(privateCreator, tag, matchNoValue);
+            this.pn = pn;
+            this.ignoreCase = ignoreCase;
+            this.literals = literals.toArray(new String[literals.size()]);
+            this.literalSet = ignoreCase || literals.size() < 2
+                    ? Collections.<String>emptySet()
+                    : new HashSet<String>(literals);
+            this.patterns = patterns;
+        }
+
+        @Override
+        boolean matches(Candidate candidate) {
+            String[] vals = candidate.getStrings(privateCreator, tag);
+            if (vals == null || vals.length == 0)
+                return matchNoValue;
+
+            for (String val : vals) {
+                if (val == null)
+                    if (matchNoValue)
+                        return true;
+                    else
+                        continue;
+                if (pn)
+                    val = new PersonName(val).toString();
+                if (matchesLiteral(val))
+                    return true;
+                for (Pattern pattern : patterns)
+                    if (pattern.matcher(val).matches())
+                        return true;
+            }
+            return false;
+        }
+
+        private boolean matchesLiteral(String val) {
+            if (!literalSet.isEmpty())
+                return literalSet.contains(val);
+
+            for (String literal : literals)
+                if (ignoreCase ? literal.equalsIgnoreCase(val)
+                               : literal.equals(val))
+                    return true;
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return TagUtils.toString(tag) + "=" + Arrays.toString(literals)
+                    + Arrays.toString(patterns);
+        }
+    }
+
+    private static final class DateRangeMatcher extends KeyMatcher {
+        final DateRange range;
+
+        DateRangeMatcher(String privateCreator, int tag,
+                boolean matchNoValue, DateRange range) {
+            super(privateCreator, tag, matchNoValue);
+            this.range = range;
+        }
+
+        @Override
+        boolean matches(Candidate candidate) {
+            if (range == null)
+                return true;
+
+            Date[] vals = candidate.getDates(privateCreator, tag);
+            if (vals == null || vals.length == 0)
+                return matchNoValue;
+
+            for (Date val : vals)
+                if (range.contains(val))
+                    return true;
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return TagUtils.toString(tag) + "=" + range;
+        }
+    }
+
+    private static final class SequenceMatcher extends KeyMatcher {
+        final AttributesMatcher itemMatcher;
+
+        SequenceMatcher(String privateCreator, int tag, boolean matchNoValue,
+                AttributesMatcher itemMatcher) {
+            super(privateCreator, tag, matchNoValue);
+            this.itemMatcher = itemMatcher;
+        }
+
+        @Override
+        boolean matches(Candidate candidate) {
+            Sequence sq = candidate.getSequence(privateCreator, tag);
+            if (sq == null || sq.isEmpty())
+                return matchNoValue;
+
+            for (Attributes item : sq)
+                if (itemMatcher.matches(item))
+                    return true;
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return TagUtils.toString(tag) + "=" + itemMatcher;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(keyMatchers);
+    }
+}
@@ -0,0 +1,129 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import java.util.EnumSet;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@link StringDeduplicator} backed by a fixed size table, replacing the
+ * entry on hash collisions. In contrast to {@link String#intern()}, its
+ * memory footprint is bounded and it does not retain values of high
+ * cardinality, like SOP Instance UIDs, which just overwrite each other.
+ * Lookups and updates are lock-free.
+ * <p>
+ * By default, values of VR AE, CS, LO and UI not longer than 32 characters
+ * - covering Modalities, SOP Class and Transfer Syntax UIDs and most coded
+ * values - are deduplicated.
+ *
+ * @author agent <agent@local>
+ */
+public class BoundedStringDeduplicator implements StringDeduplicator {
+
+    private static final int DEF_CAPACITY = 4096;
+    private static final int DEF_MAX_LENGTH = 32;
+
+    private final AtomicReferenceArray<String> table;
+    private final int mask;
+    private final int maxLength;
+    private final EnumSet<VR> vrs;
+
+    public BoundedStringDeduplicator() {
+        this(DEF_CAPACITY, DEF_MAX_LENGTH, VR.AE, VR.CS, VR.LO, VR.UI);
+    }
+
+    /**
+     * @param capacity number of table entries, rounded up to a power of 2
+     * @param maxLength maximal length of deduplicated values
+     * @param vrs VRs of deduplicated values
+     */
+    public BoundedStringDeduplicator(int capacity, int maxLength, VR... vrs) {
+        if (capacity <= 0 || capacity > (1 << 30))
+            throw new IllegalArgumentException("capacity: " + capacity);
+        if (vrs.length == 0)
+            throw new IllegalArgumentException("no VRs specified");
+        for (VR vr : vrs)
+            if (!vr.isStringType())
+                throw new IllegalArgumentException("no string VR: " + vr);
+
+        int n = Integer.highestOneBit(capacity);
+        if (n < capacity)
+            n <<= 1;
+        this.table = new AtomicReferenceArray<String>(n);
+        this.mask = n - 1;
+        this.maxLength = maxLength;
+        this.vrs = EnumSet.of(vrs[0], vrs);
+    }
+
+    public final int getCapacity() {
+        return table.length();
+    }
+
+    public final int getMaxLength() {
+        return maxLength;
+    }
+
+    @Override
+    public boolean deduplicates(VR vr) {
+        return vrs.contains(vr);
+    }
+
+    @Override
+    public String deduplicate(String s) {
+        if (s.isEmpty() || s.length() > maxLength)
+            return s;
+
+        int h = s.hashCode();
+        int i = (h ^ (h >>> 16)) & mask;
+        String cached = table.get(i);
+        if (s.equals(cached))
+            return cached;
+
+        table.lazySet(i, s);
+        return s;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void clear() {
+        for (int i = 0, n = table.length(); i < n; i++)
+            table.set(i, null);
+    }
+}
@@ -349,6 +349,12 @@ public class BulkData implements Value {
 
     @Override
     public void writeTo(DicomOutputStream out, VR vr) throws IOException {
+        if (out.isChannelMode() && length > 0 && uri != null
+                && uri.startsWith("file:")
+                && this.bigEndian == out.isBigEndian()) {
+            transferTo(out, vr);
+            return;
+        }
         InputStream in = openStream();
         try {
             if (this.bigEndian != out.isBigEndian())
@@ -362,6 +368,17 @@ public class BulkData implements Value {
         }
     }
 
+    private void transferTo(DicomOutputStream out, VR vr) throws IOException {
+        FileInputStream in = new FileInputStream(getFile());
+        try {
+            out.transferFrom(in.getChannel(), offset, length);
+            if ((length & 1) != 0)
+                out.write(vr.paddingByte());
+        } finally {
+            in.close();
+        }
+    }
+
     public void serializeTo(ObjectOutputStream oos) throws IOException {
         oos.writeUTF(StringUtils.maskNull(uuid, ""));
         oos.writeUTF(StringUtils.maskNull(uri, ""));
@@ -0,0 +1,165 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.dcm4che3.io.DicomEncodingOptions;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.ByteUtils;
+
+/**
+ * Value backed by a region of a - typically memory-mapped - {@code ByteBuffer}.
+ * The bytes are only copied into a {@code byte[]}, if the value is accessed
+ * by {@link #toBytes}, so a {@link Attributes} read by a
+ * {@link org.dcm4che3.io.DicomInputStream} from a memory-mapped file can be
+ * forwarded to a {@link DicomOutputStream} without copying the values on the
+ * heap.
+ *
+ * @author agent <agent@local>
+ */
+public class ByteBufferValue implements Value {
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private final boolean bigEndian;
+
+    public ByteBufferValue(ByteBuffer buffer, int offset, int length,
+            boolean bigEndian) {
+        if (offset < 0 || length < 0 || offset + length > buffer.limit())
+            throw new IndexOutOfBoundsException(
+                    "offset=" + offset + ", length=" + length
+                    + ", limit=" + buffer.limit());
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.bigEndian = bigEndian;
+    }
+
+    public final int offset() {
+        return offset;
+    }
+
+    public final int length() {
+        return length;
+    }
+
+    public final boolean bigEndian() {
+        return bigEndian;
+    }
+
+    /**
+     * Returns a read-only view of the value bytes. The position of the
+     * returned buffer is 0, its limit is the value length.
+     *
+     * @return read-only view of the value bytes
+     */
+    public ByteBuffer asByteBuffer() {
+        ByteBuffer dup = buffer.asReadOnlyBuffer();
+        dup.position(offset);
+        dup.limit(offset + length);
+        return dup.slice();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    @Override
+    public byte[] toBytes(VR vr, boolean bigEndian) {
+        if (length == 0)
+            return ByteUtils.EMPTY_BYTES;
+
+        byte[] b = new byte[length];
+        ByteBuffer dup = buffer.duplicate();
+        dup.position(offset);
+        dup.get(b);
+        if (this.bigEndian != bigEndian)
+            vr.toggleEndian(b, false);
+        return b;
+    }
+
+    @Override
+    public void writeTo(DicomOutputStream out, VR vr) throws IOException {
+        if (this.bigEndian != out.isBigEndian()) {
+            out.write(toBytes(vr, out.isBigEndian()));
+        } else {
+            ByteBuffer dup = buffer.duplicate();
+            dup.limit(offset + length).position(offset);
+            out.write(dup);
+        }
+        if ((length & 1) != 0)
+            out.write(vr.paddingByte());
+    }
+
+    @Override
+    public int calcLength(DicomEncodingOptions encOpts, boolean explicitVR, VR vr) {
+        return (length + 1) & ~1;
+    }
+
+    @Override
+    public int getEncodedLength(DicomEncodingOptions encOpts, boolean explicitVR, VR vr) {
+        return (length + 1) & ~1;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof ByteBufferValue))
+            return false;
+        ByteBufferValue other = (ByteBufferValue) obj;
+        return bigEndian == other.bigEndian
+                && asByteBuffer().equals(other.asByteBuffer());
+    }
+
+    @Override
+    public int hashCode() {
+        return asByteBuffer().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ByteBufferValue[offset=" + offset + ", length=" + length
+                + ", bigEndian=" + bigEndian + "]";
+    }
+}
@@ -38,15 +38,22 @@
 
 package org.dcm4che3.data;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.dcm4che3.data.StandardElementDictionary;
 
 public abstract class ElementDictionary {
     private static final ServiceLoader<ElementDictionary> loader =
             ServiceLoader.load(ElementDictionary.class);
+    private static volatile Map<String, ElementDictionary> privateDictionaries;
     private final String privateCreator;
     private final Class<?> tagClass;
+    private volatile Map<String, Integer> keywordIndex;
 
     protected ElementDictionary(String privateCreator, Class<?> tagClass) {
         this.privateCreator = privateCreator;
@@ -59,21 +66,42 @@ public abstract class ElementDictionary {
 
     public static ElementDictionary getElementDictionary(
             String privateCreator) {
-        if (privateCreator != null)
-            synchronized (loader) {
-                for (ElementDictionary dict : loader)
-                    if (privateCreator.equals(dict.getPrivateCreator()))
-                        return dict;
-            }
+        if (privateCreator != null) {
+            ElementDictionary dict = privateDictionaries().get(privateCreator);
+            if (dict != null)
+                return dict;
+        }
         return getStandardElementDictionary();
     }
 
     public static void reload() {
         synchronized (loader) {
             loader.reload();
+            privateDictionaries = loadPrivateDictionaries();
         }
     }
 
+    private static Map<String, ElementDictionary> privateDictionaries() {
+        Map<String, ElementDictionary> dicts = privateDictionaries;
+        if (dicts == null)
+            synchronized (loader) {
+                if ((dicts = privateDictionaries) == null)
+                    privateDictionaries = dicts = loadPrivateDictionaries();
+            }
+        return dicts;
+    }
+
+    private static Map<String, ElementDictionary> loadPrivateDictionaries() {
+        ConcurrentHashMap<String, ElementDictionary> dicts =
+                new ConcurrentHashMap<String, ElementDictionary>();
+        for (ElementDictionary dict : loader) {
+            String privateCreator = dict.getPrivateCreator();
+            if (privateCreator != null)
+                dicts.putIfAbsent(privateCreator, dict);
+        }
+        return dicts;
+    }
+
     public static VR vrOf(int tag, String privateCreator) {
         return getElementDictionary(privateCreator).vrOf(tag);
     }
@@ -107,10 +135,27 @@ public abstract class ElementDictionary {
     }
 
     public int tagForKeyword(String keyword) {
+        Integer tag = keywordIndex().get(keyword);
+        return tag != null ? tag.intValue() : -1;
+    }
+
+    private Map<String, Integer> keywordIndex() {
+        Map<String, Integer> index = keywordIndex;
+        if (index == null)
+            keywordIndex = index = createKeywordIndex(tagClass);
+        return index;
+    }
+
+    private static Map<String, Integer> createKeywordIndex(Class<?> tagClass) {
+        HashMap<String, Integer> index = new HashMap<String, Integer>();
         if (tagClass != null)
-            try {
-                return tagClass.getField(keyword).getInt(null);
-            } catch (Exception ignore) { }
-        return -1;
+            for (Field field : tagClass.getFields()) {
+                if (field.getType() == int.class
+                        && Modifier.isStatic(field.getModifiers()))
+                    try {
+                        index.put(field.getName(), field.getInt(null));
+                    } catch (IllegalAccessException ignore) { }
+            }
+        return index;
     }
 }
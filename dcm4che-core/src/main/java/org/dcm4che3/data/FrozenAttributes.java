@@ -0,0 +1,797 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.TimeZone;
+
+import org.dcm4che3.io.DicomEncodingOptions;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.DateUtils;
+import org.dcm4che3.util.StringUtils;
+import org.dcm4che3.util.TagUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read-only compact form of {@link Attributes}, holding all Data Elements
+ * encoded with Explicit VR Little Endian in a single {@code byte[]}.
+ * Occupies only a fraction of the heap of the equivalent {@code Attributes}
+ * with its parallel arrays and boxed values, so it is suitable for large
+ * in-memory caches, e.g. of C-FIND results or Modality Worklist items.
+ * <p>
+ * The tags and offsets of the top level Data Elements, the Specific
+ * Character Set and the Timezone Offset From UTC are indexed once on
+ * {@link #freeze}. The getter methods locate the requested Data Element by
+ * binary search and decode its value directly from the encoded bytes; only
+ * Sequences are parsed into {@code Attributes} on access.
+ * {@link AttributesMatcher#matches(FrozenAttributes)} matches C-FIND
+ * Matching Keys against the frozen form, {@link #select} returns a mutable
+ * {@code Attributes} with the specified Data Elements and {@link #thaw} with
+ * all Data Elements. Values of {@link BulkData} are read and inlined on
+ * {@link #freeze}.
+ *
+ * @author agent <agent@local>
+ * @see Attributes#freeze()
+ */
+public final class FrozenAttributes implements Serializable {
+
+    private static final long serialVersionUID = -5409447532387163128L;
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(FrozenAttributes.class);
+
+    private static final DicomEncodingOptions ENC_OPTS =
+            new DicomEncodingOptions(false, false, false, false, false);
+
+    private final byte[] data;
+    private transient int[] tags;
+    private transient int[] offsets;
+    private transient SpecificCharacterSet cs;
+    private transient TimeZone tz;
+
+    private FrozenAttributes(byte[] data) {
+        this.data = data;
+        index();
+    }
+
+    public static FrozenAttributes freeze(Attributes attrs) {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream(
+                attrs.calcLength(ENC_OPTS, true));
+        try {
+            DicomOutputStream out = new DicomOutputStream(bout,
+                    UID.ExplicitVRLittleEndian);
+            out.setEncodingOptions(ENC_OPTS);
+            out.writeDataset(null, attrs);
+            out.close();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to freeze Attributes", e);
+        }
+        return new FrozenAttributes(bout.toByteArray());
+    }
+
+    private void readObject(ObjectInputStream in)
+            throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        index();
+    }
+
+    private void index() {
+        int n = 0;
+        for (int pos = 0; pos < data.length; pos = next(pos))
+            n++;
+        tags = new int[n];
+        offsets = new int[n];
+        for (int i = 0, pos = 0; i < n; i++, pos = next(pos)) {
+            tags[i] = tagAt(pos);
+            offsets[i] = pos;
+        }
+        cs = SpecificCharacterSet.DEFAULT;
+        if (contains(Tag.SpecificCharacterSet))
+            cs = SpecificCharacterSet.valueOf(
+                    getStrings(Tag.SpecificCharacterSet));
+        String tzOffset = getString(Tag.TimezoneOffsetFromUTC);
+        if (tzOffset != null)
+            try {
+                tz = DateUtils.timeZone(tzOffset);
+            } catch (IllegalArgumentException e) {
+                LOG.info(e.getMessage());
+            }
+    }
+
+    /**
+     * Returns a mutable {@code Attributes} with all Data Elements.
+     */
+    public Attributes thaw() {
+        Attributes attrs = new Attributes(tags.length);
+        parse(attrs, 0, data.length);
+        return attrs;
+    }
+
+    /**
+     * Returns a mutable {@code Attributes} with the specified top level Data
+     * Elements - and the Specific Character Set and Timezone Offset From
+     * UTC, to decode their values.
+     */
+    public Attributes select(int... tags) {
+        Attributes attrs = new Attributes(tags.length + 2);
+        add(attrs, Tag.SpecificCharacterSet);
+        add(attrs, Tag.TimezoneOffsetFromUTC);
+        for (int tag : tags)
+            add(attrs, tag);
+        return attrs;
+    }
+
+    /**
+     * Checks if this data set matches the specified C-FIND Matching Keys.
+     * Compiles the keys on each invocation - use {@link AttributesMatcher}
+     * to match several data sets against the same keys.
+     */
+    public boolean matches(Attributes keys, boolean ignorePNCase,
+            boolean matchNoValue) {
+        return new AttributesMatcher(keys, ignorePNCase, matchNoValue)
+                .matches(this);
+    }
+
+    public int size() {
+        return tags.length;
+    }
+
+    public boolean isEmpty() {
+        return tags.length == 0;
+    }
+
+    public int[] tags() {
+        return tags.clone();
+    }
+
+    /**
+     * Returns the length of the encoded Data Elements.
+     */
+    public int encodedLength() {
+        return data.length;
+    }
+
+    public SpecificCharacterSet getSpecificCharacterSet() {
+        return cs;
+    }
+
+    public TimeZone getTimeZone() {
+        return tz != null ? tz : TimeZone.getDefault();
+    }
+
+    public boolean contains(int tag) {
+        return indexOf(tag) >= 0;
+    }
+
+    public boolean contains(String privateCreator, int tag) {
+        return indexOf(privateCreator, tag) >= 0;
+    }
+
+    public boolean containsValue(int tag) {
+        return containsValue(null, tag);
+    }
+
+    public boolean containsValue(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        return index >= 0 && valueLength(offsets[index]) != 0;
+    }
+
+    public VR getVR(int tag) {
+        return getVR(null, tag);
+    }
+
+    public VR getVR(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        return index >= 0 ? vrAt(offsets[index]) : null;
+    }
+
+    public byte[] getBytes(int tag) {
+        return getBytes(null, tag);
+    }
+
+    public byte[] getBytes(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return null;
+
+        int pos = offsets[index];
+        int len = valueLength(pos);
+        if (len == -1 || vrAt(pos) == VR.SQ) {
+            LOG.info("Attempt to access {} {} as bytes",
+                    TagUtils.toString(tag), vrAt(pos));
+            return null;
+        }
+        return valueBytes(pos, len);
+    }
+
+    public String getString(int tag) {
+        return getString(null, tag, 0, null);
+    }
+
+    public String getString(int tag, String defVal) {
+        return getString(null, tag, 0, defVal);
+    }
+
+    public String getString(int tag, int valueIndex, String defVal) {
+        return getString(null, tag, valueIndex, defVal);
+    }
+
+    public String getString(String privateCreator, int tag, String defVal) {
+        return getString(privateCreator, tag, 0, defVal);
+    }
+
+    public String getString(String privateCreator, int tag, int valueIndex,
+            String defVal) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return defVal;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return defVal;
+
+        try {
+            return vr.toString(value, false, valueIndex, defVal);
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as string", TagUtils.toString(tag), vr);
+            return defVal;
+        }
+    }
+
+    public String[] getStrings(int tag) {
+        return getStrings(null, tag);
+    }
+
+    public String[] getStrings(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return null;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return StringUtils.EMPTY_STRING;
+
+        try {
+            Object ss = vr.toStrings(value, false, cs(vr));
+            return ss instanceof String
+                    ? new String[] { (String) ss }
+                    : (String[]) ss;
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as string", TagUtils.toString(tag), vr);
+            return null;
+        }
+    }
+
+    public int getInt(int tag, int defVal) {
+        return getInt(null, tag, 0, defVal);
+    }
+
+    public int getInt(int tag, int valueIndex, int defVal) {
+        return getInt(null, tag, valueIndex, defVal);
+    }
+
+    public int getInt(String privateCreator, int tag, int defVal) {
+        return getInt(privateCreator, tag, 0, defVal);
+    }
+
+    public int getInt(String privateCreator, int tag, int valueIndex,
+            int defVal) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return defVal;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return defVal;
+
+        try {
+            return vr.toInt(parseIS(vr, value), false, valueIndex, defVal);
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as int", TagUtils.toString(tag), vr);
+            return defVal;
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return defVal;
+        }
+    }
+
+    public int[] getInts(int tag) {
+        return getInts(null, tag);
+    }
+
+    public int[] getInts(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return null;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return ByteUtils.EMPTY_INTS;
+
+        try {
+            return vr.toInts(parseIS(vr, value), false);
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as int", TagUtils.toString(tag), vr);
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return null;
+        }
+    }
+
+    public float getFloat(int tag, float defVal) {
+        return getFloat(null, tag, 0, defVal);
+    }
+
+    public float getFloat(int tag, int valueIndex, float defVal) {
+        return getFloat(null, tag, valueIndex, defVal);
+    }
+
+    public float getFloat(String privateCreator, int tag, float defVal) {
+        return getFloat(privateCreator, tag, 0, defVal);
+    }
+
+    public float getFloat(String privateCreator, int tag, int valueIndex,
+            float defVal) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return defVal;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return defVal;
+
+        try {
+            return vr.toFloat(parseDS(vr, value), false, valueIndex, defVal);
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as float", TagUtils.toString(tag), vr);
+            return defVal;
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return defVal;
+        }
+    }
+
+    public float[] getFloats(int tag) {
+        return getFloats(null, tag);
+    }
+
+    public float[] getFloats(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return null;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return ByteUtils.EMPTY_FLOATS;
+
+        try {
+            return vr.toFloats(parseDS(vr, value), false);
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as float", TagUtils.toString(tag), vr);
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return null;
+        }
+    }
+
+    public double getDouble(int tag, double defVal) {
+        return getDouble(null, tag, 0, defVal);
+    }
+
+    public double getDouble(int tag, int valueIndex, double defVal) {
+        return getDouble(null, tag, valueIndex, defVal);
+    }
+
+    public double getDouble(String privateCreator, int tag, double defVal) {
+        return getDouble(privateCreator, tag, 0, defVal);
+    }
+
+    public double getDouble(String privateCreator, int tag, int valueIndex,
+            double defVal) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return defVal;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return defVal;
+
+        try {
+            return vr.toDouble(parseDS(vr, value), false, valueIndex, defVal);
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as double", TagUtils.toString(tag), vr);
+            return defVal;
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return defVal;
+        }
+    }
+
+    public double[] getDoubles(int tag) {
+        return getDoubles(null, tag);
+    }
+
+    public double[] getDoubles(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return null;
+
+        VR vr = vrAt(offsets[index]);
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return ByteUtils.EMPTY_DOUBLES;
+
+        try {
+            return vr.toDoubles(parseDS(vr, value), false);
+        } catch (UnsupportedOperationException e) {
+            LOG.info("Attempt to access {} {} as double", TagUtils.toString(tag), vr);
+            return null;
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return null;
+        }
+    }
+
+    public Date getDate(int tag) {
+        return getDate(null, tag, 0, null);
+    }
+
+    public Date getDate(int tag, Date defVal) {
+        return getDate(null, tag, 0, defVal);
+    }
+
+    public Date getDate(int tag, int valueIndex, Date defVal) {
+        return getDate(null, tag, valueIndex, defVal);
+    }
+
+    public Date getDate(String privateCreator, int tag, Date defVal) {
+        return getDate(privateCreator, tag, 0, defVal);
+    }
+
+    public Date getDate(String privateCreator, int tag, int valueIndex,
+            Date defVal) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return defVal;
+
+        VR vr = vrAt(offsets[index]);
+        if (!vr.isTemporalType()) {
+            LOG.info("Attempt to access {} {} as date", TagUtils.toString(tag), vr);
+            return defVal;
+        }
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return defVal;
+
+        try {
+            return vr.toDate(value, getTimeZone(), valueIndex, false, defVal,
+                    new DatePrecision());
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return defVal;
+        }
+    }
+
+    public Date[] getDates(int tag) {
+        return getDates(null, tag);
+    }
+
+    public Date[] getDates(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0)
+            return null;
+
+        VR vr = vrAt(offsets[index]);
+        if (!vr.isTemporalType()) {
+            LOG.info("Attempt to access {} {} as date", TagUtils.toString(tag), vr);
+            return DateUtils.EMPTY_DATES;
+        }
+        Object value = decodeValue(index, vr);
+        if (value == Value.NULL)
+            return DateUtils.EMPTY_DATES;
+
+        try {
+            return vr.toDates(value, getTimeZone(), false,
+                    new DatePrecisions());
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} {}", TagUtils.toString(tag), vr);
+            return DateUtils.EMPTY_DATES;
+        }
+    }
+
+    /**
+     * Returns the date of a combined Date and Time Data Element, like
+     * {@link Attributes#getDate(long)}.
+     */
+    public Date getDate(long tag) {
+        return getDate(null, tag, null);
+    }
+
+    public Date getDate(long tag, Date defVal) {
+        return getDate(null, tag, defVal);
+    }
+
+    public Date getDate(String privateCreator, long tag, Date defVal) {
+        int daTag = (int) (tag >>> 32);
+        int tmTag = (int) tag;
+
+        String tm = getString(privateCreator, tmTag, null);
+        if (tm == null)
+            return getDate(privateCreator, daTag, defVal);
+
+        String da = getString(privateCreator, daTag, null);
+        if (da == null)
+            return defVal;
+        try {
+            return VR.DT.toDate(da + tm, getTimeZone(), 0, false, null,
+                    new DatePrecision());
+        } catch (IllegalArgumentException e) {
+            LOG.info("Invalid value of {} DA or {} TM",
+                    TagUtils.toString(daTag),
+                    TagUtils.toString(tmTag));
+            return defVal;
+        }
+    }
+
+    /**
+     * Returns the Sequence with the specified tag, parsed into the Items of
+     * a new {@code Attributes}, which also contains the Specific Character
+     * Set and Timezone Offset From UTC to decode the values of the Items.
+     */
+    public Sequence getSequence(int tag) {
+        return getSequence(null, tag);
+    }
+
+    public Sequence getSequence(String privateCreator, int tag) {
+        int index = indexOf(privateCreator, tag);
+        if (index < 0 || vrAt(offsets[index]) != VR.SQ)
+            return null;
+
+        Attributes attrs = select();
+        int pos = offsets[index];
+        parse(attrs, pos, next(pos));
+        Object value = attrs.getValue(tags[index]);
+        return value instanceof Sequence ? (Sequence) value : null;
+    }
+
+    public Attributes getNestedDataset(int sequenceTag) {
+        return getNestedDataset(null, sequenceTag, 0);
+    }
+
+    public Attributes getNestedDataset(int sequenceTag, int itemIndex) {
+        return getNestedDataset(null, sequenceTag, itemIndex);
+    }
+
+    public Attributes getNestedDataset(String privateCreator, int sequenceTag,
+            int itemIndex) {
+        Sequence sq = getSequence(privateCreator, sequenceTag);
+        return sq != null && itemIndex < sq.size() ? sq.get(itemIndex) : null;
+    }
+
+    /**
+     * Decodes the value of the Data Element at the specified index from the
+     * encoded bytes: values of string VRs into {@code String} or
+     * {@code String[]}, of binary VRs into a copy of the bytes. Returns
+     * {@link Value#NULL} for empty values, for Sequences and for
+     * encapsulated Pixel Data.
+     */
+    private Object decodeValue(int index, VR vr) {
+        int pos = offsets[index];
+        int len = valueLength(pos);
+        if (len <= 0 || vr == VR.SQ)
+            return Value.NULL;
+
+        byte[] b = valueBytes(pos, len);
+        if (!vr.isStringType())
+            return b;
+
+        Object value = vr.toStrings(b, false, cs(vr));
+        return value instanceof String && ((String) value).isEmpty()
+                ? Value.NULL
+                : value;
+    }
+
+    private static Object parseIS(VR vr, Object value) {
+        if (vr != VR.IS)
+            return value;
+
+        if (value instanceof String)
+            return new int[] { StringUtils.parseIS((String) value) };
+
+        String[] ss = (String[]) value;
+        int[] is = new int[ss.length];
+        for (int i = 0; i < is.length; i++) {
+            String s = ss[i];
+            is[i] = (s != null && !s.isEmpty())
+                        ? StringUtils.parseIS(s)
+                        : Integer.MIN_VALUE;
+        }
+        return is;
+    }
+
+    private static Object parseDS(VR vr, Object value) {
+        if (vr != VR.DS)
+            return value;
+
+        if (value instanceof String)
+            return new double[] { StringUtils.parseDS((String) value) };
+
+        String[] ss = (String[]) value;
+        double[] ds = new double[ss.length];
+        for (int i = 0; i < ds.length; i++) {
+            String s = ss[i];
+            ds[i] = (s != null && !s.isEmpty())
+                    ? StringUtils.parseDS(s)
+                    : Double.NaN;
+        }
+        return ds;
+    }
+
+    private SpecificCharacterSet cs(VR vr) {
+        return vr.useSpecificCharacterSet() ? cs : SpecificCharacterSet.DEFAULT;
+    }
+
+    private void add(Attributes attrs, int tag) {
+        int index = indexOf(tag);
+        if (index >= 0) {
+            int pos = offsets[index];
+            parse(attrs, pos, next(pos));
+        }
+    }
+
+    private void parse(Attributes attrs, int start, int end) {
+        try {
+            @SuppressWarnings("resource")
+            DicomInputStream in = new DicomInputStream(
+                    new ByteArrayInputStream(data, start, end - start),
+                    UID.ExplicitVRLittleEndian);
+            in.readAttributes(attrs, end - start, -1);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private int indexOf(String privateCreator, int tag) {
+        if (privateCreator != null) {
+            int creatorTag = creatorTagOf(privateCreator, tag);
+            if (creatorTag == -1)
+                return -1;
+            tag = TagUtils.toPrivateTag(creatorTag, tag);
+        }
+        return indexOf(tag);
+    }
+
+    private int creatorTagOf(String privateCreator, int tag) {
+        if (!TagUtils.isPrivateGroup(tag))
+            throw new IllegalArgumentException(TagUtils.toString(tag)
+                    + " is not a private Data Element");
+
+        int group = tag & 0xffff0000;
+        int index = indexOf(group | 0x10);
+        if (index < 0)
+            index = -index-1;
+        for (; index < tags.length && (tags[index] & 0xffffff00) == group;
+                index++)
+            if (vrAt(offsets[index]) == VR.LO
+                    && privateCreator.equals(decodeValue(index, VR.LO)))
+                return tags[index];
+        return -1;
+    }
+
+    /**
+     * Data Elements are encoded in the order of {@link Attributes}, which
+     * sorts tags as signed {@code int}.
+     */
+    private int indexOf(int tag) {
+        return Arrays.binarySearch(tags, tag);
+    }
+
+    private byte[] valueBytes(int pos, int len) {
+        int off = pos + vrAt(pos).headerLength();
+        return Arrays.copyOfRange(data, off, off + len);
+    }
+
+    private int tagAt(int pos) {
+        return ByteUtils.bytesToTagLE(data, pos);
+    }
+
+    private VR vrAt(int pos) {
+        return VR.valueOf(ByteUtils.bytesToVR(data, pos + 4));
+    }
+
+    private int valueLength(int pos) {
+        return vrAt(pos).headerLength() == 8
+                ? ByteUtils.bytesToUShortLE(data, pos + 6)
+                : ByteUtils.bytesToIntLE(data, pos + 8);
+    }
+
+    private int next(int pos) {
+        int headerLength = vrAt(pos).headerLength();
+        int len = valueLength(pos);
+        pos += headerLength;
+        if (len != -1)
+            return pos + len;
+
+        // undefined length of encapsulated Pixel Data
+        int itemTag;
+        do {
+            itemTag = ByteUtils.bytesToTagLE(data, pos);
+            pos += 8 + ByteUtils.bytesToIntLE(data, pos + 4);
+        } while (itemTag != Tag.SequenceDelimitationItem);
+        return pos;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof FrozenAttributes))
+            return false;
+        return Arrays.equals(data, ((FrozenAttributes) obj).data);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(data);
+    }
+
+    @Override
+    public String toString() {
+        return "FrozenAttributes[size=" + tags.length
+                + ", length=" + data.length + "]";
+    }
+}
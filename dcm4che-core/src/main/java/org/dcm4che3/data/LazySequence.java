@@ -0,0 +1,177 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import java.io.IOException;
+
+import org.dcm4che3.io.ByteBufferInputStream;
+import org.dcm4che3.io.DicomEncodingOptions;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.TagUtils;
+
+/**
+ * Value of a Sequence Attribute whose Items are not yet parsed, but only
+ * referenced as encoded bytes in a - typically memory-mapped - buffer. Created
+ * by a {@link DicomInputStream} in lazy mode. {@link Attributes} replaces it
+ * by a {@link Sequence} on first access; until then, the encoded Items are
+ * written unchanged to {@link DicomOutputStream}s with matching encoding.
+ * <p>
+ * Parsing the Items modifies the owning {@code Attributes}, also if they are
+ * accessed by a getter. Concurrent first accesses parse the Items only once,
+ * but - as for any modification of {@code Attributes} - data sets shared
+ * between threads should be completely parsed before they are shared, e.g.
+ * by copying them by {@link Attributes#Attributes(Attributes)}.
+ *
+ * @author agent <agent@local>
+ * @see DicomInputStream#setLazy(boolean)
+ */
+public class LazySequence implements Value {
+
+    private final ByteBufferValue items;
+    private final boolean explicitVR;
+    private final boolean decodeUNWithIVRLE;
+    private boolean parsed;
+
+    public LazySequence(ByteBufferValue items, boolean explicitVR,
+            boolean decodeUNWithIVRLE) {
+        this.items = items;
+        this.explicitVR = explicitVR;
+        this.decodeUNWithIVRLE = decodeUNWithIVRLE;
+    }
+
+    public final boolean bigEndian() {
+        return items.bigEndian();
+    }
+
+    public final boolean explicitVR() {
+        return explicitVR;
+    }
+
+    public final int length() {
+        return items.length();
+    }
+
+    /**
+     * Returns {@code true}, if the encoded Items can be written unchanged
+     * to the specified {@code DicomOutputStream}.
+     *
+     * @param out {@code DicomOutputStream}
+     * @return {@code true}, if encoding of the Items matches the encoding of
+     *         {@code out}
+     */
+    public boolean isWritableTo(DicomOutputStream out) {
+        return out.isExplicitVR() == explicitVR
+                && out.isBigEndian() == items.bigEndian()
+                && !out.getEncodingOptions().groupLength;
+    }
+
+    /**
+     * Parses the encoded Items into a {@link Sequence} of the specified
+     * {@code Attributes}, replacing this value. Does nothing, if the Items
+     * were already parsed by a concurrent invocation.
+     */
+    synchronized void parse(Attributes parent, int tag) {
+        if (parsed)
+            return;
+
+        try {
+            @SuppressWarnings("resource")
+            DicomInputStream in = new DicomInputStream(
+                    new ByteBufferInputStream(items.asByteBuffer()),
+                    explicitVR
+                        ? items.bigEndian()
+                            ? UID.ExplicitVRBigEndianRetired
+                            : UID.ExplicitVRLittleEndian
+                        : UID.ImplicitVRLittleEndian);
+            in.setLazy(true);
+            in.setDecodeUNWithIVRLE(decodeUNWithIVRLE);
+            in.readSequence(items.length(), parent, tag);
+            parsed = true;
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to parse Items of "
+                    + TagUtils.toString(tag), e);
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+
+    /**
+     * Returns a copy of the encoded Items, as written by {@link #writeTo},
+     * if their byte order matches {@code bigEndian}.
+     *
+     * @throws UnsupportedOperationException if the byte order of the
+     *         encoded Items does not match {@code bigEndian}
+     */
+    @Override
+    public byte[] toBytes(VR vr, boolean bigEndian) throws IOException {
+        if (bigEndian != items.bigEndian())
+            throw new UnsupportedOperationException(
+                    "Items encoded with different byte order");
+        return items.toBytes(VR.OB, bigEndian);
+    }
+
+    @Override
+    public void writeTo(DicomOutputStream out, VR vr) throws IOException {
+        if (!isWritableTo(out))
+            throw new IllegalStateException(
+                    "Encoding of Items does not match encoding of output stream");
+        items.writeTo(out, vr);
+    }
+
+    @Override
+    public int calcLength(DicomEncodingOptions encOpts, boolean explicitVR, VR vr) {
+        return encOpts.undefSequenceLength
+                ? items.length() + 8
+                : items.length();
+    }
+
+    @Override
+    public int getEncodedLength(DicomEncodingOptions encOpts, boolean explicitVR, VR vr) {
+        return encOpts.undefSequenceLength ? -1 : items.length();
+    }
+
+    @Override
+    public String toString() {
+        return "LazySequence[length=" + items.length() + "]";
+    }
+}
@@ -0,0 +1,206 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import org.dcm4che3.data.ByteBufferValue;
+
+/**
+ * {@code InputStream} reading from a {@code ByteBuffer}. If wrapped by a
+ * {@link DicomInputStream}, element values are not copied into
+ * {@code byte[]}s but referenced as {@link ByteBufferValue} regions of the
+ * buffer.
+ *
+ * @author agent <agent@local>
+ */
+public class ByteBufferInputStream extends InputStream {
+
+    protected ByteBuffer buffer;
+    protected long bufferPosition;
+    private long markPos;
+
+    public ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+    }
+
+    /**
+     * Returns the position of the next byte to read relative to the
+     * beginning of the stream.
+     *
+     * @return position of the next byte to read
+     */
+    public long position() {
+        return bufferPosition + buffer.position();
+    }
+
+    /**
+     * Returns the total number of bytes of the stream.
+     *
+     * @return total number of bytes
+     */
+    public long length() {
+        return bufferPosition + buffer.limit();
+    }
+
+    /**
+     * Moves the buffer region, so it contains the {@code minLength} bytes
+     * starting at position {@code pos} of the stream. Invoked if the current
+     * buffer does not cover the bytes to read. This implementation always
+     * returns {@code false}.
+     *
+     * @param pos position relative to the beginning of the stream
+     * @param minLength number of bytes the buffer must contain after
+     *         {@code pos}
+     * @return {@code true} if the buffer was moved, {@code false} if
+     *         {@code pos + minLength} exceeds the length of the stream
+     * @throws IOException
+     */
+    protected boolean remap(long pos, int minLength) throws IOException {
+        return false;
+    }
+
+    private boolean ensure(int n) throws IOException {
+        return buffer.remaining() >= n || remap(position(), n);
+    }
+
+    /**
+     * Skips {@code length} bytes and returns a {@link ByteBufferValue}
+     * referencing them.
+     *
+     * @param length value length
+     * @param bigEndian endian of the value
+     * @return {@link ByteBufferValue} referencing the skipped bytes
+     * @throws IOException if the stream contains less than {@code length}
+     *          remaining bytes
+     */
+    public ByteBufferValue readValue(int length, boolean bigEndian)
+            throws IOException {
+        if (length < 0 || !ensure(length))
+            throw new EOFException();
+
+        int offset = buffer.position();
+        buffer.position(offset + length);
+        return new ByteBufferValue(buffer, offset, length, bigEndian);
+    }
+
+    /**
+     * Returns a {@link ByteBufferValue} referencing {@code length} bytes
+     * at the specified position of the stream, without changing the
+     * current position.
+     *
+     * @param pos position relative to the beginning of the stream
+     * @param length value length
+     * @param bigEndian endian of the value
+     * @return {@link ByteBufferValue} referencing the specified bytes
+     * @throws IOException if {@code pos + length} exceeds the length of the
+     *         stream
+     */
+    public ByteBufferValue valueAt(long pos, int length, boolean bigEndian)
+            throws IOException {
+        long off = pos - bufferPosition;
+        if (off >= 0 && off + length <= buffer.limit())
+            return new ByteBufferValue(buffer, (int) off, length, bigEndian);
+
+        long cur = position();
+        if (length < 0 || !remap(pos, length))
+            throw new EOFException();
+        ByteBufferValue value = new ByteBufferValue(buffer,
+                (int) (pos - bufferPosition), length, bigEndian);
+        seek(cur);
+        return value;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return ensure(1) ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length)
+            throw new IndexOutOfBoundsException();
+        if (len == 0)
+            return 0;
+        if (!ensure(1))
+            return -1;
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long pos = position();
+        long skip = Math.max(0L, Math.min(n, length() - pos));
+        seek(pos + skip);
+        return skip;
+    }
+
+    protected void seek(long pos) throws IOException {
+        long off = pos - bufferPosition;
+        if (off >= 0 && off <= buffer.limit())
+            buffer.position((int) off);
+        else if (!remap(pos, 0))
+            throw new EOFException();
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(length() - position(), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        markPos = position();
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        seek(markPos);
+    }
+}
@@ -0,0 +1,152 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * {@link OutputStream} writing to a {@link WritableByteChannel} in blocking
+ * mode. Short writes are collected in a buffer, which is written together
+ * with subsequent large values by one gathering write. Byte ranges of files
+ * are copied by {@link FileChannel#transferTo}.
+ *
+ * @author agent <agent@local>
+ */
+class ChannelOutputStream extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer[] srcs = new ByteBuffer[2];
+
+    public ChannelOutputStream(WritableByteChannel channel) {
+        if (channel == null)
+            throw new NullPointerException();
+        this.channel = channel;
+    }
+
+    public WritableByteChannel getChannel() {
+        return channel;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (!buffer.hasRemaining())
+            flushBuffer();
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len <= buffer.remaining())
+            buffer.put(b, off, len);
+        else
+            write(ByteBuffer.wrap(b, off, len));
+    }
+
+    public void write(ByteBuffer src) throws IOException {
+        if (src.remaining() <= buffer.remaining()) {
+            buffer.put(src);
+            return;
+        }
+        buffer.flip();
+        if (channel instanceof GatheringByteChannel) {
+            srcs[0] = buffer;
+            srcs[1] = src;
+            try {
+                GatheringByteChannel gch = (GatheringByteChannel) channel;
+                while (src.hasRemaining())
+                    gch.write(srcs);
+            } finally {
+                srcs[1] = null;
+            }
+        } else {
+            writeFully(buffer);
+            writeFully(src);
+        }
+        buffer.clear();
+    }
+
+    public void transferFrom(FileChannel src, long position, long count)
+            throws IOException {
+        flushBuffer();
+        while (count > 0) {
+            long n = src.transferTo(position, count, channel);
+            if (n <= 0)
+                throw new EOFException();
+            position += n;
+            count -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buffer.position() == 0)
+            return;
+
+        buffer.flip();
+        writeFully(buffer);
+        buffer.clear();
+    }
+
+    private void writeFully(ByteBuffer src) throws IOException {
+        while (src.hasRemaining())
+            channel.write(src);
+    }
+}
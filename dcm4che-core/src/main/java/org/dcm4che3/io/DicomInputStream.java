@@ -58,11 +58,15 @@ import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.ByteBufferValue;
 import org.dcm4che3.data.ElementDictionary;
 import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.ItemPointer;
+import org.dcm4che3.data.LazySequence;
 import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.StringDeduplicator;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.data.Value;
 import org.dcm4che3.util.ByteUtils;
 import org.dcm4che3.util.SafeClose;
 import org.dcm4che3.util.StreamUtils;
@@ -98,8 +102,12 @@ public class DicomInputStream extends FilterInputStream
 
     private static final int ZLIB_HEADER = 0x789c;
     private static final int DEF_ALLOCATE_LIMIT = 0x4000000; // 64MiB
+    private static final int DEF_MAPPED_VALUE_THRESHOLD = 64;
 
     private int allocateLimit = DEF_ALLOCATE_LIMIT;
+    private int mappedValueThreshold = DEF_MAPPED_VALUE_THRESHOLD;
+    private ValueAllocator valueAllocator = ValueAllocator.DEFAULT;
+    private StringDeduplicator stringDeduplicator;
     private String uri;
     private String tsuid;
     private byte[] preamble;
@@ -122,6 +130,7 @@ public class DicomInputStream extends FilterInputStream
     private ItemPointer[] itemPointers = {};
     private boolean decodeUNWithIVRLE = true;
     private boolean addBulkDataReferences;
+    private boolean lazy;
 
     private boolean catBlkFiles = true;
     private String blkFilePrefix = "blk";
@@ -147,6 +156,28 @@ public class DicomInputStream extends FilterInputStream
         uri = file.toURI().toString();
     }
 
+    /**
+     * Creates a {@code DicomInputStream} reading from the specified file.
+     * If {@code memoryMapped} is {@code true}, the file is memory-mapped
+     * and element values with a length not less than
+     * {@link #getMappedValueThreshold()} are not copied but referenced as
+     * {@link ByteBufferValue}s of the mapped region. The bytes of such values
+     * are only copied, if the values are decoded by the returned
+     * {@code Attributes}, so forwarding the data set to a
+     * {@link DicomOutputStream} does not copy them on the heap.
+     *
+     * @param file DICOM file
+     * @param memoryMapped {@code true} to map the file into memory
+     * @throws IOException
+     */
+    public DicomInputStream(File file, boolean memoryMapped)
+            throws IOException {
+        this(memoryMapped
+                ? new MappedFileInputStream(file)
+                : new FileInputStream(file));
+        uri = file.toURI().toString();
+    }
+
     public final String getTransferSyntax() {
         return tsuid;
     }
@@ -165,8 +196,9 @@ public class DicomInputStream extends FilterInputStream
 
     /**
      * Sets the limit of initial allocated memory for element values. If the
-     * value length exceeds the limit, a byte array with the specified size is
-     * allocated. If the array can filled with bytes read from this
+     * value length exceeds the limit and the number of bytes which can be
+     * read from the underlying stream without blocking, a byte array with
+     * the specified size is allocated. If the array can filled with bytes read from this
      * <code>DicomInputStream</code>, the byte array is reallocated with
      * twice the previous length and filled again. That continues until
      * the twice of the previous length exceeds the actual value length. Then
@@ -185,6 +217,68 @@ public class DicomInputStream extends FilterInputStream
         this.allocateLimit = allocateLimit;
     }
 
+    /**
+     * Returns the minimal length of element values, which are referenced as
+     * {@link ByteBufferValue} instead of being copied into a {@code byte[]},
+     * if the stream reads from a {@link ByteBufferInputStream}.
+     *
+     * By default, the threshold is set to 64 bytes.
+     *
+     * @return minimal length of values referenced as {@link ByteBufferValue}
+     * @see #setMappedValueThreshold(int)
+     */
+    public final int getMappedValueThreshold() {
+        return mappedValueThreshold;
+    }
+
+    /**
+     * Sets the minimal length of element values, which are referenced as
+     * {@link ByteBufferValue} instead of being copied into a {@code byte[]},
+     * if the stream reads from a {@link ByteBufferInputStream}. Shorter values
+     * are copied, because their copy occupies less memory than the reference.
+     *
+     * @param mappedValueThreshold minimal length of values referenced as
+     *        {@link ByteBufferValue}
+     */
+    public final void setMappedValueThreshold(int mappedValueThreshold) {
+        this.mappedValueThreshold = mappedValueThreshold;
+    }
+
+    public final ValueAllocator getValueAllocator() {
+        return valueAllocator;
+    }
+
+    /**
+     * Sets the strategy to allocate the {@code byte[]} for element values.
+     * By default, a new array is allocated for each value.
+     *
+     * @param valueAllocator allocator of {@code byte[]} for element values
+     * @see PooledValueAllocator
+     */
+    public final void setValueAllocator(ValueAllocator valueAllocator) {
+        if (valueAllocator == null)
+            throw new NullPointerException();
+        this.valueAllocator = valueAllocator;
+    }
+
+    public final StringDeduplicator getStringDeduplicator() {
+        return stringDeduplicator;
+    }
+
+    /**
+     * Sets the strategy to share equal string values of the read data sets.
+     * Values of VRs deduplicated by {@code stringDeduplicator} are decoded
+     * immediately instead on first access. By default, string values are
+     * not deduplicated.
+     *
+     * @param stringDeduplicator deduplication strategy or {@code null}
+     * @see org.dcm4che3.data.BoundedStringDeduplicator
+     */
+    public final void setStringDeduplicator(
+            StringDeduplicator stringDeduplicator) {
+        this.stringDeduplicator = stringDeduplicator;
+    }
+
     public final String getURI() {
         return uri;
     }
@@ -268,6 +362,33 @@ public class DicomInputStream extends FilterInputStream
         this.decodeUNWithIVRLE = decodeUNWithIVRLE;
     }
 
+    public final boolean isLazy() {
+        return lazy;
+    }
+
+    /**
+     * Enables or disables lazy parsing. In lazy mode, the value of each
+     * element is only referenced by its offset and length as
+     * {@link ByteBufferValue} - independent of the
+     * {@link #getMappedValueThreshold() mapped value threshold} - and the
+     * Items of Sequences are not parsed, but referenced as
+     * {@link LazySequence}. Values are decoded and Items are parsed, if they
+     * are accessed by the returned {@code Attributes}. Because parsing the
+     * Items modifies the returned {@code Attributes}, they should be parsed
+     * completely before being shared between threads.
+     *
+     * Lazy parsing is only effective, if this stream reads from a
+     * {@link ByteBufferInputStream} - e.g. created by
+     * {@link #DicomInputStream(File, boolean)} with
+     * {@code memoryMapped = true} - and the transfer syntax is not deflated.
+     * Otherwise, the data set is parsed eagerly.
+     *
+     * @param lazy {@code true} to enable lazy parsing
+     */
+    public final void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
     public boolean isAddBulkDataReferences() {
         return addBulkDataReferences;
     }
@@ -514,7 +635,10 @@ public class DicomInputStream extends FilterInputStream
         } else if (length == 0) {
             attrs.setNull(tag, vr);
         } else if (vr == VR.SQ) {
-            readSequence(length, attrs, tag);
+            if (isLazySequence())
+                readLazySequence(attrs);
+            else
+                readSequence(length, attrs, tag);
         } else if (length == -1) {
             readFragments(attrs, tag, vr);
         } else if (length == BulkData.MAGIC_LEN
@@ -532,17 +656,41 @@ public class DicomInputStream extends FilterInputStream
                         bulkData,
                         attrs.itemPointers());
             }
+        } else if (isMappedValue()) {
+            attrs.setValue(tag, vr, readByteBufferValue());
         } else {
             byte[] b = readValue();
             if (!TagUtils.isGroupLength(tag)) {
                 if (bigEndian != attrs.bigEndian())
                     vr.toggleEndian(b, false);
-                attrs.setBytes(tag, vr, b);
+                if (stringDeduplicator != null
+                        && stringDeduplicator.deduplicates(vr))
+                    setDeduplicatedStrings(attrs, b);
+                else
+                    attrs.setBytes(tag, vr, b);
             } else if (tag == Tag.FileMetaInformationGroupLength)
                 setFileMetaInformationGroupLength(b);
         }
     }
 
+    private void setDeduplicatedStrings(Attributes attrs, byte[] b) {
+        Object value = vr.toStrings(b, bigEndian,
+                attrs.getSpecificCharacterSet(vr));
+        valueAllocator.release(b);
+        if (value instanceof String) {
+            String s = (String) value;
+            if (s.isEmpty())
+                attrs.setNull(tag, vr);
+            else
+                attrs.setValue(tag, vr, stringDeduplicator.deduplicate(s));
+        } else {
+            String[] ss = (String[]) value;
+            for (int i = 0; i < ss.length; i++)
+                ss[i] = stringDeduplicator.deduplicate(ss[i]);
+            attrs.setValue(tag, vr, ss);
+        }
+    }
+
     public BulkData createBulkData() throws IOException {
             BulkData bulkData;
         if (uri != null && !(super.in instanceof InflaterInputStream)) {
@@ -605,6 +753,8 @@ public class DicomInputStream extends FilterInputStream
             frags.add(BulkData.deserializeFrom((ObjectInputStream) super.in));
         } else if (includeFragmentBulkData == IncludeBulkData.URI) {
             frags.add(createBulkData());
+        } else if (isMappedValue()) {
+            frags.add(readByteBufferValue());
         } else {
             byte[] b = readValue();
             if (bigEndian != frags.bigEndian())
@@ -621,6 +771,81 @@ public class DicomInputStream extends FilterInputStream
     public void endDataset(DicomInputStream dis) {
     }
 
+    private boolean isMappedValue() {
+        return (lazy || length >= mappedValueThreshold)
+                && !TagUtils.isGroupLength(tag)
+                && super.in instanceof ByteBufferInputStream;
+    }
+
+    private boolean isLazySequence() {
+        return lazy && super.in instanceof ByteBufferInputStream;
+    }
+
+    private void readLazySequence(Attributes attrs) throws IOException {
+        int sqtag = tag;
+        ByteBufferInputStream bin = (ByteBufferInputStream) super.in;
+        long binStartPos = bin.position();
+        long startPos = pos;
+        int len = length;
+        if (len == -1) {
+            skipItems();
+            len = (int) (tagPos - startPos);
+        } else {
+            skipFully(len);
+        }
+        attrs.setValue(sqtag, VR.SQ, len == 0 ? Value.NULL
+                : new LazySequence(bin.valueAt(binStartPos, len, bigEndian),
+                        explicitVR, decodeUNWithIVRLE));
+    }
+
+    private void skipItems() throws IOException {
+        while (readHeader() != Tag.SequenceDelimitationItem) {
+            if (length == -1)
+                skipItem();
+            else
+                skipFully(length);
+        }
+        skipFully(length);
+    }
+
+    private void skipItem() throws IOException {
+        while (readHeader() != Tag.ItemDelimitationItem) {
+            if (length != -1) {
+                skipFully(length);
+            } else if (vr == VR.UN && decodeUNWithIVRLE) {
+                boolean prevBigEndian = bigEndian;
+                boolean prevExplicitVR = explicitVR;
+                bigEndian = false;
+                explicitVR = false;
+                try {
+                    skipItems();
+                } finally {
+                    bigEndian = prevBigEndian;
+                    explicitVR = prevExplicitVR;
+                }
+            } else {
+                skipItems();
+            }
+        }
+        skipFully(length);
+    }
+
+    /**
+     * Returns the value of the current element as {@link ByteBufferValue}
+     * referencing the bytes of the underlying {@link ByteBufferInputStream}.
+     *
+     * @return value of the current element
+     * @throws IOException
+     * @throws ClassCastException if this {@code DicomInputStream} does not
+     *         read from a {@link ByteBufferInputStream}
+     */
+    public ByteBufferValue readByteBufferValue() throws IOException {
+        ByteBufferValue value =
+                ((ByteBufferInputStream) super.in).readValue(length, bigEndian);
+        pos += length;
+        return value;
+    }
+
     private void checkIsThis(DicomInputStream dis) {
         if (dis != this)
             throw new IllegalArgumentException("dis != this");
@@ -632,7 +857,17 @@ public class DicomInputStream extends FilterInputStream
         skip(length);
     }
 
-    private void readSequence(int len, Attributes attrs, int sqtag)
+    /**
+     * Reads the Items of a Sequence with the specified length into a
+     * new {@link Sequence} of {@code attrs}. The stream must be positioned
+     * after the header of the Sequence element.
+     *
+     * @param len length of the Sequence value or -1 for undefined length
+     * @param attrs data set to which the Sequence is added
+     * @param sqtag tag of the Sequence
+     * @throws IOException
+     */
+    public void readSequence(int len, Attributes attrs, int sqtag)
             throws IOException {
         if (len == 0) {
             attrs.setNull(sqtag, VR.SQ);
@@ -704,9 +939,13 @@ public class DicomInputStream extends FilterInputStream
         try {
             if (valLen < 0)
                 throw new EOFException(); // assume InputStream length < 2 GiB
-            int allocLen = allocateLimit >= 0
-                    ? Math.min(valLen, allocateLimit)
-                    : valLen;
+            if (allocateLimit < 0 || valLen <= allocateLimit
+                    || valLen <= available()) {
+                byte[] value = valueAllocator.allocate(valLen);
+                readFully(value, 0, valLen);
+                return value;
+            }
+            int allocLen = allocateLimit;
             byte[] value = new byte[allocLen];
             readFully(value, 0, allocLen);
             while (allocLen < valLen) {
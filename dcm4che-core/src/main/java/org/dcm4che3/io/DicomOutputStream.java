@@ -39,12 +39,16 @@
 package org.dcm4che3.io;
 
 import java.io.BufferedOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.zip.Deflater;
 import java.util.zip.DeflaterOutputStream;
 
@@ -64,6 +68,7 @@ import org.dcm4che3.util.TagUtils;
 public class DicomOutputStream extends FilterOutputStream {
 
     private static final byte[] DICM = { 'D', 'I', 'C', 'M' };
+    private static final int COPY_BUFFER_SIZE = 8192;
 
     private byte[] preamble = new byte[128];
 
@@ -79,6 +84,21 @@ public class DicomOutputStream extends FilterOutputStream {
         switchTransferSyntax(tsuid);
     }
 
+    /**
+     * Creates a {@code DicomOutputStream} writing to a channel in blocking
+     * mode. Large values are written by gathering writes together with the
+     * preceding headers; values of {@link BulkData} referencing a file are
+     * copied by {@link FileChannel#transferTo}, without passing the heap.
+     *
+     * @param channel the channel to write to
+     * @param tsuid Transfer Syntax UID of the data set
+     * @throws IOException if an I/O error occurs
+     */
+    public DicomOutputStream(WritableByteChannel channel, String tsuid)
+            throws IOException {
+        this(new ChannelOutputStream(channel), tsuid);
+    }
+
     public DicomOutputStream(File file) throws IOException {
         this(new BufferedOutputStream(new FileOutputStream(file)),
                 UID.ExplicitVRLittleEndian);
@@ -114,6 +134,70 @@ public class DicomOutputStream extends FilterOutputStream {
         out.write(b, off, len);
     }
 
+    /**
+     * Returns {@code true} if this stream writes to a
+     * {@link WritableByteChannel} without intermediate encoding, so
+     * {@link #write(ByteBuffer)} and {@link #transferFrom} do not copy the
+     * bytes through the heap.
+     */
+    public boolean isChannelMode() {
+        return out instanceof ChannelOutputStream;
+    }
+
+    /**
+     * Writes the remaining bytes of the specified buffer.
+     *
+     * @param src the buffer to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(ByteBuffer src) throws IOException {
+        if (isChannelMode()) {
+            ((ChannelOutputStream) out).write(src);
+        } else if (src.hasArray()) {
+            out.write(src.array(), src.arrayOffset() + src.position(),
+                    src.remaining());
+            src.position(src.limit());
+        } else {
+            byte[] b = new byte[Math.min(src.remaining(), COPY_BUFFER_SIZE)];
+            while (src.hasRemaining()) {
+                int n = Math.min(src.remaining(), b.length);
+                src.get(b, 0, n);
+                out.write(b, 0, n);
+            }
+        }
+    }
+
+    /**
+     * Writes {@code count} bytes from the specified file channel starting at
+     * {@code position}, using {@link FileChannel#transferTo} in channel mode.
+     *
+     * @param src the file channel to read from
+     * @param position position in the file of the first byte to write
+     * @param count number of bytes to write
+     * @throws IOException if an I/O error occurs
+     */
+    public void transferFrom(FileChannel src, long position, long count)
+            throws IOException {
+        if (isChannelMode()) {
+            ((ChannelOutputStream) out).transferFrom(src, position, count);
+        } else {
+            ByteBuffer buf = ByteBuffer.allocate(
+                    (int) Math.min(count, COPY_BUFFER_SIZE));
+            while (count > 0) {
+                buf.clear();
+                if (buf.remaining() > count)
+                    buf.limit((int) count);
+                int n = src.read(buf, position);
+                if (n < 0)
+                    throw new EOFException();
+                buf.flip();
+                out.write(buf.array(), 0, n);
+                position += n;
+                count -= n;
+            }
+        }
+    }
+
     public void writeCommand(Attributes cmd) throws IOException {
         if (explicitVR || bigEndian)
             throw new IllegalStateException("explicitVR=" + explicitVR
@@ -0,0 +1,112 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@link ByteBufferInputStream} reading from a memory-mapped file. Files
+ * larger than the maximal region size are mapped in consecutive regions.
+ * Mapped regions stay valid after closing the stream, as long as they are
+ * referenced by {@link org.dcm4che3.data.ByteBufferValue}s.
+ *
+ * @author agent <agent@local>
+ */
+public class MappedFileInputStream extends ByteBufferInputStream {
+
+    public static final int DEF_MAX_REGION_SIZE = 0x40000000; // 1 GiB
+
+    private final RandomAccessFile raf;
+    private final FileChannel channel;
+    private final long size;
+    private final int maxRegionSize;
+
+    public MappedFileInputStream(File file) throws IOException {
+        this(file, DEF_MAX_REGION_SIZE);
+    }
+
+    public MappedFileInputStream(File file, int maxRegionSize)
+            throws IOException {
+        this(new RandomAccessFile(file, "r"), maxRegionSize);
+    }
+
+    private MappedFileInputStream(RandomAccessFile raf, int maxRegionSize)
+            throws IOException {
+        super(ByteBuffer.allocate(0));
+        if (maxRegionSize <= 0)
+            throw new IllegalArgumentException("maxRegionSize: " + maxRegionSize);
+        this.raf = raf;
+        this.channel = raf.getChannel();
+        this.size = channel.size();
+        this.maxRegionSize = maxRegionSize;
+        try {
+            remap(0L, 0);
+        } catch (IOException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public long length() {
+        return size;
+    }
+
+    @Override
+    protected boolean remap(long pos, int minLength) throws IOException {
+        long remaining = size - pos;
+        if (pos < 0 || remaining < minLength)
+            return false;
+
+        int regionSize = (int) Math.min(remaining,
+                Math.max(maxRegionSize, minLength));
+        buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos, regionSize);
+        bufferPosition = pos;
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+}
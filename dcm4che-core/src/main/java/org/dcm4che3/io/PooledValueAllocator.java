@@ -0,0 +1,183 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.io;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Fragments;
+import org.dcm4che3.data.VR;
+
+/**
+ * {@link ValueAllocator} keeping released arrays of large values - typically
+ * Pixel Data - in a pool for reuse by subsequent reads of values with the
+ * same length, as received by a Storage SCP for series of images with equal
+ * dimensions. Values shorter than {@link #getMinPooledLength()} are not
+ * pooled. The pool is bounded by {@link #getMaxPooledBytes()}.
+ * <p>
+ * Only arrays issued by {@link #allocate} of this instance are taken into the
+ * pool; other arrays passed to {@link #release} are ignored. Issued arrays
+ * are tracked by weak references, so arrays never released do not leak.
+ * <p>
+ * Ownership: arrays returned by {@link #allocate} belong to the
+ * {@link Attributes} they are stored in. Only the owner of these
+ * {@code Attributes} may pass them to {@link #release(Attributes)}, after
+ * which neither the {@code Attributes} nor any value obtained from them
+ * may be accessed any more.
+ *
+ * @author agent <agent@local>
+ */
+public class PooledValueAllocator implements ValueAllocator {
+
+    private static final int DEF_MIN_POOLED_LENGTH = 0x10000; // 64KiB
+    private static final long DEF_MAX_POOLED_BYTES = 0x4000000L; // 64MiB
+
+    private final int minPooledLength;
+    private final long maxPooledBytes;
+    private final ConcurrentHashMap<Integer, Queue<byte[]>> pool =
+            new ConcurrentHashMap<Integer, Queue<byte[]>>();
+    private final AtomicLong pooledBytes = new AtomicLong();
+    // byte[] does not override equals/hashCode, so keys compare by identity
+    private final Map<byte[], Boolean> issued = Collections.synchronizedMap(
+            new WeakHashMap<byte[], Boolean>());
+
+    public PooledValueAllocator() {
+        this(DEF_MIN_POOLED_LENGTH, DEF_MAX_POOLED_BYTES);
+    }
+
+    public PooledValueAllocator(int minPooledLength, long maxPooledBytes) {
+        if (minPooledLength <= 0)
+            throw new IllegalArgumentException("minPooledLength: "
+                    + minPooledLength);
+        this.minPooledLength = minPooledLength;
+        this.maxPooledBytes = maxPooledBytes;
+    }
+
+    public final int getMinPooledLength() {
+        return minPooledLength;
+    }
+
+    public final long getMaxPooledBytes() {
+        return maxPooledBytes;
+    }
+
+    /**
+     * Returns the total length of arrays currently kept in the pool.
+     */
+    public long getPooledBytes() {
+        return pooledBytes.get();
+    }
+
+    @Override
+    public byte[] allocate(int length) {
+        if (length < minPooledLength)
+            return new byte[length];
+
+        Queue<byte[]> queue = pool.get(length);
+        byte[] b;
+        if (queue != null && (b = queue.poll()) != null)
+            pooledBytes.addAndGet(-length);
+        else
+            b = new byte[length];
+        issued.put(b, Boolean.TRUE);
+        return b;
+    }
+
+    @Override
+    public void release(byte[] b) {
+        int length = b.length;
+        if (length < minPooledLength || issued.remove(b) == null)
+            return;
+
+        if (pooledBytes.addAndGet(length) > maxPooledBytes) {
+            pooledBytes.addAndGet(-length);
+            return;
+        }
+        Queue<byte[]> queue = pool.get(length);
+        if (queue == null) {
+            Queue<byte[]> newQueue = new ConcurrentLinkedQueue<byte[]>();
+            queue = pool.putIfAbsent(length, newQueue);
+            if (queue == null)
+                queue = newQueue;
+        }
+        queue.offer(b);
+    }
+
+    /**
+     * Releases the arrays of all binary values and fragments of the
+     * specified {@code Attributes}, including nested data sets, which were
+     * issued by this allocator. The {@code Attributes} and any value obtained
+     * from them must not be accessed after their release, because released
+     * arrays are overwritten by subsequent reads.
+     */
+    public void release(Attributes attrs) {
+        try {
+            attrs.accept(new Attributes.Visitor() {
+
+                @Override
+                public boolean visit(Attributes attrs, int tag, VR vr,
+                        Object value) {
+                    if (value instanceof byte[])
+                        release((byte[]) value);
+                    else if (value instanceof Fragments)
+                        for (Object frag : (Fragments) value)
+                            if (frag instanceof byte[])
+                                release((byte[]) frag);
+                    return true;
+                }
+            }, true);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Removes all arrays from the pool.
+     */
+    public void clear() {
+        pool.clear();
+        pooledBytes.set(0L);
+    }
+}
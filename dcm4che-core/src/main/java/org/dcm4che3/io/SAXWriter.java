@@ -42,6 +42,7 @@ import java.io.IOException;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.ByteBufferValue;
 import org.dcm4che3.data.ElementDictionary;
 import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.PersonName;
@@ -180,6 +181,8 @@ public class SAXWriter implements DicomInputHandler {
         String privateCreator = attrs.getPrivateCreator(tag);
         addAttributes(tag, vr, privateCreator);
         startElement("DicomAttribute");
+        if (value instanceof ByteBufferValue)
+            value = ((ByteBufferValue) value).toBytes(vr, attrs.bigEndian());
         if (value instanceof Value)
             writeAttribute((Value) value, attrs.bigEndian());
         else if (!vr.isInlineBinary()) {
@@ -219,7 +222,9 @@ public class SAXWriter implements DicomInputHandler {
                     if (frag instanceof Value && ((Value) frag).isEmpty())
                         continue;
                     startElement("DataFragment", "number", number);
-                    byte[] b = (byte[]) frag;
+                    byte[] b = (frag instanceof ByteBufferValue)
+                            ? ((ByteBufferValue) frag).toBytes(frags.vr(), frags.bigEndian())
+                            : (byte[]) frag;
                     if (bigEndian)
                         frags.vr().toggleEndian(b, true);
                     writeInlineBinary(b);
@@ -45,6 +45,7 @@ import java.io.RandomAccessFile;
 
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.RAFInputStreamAdapter;
@@ -209,8 +210,14 @@ public class DicomDirReader implements Closeable {
     public Attributes findRootDirectoryRecord(Attributes keys, boolean ignorePrivate,
             boolean ignoreCaseOfPN, boolean matchNoValue)
             throws IOException {
+        return findRootDirectoryRecord(ignorePrivate,
+                matcher(keys, ignoreCaseOfPN, matchNoValue));
+    }
+
+    public Attributes findRootDirectoryRecord(boolean ignorePrivate,
+            AttributesMatcher matcher) throws IOException {
         return findRecordInUse(getOffsetOfFirstRootDirectoryRecord(), ignorePrivate,
-                keys, ignoreCaseOfPN, matchNoValue);
+                matcher);
     }
 
     public Attributes findRootDirectoryRecord(boolean ignorePrivate, Attributes keys,
@@ -225,9 +232,15 @@ public class DicomDirReader implements Closeable {
 
     public Attributes findNextDirectoryRecord(Attributes rec, boolean ignorePrivate,
             Attributes keys, boolean ignoreCaseOfPN, boolean matchNoValue) throws IOException {
+        return findNextDirectoryRecord(rec, ignorePrivate,
+                matcher(keys, ignoreCaseOfPN, matchNoValue));
+    }
+
+    public Attributes findNextDirectoryRecord(Attributes rec, boolean ignorePrivate,
+            AttributesMatcher matcher) throws IOException {
         return findRecordInUse(
                 rec.getInt(Tag.OffsetOfTheNextDirectoryRecord, 0), ignorePrivate,
-                keys, ignoreCaseOfPN, matchNoValue);
+                matcher);
     }
 
     public Attributes findLowerDirectoryRecordInUse(Attributes rec, boolean ignorePrivate)
@@ -238,65 +251,107 @@ public class DicomDirReader implements Closeable {
     public Attributes findLowerDirectoryRecord(Attributes rec, boolean ignorePrivate,
             Attributes keys, boolean ignoreCaseOfPN, boolean matchNoValue)
             throws IOException {
+        return findLowerDirectoryRecord(rec, ignorePrivate,
+                matcher(keys, ignoreCaseOfPN, matchNoValue));
+    }
+
+    public Attributes findLowerDirectoryRecord(Attributes rec, boolean ignorePrivate,
+            AttributesMatcher matcher) throws IOException {
         return findRecordInUse(
                 rec.getInt(Tag.OffsetOfReferencedLowerLevelDirectoryEntity, 0), ignorePrivate,
-                keys, ignoreCaseOfPN, matchNoValue);
+                matcher);
     }
 
     public Attributes findPatientRecord(String... ids) throws IOException {
-        return findRootDirectoryRecord(false,
-                pk("PATIENT", Tag.PatientID, VR.LO, ids), false, false);
+        return findRootDirectoryRecord(false, patientMatcher(ids));
     }
 
     public Attributes findNextPatientRecord(Attributes patRec, String... ids) throws IOException {
-        return findNextDirectoryRecord(patRec, false,
-                pk("PATIENT", Tag.PatientID, VR.LO, ids), false, false);
+        return findNextDirectoryRecord(patRec, false, patientMatcher(ids));
     }
 
     public Attributes findStudyRecord(Attributes patRec, String... iuids)
             throws IOException {
-        return findLowerDirectoryRecord(patRec, false,
-                pk("STUDY", Tag.StudyInstanceUID, VR.UI, iuids),
-                false, false);
+        return findLowerDirectoryRecord(patRec, false, studyMatcher(iuids));
     }
 
     public Attributes findNextStudyRecord(Attributes studyRec, String... iuids)
             throws IOException {
-        return findNextDirectoryRecord(studyRec, false,
-                pk("STUDY", Tag.StudyInstanceUID, VR.UI, iuids),
-                false, false);
+        return findNextDirectoryRecord(studyRec, false, studyMatcher(iuids));
     }
 
     public Attributes findSeriesRecord(Attributes studyRec, String... iuids)
             throws IOException {
-        return findLowerDirectoryRecord(studyRec, false, 
-                pk("SERIES", Tag.SeriesInstanceUID, VR.UI, iuids),
-                false, false);
+        return findLowerDirectoryRecord(studyRec, false, seriesMatcher(iuids));
     }
 
     public Attributes findNextSeriesRecord(Attributes seriesRec, String... iuids)
             throws IOException {
-        return findNextDirectoryRecord(seriesRec, false, 
-                pk("SERIES", Tag.SeriesInstanceUID, VR.UI, iuids),
-                false, false);
+        return findNextDirectoryRecord(seriesRec, false, seriesMatcher(iuids));
     }
 
     public Attributes findLowerInstanceRecord(Attributes seriesRec, boolean ignorePrivate,
             String... iuids) throws IOException {
-        return findLowerDirectoryRecord(seriesRec, ignorePrivate, pk(iuids), false, false);
+        return findLowerDirectoryRecord(seriesRec, ignorePrivate,
+                instanceMatcher(iuids));
     }
 
     public Attributes findNextInstanceRecord(Attributes instRec, boolean ignorePrivate,
             String... iuids) throws IOException {
-        return findNextDirectoryRecord(instRec, ignorePrivate, pk(iuids), false, false);
+        return findNextDirectoryRecord(instRec, ignorePrivate,
+                instanceMatcher(iuids));
     }
 
     public Attributes findRootInstanceRecord(boolean ignorePrivate, String... iuids)
             throws IOException {
-        return findRootDirectoryRecord(ignorePrivate, pk(iuids), false, false);
+        return findRootDirectoryRecord(ignorePrivate, instanceMatcher(iuids));
+    }
+
+    /**
+     * Returns matcher for PATIENT records with one of the specified Patient
+     * IDs, which may be passed to {@link #findRootDirectoryRecord(boolean,
+     * AttributesMatcher)} and {@link #findNextDirectoryRecord(Attributes,
+     * boolean, AttributesMatcher)} to iterate over matching records without
+     * compiling the keys for each record.
+     */
+    public static AttributesMatcher patientMatcher(String... ids) {
+        return matcher(pk("PATIENT", Tag.PatientID, VR.LO, ids), false, false);
+    }
+
+    /**
+     * Returns matcher for STUDY records with one of the specified Study
+     * Instance UIDs.
+     *
+     * @see #patientMatcher(String...)
+     */
+    public static AttributesMatcher studyMatcher(String... iuids) {
+        return matcher(pk("STUDY", Tag.StudyInstanceUID, VR.UI, iuids),
+                false, false);
+    }
+
+    /**
+     * Returns matcher for SERIES records with one of the specified Series
+     * Instance UIDs.
+     *
+     * @see #patientMatcher(String...)
+     */
+    public static AttributesMatcher seriesMatcher(String... iuids) {
+        return matcher(pk("SERIES", Tag.SeriesInstanceUID, VR.UI, iuids),
+                false, false);
     }
 
-    private Attributes pk(String type, int tag, VR vr, String... ids) {
+    /**
+     * Returns matcher for instance records referencing one of the specified
+     * SOP Instance UIDs, or {@code null} to match any record, if no UID is
+     * specified.
+     *
+     * @see #patientMatcher(String...)
+     */
+    public static AttributesMatcher instanceMatcher(String... iuids) {
+        return matcher(pk(iuids), false, false);
+    }
+
+    private static Attributes pk(String type, int tag, VR vr, String... ids) {
         Attributes pk = new Attributes(2);
         pk.setString(Tag.DirectoryRecordType, VR.CS, type);
         if (ids != null && ids.length != 0)
@@ -304,7 +359,7 @@ public class DicomDirReader implements Closeable {
         return pk;
     }
 
-    private Attributes pk(String... iuids) {
+    private static Attributes pk(String... iuids) {
         if (iuids == null || iuids.length == 0)
             return null;
 
@@ -313,13 +368,19 @@ public class DicomDirReader implements Closeable {
         return pk;
     }
 
-    private Attributes findRecordInUse(int offset, boolean ignorePrivate, Attributes keys,
-            boolean ignoreCaseOfPN, boolean matchNoValue)
-            throws IOException {
+    private static AttributesMatcher matcher(Attributes keys,
+            boolean ignoreCaseOfPN, boolean matchNoValue) {
+        return keys != null
+                ? new AttributesMatcher(keys, ignoreCaseOfPN, matchNoValue)
+                : null;
+    }
+
+    private Attributes findRecordInUse(int offset, boolean ignorePrivate,
+            AttributesMatcher matcher) throws IOException {
         while (offset != 0) {
             Attributes item = readRecord(offset);
             if (inUse(item) && !(ignorePrivate && isPrivate(item))
-                    && (keys == null || item.matches(keys, ignoreCaseOfPN, matchNoValue)))
+                    && (matcher == null || matcher.matches(item)))
                 return item;
             offset = item.getInt(Tag.OffsetOfTheNextDirectoryRecord, 0);
         }
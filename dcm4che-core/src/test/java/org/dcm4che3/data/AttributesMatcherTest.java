@@ -0,0 +1,156 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class AttributesMatcherTest {
+
+    private static Attributes createRecord() {
+        Attributes rec = new Attributes();
+        rec.setString(Tag.StudyDate, VR.DA, "20150312");
+        rec.setString(Tag.StudyTime, VR.TM, "101112");
+        rec.setString(Tag.PatientName, VR.PN, "Doe^John^^^");
+        rec.setString(Tag.PatientID, VR.LO, "PID-4711");
+        rec.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3.4");
+        rec.setString(Tag.ModalitiesInStudy, VR.CS, "CT", "SR");
+        Attributes item = new Attributes(2);
+        item.setString(Tag.CodeValue, VR.SH, "CTTHORAX");
+        item.setString(Tag.CodingSchemeDesignator, VR.SH, "99DCM4CHE");
+        rec.newSequence(Tag.ProcedureCodeSequence, 1).add(item);
+        return rec;
+    }
+
+    @Test
+    public void testMatchesWildcardAndPN() {
+        Attributes keys = new Attributes();
+        keys.setString(Tag.PatientName, VR.PN, "doe^j*");
+        keys.setString(Tag.PatientID, VR.LO, "PID-47??");
+        Attributes rec = createRecord();
+        assertTrue(new AttributesMatcher(keys, true, false).matches(rec));
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+        keys.setString(Tag.PatientName, VR.PN, "Doe^John^^^");
+        assertTrue(new AttributesMatcher(keys, false, false).matches(rec));
+    }
+
+    @Test
+    public void testMatchesUIDList() {
+        Attributes keys = new Attributes();
+        keys.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3.1", "1.2.3.4");
+        AttributesMatcher matcher = new AttributesMatcher(keys, false, false);
+        assertTrue(matcher.matches(createRecord()));
+        keys.setString(Tag.StudyInstanceUID, VR.UI, "1.2.3.1", "1.2.3.5");
+        matcher = new AttributesMatcher(keys, false, false);
+        assertFalse(matcher.matches(createRecord()));
+    }
+
+    @Test
+    public void testMatchesDateTimeRange() {
+        Attributes rec = createRecord();
+        Attributes keys = new Attributes();
+        keys.setString(Tag.StudyDate, VR.DA, "20150101-20151231");
+        keys.setString(Tag.StudyTime, VR.TM, "10-11");
+        assertTrue(new AttributesMatcher(keys, false, false).matches(rec));
+        keys.setString(Tag.StudyDate, VR.DA, "20150313-");
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+        keys.setString(Tag.StudyDate, VR.DA, "-20150312");
+        keys.setString(Tag.StudyTime, VR.TM, "1012-");
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+    }
+
+    @Test
+    public void testMatchesDateTimeWithNegativeUTCOffset() {
+        Attributes rec = createRecord();
+        rec.setString(Tag.AcquisitionDateTime, VR.DT, "20150312101112-0500");
+        Attributes keys = new Attributes();
+        keys.setString(Tag.AcquisitionDateTime, VR.DT, "20150312101112-0500");
+        assertTrue(new AttributesMatcher(keys, false, false).matches(rec));
+        keys.setString(Tag.AcquisitionDateTime, VR.DT, "20150312101112-0400");
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+        keys.setString(Tag.AcquisitionDateTime, VR.DT,
+                "20150312150000-0000-20150312160000-0000");
+        assertTrue(new AttributesMatcher(keys, false, false).matches(rec));
+        keys.setString(Tag.AcquisitionDateTime, VR.DT,
+                "20150312110000-0500-");
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+    }
+
+    @Test
+    public void testMatchesNoValue() {
+        Attributes keys = new Attributes();
+        keys.setString(Tag.AccessionNumber, VR.SH, "A123");
+        Attributes rec = createRecord();
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+        assertTrue(new AttributesMatcher(keys, false, true).matches(rec));
+    }
+
+    @Test
+    public void testMatchesSequence() {
+        Attributes item = new Attributes(1);
+        item.setString(Tag.CodeValue, VR.SH, "CT*");
+        Attributes keys = new Attributes();
+        keys.newSequence(Tag.ProcedureCodeSequence, 1).add(item);
+        keys.setString(Tag.ModalitiesInStudy, VR.CS, "SR");
+        Attributes rec = createRecord();
+        assertTrue(new AttributesMatcher(keys, false, false).matches(rec));
+        item.setString(Tag.CodeValue, VR.SH, "MR*");
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+        assertFalse(rec.matches(keys, false, false));
+    }
+
+    @Test
+    public void testMatchesEmptySequenceWithoutModifyingRecord() {
+        Attributes item = new Attributes(1);
+        item.setString(Tag.CodeValue, VR.SH, "CT*");
+        Attributes keys = new Attributes();
+        keys.newSequence(Tag.ProcedureCodeSequence, 1).add(item);
+        Attributes rec = createRecord();
+        rec.setNull(Tag.ProcedureCodeSequence, VR.SQ);
+        assertFalse(new AttributesMatcher(keys, false, false).matches(rec));
+        assertTrue(new AttributesMatcher(keys, false, true).matches(rec));
+        assertSame(Value.NULL, rec.getValue(Tag.ProcedureCodeSequence));
+    }
+}
@@ -0,0 +1,117 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import static org.junit.Assert.*;
+
+import org.dcm4che3.dict.siemens.SiemensCSAHeader;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class ElementDictionaryTest {
+
+    private static final String SIEMENS_CSA_HEADER =
+            SiemensCSAHeader.PrivateCreator;
+    private static final String UNKNOWN_CREATOR = "UNKNOWN CREATOR";
+    private static final int CSA_IMAGE_HEADER_TYPE = 0x00291008;
+
+    @Test
+    public void testGetElementDictionary() {
+        assertTrue(ElementDictionary.getElementDictionary(SIEMENS_CSA_HEADER)
+                instanceof SiemensCSAHeader);
+        assertSame(ElementDictionary.getStandardElementDictionary(),
+                ElementDictionary.getElementDictionary(null));
+    }
+
+    @Test
+    public void testUnknownPrivateCreator() {
+        assertSame(ElementDictionary.getStandardElementDictionary(),
+                ElementDictionary.getElementDictionary(UNKNOWN_CREATOR));
+        assertEquals(VR.UN,
+                ElementDictionary.vrOf(CSA_IMAGE_HEADER_TYPE, UNKNOWN_CREATOR));
+        assertEquals(-1, ElementDictionary.tagForKeyword(
+                "CSAImageHeaderType", UNKNOWN_CREATOR));
+    }
+
+    @Test
+    public void testVROfAndKeywordOfPrivateTag() {
+        assertEquals(VR.CS,
+                ElementDictionary.vrOf(CSA_IMAGE_HEADER_TYPE, SIEMENS_CSA_HEADER));
+        assertEquals("CSAImageHeaderType", ElementDictionary.keywordOf(
+                CSA_IMAGE_HEADER_TYPE, SIEMENS_CSA_HEADER));
+    }
+
+    @Test
+    public void testReload() {
+        ElementDictionary dict =
+                ElementDictionary.getElementDictionary(SIEMENS_CSA_HEADER);
+        ElementDictionary.reload();
+        ElementDictionary reloaded =
+                ElementDictionary.getElementDictionary(SIEMENS_CSA_HEADER);
+        assertTrue(reloaded instanceof SiemensCSAHeader);
+        assertNotSame(dict, reloaded);
+        assertSame(reloaded,
+                ElementDictionary.getElementDictionary(SIEMENS_CSA_HEADER));
+        assertEquals(VR.CS,
+                ElementDictionary.vrOf(CSA_IMAGE_HEADER_TYPE, SIEMENS_CSA_HEADER));
+    }
+
+    @Test
+    public void testTagForKeyword() {
+        assertEquals(Tag.PatientID,
+                ElementDictionary.tagForKeyword("PatientID", null));
+        assertEquals(Tag.PixelData,
+                ElementDictionary.tagForKeyword("PixelData", null));
+        assertEquals(-1, ElementDictionary.tagForKeyword("NoSuchKeyword", null));
+    }
+
+    @Test
+    public void testTagForKeywordOfPrivateDictionary() {
+        assertEquals(SiemensCSAHeader.CSAImageHeaderType,
+                ElementDictionary.tagForKeyword("CSAImageHeaderType",
+                        SIEMENS_CSA_HEADER));
+        assertEquals(SiemensCSAHeader.CSASeriesHeaderInfo,
+                ElementDictionary.tagForKeyword("CSASeriesHeaderInfo",
+                        SIEMENS_CSA_HEADER));
+        assertEquals(-1, ElementDictionary.tagForKeyword("PatientID",
+                SIEMENS_CSA_HEADER));
+    }
+}
@@ -0,0 +1,179 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Date;
+
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.util.DateUtils;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class FrozenAttributesTest {
+
+    private static Attributes createDataset() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SpecificCharacterSet, VR.CS, "ISO_IR 100");
+        attrs.setString(Tag.StudyDate, VR.DA, "20150312");
+        attrs.setString(Tag.StudyTime, VR.TM, "101112");
+        attrs.setString(Tag.PatientName, VR.PN, "Müller^Hans");
+        attrs.setString(Tag.PatientID, VR.LO, "PID-4711");
+        attrs.setInt(Tag.NumberOfStudyRelatedInstances, VR.IS, 42);
+        attrs.setString(Tag.ModalitiesInStudy, VR.CS, "CT", "SR");
+        attrs.setString(Tag.PatientWeight, VR.DS, "72.5");
+        attrs.setFloat(Tag.RecommendedDisplayFrameRateInFloat, VR.FL, 25f);
+        Attributes item = new Attributes(2);
+        item.setString(Tag.CodeValue, VR.SH, "CTTHORAX");
+        item.setString(Tag.CodeMeaning, VR.LO, "CT Thorax");
+        attrs.newSequence(Tag.ProcedureCodeSequence, 1).add(item);
+        attrs.setString("FrozenAttributesTest", 0x00990010, VR.LO, "private");
+        return attrs;
+    }
+
+    @Test
+    public void testGetters() {
+        FrozenAttributes frozen = createDataset().freeze();
+        assertEquals(12, frozen.size());
+        assertEquals("Müller^Hans", frozen.getString(Tag.PatientName));
+        assertEquals("PID-4711", frozen.getString(Tag.PatientID, null));
+        assertEquals(42, frozen.getInt(Tag.NumberOfStudyRelatedInstances, 0));
+        assertEquals("SR", frozen.getStrings(Tag.ModalitiesInStudy)[1]);
+        assertEquals(72.5f, frozen.getFloat(Tag.PatientWeight, 0f), 0f);
+        assertEquals(25f,
+                frozen.getFloat(Tag.RecommendedDisplayFrameRateInFloat, 0f), 0f);
+        assertEquals("72.5", frozen.getString(Tag.PatientWeight));
+        assertEquals("20150312", DateUtils.formatDA(null,
+                frozen.getDate(Tag.StudyDate, (Date) null)));
+        assertNull(frozen.getDate(Tag.PatientBirthDate, (Date) null));
+        assertEquals(1, frozen.getSequence(Tag.ProcedureCodeSequence).size());
+        assertNull(frozen.getSequence(Tag.PatientID));
+        assertEquals("20150312101112.000",
+                DateUtils.formatDT(null, frozen.getDate(Tag.StudyDateAndTime)));
+        assertEquals("CT Thorax", frozen.getNestedDataset(Tag.ProcedureCodeSequence)
+                .getString(Tag.CodeMeaning));
+        assertEquals("private",
+                frozen.getString("FrozenAttributesTest", 0x00990010, null));
+        assertEquals(VR.SQ, frozen.getVR(Tag.ProcedureCodeSequence));
+        assertTrue(frozen.contains(Tag.StudyTime));
+        assertFalse(frozen.contains(Tag.AccessionNumber));
+        assertNull(frozen.getString(Tag.AccessionNumber));
+        assertNull(frozen.getString("Other", 0x00990010, null));
+        assertEquals("Müller^Hans",
+                frozen.select(Tag.PatientName).getString(Tag.PatientName));
+    }
+
+    @Test
+    public void testSpecificCharacterSetOfItems() {
+        Attributes item = new Attributes(1);
+        item.setString(Tag.PatientName, VR.PN, "Müller^Hans");
+        Attributes attrs = createDataset();
+        attrs.newSequence(Tag.OtherPatientIDsSequence, 1).add(item);
+        FrozenAttributes frozen = attrs.freeze();
+        assertEquals("Müller^Hans",
+                frozen.getNestedDataset(Tag.OtherPatientIDsSequence)
+                        .getString(Tag.PatientName));
+    }
+
+    @Test
+    public void testMatches() {
+        FrozenAttributes frozen = createDataset().freeze();
+        Attributes keys = new Attributes();
+        keys.setString(Tag.PatientName, VR.PN, "Müller*");
+        keys.setString(Tag.StudyDate, VR.DA, "20150101-20151231");
+        Attributes item = new Attributes(1);
+        item.setString(Tag.CodeValue, VR.SH, "CT*");
+        keys.newSequence(Tag.ProcedureCodeSequence, 1).add(item);
+        assertTrue(frozen.matches(keys, false, false));
+        keys.setString(Tag.StudyDate, VR.DA, "20150313-");
+        assertFalse(frozen.matches(keys, false, false));
+        keys.setString(Tag.StudyDate, VR.DA, "-20150312");
+        item.setString(Tag.CodeValue, VR.SH, "MR*");
+        assertFalse(frozen.matches(keys, false, false));
+    }
+
+    @Test
+    public void testSerialize() throws Exception {
+        FrozenAttributes frozen = createDataset().freeze();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        ObjectOutputStream oout = new ObjectOutputStream(bout);
+        oout.writeObject(frozen);
+        oout.close();
+        ObjectInputStream oin = new ObjectInputStream(
+                new ByteArrayInputStream(bout.toByteArray()));
+        FrozenAttributes copy = (FrozenAttributes) oin.readObject();
+        assertEquals(frozen, copy);
+        assertEquals(frozen.size(), copy.size());
+        assertEquals("Müller^Hans", copy.getString(Tag.PatientName));
+    }
+
+    @Test
+    public void testThaw() throws Exception {
+        Attributes attrs = createDataset();
+        assertEquals(attrs, attrs.freeze().thaw());
+        assertThawEquals("DICOMDIR");
+        assertThawEquals("US-RGB-8-epicard");
+    }
+
+    private static void assertThawEquals(String name) throws Exception {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        DicomInputStream in = new DicomInputStream(
+                new File(cl.getResource(name).toURI()));
+        Attributes attrs;
+        try {
+            attrs = in.readDataset(-1, -1);
+        } finally {
+            in.close();
+        }
+        FrozenAttributes frozen = attrs.freeze();
+        assertEquals(attrs.size(), frozen.size());
+        assertEquals(attrs, frozen.thaw());
+    }
+}
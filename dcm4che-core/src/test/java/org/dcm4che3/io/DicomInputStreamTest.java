@@ -2,12 +2,21 @@ package org.dcm4che3.io;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.util.concurrent.CountDownLatch;
 
+import org.dcm4che3.data.BoundedStringDeduplicator;
 import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.ByteBufferValue;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.LazySequence;
 import org.dcm4che3.data.Sequence;
+import org.dcm4che3.data.StringDeduplicator;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
 import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 import org.junit.Test;
 
@@ -51,12 +60,223 @@ public class DicomInputStreamTest {
         assertEquals(((BulkData) pixelData).uri, item.getString(Tag.RetrieveURL));
     }
 
+    @Test
+    public void testMemoryMapped() throws Exception {
+        assertMemoryMappedEquals("DICOMDIR");
+        assertMemoryMappedEquals("OT-PAL-8-face");
+        assertMemoryMappedEquals("US-RGB-8-epicard");
+    }
+
+    @Test
+    public void testLazy() throws Exception {
+        assertLazyEquals("DICOMDIR");
+        assertLazyEquals("OT-PAL-8-face");
+        assertLazyEquals("US-RGB-8-epicard");
+        assertLazyEquals("report_dfl");
+        assertTrue(readLazyFromResource("DICOMDIR")
+                .remove(Tag.DirectoryRecordSequence) instanceof LazySequence);
+    }
+
+    @Test
+    public void testLazySequenceToBytes() throws Exception {
+        LazySequence lazy = (LazySequence) readLazyFromResource("DICOMDIR")
+                .remove(Tag.DirectoryRecordSequence);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomOutputStream out = new DicomOutputStream(bout,
+                UID.ExplicitVRLittleEndian);
+        try {
+            lazy.writeTo(out, VR.SQ);
+        } finally {
+            out.close();
+        }
+        assertArrayEquals(bout.toByteArray(), lazy.toBytes(VR.SQ, false));
+        try {
+            lazy.toBytes(VR.SQ, true);
+            fail("UnsupportedOperationException expected");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testLazySequenceParsedOnce() throws Exception {
+        final Attributes attrs = readLazyFromResource("DICOMDIR");
+        final CountDownLatch start = new CountDownLatch(1);
+        final Sequence[] seqs = new Sequence[4];
+        Thread[] threads = new Thread[seqs.length];
+        for (int i = 0; i < threads.length; i++) {
+            final int index = i;
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    seqs[index] = attrs.getSequence(Tag.DirectoryRecordSequence);
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        assertNotNull(seqs[0]);
+        for (Sequence seq : seqs)
+            assertSame(seqs[0], seq);
+        assertSame(seqs[0], attrs.getSequence(Tag.DirectoryRecordSequence));
+    }
+
+    @Test
+    public void testPooledValueAllocator() throws Exception {
+        PooledValueAllocator allocator = new PooledValueAllocator(1024, 0x1000000L);
+        Attributes attrs = readPooledFromResource("OT-PAL-8-face", allocator);
+        byte[] pixelData = attrs.getBytes(Tag.PixelData);
+        byte[] expected = pixelData.clone();
+        allocator.release(attrs);
+        assertTrue(allocator.getPooledBytes() >= pixelData.length);
+        Attributes attrs2 = readPooledFromResource("OT-PAL-8-face", allocator);
+        assertSame(pixelData, attrs2.getBytes(Tag.PixelData));
+        assertArrayEquals(expected, attrs2.getBytes(Tag.PixelData));
+    }
+
+    @Test
+    public void testPooledValueAllocatorIgnoresForeignArrays() throws Exception {
+        PooledValueAllocator allocator = new PooledValueAllocator(1024, 0x1000000L);
+        Attributes attrs = readPooledFromResource("OT-PAL-8-face", allocator);
+        int pixelDataLength = attrs.getBytes(Tag.PixelData).length;
+        byte[] foreign = new byte[2048];
+        attrs.setBytes(0x00091010, VR.OB, foreign);
+        allocator.release(foreign);
+        assertEquals(0L, allocator.getPooledBytes());
+        allocator.release(attrs);
+        assertEquals(pixelDataLength, allocator.getPooledBytes());
+        allocator.release(attrs);
+        assertEquals(pixelDataLength, allocator.getPooledBytes());
+        assertNotSame(foreign, allocator.allocate(foreign.length));
+    }
+
+    @Test
+    public void testStringDeduplicator() throws Exception {
+        BoundedStringDeduplicator dedup = new BoundedStringDeduplicator();
+        Attributes attrs1 = readDeduplicatedFromResource("DICOMDIR", dedup);
+        Attributes attrs2 = readDeduplicatedFromResource("DICOMDIR", dedup);
+        assertEquals(readFromResource("DICOMDIR", IncludeBulkData.YES), attrs1);
+        assertSame(attrs1.getString(Tag.FileSetID),
+                attrs2.getString(Tag.FileSetID));
+        Attributes rec1 = attrs1.getNestedDataset(Tag.DirectoryRecordSequence);
+        Attributes rec2 = attrs2.getNestedDataset(Tag.DirectoryRecordSequence);
+        assertSame(rec1.getString(Tag.DirectoryRecordType),
+                rec2.getString(Tag.DirectoryRecordType));
+    }
+
+    private static Attributes readDeduplicatedFromResource(String name,
+            StringDeduplicator dedup) throws Exception {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        DicomInputStream in = new DicomInputStream(
+                new File(cl.getResource(name).toURI()));
+        try {
+            in.setStringDeduplicator(dedup);
+            return in.readDataset(-1, -1);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static Attributes readPooledFromResource(String name,
+            ValueAllocator allocator) throws Exception {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        DicomInputStream in = new DicomInputStream(
+                new File(cl.getResource(name).toURI()));
+        try {
+            in.setValueAllocator(allocator);
+            return in.readDataset(-1, -1);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void assertLazyEquals(String name) throws Exception {
+        Attributes expected = readFromResource(name, IncludeBulkData.YES);
+        Attributes lazy = readLazyFromResource(name);
+        DicomInputStream in = new DicomInputStream(
+                new ByteArrayInputStream(toBytes(lazy)),
+                UID.ExplicitVRLittleEndian);
+        try {
+            assertEquals(expected, in.readDataset(-1, -1));
+        } finally {
+            in.close();
+        }
+        assertEquals(expected, readLazyFromResource(name));
+    }
+
+    private static Attributes readLazyFromResource(String name)
+            throws Exception {
+        ClassLoader cl = Thread.currentThread().getContextClassLoader();
+        DicomInputStream in = new DicomInputStream(
+                new File(cl.getResource(name).toURI()), true);
+        try {
+            in.setLazy(true);
+            return in.readDataset(-1, -1);
+        } finally {
+            in.close();
+        }
+    }
+
+    @Test
+    public void testMemoryMappedValuesStayMapped() throws Exception {
+        Attributes mapped = readFromResource("OT-PAL-8-face",
+                IncludeBulkData.YES, true);
+        byte[] pixelData = mapped.getBytes(Tag.PixelData);
+        assertNotNull(mapped.toString());
+        final Object[] visited = new Object[1];
+        mapped.accept(new Attributes.Visitor() {
+
+            @Override
+            public boolean visit(Attributes attrs, int tag, VR vr,
+                    Object value) {
+                if (tag == Tag.PixelData)
+                    visited[0] = value;
+                return true;
+            }
+        }, false);
+        assertTrue(visited[0] instanceof ByteBufferValue);
+        assertArrayEquals(pixelData, mapped.getBytes(Tag.PixelData));
+        assertNotSame(pixelData, mapped.getBytes(Tag.PixelData));
+    }
+
+    private static void assertMemoryMappedEquals(String name) throws Exception {
+        Attributes mapped = readFromResource(name, IncludeBulkData.YES, true);
+        assertArrayEquals(
+                toBytes(readFromResource(name, IncludeBulkData.YES)),
+                toBytes(mapped));
+        assertEquals(readFromResource(name, IncludeBulkData.YES), mapped);
+    }
+
+    private static byte[] toBytes(Attributes attrs) throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomOutputStream out = new DicomOutputStream(bout,
+                UID.ExplicitVRLittleEndian);
+        try {
+            out.writeDataset(null, attrs);
+        } finally {
+            out.close();
+        }
+        return bout.toByteArray();
+    }
+
     private static Attributes readFromResource(String name, 
             IncludeBulkData includeBulkData)
             throws Exception {
+        return readFromResource(name, includeBulkData, false);
+    }
+
+    private static Attributes readFromResource(String name, 
+            IncludeBulkData includeBulkData, boolean memoryMapped)
+            throws Exception {
         ClassLoader cl = Thread.currentThread().getContextClassLoader();
         DicomInputStream in = new DicomInputStream(
-                new File(cl.getResource(name).toURI()));
+                new File(cl.getResource(name).toURI()), memoryMapped);
         try {
             in.setIncludeBulkData(includeBulkData);
             in.setAddBulkDataReferences(includeBulkData == IncludeBulkData.URI);
@@ -1,6 +1,8 @@
 package org.dcm4che3.io;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.FileInputStream;
@@ -18,6 +20,7 @@ import org.dcm4che3.data.VR;
 import org.dcm4che3.io.DicomEncodingOptions;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.StreamUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -130,6 +133,43 @@ public class DicomOutputStreamTest {
         testWriteDataset(out, UID.DeflatedExplicitVRLittleEndian);
     }
 
+    @Test
+    public void testWriteDatasetToChannel() throws IOException {
+        testWriteDatasetToChannel(UID.ExplicitVRLittleEndian);
+    }
+
+    @Test
+    public void testWriteDatasetToChannelBigEndian() throws IOException {
+        testWriteDatasetToChannel(UID.ExplicitVRBigEndianRetired);
+    }
+
+    @Test
+    public void testWriteDatasetToChannelDeflated() throws IOException {
+        testWriteDatasetToChannel(UID.DeflatedExplicitVRLittleEndian);
+    }
+
+    private void testWriteDatasetToChannel(String tsuid) throws IOException {
+        testWriteDataset(new DicomOutputStream(file), tsuid);
+        byte[] expected = readBytes();
+        DicomOutputStream out = new DicomOutputStream(
+                new FileOutputStream(file).getChannel(),
+                UID.ExplicitVRLittleEndian);
+        assertTrue(out.isChannelMode());
+        testWriteDataset(out, tsuid);
+        assertArrayEquals(expected, readBytes());
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] b = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            StreamUtils.readFully(in, b, 0, b.length);
+        } finally {
+            in.close();
+        }
+        return b;
+    }
+
     @Test
     public void testSerializeDataset() throws Exception {
         ObjectOutputStream out = new ObjectOutputStream(
@@ -44,6 +44,10 @@ import java.awt.image.DataBufferByte;
 import java.awt.image.DataBufferShort;
 import java.awt.image.DataBufferUShort;
 import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -51,6 +55,8 @@ import java.awt.image.Raster;
  */
 public abstract class LookupTable {
 
+    private static final int MIN_PIXELS_PER_BAND = 1 << 18;
+
     protected StoredValue inBits;
     protected int outBits;
     protected int offset;
@@ -64,6 +70,93 @@ public abstract class LookupTable {
     public abstract int length();
 
     public void lookup(Raster srcRaster, Raster destRaster) {
+        lookup(srcRaster, destRaster, 0,
+                srcRaster.getSampleModel().getHeight());
+    }
+
+    /**
+     * Look up the pixels of large rasters in bands of rows, which are
+     * processed in parallel by tasks submitted to <code>executor</code> and
+     * by the calling thread. Returns after all bands are processed.
+     *
+     * @param srcRaster source raster
+     * @param destRaster destination raster, may be the source raster
+     * @param executor executor for bands of rows or <code>null</code>
+     */
+    public void lookup(Raster srcRaster, Raster destRaster, Executor executor) {
+        SampleModel sm = srcRaster.getSampleModel();
+        lookup(srcRaster, destRaster, executor, executor != null
+                ? (int) Math.min(Runtime.getRuntime().availableProcessors(),
+                        (long) sm.getWidth() * sm.getHeight() / MIN_PIXELS_PER_BAND)
+                : 1);
+    }
+
+    /**
+     * Look up the pixels in the specified number of bands of rows, which are
+     * processed in parallel by tasks submitted to <code>executor</code> and
+     * by the calling thread. Returns after all bands are processed.
+     *
+     * @param srcRaster source raster
+     * @param destRaster destination raster, may be the source raster
+     * @param executor executor for bands of rows
+     * @param bands number of bands
+     */
+    public void lookup(final Raster srcRaster, final Raster destRaster,
+            Executor executor, int bands) {
+        int h = srcRaster.getSampleModel().getHeight();
+        bands = Math.min(bands, h);
+        if (bands <= 1) {
+            lookup(srcRaster, destRaster, 0, h);
+            return;
+        }
+        final CountDownLatch done = new CountDownLatch(bands - 1);
+        final Throwable[] failure = new Throwable[1];
+        int y0 = 0;
+        for (int i = 1; i < bands; i++) {
+            final int y = y0;
+            final int y1 = (int) ((long) h * i / bands);
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        lookup(srcRaster, destRaster, y, y1);
+                    } catch (Throwable e) {
+                        synchronized (failure) {
+                            failure[0] = e;
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+            y0 = y1;
+        }
+        lookup(srcRaster, destRaster, y0, h);
+        boolean interrupted = false;
+        while (true) {
+            try {
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        synchronized (failure) {
+            if (failure[0] instanceof RuntimeException)
+                throw (RuntimeException) failure[0];
+            if (failure[0] instanceof Error)
+                throw (Error) failure[0];
+        }
+    }
+
+    private void lookup(Raster srcRaster, Raster destRaster, int y0, int y1) {
         ComponentSampleModel sm =
                 (ComponentSampleModel) srcRaster.getSampleModel();
         ComponentSampleModel destsm =
@@ -75,11 +168,11 @@ public abstract class LookupTable {
             switch (dest.getDataType()) {
             case DataBuffer.TYPE_BYTE:
                 lookup(sm, ((DataBufferByte) src).getData(),
-                        destsm, ((DataBufferByte) dest).getData());
+                        destsm, ((DataBufferByte) dest).getData(), y0, y1);
                 return;
             case DataBuffer.TYPE_USHORT:
                 lookup(sm, ((DataBufferByte) src).getData(),
-                        destsm, ((DataBufferUShort) dest).getData());
+                        destsm, ((DataBufferUShort) dest).getData(), y0, y1);
                 return;
             }
             break;
@@ -87,11 +180,11 @@ public abstract class LookupTable {
             switch (dest.getDataType()) {
             case DataBuffer.TYPE_BYTE:
                 lookup(sm, ((DataBufferUShort) src).getData(),
-                        destsm, ((DataBufferByte) dest).getData());
+                        destsm, ((DataBufferByte) dest).getData(), y0, y1);
                 return;
             case DataBuffer.TYPE_USHORT:
                 lookup(sm, ((DataBufferUShort) src).getData(),
-                        destsm, ((DataBufferUShort) dest).getData());
+                        destsm, ((DataBufferUShort) dest).getData(), y0, y1);
                 return;
             }
             break;
@@ -99,11 +192,11 @@ public abstract class LookupTable {
             switch (dest.getDataType()) {
             case DataBuffer.TYPE_BYTE:
                 lookup(sm, ((DataBufferShort) src).getData(),
-                        destsm, ((DataBufferByte) dest).getData());
+                        destsm, ((DataBufferByte) dest).getData(), y0, y1);
                 return;
             case DataBuffer.TYPE_USHORT:
                 lookup(sm, ((DataBufferShort) src).getData(),
-                        destsm, ((DataBufferUShort) dest).getData());
+                        destsm, ((DataBufferUShort) dest).getData(), y0, y1);
                 return;
             }
             break;
@@ -115,42 +208,42 @@ public abstract class LookupTable {
    }
 
     private void lookup(ComponentSampleModel sm, byte[] src,
-            ComponentSampleModel destsm, byte[] dest) {
+            ComponentSampleModel destsm, byte[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
     private void lookup(ComponentSampleModel sm, short[] src,
-            ComponentSampleModel destsm, byte[] dest) {
+            ComponentSampleModel destsm, byte[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
     private void lookup(ComponentSampleModel sm, byte[] src,
-            ComponentSampleModel destsm, short[] dest) {
+            ComponentSampleModel destsm, short[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
     private void lookup(ComponentSampleModel sm, short[] src,
-            ComponentSampleModel destsm, short[] dest) {
+            ComponentSampleModel destsm, short[] dest,
+            int y0, int y1) {
         int w = sm.getWidth();
-        int h = sm.getHeight();
         int stride = sm.getScanlineStride();
         int destStride = destsm.getScanlineStride();
-        for (int y = 0; y < h; y++)
+        for (int y = y0; y < y1; y++)
             lookup(src, y * stride, dest, y * destStride, w);
     }
 
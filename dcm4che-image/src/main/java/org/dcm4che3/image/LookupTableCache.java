@@ -0,0 +1,244 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.image;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+
+/**
+ * LRU cache of combined Modality, VOI and Presentation LUTs created by
+ * {@link LookupTableFactory#createLUT(int, LookupTableCache)}, which may be
+ * shared by several readers. Cached LUTs are only used to look up pixel
+ * values and must not be modified.
+ *
+ * @author agent <agent@local>
+ */
+public class LookupTableCache {
+
+    public static final int DEF_MAX_ENTRIES = 64;
+
+    private final LinkedHashMap<Key, LookupTable> map =
+            new LinkedHashMap<Key, LookupTable>(16, 0.75f, true) {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, LookupTable> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    private int maxEntries;
+
+    private long hitCount;
+
+    private long missCount;
+
+    public LookupTableCache() {
+        this(DEF_MAX_ENTRIES);
+    }
+
+    public LookupTableCache(int maxEntries) {
+        setMaxEntries(maxEntries);
+    }
+
+    public synchronized int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("maxEntries: " + maxEntries);
+        this.maxEntries = maxEntries;
+    }
+
+    public synchronized int size() {
+        return map.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized void clear() {
+        map.clear();
+    }
+
+    synchronized LookupTable get(Key key) {
+        LookupTable lut = map.get(key);
+        if (lut != null)
+            hitCount++;
+        else
+            missCount++;
+        return lut;
+    }
+
+    synchronized void put(Key key, LookupTable lut) {
+        map.put(key, lut);
+    }
+
+    static final class Key {
+        private final int minValue;
+        private final int maxValue;
+        private final float rescaleSlope;
+        private final float rescaleIntercept;
+        private final LUTData modalityLUT;
+        private final float windowCenter;
+        private final float windowWidth;
+        private final LUTData voiLUT;
+        private final LUTData presentationLUT;
+        private final boolean inverse;
+        private final int outBits;
+        private final int hash;
+
+        Key(StoredValue storedValue, float rescaleSlope, float rescaleIntercept,
+                Attributes modalityLUT, float windowCenter, float windowWidth,
+                Attributes voiLUT, Attributes presentationLUT, boolean inverse,
+                int outBits) {
+            this.minValue = storedValue.minValue();
+            this.maxValue = storedValue.maxValue();
+            this.rescaleSlope = rescaleSlope;
+            this.rescaleIntercept = rescaleIntercept;
+            this.modalityLUT = LUTData.valueOf(modalityLUT);
+            this.windowCenter = windowCenter;
+            this.windowWidth = windowWidth;
+            this.voiLUT = LUTData.valueOf(voiLUT);
+            this.presentationLUT = LUTData.valueOf(presentationLUT);
+            this.inverse = inverse;
+            this.outBits = outBits;
+            int h = minValue;
+            h = 31 * h + maxValue;
+            h = 31 * h + Float.floatToIntBits(rescaleSlope);
+            h = 31 * h + Float.floatToIntBits(rescaleIntercept);
+            h = 31 * h + hashCode(this.modalityLUT);
+            h = 31 * h + Float.floatToIntBits(windowCenter);
+            h = 31 * h + Float.floatToIntBits(windowWidth);
+            h = 31 * h + hashCode(this.voiLUT);
+            h = 31 * h + hashCode(this.presentationLUT);
+            h = 31 * h + (inverse ? 1 : 0);
+            this.hash = 31 * h + outBits;
+        }
+
+        private static int hashCode(LUTData lut) {
+            return lut != null ? lut.hash : 0;
+        }
+
+        private static boolean equals(LUTData a, LUTData b) {
+            return a == null ? b == null : a.equals(b);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return hash == other.hash
+                    && minValue == other.minValue
+                    && maxValue == other.maxValue
+                    && Float.floatToIntBits(rescaleSlope)
+                        == Float.floatToIntBits(other.rescaleSlope)
+                    && Float.floatToIntBits(rescaleIntercept)
+                        == Float.floatToIntBits(other.rescaleIntercept)
+                    && Float.floatToIntBits(windowCenter)
+                        == Float.floatToIntBits(other.windowCenter)
+                    && Float.floatToIntBits(windowWidth)
+                        == Float.floatToIntBits(other.windowWidth)
+                    && inverse == other.inverse
+                    && outBits == other.outBits
+                    && equals(modalityLUT, other.modalityLUT)
+                    && equals(voiLUT, other.voiLUT)
+                    && equals(presentationLUT, other.presentationLUT);
+        }
+    }
+
+    private static final class LUTData {
+        private final int[] desc;
+        private final byte[] data;
+        private final boolean bigEndian;
+        private final int hash;
+
+        LUTData(int[] desc, byte[] data, boolean bigEndian) {
+            this.desc = desc;
+            this.data = data;
+            this.bigEndian = bigEndian;
+            this.hash = (Arrays.hashCode(desc) * 31 + Arrays.hashCode(data)) * 31
+                    + (bigEndian ? 1 : 0);
+        }
+
+        static LUTData valueOf(Attributes attrs) {
+            return attrs != null
+                    ? new LUTData(attrs.getInts(Tag.LUTDescriptor),
+                            attrs.getSafeBytes(Tag.LUTData), attrs.bigEndian())
+                    : null;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof LUTData))
+                return false;
+            LUTData other = (LUTData) obj;
+            return hash == other.hash
+                    && bigEndian == other.bigEndian
+                    && Arrays.equals(desc, other.desc)
+                    && Arrays.equals(data, other.data);
+        }
+    }
+}
@@ -58,12 +58,12 @@ public class LookupTableFactory {
     private final StoredValue storedValue;
     private float rescaleSlope = 1;
     private float rescaleIntercept = 0;
-    private LookupTable modalityLUT;
+    private Attributes modalityLUT;
     private float windowCenter;
     private float windowWidth;
     private String voiLUTFunction; // not yet implemented
-    private LookupTable voiLUT;
-    private LookupTable presentationLUT;
+    private Attributes voiLUT;
+    private Attributes presentationLUT;
     private boolean inverse;
 
     public LookupTableFactory(StoredValue storedValue) {
@@ -73,20 +73,13 @@ public class LookupTableFactory {
     public void setModalityLUT(Attributes attrs) {
         rescaleIntercept = attrs.getFloat(Tag.RescaleIntercept, 0);
         rescaleSlope = attrs.getFloat(Tag.RescaleSlope, 1);
-        modalityLUT = createLUT(storedValue,
-                attrs.getNestedDataset(Tag.ModalityLUTSequence));
+        modalityLUT = attrs.getNestedDataset(Tag.ModalityLUTSequence);
     }
 
     public void setPresentationLUT(Attributes attrs) {
         Attributes pLUT = attrs.getNestedDataset(Tag.PresentationLUTSequence);
         if (pLUT != null) {
-            int[] desc = pLUT.getInts(Tag.LUTDescriptor);
-            if (desc != null && desc.length == 3) {
-                int len = desc[0] == 0 ? 0x10000 : desc[0];
-                presentationLUT = createLUT(new StoredValue.Unsigned(log2(len)), 
-                        resetOffset(desc), 
-                        pLUT.getSafeBytes(Tag.LUTData), pLUT.bigEndian());
-            }
+            presentationLUT = pLUT;
         } else {
             String pShape = attrs.getString(Tag.PresentationLUTShape);
             inverse = (pShape != null 
@@ -96,6 +89,20 @@ public class LookupTableFactory {
         }
     }
 
+    private LookupTable createPresentationLUT(Attributes pLUT) {
+        if (pLUT == null)
+            return null;
+
+        int[] desc = pLUT.getInts(Tag.LUTDescriptor);
+        if (desc == null || desc.length != 3)
+            return null;
+
+        int len = desc[0] == 0 ? 0x10000 : desc[0];
+        return createLUT(new StoredValue.Unsigned(log2(len)), 
+                resetOffset(desc), 
+                pLUT.getSafeBytes(Tag.LUTData), pLUT.bigEndian());
+    }
+
     private int[] resetOffset(int[] desc) {
         if (desc[1] == 0)
             return desc;
@@ -133,10 +140,7 @@ public class LookupTableFactory {
             }
         }
         if (vLUT != null)
-            voiLUT = createLUT(modalityLUT != null
-                          ? new StoredValue.Unsigned(modalityLUT.outBits)
-                          : storedValue,
-                      vLUT);
+            voiLUT = vLUT;
     }
 
     private LookupTable createLUT(StoredValue inBits, Attributes attrs) {
@@ -197,10 +201,43 @@ public class LookupTableFactory {
         return bs;
     }
 
+    /**
+     * Returns combined Modality, VOI and Presentation LUT from
+     * <code>cache</code>, or creates and adds it to the cache, if no LUT
+     * was created from equal parameters before. The returned LUT is shared
+     * and must not be modified.
+     *
+     * @param outBits bits of output values
+     * @param cache cache of LUTs or <code>null</code>
+     * @return combined LUT
+     */
+    public LookupTable createLUT(int outBits, LookupTableCache cache) {
+        if (cache == null)
+            return createLUT(outBits);
+
+        LookupTableCache.Key key = new LookupTableCache.Key(storedValue,
+                rescaleSlope, rescaleIntercept, modalityLUT,
+                windowCenter, windowWidth, voiLUT,
+                presentationLUT, inverse, outBits);
+        LookupTable lut = cache.get(key);
+        if (lut == null) {
+            lut = createLUT(outBits);
+            cache.put(key, lut);
+        }
+        return lut;
+    }
+
     public LookupTable createLUT(int outBits) {
-        LookupTable lut = combineModalityVOILUT(presentationLUT != null
-                ? log2(presentationLUT.length())
-                : outBits);
+        LookupTable modalityLUT = createLUT(storedValue, this.modalityLUT);
+        LookupTable voiLUT = createLUT(modalityLUT != null
+                    ? new StoredValue.Unsigned(modalityLUT.outBits)
+                    : storedValue,
+                this.voiLUT);
+        LookupTable presentationLUT = createPresentationLUT(this.presentationLUT);
+        LookupTable lut = combineModalityVOILUT(modalityLUT, voiLUT,
+                presentationLUT != null
+                        ? log2(presentationLUT.length())
+                        : outBits);
         if (presentationLUT != null) {
             lut = lut.combine(presentationLUT.adjustOutBits(outBits));
         } else if (inverse)
@@ -215,11 +252,11 @@ public class LookupTableFactory {
         return i-1;
     }
 
-    private LookupTable combineModalityVOILUT(int outBits) {
+    private LookupTable combineModalityVOILUT(LookupTable modalityLUT,
+            LookupTable voiLUT, int outBits) {
         float m = rescaleSlope;
         float b = rescaleIntercept;
-        LookupTable modalityLUT = this.modalityLUT;
-        LookupTable lut = this.voiLUT;
+        LookupTable lut = voiLUT;
         if (lut == null) {
             float c = windowCenter;
             float w = windowWidth;
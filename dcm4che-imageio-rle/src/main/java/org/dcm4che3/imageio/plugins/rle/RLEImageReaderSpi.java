@@ -65,7 +65,7 @@ public class RLEImageReaderSpi extends ImageReaderSpi {
                 entensions,  // suffixes
                 mimeType,  // MIMETypes
                 RLEImageReader.class.getName(), inputTypes,
-                null,  // writerSpiNames
+                new String[] { RLEImageWriterSpi.class.getName() },
                 false, // supportsStandardStreamMetadataFormat
                 null,  // nativeStreamMetadataFormatName
                 null,  // nativeStreamMetadataFormatClassName
@@ -0,0 +1,299 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.plugins.rle;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.spi.ImageWriterSpi;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Encodes images as DICOM RLE Lossless (PS3.5 Annex G), with one RLE
+ * segment per byte plane: one segment per band for 8 bit samples, and two
+ * segments - most significant byte first - for 16 bit single band samples.
+ * Each row is encoded separately. The samples are read directly from the
+ * {@link DataBuffer} of images with a {@link ComponentSampleModel}; the
+ * encoded segments are buffered in a fixed size buffer and the RLE header
+ * is written after the segments, by seeking back in the output stream.
+ *
+ * @author agent <agent@local>
+ */
+public class RLEImageWriter extends ImageWriter {
+
+    private static final String UNSUPPORTED_SAMPLE_MODEL =
+            "RLE Image Writer requires ComponentSampleModel, but was: ";
+    private static final String UNSUPPORTED_DATA_TYPE =
+            "Unsupported Data Type: ";
+    private static final String TOO_MANY_SEGMENTS =
+            "Number of RLE Segments exceeds 15: ";
+
+    private final int[] header = new int[16];
+
+    private final byte[] buf = new byte[8192];
+
+    private int bufLen;
+
+    private ImageOutputStream ios;
+
+    private long segmentLength;
+
+    protected RLEImageWriter(ImageWriterSpi originatingProvider) {
+        super(originatingProvider);
+    }
+
+    @Override
+    public void setOutput(Object output) {
+        super.setOutput(output);
+        ios = (ImageOutputStream) output;
+    }
+
+    @Override
+    public IIOMetadata getDefaultStreamMetadata(ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata getDefaultImageMetadata(ImageTypeSpecifier imageType,
+            ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertStreamMetadata(IIOMetadata inData,
+            ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public IIOMetadata convertImageMetadata(IIOMetadata inData,
+            ImageTypeSpecifier imageType, ImageWriteParam param) {
+        return null;
+    }
+
+    @Override
+    public boolean canWriteRasters() {
+        return true;
+    }
+
+    @Override
+    public void write(IIOMetadata streamMetadata, IIOImage image,
+            ImageWriteParam param) throws IOException {
+        if (ios == null)
+            throw new IllegalStateException("Output not set");
+
+        Raster raster;
+        if (image.hasRaster())
+            raster = image.getRaster();
+        else {
+            RenderedImage ri = image.getRenderedImage();
+            raster = ri instanceof BufferedImage
+                    ? ((BufferedImage) ri).getRaster()
+                    : ri.getData();
+        }
+        write(raster);
+    }
+
+    private void write(Raster raster) throws IOException {
+        SampleModel sm = raster.getSampleModel();
+        if (!(sm instanceof ComponentSampleModel))
+            throw new IllegalArgumentException(UNSUPPORTED_SAMPLE_MODEL + sm);
+
+        ComponentSampleModel csm = (ComponentSampleModel) sm;
+        DataBuffer db = raster.getDataBuffer();
+        int bands = csm.getNumBands();
+        int w = raster.getWidth();
+        int h = raster.getHeight();
+        int x0 = raster.getMinX() - raster.getSampleModelTranslateX();
+        int y0 = raster.getMinY() - raster.getSampleModelTranslateY();
+        int pixelStride = csm.getPixelStride();
+        int scanlineStride = csm.getScanlineStride();
+        int[] bankIndices = csm.getBankIndices();
+        int[] bandOffsets = csm.getBandOffsets();
+        int numSegments;
+        switch (db.getDataType()) {
+        case DataBuffer.TYPE_BYTE:
+            numSegments = bands;
+            break;
+        case DataBuffer.TYPE_USHORT:
+        case DataBuffer.TYPE_SHORT:
+            numSegments = bands * 2;
+            break;
+        default:
+            throw new IllegalArgumentException(
+                    UNSUPPORTED_DATA_TYPE + db.getDataType());
+        }
+        if (numSegments > 15)
+            throw new IllegalArgumentException(TOO_MANY_SEGMENTS + numSegments);
+
+        long headerPos = ios.getStreamPosition();
+        ios.write(new byte[64]);
+        header[0] = numSegments;
+        int seg = 0;
+        for (int band = 0; band < bands; band++) {
+            int off = db.getOffsets()[bankIndices[band]] + bandOffsets[band]
+                    + y0 * scanlineStride + x0 * pixelStride;
+            switch (db.getDataType()) {
+            case DataBuffer.TYPE_BYTE:
+                header[++seg] = startSegment(headerPos);
+                byte[] b = ((DataBufferByte) db).getData(bankIndices[band]);
+                for (int y = 0; y < h; y++)
+                    rle(b, off + y * scanlineStride, pixelStride, w);
+                endSegment();
+                break;
+            case DataBuffer.TYPE_USHORT:
+            case DataBuffer.TYPE_SHORT:
+                short[] s = db.getDataType() == DataBuffer.TYPE_USHORT
+                        ? ((DataBufferUShort) db).getData(bankIndices[band])
+                        : ((DataBufferShort) db).getData(bankIndices[band]);
+                for (int shift = 8; shift >= 0; shift -= 8) {
+                    header[++seg] = startSegment(headerPos);
+                    for (int y = 0; y < h; y++)
+                        rle(s, off + y * scanlineStride, pixelStride, w, shift);
+                    endSegment();
+                }
+                break;
+            }
+        }
+        while (++seg < header.length)
+            header[seg] = 0;
+        long endPos = ios.getStreamPosition();
+        ios.seek(headerPos);
+        for (int i = 0; i < header.length; i++)
+            writeIntLE(header[i]);
+        flushBuffer();
+        ios.seek(endPos);
+    }
+
+    private int startSegment(long headerPos) throws IOException {
+        segmentLength = 0;
+        return (int) (ios.getStreamPosition() - headerPos);
+    }
+
+    private void endSegment() throws IOException {
+        if ((segmentLength & 1) != 0)
+            write(0);
+        flushBuffer();
+    }
+
+    private void rle(byte[] data, int off, int stride, int n)
+            throws IOException {
+        int i = 0;
+        while (i < n) {
+            byte val = data[off + i * stride];
+            int run = 1;
+            while (run < 128 && i + run < n
+                    && data[off + (i + run) * stride] == val)
+                run++;
+            if (run > 1) {
+                write(1 - run);
+                write(val);
+                i += run;
+                continue;
+            }
+            int start = i++;
+            while (i < n && i - start < 128
+                    && (i + 1 == n
+                        || data[off + i * stride] != data[off + (i + 1) * stride]))
+                i++;
+            write(i - start - 1);
+            for (int j = start; j < i; j++)
+                write(data[off + j * stride]);
+        }
+    }
+
+    private void rle(short[] data, int off, int stride, int n, int shift)
+            throws IOException {
+        int i = 0;
+        while (i < n) {
+            int val = (data[off + i * stride] >> shift) & 0xff;
+            int run = 1;
+            while (run < 128 && i + run < n
+                    && ((data[off + (i + run) * stride] >> shift) & 0xff) == val)
+                run++;
+            if (run > 1) {
+                write(1 - run);
+                write(val);
+                i += run;
+                continue;
+            }
+            int start = i++;
+            while (i < n && i - start < 128
+                    && (i + 1 == n
+                        || ((data[off + i * stride] >> shift) & 0xff)
+                            != ((data[off + (i + 1) * stride] >> shift) & 0xff)))
+                i++;
+            write(i - start - 1);
+            for (int j = start; j < i; j++)
+                write(data[off + j * stride] >> shift);
+        }
+    }
+
+    private void write(int b) throws IOException {
+        if (bufLen == buf.length)
+            flushBuffer();
+        buf[bufLen++] = (byte) b;
+        segmentLength++;
+    }
+
+    private void writeIntLE(int val) throws IOException {
+        write(val);
+        write(val >> 8);
+        write(val >> 16);
+        write(val >> 24);
+    }
+
+    private void flushBuffer() throws IOException {
+        ios.write(buf, 0, bufLen);
+        bufLen = 0;
+    }
+}
@@ -94,6 +94,53 @@ class BufferedImageUtils {
         return offsets;
     }
 
+    public static BufferedImage createCompatibleImage(BufferedImage bi) {
+        ColorModel cm = bi.getColorModel();
+        return new BufferedImage(cm, bi.getRaster().createCompatibleWritableRaster(),
+                cm.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Copies the pixel data of <code>src</code> into <code>dest</code>, if
+     * <code>dest</code> is not <code>null</code> and has the same layout,
+     * or otherwise into a new image with the same color model.
+     */
+    public static BufferedImage copyOf(BufferedImage src, BufferedImage dest) {
+        WritableRaster raster = src.getRaster();
+        if (dest == null
+                || !dest.getRaster().getSampleModel().equals(raster.getSampleModel()))
+            dest = createCompatibleImage(src);
+        DataBuffer db = raster.getDataBuffer();
+        DataBuffer destdb = dest.getRaster().getDataBuffer();
+        if (db.getOffset() != 0 || destdb.getOffset() != 0) {
+            src.copyData(dest.getRaster());
+            return dest;
+        }
+        for (int bank = 0; bank < db.getNumBanks(); bank++) {
+            Object data;
+            Object destdata;
+            switch (db.getDataType()) {
+                case DataBuffer.TYPE_BYTE:
+                    data = ((DataBufferByte) db).getData(bank);
+                    destdata = ((DataBufferByte) destdb).getData(bank);
+                    break;
+                case DataBuffer.TYPE_USHORT:
+                    data = ((DataBufferUShort) db).getData(bank);
+                    destdata = ((DataBufferUShort) destdb).getData(bank);
+                    break;
+                case DataBuffer.TYPE_SHORT:
+                    data = ((DataBufferShort) db).getData(bank);
+                    destdata = ((DataBufferShort) destdb).getData(bank);
+                    break;
+                default:
+                    src.copyData(dest.getRaster());
+                    return dest;
+            }
+            System.arraycopy(data, 0, destdata, 0, db.getSize());
+        }
+        return dest;
+    }
+
     public static int sizeOf(BufferedImage bi) {
         WritableRaster raster = bi.getRaster();
         DataBuffer db = raster.getDataBuffer();
@@ -48,6 +48,9 @@ import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageReadParam;
@@ -97,6 +100,12 @@ public class Compressor extends Decompressor implements Closeable {
     private BufferedImage bi2;
 
     private ImageReadParam verifyParam;
+    private Executor executor;
+    private int maxFramesInFlight = Runtime.getRuntime().availableProcessors() * 2;
+    private ConcurrentFrameCompressor concurrentCompressor;
+    private CompressedFrame[] compressedFrames;
+    private int nextFrameToSubmit;
+    private final ArrayDeque<BufferedImage> freeImages = new ArrayDeque<BufferedImage>();
 
     public Compressor(Attributes dataset, String from) {
         super(dataset, from);
@@ -119,6 +128,41 @@ public class Compressor extends Decompressor implements Closeable {
         embeddedOverlays = Overlays.getEmbeddedOverlayGroupOffsets(dataset);
     }
 
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set executor for compressing frames of multi-frame images concurrently,
+     * with one image writer per running task. Frames are submitted ahead of
+     * the frame currently encoded, up to {@link #getMaxFramesInFlight()}.
+     * By default, or if <code>null</code>, each frame is compressed by the
+     * thread encoding it. Must be set before {@link #compress}.
+     *
+     * @param executor executor for compressing frames, or <code>null</code>
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public int getMaxFramesInFlight() {
+        return maxFramesInFlight;
+    }
+
+    /**
+     * Set maximal number of frames submitted to the executor ahead of the
+     * frame currently encoded, which limits the memory used by uncompressed
+     * frames. Defaults to twice the number of available processors.
+     *
+     * @param maxFramesInFlight maximal number of frames in flight
+     */
+    public void setMaxFramesInFlight(int maxFramesInFlight) {
+        if (maxFramesInFlight <= 0)
+            throw new IllegalArgumentException(
+                    "maxFramesInFlight: " + maxFramesInFlight);
+        this.maxFramesInFlight = maxFramesInFlight;
+    }
+
     public boolean compress(String compressTsuid, Property... params)
             throws IOException {
 
@@ -157,9 +201,9 @@ public class Compressor extends Decompressor implements Closeable {
             }
         }
 
+        ImageReaderFactory.ImageReaderParam readerParam = null;
         if (maxPixelValueError >= 0) {
-            ImageReaderFactory.ImageReaderParam readerParam =
-                    ImageReaderFactory.getImageReaderParam(compressTsuid);
+            readerParam = ImageReaderFactory.getImageReaderParam(compressTsuid);
             if (readerParam == null)
                 throw new UnsupportedOperationException(
                         "Unsupported Transfer Syntax: " + compressTsuid);
@@ -177,12 +221,21 @@ public class Compressor extends Decompressor implements Closeable {
         Fragments compressedPixeldata =
                 dataset.newFragments(Tag.PixelData, VR.OB, frames + 1);
         compressedPixeldata.add(Value.NULL);
+        if (executor != null) {
+            concurrentCompressor = new ConcurrentFrameCompressor(param,
+                    compressParam, readerParam, maxPixelValueError,
+                    avgPixelValueBlockSize, executor);
+        }
+        CompressedFrame[] frameList = new CompressedFrame[frames];
         for (int i = 0; i < frames; i++) {
-            CompressedFrame frame = new CompressedFrame(i);
-            if (embeddedOverlays.length != 0)
-                frame.compress();
-            compressedPixeldata.add(frame);
+            frameList[i] = new CompressedFrame(i);
+            compressedPixeldata.add(frameList[i]);
         }
+        if (concurrentCompressor != null)
+            compressedFrames = frameList;
+        if (embeddedOverlays.length != 0)
+            for (CompressedFrame frame : frameList)
+                frame.compress();
         for (int gg0000 : embeddedOverlays) {
             dataset.setInt(Tag.OverlayBitsAllocated | gg0000, VR.US, 1);
             dataset.setInt(Tag.OverlayBitPosition | gg0000, VR.US, 0);
@@ -217,6 +270,14 @@ public class Compressor extends Decompressor implements Closeable {
         if (verifier != null)
             verifier.dispose();
 
+        if (compressedFrames != null)
+            for (CompressedFrame frame : compressedFrames)
+                if (frame.future != null)
+                    frame.future.cancel(true);
+
+        if (concurrentCompressor != null)
+            concurrentCompressor.dispose();
+
         compressor = null;
         verifier = null;
     }
@@ -227,6 +288,8 @@ public class Compressor extends Decompressor implements Closeable {
         private int streamLength;
         private CacheOutputStream cacheout = new CacheOutputStream();
         private MemoryCacheImageOutputStream cache;
+        private Future<ConcurrentFrameCompressor.CompressedFrame> future;
+        private ConcurrentFrameCompressor.CompressedFrame compressed;
 
         public CompressedFrame(int frameIndex) throws IOException {
             this.frameIndex = frameIndex;
@@ -266,6 +329,10 @@ public class Compressor extends Decompressor implements Closeable {
         
         private void writeTo(OutputStream out) throws IOException {
             compress();
+            if (compressed != null) {
+                compressed.writeTo(out);
+                return;
+            }
             cacheout.set(out);
             long start = System.currentTimeMillis();
             cache.close();
@@ -276,12 +343,17 @@ public class Compressor extends Decompressor implements Closeable {
         }
 
         private void compress() throws IOException {
-            if (cache != null)
+            if (cache != null || compressed != null)
                 return;
 
             if (ex != null)
                 throw ex;
 
+            if (concurrentCompressor != null) {
+                compressConcurrently();
+                return;
+            }
+
             try {
                 BufferedImage bi = Compressor.this.readFrame(frameIndex);
                 Compressor.this.extractEmbeddedOverlays(frameIndex, bi);
@@ -316,6 +388,33 @@ public class Compressor extends Decompressor implements Closeable {
             }
         }
 
+        private void compressConcurrently() throws IOException {
+            try {
+                submitFrames(frameIndex + maxFramesInFlight);
+                compressed = ConcurrentFrameCompressor.get(future);
+                future = null;
+                freeImages.add(compressed.image);
+                streamLength = compressed.streamLength;
+            } catch (IOException ex) {
+                Compressor.this.ex = ex;
+                throw ex;
+            }
+        }
+
+    }
+
+    private void submitFrames(int end) throws IOException {
+        end = Math.min(end, compressedFrames.length);
+        for (; nextFrameToSubmit < end; nextFrameToSubmit++) {
+            BufferedImage bi = readFrame(nextFrameToSubmit);
+            extractEmbeddedOverlays(nextFrameToSubmit, bi);
+            if (imageParams.getBitsStored() < imageParams.getBitsAllocated())
+                BufferedImageUtils.nullifyUnusedBits(imageParams.getBitsStored(),
+                        bi.getRaster().getDataBuffer());
+            compressedFrames[nextFrameToSubmit].future =
+                    concurrentCompressor.submit(nextFrameToSubmit,
+                            BufferedImageUtils.copyOf(bi, freeImages.poll()));
+        }
     }
 
     private static class CacheOutputStream extends FilterOutputStream {
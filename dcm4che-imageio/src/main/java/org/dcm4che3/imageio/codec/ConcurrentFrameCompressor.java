@@ -0,0 +1,271 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import java.awt.image.BufferedImage;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import org.dcm4che3.imageio.codec.jpeg.PatchJPEGLSImageOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compresses frames concurrently by tasks of a given {@link Executor}. Each
+ * running task uses its own {@link ImageWriter} - and {@link ImageReader}
+ * for verification - instance, taken from a pool of idle instances. The
+ * {@link ImageWriteParam} is shared read-only by all writers. Submitted
+ * frames must not be modified until their compression completed; callers
+ * are responsible to limit the number of frames in flight.
+ *
+ * @author agent <agent@local>
+ */
+class ConcurrentFrameCompressor {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(ConcurrentFrameCompressor.class);
+
+    private final ImageWriterFactory.ImageWriterParam writerParam;
+    private final ImageWriteParam compressParam;
+    private final ImageReaderFactory.ImageReaderParam verifierParam;
+    private final int maxPixelValueError;
+    private final int avgPixelValueBlockSize;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Codec> idle =
+            new ConcurrentLinkedQueue<Codec>();
+    private volatile boolean disposed;
+
+    ConcurrentFrameCompressor(ImageWriterFactory.ImageWriterParam writerParam,
+            ImageWriteParam compressParam,
+            ImageReaderFactory.ImageReaderParam verifierParam,
+            int maxPixelValueError, int avgPixelValueBlockSize,
+            Executor executor) {
+        this.writerParam = writerParam;
+        this.compressParam = compressParam;
+        this.verifierParam = verifierParam;
+        this.maxPixelValueError = maxPixelValueError;
+        this.avgPixelValueBlockSize = avgPixelValueBlockSize;
+        this.executor = executor;
+    }
+
+    public Future<CompressedFrame> submit(final int frameIndex,
+            final BufferedImage bi) {
+        FutureTask<CompressedFrame> task = new FutureTask<CompressedFrame>(
+                new Callable<CompressedFrame>() {
+
+                    @Override
+                    public CompressedFrame call() throws Exception {
+                        Codec codec = idle.poll();
+                        if (codec == null)
+                            codec = new Codec();
+                        try {
+                            return codec.compress(frameIndex, bi);
+                        } finally {
+                            release(codec);
+                        }
+                    }
+                });
+        executor.execute(task);
+        return task;
+    }
+
+    public static CompressedFrame get(Future<CompressedFrame> future)
+            throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            throw new InterruptedIOException();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    public void dispose() {
+        disposed = true;
+        Codec codec;
+        while ((codec = idle.poll()) != null)
+            codec.dispose();
+    }
+
+    private void release(Codec codec) {
+        idle.offer(codec);
+        if (disposed && idle.remove(codec))
+            codec.dispose();
+    }
+
+    /**
+     * Compressed frame, kept in memory until it is written by
+     * {@link #writeTo(OutputStream)}.
+     */
+    static final class CompressedFrame {
+
+        final int frameIndex;
+        final BufferedImage image;
+        final int streamLength;
+        private final CacheOutputStream cacheout;
+        private final MemoryCacheImageOutputStream cache;
+
+        CompressedFrame(int frameIndex, BufferedImage image, int streamLength,
+                CacheOutputStream cacheout, MemoryCacheImageOutputStream cache) {
+            this.frameIndex = frameIndex;
+            this.image = image;
+            this.streamLength = streamLength;
+            this.cacheout = cacheout;
+            this.cache = cache;
+        }
+
+        int getEncodedLength() {
+            return (streamLength + 1) & ~1;
+        }
+
+        void writeTo(OutputStream out) throws IOException {
+            cacheout.set(out);
+            long start = System.currentTimeMillis();
+            cache.close();
+            if ((streamLength & 1) != 0)
+                out.write(0);
+            long end = System.currentTimeMillis();
+            LOG.debug("Flushed frame #{} from memory in {} ms",
+                    frameIndex + 1, end - start);
+        }
+    }
+
+    private final class Codec {
+
+        final ImageWriter compressor =
+                ImageWriterFactory.getImageWriter(writerParam);
+        final ImageReader verifier = verifierParam != null
+                ? ImageReaderFactory.getImageReader(verifierParam)
+                : null;
+        final ImageReadParam verifyParam = verifier != null
+                ? verifier.getDefaultReadParam()
+                : null;
+        BufferedImage bi2;
+
+        CompressedFrame compress(int frameIndex, BufferedImage bi)
+                throws IOException {
+            CacheOutputStream cacheout = new CacheOutputStream();
+            MemoryCacheImageOutputStream cache =
+                    new MemoryCacheImageOutputStream(cacheout) {
+
+                @Override
+                public void flush() throws IOException {
+                    // defer flush to CompressedFrame.writeTo()
+                    LOG.debug("Ignore invoke of MemoryCacheImageOutputStream.flush()");
+                }
+            };
+            compressor.setOutput(writerParam.patchJPEGLS != null
+                    ? new PatchJPEGLSImageOutputStream(cache,
+                            writerParam.patchJPEGLS)
+                    : cache);
+            long start = System.currentTimeMillis();
+            compressor.write(null, new IIOImage(bi, null, null), compressParam);
+            long end = System.currentTimeMillis();
+            int streamLength = (int) cache.getStreamPosition();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Compressed frame #{} {}:1 in {} ms",
+                        frameIndex + 1,
+                        (float) BufferedImageUtils.sizeOf(bi) / streamLength,
+                        end - start);
+            verify(cache, frameIndex, bi);
+            return new CompressedFrame(frameIndex, bi, streamLength,
+                    cacheout, cache);
+        }
+
+        private void verify(MemoryCacheImageOutputStream cache,
+                int frameIndex, BufferedImage bi) throws IOException {
+            if (verifier == null)
+                return;
+
+            cache.seek(0);
+            verifier.setInput(cache);
+            verifyParam.setDestination(bi2);
+            long start = System.currentTimeMillis();
+            bi2 = verifier.read(0, verifyParam);
+            int maxDiff = BufferedImageUtils.maxDiff(bi.getRaster(),
+                    bi2.getRaster(), avgPixelValueBlockSize);
+            long end = System.currentTimeMillis();
+            if (LOG.isDebugEnabled())
+                LOG.debug("Verified compressed frame #{} in {} ms - max pixel value error: {}",
+                        frameIndex + 1, end - start, maxDiff);
+            if (maxDiff > maxPixelValueError)
+                throw new CompressionVerificationException(maxDiff);
+        }
+
+        void dispose() {
+            compressor.dispose();
+            if (verifier != null)
+                verifier.dispose();
+        }
+    }
+
+    static final class CacheOutputStream extends FilterOutputStream {
+
+        public CacheOutputStream() {
+            super(null);
+        }
+
+        public void set(OutputStream out) {
+            this.out = out;
+        }
+    }
+}
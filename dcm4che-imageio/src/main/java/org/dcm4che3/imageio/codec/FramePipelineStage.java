@@ -0,0 +1,150 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.codec;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+
+/**
+ * Stage of a frame pipeline, which processes frames put into a bounded
+ * queue by a task run by an {@link Executor}, in the order they were put.
+ * If processing of a frame fails, subsequent frames are discarded and the
+ * failure is thrown by the next invocation of {@link #put} or {@link #finish}.
+ *
+ * @author agent <agent@local>
+ */
+abstract class FramePipelineStage<T> implements Runnable {
+
+    private static final Object END = new Object();
+
+    private final BlockingQueue<Object> queue;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile Throwable failure;
+
+    FramePipelineStage(int capacity) {
+        this.queue = new ArrayBlockingQueue<Object>(capacity);
+    }
+
+    void start(Executor executor) {
+        executor.execute(this);
+    }
+
+    void put(T frame) throws IOException {
+        checkFailure();
+        try {
+            queue.put(frame);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    /**
+     * Waits until all frames put before are processed and the task is
+     * terminated. Must be invoked once for each started stage, also if
+     * putting frames failed.
+     */
+    void finish() throws IOException {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(END);
+                done.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        checkFailure();
+    }
+
+    protected abstract void process(T frame) throws IOException;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+        try {
+            Object frame;
+            while ((frame = take()) != END) {
+                if (failure == null)
+                    try {
+                        process((T) frame);
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+            }
+        } finally {
+            done.countDown();
+        }
+    }
+
+    private Object take() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Throwable e = failure;
+        if (e == null)
+            return;
+        if (e instanceof IOException)
+            throw (IOException) e;
+        if (e instanceof RuntimeException)
+            throw (RuntimeException) e;
+        if (e instanceof Error)
+            throw (Error) e;
+        throw new IOException(e);
+    }
+}
@@ -58,6 +58,11 @@ import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.MemoryCacheImageOutputStream;
 import java.awt.image.*;
 import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -78,11 +83,52 @@ public class StreamCompressor extends StreamDecompressor {
     private ImageParams imageParams;
     private BufferedImage bi2;
     private int frameIndex;
+    private Executor executor;
+    private int maxFramesInFlight = Runtime.getRuntime().availableProcessors() * 2;
+    private ConcurrentFrameCompressor concurrentCompressor;
+    private final ArrayDeque<Future<ConcurrentFrameCompressor.CompressedFrame>> framesInFlight =
+            new ArrayDeque<Future<ConcurrentFrameCompressor.CompressedFrame>>();
+    private final ArrayDeque<BufferedImage> freeImages = new ArrayDeque<BufferedImage>();
 
     public StreamCompressor(DicomInputStream in, String inTransferSyntaxUID, DicomOutputStream out) {
         super(in, inTransferSyntaxUID, out);
     }
 
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set executor for compressing frames of multi-frame images concurrently,
+     * with one image writer per running task. Compressed frames are written
+     * in the order of the frames. By default, or if <code>null</code>,
+     * frames are compressed one by one by the calling thread.
+     *
+     * @param executor executor for compressing frames, or <code>null</code>
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    public int getMaxFramesInFlight() {
+        return maxFramesInFlight;
+    }
+
+    /**
+     * Set maximal number of frames submitted to the executor but not yet
+     * written, which limits the memory used by uncompressed and compressed
+     * frames kept in memory. Defaults to twice the number of available
+     * processors.
+     *
+     * @param maxFramesInFlight maximal number of frames in flight
+     */
+    public void setMaxFramesInFlight(int maxFramesInFlight) {
+        if (maxFramesInFlight <= 0)
+            throw new IllegalArgumentException(
+                    "maxFramesInFlight: " + maxFramesInFlight);
+        this.maxFramesInFlight = maxFramesInFlight;
+    }
+
     public boolean compress(String compressTsuid, Property... params) throws IOException {
         if (compressTsuid == null)
             throw new NullPointerException("compressTsuid");
@@ -116,9 +162,9 @@ public class StreamCompressor extends StreamDecompressor {
             }
         }
 
+        ImageReaderFactory.ImageReaderParam readerParam = null;
         if (maxPixelValueError >= 0) {
-            ImageReaderFactory.ImageReaderParam readerParam =
-                    ImageReaderFactory.getImageReaderParam(compressTsuid);
+            readerParam = ImageReaderFactory.getImageReaderParam(compressTsuid);
             if (readerParam == null)
                 throw new UnsupportedOperationException(
                         "Unsupported Transfer Syntax: " + compressTsuid);
@@ -127,6 +173,10 @@ public class StreamCompressor extends StreamDecompressor {
             this.verifyParam = verifier.getDefaultReadParam();
             LOG.debug("Verifier: {}", verifier.getClass().getName());
         }
+        if (executor != null)
+            this.concurrentCompressor = new ConcurrentFrameCompressor(param,
+                    compressParam, readerParam, maxPixelValueError,
+                    avgPixelValueBlockSize, executor);
         decompress();
         return pixeldataProcessed;
     }
@@ -138,6 +188,11 @@ public class StreamCompressor extends StreamDecompressor {
             compressor.dispose();
         if (verifier != null)
             verifier.dispose();
+        Future<ConcurrentFrameCompressor.CompressedFrame> future;
+        while ((future = framesInFlight.poll()) != null)
+            future.cancel(true);
+        if (concurrentCompressor != null)
+            concurrentCompressor.dispose();
     }
 
     private Property[] cat(Property[] a, Property[] b) {
@@ -189,16 +244,40 @@ public class StreamCompressor extends StreamDecompressor {
             if (dataBuffer.getDataType() != DataBuffer.TYPE_BYTE)
                 buf = new byte[imageParams.getFrameLength()];
 
-            for (int i = 0; i < imageParams.getFrames(); i++) {
-                readFrame(dis, dataBuffer, buf);
-                writeFrame(bi);
-            }
+            if (pipelineExecutor != null && imageParams.getFrames() > 1)
+                readFramesPipelined(dis, imageParams.getFrames(), bi, buf);
+            else
+                for (int i = 0; i < imageParams.getFrames(); i++) {
+                    readFrame(dis, dataBuffer, buf);
+                    writeFrame(bi);
+                }
             dis.skipFully(padding);
         }
+        while (!framesInFlight.isEmpty())
+            writeCompressedFrame(framesInFlight.remove());
         out.writeHeader(Tag.SequenceDelimitationItem, null, 0);
         pixeldataProcessed = true;
     }
 
+    private void readFramesPipelined(DicomInputStream dis, int frames,
+            BufferedImage template, byte[] buf) throws IOException {
+        Queue<BufferedImage> pooledImages = new ConcurrentLinkedQueue<BufferedImage>();
+        pooledImages.offer(template);
+        FramePipelineStage<BufferedImage> writeStage = newWriteStage(pooledImages);
+        writeStage.start(pipelineExecutor);
+        try {
+            for (int i = 0; i < frames; i++) {
+                BufferedImage bi = pooledImages.poll();
+                if (bi == null)
+                    bi = BufferedImageUtils.createCompatibleImage(template);
+                readFrame(dis, bi.getRaster().getDataBuffer(), buf);
+                writeStage.put(bi);
+            }
+        } finally {
+            writeStage.finish();
+        }
+    }
+
    private void readFrame(DicomInputStream dis, DataBuffer db, byte[] buf) throws IOException {
         switch (db.getDataType()) {
         case DataBuffer.TYPE_BYTE:
@@ -226,6 +305,14 @@ public class StreamCompressor extends StreamDecompressor {
         if (imageParams.getBitsStored() < imageParams.getBitsAllocated())
             BufferedImageUtils.nullifyUnusedBits(imageParams.getBitsStored(), bi.getRaster().getDataBuffer());
 
+        if (concurrentCompressor != null) {
+            if (framesInFlight.size() >= maxFramesInFlight)
+                writeCompressedFrame(framesInFlight.remove());
+            framesInFlight.add(concurrentCompressor.submit(frameIndex++,
+                    BufferedImageUtils.copyOf(bi, freeImages.poll())));
+            return;
+        }
+
         MemoryCacheImageOutputStream compressedFrame = new MemoryCacheImageOutputStream(out) {
 
             @Override
@@ -255,6 +342,14 @@ public class StreamCompressor extends StreamDecompressor {
         frameIndex++;
     }
 
+    private void writeCompressedFrame(Future<ConcurrentFrameCompressor.CompressedFrame> future)
+            throws IOException {
+        ConcurrentFrameCompressor.CompressedFrame frame = ConcurrentFrameCompressor.get(future);
+        freeImages.add(frame.image);
+        out.writeHeader(Tag.Item, null, frame.getEncodedLength());
+        frame.writeTo(out);
+    }
+
     private void verify(ImageInputStream iis, BufferedImage bi) throws IOException {
         if (verifier == null)
             return;
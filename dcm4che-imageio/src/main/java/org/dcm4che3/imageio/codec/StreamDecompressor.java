@@ -48,14 +48,21 @@ import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomOutputStream;
 import org.dcm4che3.util.ByteUtils;
 import org.dcm4che3.util.StreamUtils;
+import org.dcm4che3.util.TagUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.MemoryCacheImageInputStream;
 import java.awt.image.*;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -74,6 +81,8 @@ public class StreamDecompressor implements CoerceAttributes {
     protected PatchJPEGLS patchJPEGLS;
     protected boolean pixeldataProcessed;
     protected CoerceAttributes coerceAttributes = this;
+    protected Executor pipelineExecutor;
+    protected int pipelineDepth = 4;
 
     public StreamDecompressor(DicomInputStream in, String tsuid, DicomOutputStream out) {
         this.in = in;
@@ -104,6 +113,43 @@ public class StreamDecompressor implements CoerceAttributes {
         this.coerceAttributes = coerceAttributes;
     }
 
+    public Executor getPipelineExecutor() {
+        return pipelineExecutor;
+    }
+
+    /**
+     * Set executor for transcoding frames of multi-frame images in a
+     * pipeline: while the calling thread reads the next frames, one task
+     * decodes compressed frames and another task encodes and writes the
+     * frames, in the order of the frames. The executor has to provide threads
+     * for running both tasks concurrently with other tasks submitted to it.
+     * By default, or if <code>null</code>, frames are read, decoded, encoded
+     * and written one after the other by the calling thread.
+     *
+     * @param pipelineExecutor executor for pipeline stages, or <code>null</code>
+     */
+    public void setPipelineExecutor(Executor pipelineExecutor) {
+        this.pipelineExecutor = pipelineExecutor;
+    }
+
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
+
+    /**
+     * Set maximal number of frames queued between two stages of the
+     * pipeline, which limits the memory used by frames kept in memory.
+     * Defaults to 4.
+     *
+     * @param pipelineDepth maximal number of queued frames
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth <= 0)
+            throw new IllegalArgumentException(
+                    "pipelineDepth: " + pipelineDepth);
+        this.pipelineDepth = pipelineDepth;
+    }
+
     @Override
     public Attributes coerce(Attributes attrs) {
         return attrs;
@@ -154,7 +200,16 @@ public class StreamDecompressor implements CoerceAttributes {
     protected void decompressFrames(DicomInputStream dis, ImageParams imageParams, BufferedImage bi)
             throws IOException {
         dis.readHeader();
-        dis.skipFully(dis.length());
+        if (pipelineExecutor != null && imageParams.getFrames() > 1) {
+            int[] offsets = frameOffsets(dis, imageParams.getFrames());
+            if (offsets != null || tsType == TransferSyntaxType.RLE) {
+                decompressFramesPipelined(dis, offsets, imageParams.getFrames(), bi);
+                return;
+            }
+            LOG.debug("Unknown frame boundaries - decompress frames without pipeline");
+        } else {
+            dis.skipFully(dis.length());
+        }
         long pos = dis.getPosition();
         MemoryCacheImageInputStream iis = new MemoryCacheImageInputStream(dis);
         byte[] header = new byte[8];
@@ -183,6 +238,120 @@ public class StreamDecompressor implements CoerceAttributes {
         dis.setPosition(pos + iis.getStreamPosition());
     }
 
+    /**
+     * Reads the Basic Offset Table and returns the offsets of the first
+     * fragment of each frame, or <code>null</code> if the table is empty or
+     * does not match the number of frames.
+     */
+    private static int[] frameOffsets(DicomInputStream dis, int frames)
+            throws IOException {
+        int len = dis.length();
+        if (len != frames * 4) {
+            dis.skipFully(len);
+            return null;
+        }
+        byte[] b = new byte[len];
+        dis.readFully(b);
+        int[] offsets = new int[frames];
+        for (int i = 0; i < frames; i++) {
+            offsets[i] = ByteUtils.bytesToIntLE(b, i * 4);
+            if (i == 0 ? offsets[i] != 0 : offsets[i] <= offsets[i - 1])
+                return null;
+        }
+        return offsets;
+    }
+
+    /**
+     * Reads the fragments of all frames and passes the concatenated
+     * fragments of each frame to the decode stage. Frame boundaries are
+     * given by the Basic Offset Table, or - if <code>offsets</code> is
+     * <code>null</code> - by one fragment per frame, as required for RLE.
+     */
+    private void decompressFramesPipelined(DicomInputStream dis, int[] offsets,
+            int frames, final BufferedImage template) throws IOException {
+        final Queue<BufferedImage> freeImages = new ConcurrentLinkedQueue<BufferedImage>();
+        FramePipelineStage<BufferedImage> writeStage = newWriteStage(freeImages);
+        writeStage.start(pipelineExecutor);
+        try {
+            FramePipelineStage<byte[]> decodeStage =
+                    newDecodeStage(writeStage, freeImages, template);
+            decodeStage.start(pipelineExecutor);
+            try {
+                byte[] frame = null;
+                int frameIndex = -1;
+                long offset = 0;
+                while (dis.readHeader() == Tag.Item) {
+                    if (offsets == null || frameIndex + 1 < frames
+                            && offset >= offsets[frameIndex + 1]) {
+                        if (++frameIndex == frames
+                                || offsets != null && offset != offsets[frameIndex])
+                            throw new IOException(
+                                    "Fragment does not match frame boundaries at offset "
+                                    + offset);
+                        if (frame != null)
+                            decodeStage.put(frame);
+                        frame = null;
+                    }
+                    int len = dis.length();
+                    int off = frame != null ? frame.length : 0;
+                    frame = frame != null ? Arrays.copyOf(frame, off + len) : new byte[len];
+                    dis.readFully(frame, off, len);
+                    offset += 8 + len;
+                }
+                if (dis.tag() != Tag.SequenceDelimitationItem)
+                    throw new IOException("Unexpected " + TagUtils.toString(dis.tag())
+                            + " in encapsulated Pixel Data");
+                if (frameIndex + 1 < frames)
+                    throw new IOException("Missing fragment of frame #" + (frameIndex + 2));
+                decodeStage.put(frame);
+            } finally {
+                decodeStage.finish();
+            }
+        } finally {
+            writeStage.finish();
+        }
+    }
+
+    private FramePipelineStage<byte[]> newDecodeStage(
+            final FramePipelineStage<BufferedImage> writeStage,
+            final Queue<BufferedImage> freeImages, final BufferedImage template) {
+        return new FramePipelineStage<byte[]>(pipelineDepth) {
+            private int frameIndex;
+
+            @Override
+            protected void process(byte[] b) throws IOException {
+                ImageInputStream iis = new MemoryCacheImageInputStream(
+                        new ByteArrayInputStream(b));
+                decompressor.setInput(patchJPEGLS != null
+                        ? new PatchJPEGLSImageInputStream(iis, patchJPEGLS)
+                        : iis);
+                BufferedImage bi = freeImages.poll();
+                if (bi == null && template != null)
+                    bi = BufferedImageUtils.createCompatibleImage(template);
+                ImageReadParam readParam = decompressor.getDefaultReadParam();
+                readParam.setDestination(bi);
+                long start = System.currentTimeMillis();
+                bi = decompressor.read(0, readParam);
+                long end = System.currentTimeMillis();
+                if (LOG.isDebugEnabled())
+                    LOG.debug("Decompressed frame #{} 1:{} in {} ms",
+                            ++frameIndex, (float) BufferedImageUtils.sizeOf(bi) / b.length, end - start);
+                writeStage.put(bi);
+            }
+        };
+    }
+
+    FramePipelineStage<BufferedImage> newWriteStage(
+            final Queue<BufferedImage> freeImages) {
+        return new FramePipelineStage<BufferedImage>(pipelineDepth) {
+            @Override
+            protected void process(BufferedImage bi) throws IOException {
+                writeFrame(bi);
+                freeImages.offer(bi);
+            }
+        };
+    }
+
     protected void writeFrame(BufferedImage bi) throws IOException {
         BufferedImageUtils.writeTo(bi, out);
     }
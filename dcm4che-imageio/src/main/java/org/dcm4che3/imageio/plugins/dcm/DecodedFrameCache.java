@@ -0,0 +1,321 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.imageio.plugins.dcm;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferShort;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded LRU cache of decoded frames, which may be shared by several
+ * {@link DicomImageReader} instances by {@link
+ * DicomImageReader#setFrameCache(DecodedFrameCache)}.
+ * <p>
+ * Frames are identified by the URI of the file containing the pixel data -
+ * or by the SOP Instance UID, if the pixel data is read from an
+ * {@link javax.imageio.stream.ImageInputStream} - and the frame index.
+ * Cached frames are validated against the last modification time and the
+ * length of the file on each access, and are discarded if they do not match.
+ * Cached rasters are never passed to callers: {@link #get} returns a copy,
+ * so readers may apply LUTs and overlays in place.
+ *
+ * @author agent <agent@local>
+ */
+public class DecodedFrameCache {
+
+    private final LinkedHashMap<Key, Entry> map =
+            new LinkedHashMap<Key, Entry>(64, 0.75f, true);
+
+    private long maxSize;
+
+    private long size;
+
+    private long hitCount;
+
+    private long missCount;
+
+    private long evictionCount;
+
+    /**
+     * Creates cache, which total size of decoded frames does not exceed
+     * <code>maxSize</code> bytes.
+     *
+     * @param maxSize maximal size of cached frames in bytes
+     */
+    public DecodedFrameCache(long maxSize) {
+        setMaxSize(maxSize);
+    }
+
+    public synchronized long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized void setMaxSize(long maxSize) {
+        if (maxSize < 0)
+            throw new IllegalArgumentException("maxSize: " + maxSize);
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized int getNumberOfFrames() {
+        return map.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public synchronized void resetStatistics() {
+        hitCount = 0;
+        missCount = 0;
+        evictionCount = 0;
+    }
+
+    /**
+     * Returns a copy of the cached frame, or <code>null</code> if the frame
+     * is not cached or the cached frame was decoded from a different version
+     * of the source.
+     *
+     * @param key identifies the frame
+     * @param lastModified last modification time of the source, or 0 if unknown
+     * @param length length of the source, or -1 if unknown
+     * @return copy of the cached frame or <code>null</code>
+     */
+    public BufferedImage get(Key key, long lastModified, long length) {
+        Entry entry;
+        synchronized (this) {
+            entry = map.get(key);
+            if (entry != null
+                    && (entry.lastModified != lastModified || entry.length != length)) {
+                remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+        }
+        return new BufferedImage(entry.cm, copyOf(entry.raster),
+                entry.cm.isAlphaPremultiplied(), null);
+    }
+
+    /**
+     * Caches a copy of the decoded frame, if its size does not exceed the
+     * maximal size of the cache. Least recently used frames are evicted to
+     * stay within the maximal size.
+     *
+     * @param key identifies the frame
+     * @param lastModified last modification time of the source, or 0 if unknown
+     * @param length length of the source, or -1 if unknown
+     * @param bi decoded frame
+     */
+    public void put(Key key, long lastModified, long length, BufferedImage bi) {
+        WritableRaster raster = bi.getRaster();
+        long frameSize = sizeOf(raster.getDataBuffer());
+        synchronized (this) {
+            if (frameSize > maxSize)
+                return;
+        }
+        Entry entry = new Entry(bi.getColorModel(), copyOf(raster),
+                frameSize, lastModified, length);
+        synchronized (this) {
+            Entry prev = map.put(key, entry);
+            if (prev != null)
+                size -= prev.size;
+            size += frameSize;
+            evict();
+        }
+    }
+
+    /**
+     * Removes all cached frames decoded from the specified source.
+     *
+     * @param uri URI of the file or SOP Instance UID
+     */
+    public synchronized void invalidate(String uri) {
+        for (Iterator<Map.Entry<Key, Entry>> it = map.entrySet().iterator();
+                it.hasNext();) {
+            Map.Entry<Key, Entry> e = it.next();
+            if (e.getKey().uri.equals(uri)) {
+                size -= e.getValue().size;
+                it.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        size = 0;
+    }
+
+    private void remove(Key key) {
+        Entry entry = map.remove(key);
+        if (entry != null)
+            size -= entry.size;
+    }
+
+    private void evict() {
+        Iterator<Entry> it = map.values().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().size;
+            it.remove();
+            evictionCount++;
+        }
+    }
+
+    private static long sizeOf(DataBuffer db) {
+        return (long) db.getSize() * db.getNumBanks()
+                * (DataBuffer.getDataTypeSize(db.getDataType()) >>> 3);
+    }
+
+    static WritableRaster copyOf(Raster raster) {
+        DataBuffer db = raster.getDataBuffer();
+        DataBuffer copy = null;
+        if (raster.getParent() == null) {
+            if (db instanceof DataBufferByte) {
+                byte[][] data = ((DataBufferByte) db).getBankData();
+                byte[][] dest = new byte[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    dest[i] = data[i].clone();
+                copy = new DataBufferByte(dest, db.getSize(), db.getOffsets());
+            } else if (db instanceof DataBufferUShort) {
+                short[][] data = ((DataBufferUShort) db).getBankData();
+                short[][] dest = new short[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    dest[i] = data[i].clone();
+                copy = new DataBufferUShort(dest, db.getSize(), db.getOffsets());
+            } else if (db instanceof DataBufferShort) {
+                short[][] data = ((DataBufferShort) db).getBankData();
+                short[][] dest = new short[data.length][];
+                for (int i = 0; i < data.length; i++)
+                    dest[i] = data[i].clone();
+                copy = new DataBufferShort(dest, db.getSize(), db.getOffsets());
+            }
+        }
+        if (copy == null) {
+            WritableRaster dest = raster.createCompatibleWritableRaster();
+            dest.setRect(raster);
+            return dest;
+        }
+        return Raster.createWritableRaster(raster.getSampleModel(), copy,
+                new Point(raster.getMinX(), raster.getMinY()));
+    }
+
+    /**
+     * Identifies a frame by the URI of the source and the frame index.
+     */
+    public static final class Key {
+        private final String uri;
+        private final int frameIndex;
+
+        public Key(String uri, int frameIndex) {
+            if (uri == null)
+                throw new NullPointerException("uri");
+            this.uri = uri;
+            this.frameIndex = frameIndex;
+        }
+
+        public String getURI() {
+            return uri;
+        }
+
+        public int getFrameIndex() {
+            return frameIndex;
+        }
+
+        @Override
+        public int hashCode() {
+            return uri.hashCode() * 31 + frameIndex;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return frameIndex == other.frameIndex && uri.equals(other.uri);
+        }
+
+        @Override
+        public String toString() {
+            return uri + "[" + (frameIndex + 1) + "]";
+        }
+    }
+
+    private static final class Entry {
+        final ColorModel cm;
+        final WritableRaster raster;
+        final long size;
+        final long lastModified;
+        final long length;
+
+        Entry(ColorModel cm, WritableRaster raster, long size,
+                long lastModified, long length) {
+            this.cm = cm;
+            this.raster = raster;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.length = length;
+        }
+    }
+}
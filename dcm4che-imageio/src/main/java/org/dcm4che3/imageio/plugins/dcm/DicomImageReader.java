@@ -52,6 +52,7 @@ import java.io.IOException;
 import java.nio.ByteOrder;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.concurrent.Executor;
 
 import javax.imageio.ImageReadParam;
 import javax.imageio.ImageReader;
@@ -70,6 +71,7 @@ import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.image.LookupTable;
+import org.dcm4che3.image.LookupTableCache;
 import org.dcm4che3.image.LookupTableFactory;
 import org.dcm4che3.image.Overlays;
 import org.dcm4che3.image.PhotometricInterpretation;
@@ -136,10 +138,62 @@ public class DicomImageReader extends ImageReader {
 
     private PhotometricInterpretation pmi;
 
+    private volatile DecodedFrameCache frameCache;
+
+    private volatile LookupTableCache lutCache;
+
+    private volatile Executor executor;
+
     public DicomImageReader(ImageReaderSpi originatingProvider) {
         super(originatingProvider);
     }
 
+    public DecodedFrameCache getFrameCache() {
+        return frameCache;
+    }
+
+    /**
+     * Set cache of decoded frames, which may be shared with other reader
+     * instances. Frames read with a destination image or destination type
+     * specified by the {@link ImageReadParam} are not cached. By default, or
+     * if <code>null</code>, frames are decoded on each read.
+     *
+     * @param frameCache cache of decoded frames or <code>null</code>
+     */
+    public void setFrameCache(DecodedFrameCache frameCache) {
+        this.frameCache = frameCache;
+    }
+
+    public LookupTableCache getLookupTableCache() {
+        return lutCache;
+    }
+
+    /**
+     * Set cache of combined Modality, VOI and Presentation LUTs, which may be
+     * shared with other reader instances. By default, or if
+     * <code>null</code>, LUTs are created for each frame.
+     *
+     * @param lutCache cache of LUTs or <code>null</code>
+     */
+    public void setLookupTableCache(LookupTableCache lutCache) {
+        this.lutCache = lutCache;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Set executor for applying LUTs on bands of rows of large frames
+     * concurrently. By default, or if <code>null</code>, LUTs are applied
+     * by the calling thread.
+     *
+     * @param executor executor for applying LUTs or <code>null</code>
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     @Override
     public void setInput(Object input, boolean seekForwardOnly,
             boolean ignoreMetadata) {
@@ -321,26 +375,11 @@ public class DicomImageReader extends ImageReader {
         readMetadata();
         checkIndex(frameIndex);
 
-        WritableRaster raster;
-        if (decompressor != null) {
-            openiis();
-            try {
-                decompressor.setInput(iisOfFrame(frameIndex));
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Start decompressing frame #" + (frameIndex + 1));
-                BufferedImage bi = decompressor.read(0, decompressParam(param));
-                if (LOG.isDebugEnabled())
-                    LOG.debug("Finished decompressing frame #" + (frameIndex + 1));
-                if (samples > 1)
-                    return bi;
-                
-                raster = bi.getRaster();
-            } finally {
-                closeiis();
-            }
-        } else
-            raster = (WritableRaster) readRaster(frameIndex, param);
+        BufferedImage bi = readFrame(frameIndex, param);
+        if (decompressor != null && samples > 1)
+            return bi;
 
+        WritableRaster raster = bi.getRaster();
         ColorModel cm;
         if (pmi.isMonochrome()) {
             int[] overlayGroupOffsets = getActiveOverlayGroupOffsets(param);
@@ -361,6 +400,61 @@ public class DicomImageReader extends ImageReader {
         return new BufferedImage(cm, raster , false, null);
     }
 
+    private BufferedImage readFrame(int frameIndex, ImageReadParam param)
+            throws IOException {
+        DecodedFrameCache cache = frameCache;
+        DecodedFrameCache.Key key = null;
+        long lastModified = 0L;
+        long length = -1L;
+        if (cache != null && (param == null
+                || param.getDestination() == null
+                    && param.getDestinationType() == null)) {
+            if (pixeldataFile != null) {
+                key = new DecodedFrameCache.Key(
+                        pixeldataFile.toURI().toString(), frameIndex);
+                lastModified = pixeldataFile.lastModified();
+                length = pixeldataFile.length();
+            } else {
+                String iuid = ds.getString(Tag.SOPInstanceUID);
+                if (iuid != null) {
+                    key = new DecodedFrameCache.Key(iuid, frameIndex);
+                    length = iis.length();
+                }
+            }
+            if (key != null) {
+                BufferedImage bi = cache.get(key, lastModified, length);
+                if (bi != null) {
+                    LOG.debug("Use cached frame {}", key);
+                    return bi;
+                }
+            }
+        }
+        BufferedImage bi = decompressor != null
+                ? decompress(frameIndex, param)
+                : new BufferedImage(createColorModel(bitsStored, dataType),
+                        (WritableRaster) readRaster(frameIndex, param),
+                        false, null);
+        if (key != null)
+            cache.put(key, lastModified, length, bi);
+        return bi;
+    }
+
+    private BufferedImage decompress(int frameIndex, ImageReadParam param)
+            throws IOException {
+        openiis();
+        try {
+            decompressor.setInput(iisOfFrame(frameIndex));
+            if (LOG.isDebugEnabled())
+                LOG.debug("Start decompressing frame #" + (frameIndex + 1));
+            BufferedImage bi = decompressor.read(0, decompressParam(param));
+            if (LOG.isDebugEnabled())
+                LOG.debug("Finished decompressing frame #" + (frameIndex + 1));
+            return bi;
+        } finally {
+            closeiis();
+        }
+    }
+
     private byte[] extractOverlay(int gg0000, WritableRaster raster) {
         Attributes attrs = metadata.getAttributes();
 
@@ -467,8 +561,8 @@ public class DicomImageReader extends ImageReader {
                 lutParam.autoWindowing(imgAttrs, raster);
             lutParam.setPresentationLUT(imgAttrs);
         }
-        LookupTable lut = lutParam.createLUT(outBits);
-        lut.lookup(raster, destRaster);
+        LookupTable lut = lutParam.createLUT(outBits, lutCache);
+        lut.lookup(raster, destRaster, executor);
         return destRaster;
     }
 
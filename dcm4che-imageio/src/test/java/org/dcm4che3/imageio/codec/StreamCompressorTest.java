@@ -0,0 +1,365 @@
+/*
+ * **** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/dcm4che.
+ *
+ * The Initial Developer of the Original Code is Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2011-2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * **** END LICENSE BLOCK *****
+ */
+
+package org.dcm4che3.imageio.codec;
+
+import org.dcm4che3.data.*;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.ByteUtils;
+import org.dcm4che3.util.Property;
+import org.dcm4che3.util.SafeClose;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+public class StreamCompressorTest {
+
+    private static final String US_MF_RLE = "src/test/data/US-PAL-8-10x-echo";
+    private static final String NM_MF = "src/test/data/NM-MONO2-16-13x-heart";
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void testConcurrentCompress() throws Exception {
+        byte[] expected = compress(null, 1);
+        assertArrayEquals(expected, compress(executor, 3));
+        assertArrayEquals(expected, compress(executor, 20));
+    }
+
+    @Test
+    public void testConcurrentCompressWithVerification() throws Exception {
+        assertArrayEquals(compress(null, 1, 255),
+                compress(executor, 3, 255));
+    }
+
+    @Test(expected = CompressionVerificationException.class)
+    public void testConcurrentCompressVerificationFailure() throws Exception {
+        compress(executor, 3, 0, new Property("compressionQuality", 0.1f));
+    }
+
+    @Test
+    public void testConcurrentCompressor() throws Exception {
+        assertArrayEquals(compressAttributes(null), compressAttributes(executor));
+    }
+
+    @Test
+    public void testConcurrentCompressEmbeddedOverlay() throws Exception {
+        assertArrayEquals(compressEmbeddedOverlay(null),
+                compressEmbeddedOverlay(executor));
+    }
+
+    @Test
+    public void testRLERoundTrip8Bit() throws Exception {
+        assertRLERoundTrip(US_MF_RLE);
+    }
+
+    @Test
+    public void testRLERoundTrip16Bit() throws Exception {
+        assertRLERoundTrip(NM_MF);
+    }
+
+    @Test
+    public void testPipelinedDecompress() throws Exception {
+        byte[] src = readFile(US_MF_RLE);
+        assertArrayEquals(transcode(src, UID.ExplicitVRLittleEndian),
+                transcode(src, UID.ExplicitVRLittleEndian, executor));
+    }
+
+    @Test
+    public void testPipelinedTranscode() throws Exception {
+        byte[] src = readFile(US_MF_RLE);
+        assertArrayEquals(transcode(src, UID.JPEGBaseline1),
+                transcode(src, UID.JPEGBaseline1, executor));
+    }
+
+    @Test
+    public void testPipelinedCompress() throws Exception {
+        byte[] src = readFile(NM_MF);
+        assertArrayEquals(transcode(src, UID.RLELossless),
+                transcode(src, UID.RLELossless, executor));
+    }
+
+    @Test
+    public void testPipelinedDecompressMultiFragmentFrames() throws Exception {
+        byte[] src = transcode(readFile(US_MF_RLE), UID.JPEGBaseline1);
+        byte[] expected = transcode(src, UID.ExplicitVRLittleEndian);
+        assertArrayEquals(expected, transcode(splitFragments(src),
+                UID.ExplicitVRLittleEndian, executor));
+        assertArrayEquals(expected, transcode(src,
+                UID.ExplicitVRLittleEndian, executor));
+    }
+
+    @Test(expected = CompressionVerificationException.class)
+    public void testPipelinedCompressVerificationFailure() throws Exception {
+        DicomInputStream dis = null;
+        StreamCompressor compressor = null;
+        try {
+            dis = new DicomInputStream(new File(US_MF_RLE));
+            Attributes fmi = dis.readFileMetaInformation();
+            compressor = new StreamCompressor(dis,
+                    fmi.getString(Tag.TransferSyntaxUID),
+                    new DicomOutputStream(new ByteArrayOutputStream(),
+                            UID.ExplicitVRLittleEndian));
+            compressor.setPipelineExecutor(executor);
+            compressor.setPipelineDepth(1);
+            compressor.compress(UID.JPEGBaseline1,
+                    new Property("maxPixelValueError", 0),
+                    new Property("compressionQuality", 0.1f));
+        } finally {
+            SafeClose.close(dis);
+            if (compressor != null)
+                compressor.dispose();
+        }
+    }
+
+    private static void assertRLERoundTrip(String path) throws Exception {
+        byte[] expected = transcode(readFile(path), UID.ExplicitVRLittleEndian);
+        byte[] rle = transcode(expected, UID.RLELossless);
+        assertArrayEquals(pixelData(expected), pixelData(transcode(rle,
+                UID.ExplicitVRLittleEndian)));
+    }
+
+    private static byte[] readFile(String path) throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomInputStream dis = null;
+        DicomOutputStream dos = null;
+        try {
+            dis = new DicomInputStream(new File(path));
+            Attributes fmi = dis.readFileMetaInformation();
+            dos = new DicomOutputStream(bout, UID.ExplicitVRLittleEndian);
+            dos.writeFileMetaInformation(fmi);
+            dos.writeDataset(null, dis.readDataset(-1, -1));
+        } finally {
+            SafeClose.close(dis);
+            SafeClose.close(dos);
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] transcode(byte[] src, String tsuid) throws Exception {
+        return transcode(src, tsuid, null);
+    }
+
+    private static byte[] transcode(byte[] src, String tsuid,
+            ExecutorService pipelineExecutor) throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomInputStream dis = null;
+        DicomOutputStream dos = null;
+        StreamDecompressor transcoder = null;
+        try {
+            dis = new DicomInputStream(new ByteArrayInputStream(src));
+            Attributes fmi = dis.readFileMetaInformation();
+            String srcTsuid = fmi.getString(Tag.TransferSyntaxUID);
+            fmi.setString(Tag.TransferSyntaxUID, VR.UI, tsuid);
+            dos = new DicomOutputStream(bout, UID.ExplicitVRLittleEndian);
+            dos.writeFileMetaInformation(fmi);
+            if (tsuid.equals(UID.ExplicitVRLittleEndian)) {
+                transcoder = new StreamDecompressor(dis, srcTsuid, dos);
+                transcoder.setPipelineExecutor(pipelineExecutor);
+                transcoder.setPipelineDepth(2);
+                transcoder.decompress();
+            } else {
+                StreamCompressor compressor =
+                        new StreamCompressor(dis, srcTsuid, dos);
+                transcoder = compressor;
+                compressor.setPipelineExecutor(pipelineExecutor);
+                compressor.setPipelineDepth(2);
+                assertTrue(compressor.compress(tsuid));
+            }
+        } finally {
+            SafeClose.close(dis);
+            SafeClose.close(dos);
+            if (transcoder != null)
+                transcoder.dispose();
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] splitFragments(byte[] src)
+            throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomInputStream dis = null;
+        DicomOutputStream dos = null;
+        try {
+            dis = new DicomInputStream(new ByteArrayInputStream(src));
+            Attributes fmi = dis.readFileMetaInformation();
+            Attributes ds = dis.readDataset(-1, -1);
+            Fragments frags = (Fragments) ds.getValue(Tag.PixelData);
+            int frames = frags.size() - 1;
+            byte[] bot = new byte[frames * 4];
+            Fragments split = ds.newFragments(Tag.PixelData, VR.OB, frames * 2 + 1);
+            split.add(bot);
+            int offset = 0;
+            for (int i = 0; i < frames; i++) {
+                byte[] b = (byte[]) frags.get(i + 1);
+                int half = (b.length / 2) & ~1;
+                ByteUtils.intToBytesLE(offset, bot, i * 4);
+                split.add(Arrays.copyOfRange(b, 0, half));
+                split.add(Arrays.copyOfRange(b, half, b.length));
+                offset += 16 + b.length;
+            }
+            dos = new DicomOutputStream(bout, UID.ExplicitVRLittleEndian);
+            dos.writeFileMetaInformation(fmi);
+            dos.writeDataset(null, ds);
+        } finally {
+            SafeClose.close(dis);
+            SafeClose.close(dos);
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] pixelData(byte[] b) throws Exception {
+        DicomInputStream dis = new DicomInputStream(new ByteArrayInputStream(b));
+        try {
+            return dis.readDataset(-1, -1).getBytes(Tag.PixelData);
+        } finally {
+            SafeClose.close(dis);
+        }
+    }
+
+    private static byte[] compress(ExecutorService executor, int maxFramesInFlight,
+            int maxPixelValueError, Property... params) throws Exception {
+        Property[] params2 = new Property[params.length + 1];
+        System.arraycopy(params, 0, params2, 0, params.length);
+        params2[params.length] = new Property("maxPixelValueError", maxPixelValueError);
+        return compress(executor, maxFramesInFlight, params2);
+    }
+
+    private static byte[] compress(ExecutorService executor, int maxFramesInFlight,
+            Property... params) throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomInputStream dis = null;
+        DicomOutputStream dos = null;
+        StreamCompressor compressor = null;
+        try {
+            dis = new DicomInputStream(new File(US_MF_RLE));
+            dos = new DicomOutputStream(bout, UID.ExplicitVRLittleEndian);
+            Attributes fmi = dis.readFileMetaInformation();
+            compressor = new StreamCompressor(dis,
+                    fmi.getString(Tag.TransferSyntaxUID), dos);
+            compressor.setExecutor(executor);
+            compressor.setMaxFramesInFlight(maxFramesInFlight);
+            assertTrue(compressor.compress(UID.JPEGBaseline1, params));
+        } finally {
+            SafeClose.close(dis);
+            SafeClose.close(dos);
+            if (compressor != null)
+                compressor.dispose();
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] compressAttributes(ExecutorService executor) throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomInputStream dis = null;
+        Compressor compressor = null;
+        try {
+            dis = new DicomInputStream(new File(US_MF_RLE));
+            dis.setIncludeBulkData(DicomInputStream.IncludeBulkData.URI);
+            Attributes ds = dis.readDataset(-1, -1);
+            compressor = new Compressor(ds, dis.getTransferSyntax());
+            compressor.setExecutor(executor);
+            compressor.setMaxFramesInFlight(3);
+            assertTrue(compressor.compress(UID.JPEGBaseline1));
+            DicomOutputStream dos = new DicomOutputStream(bout, UID.JPEGBaseline1);
+            dos.writeDataset(null, ds);
+            dos.flush();
+        } finally {
+            SafeClose.close(dis);
+            if (compressor != null)
+                compressor.close();
+        }
+        return bout.toByteArray();
+    }
+
+    private static byte[] compressEmbeddedOverlay(ExecutorService executor)
+            throws Exception {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomInputStream dis = null;
+        Compressor compressor = null;
+        try {
+            dis = new DicomInputStream(new File(NM_MF));
+            dis.setIncludeBulkData(DicomInputStream.IncludeBulkData.URI);
+            Attributes ds = dis.readDataset(-1, -1);
+            ds.setInt(Tag.BitsStored, VR.US, 12);
+            ds.setInt(Tag.HighBit, VR.US, 11);
+            ds.setInt(Tag.OverlayRows, VR.US, ds.getInt(Tag.Rows, 0));
+            ds.setInt(Tag.OverlayColumns, VR.US, ds.getInt(Tag.Columns, 0));
+            ds.setInt(Tag.NumberOfFramesInOverlay, VR.IS, ds.getInt(Tag.NumberOfFrames, 1));
+            ds.setString(Tag.OverlayType, VR.CS, "G");
+            ds.setInt(Tag.OverlayOrigin, VR.SS, 1, 1);
+            ds.setInt(Tag.OverlayBitsAllocated, VR.US, 16);
+            ds.setInt(Tag.OverlayBitPosition, VR.US, 15);
+            compressor = new Compressor(ds, dis.getTransferSyntax());
+            compressor.setExecutor(executor);
+            compressor.setMaxFramesInFlight(3);
+            assertTrue(compressor.compress(UID.RLELossless));
+            assertEquals(1, ds.getInt(Tag.OverlayBitsAllocated, 0));
+            assertNotNull(ds.getBytes(Tag.OverlayData));
+            DicomOutputStream dos = new DicomOutputStream(bout, UID.RLELossless);
+            dos.writeDataset(null, ds);
+            dos.flush();
+        } finally {
+            SafeClose.close(dis);
+            if (compressor != null)
+                compressor.close();
+        }
+        return bout.toByteArray();
+    }
+}
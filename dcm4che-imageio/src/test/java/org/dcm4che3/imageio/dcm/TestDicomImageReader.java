@@ -38,21 +38,41 @@
 
 package org.dcm4che3.imageio.dcm;
 
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferUShort;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import javax.imageio.ImageIO;
 import javax.imageio.ImageReader;
 import javax.imageio.stream.FileImageInputStream;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.image.LookupTable;
+import org.dcm4che3.image.LookupTableCache;
+import org.dcm4che3.image.LookupTableFactory;
+import org.dcm4che3.image.StoredValue;
+import org.dcm4che3.imageio.plugins.dcm.DicomImageReadParam;
+import org.dcm4che3.imageio.plugins.dcm.DecodedFrameCache;
+import org.dcm4che3.imageio.plugins.dcm.DicomImageReader;
 import org.dcm4che3.imageio.plugins.dcm.DicomMetaData;
 import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.util.SafeClose;
+import org.dcm4che3.util.StreamUtils;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.junit.Assert.*;
+
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
  * @since Jan 2015
@@ -96,6 +116,143 @@ public class TestDicomImageReader {
         testReadRasterFromAttributes(US_MF_RLE, 5);
     }
 
+    @Test
+    public void testFrameCache() throws IOException {
+        DecodedFrameCache cache = new DecodedFrameCache(1 << 20);
+        ((DicomImageReader) reader).setFrameCache(cache);
+        FileImageInputStream iis = new FileImageInputStream(new File(NM_MF));
+        try {
+            reader.setInput(iis);
+            BufferedImage bi1 = reader.read(5, null);
+            BufferedImage bi2 = reader.read(5, null);
+            assertNotSame(bi1.getRaster(), bi2.getRaster());
+            assertArrayEquals(
+                    bi1.getRaster().getPixels(0, 0, 64, 64, (int[]) null),
+                    bi2.getRaster().getPixels(0, 0, 64, 64, (int[]) null));
+        } finally {
+            SafeClose.close(iis);
+        }
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getNumberOfFrames());
+        assertEquals(64 * 64 * 2, cache.getSize());
+    }
+
+    @Test
+    public void testFrameCacheInvalidateOnFileChange() throws IOException {
+        File file = new File("target", "US-PAL-8-10x-echo");
+        copy(new File(US_MF_RLE), file);
+        DecodedFrameCache cache = new DecodedFrameCache(1 << 24);
+        ((DicomImageReader) reader).setFrameCache(cache);
+        testReadFromAttributes(file, 5);
+        testReadFromAttributes(file, 5);
+        assertEquals(1, cache.getHitCount());
+        assertTrue(file.setLastModified(file.lastModified() - 60000L));
+        testReadFromAttributes(file, 5);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.getNumberOfFrames());
+    }
+
+    @Test
+    public void testFrameCacheEviction() throws IOException {
+        DecodedFrameCache cache = new DecodedFrameCache(64 * 64 * 2 * 3);
+        ((DicomImageReader) reader).setFrameCache(cache);
+        FileImageInputStream iis = new FileImageInputStream(new File(NM_MF));
+        try {
+            reader.setInput(iis);
+            for (int i = 0; i < 5; i++)
+                reader.read(i, null);
+            reader.read(4, null);
+            reader.read(0, null);
+        } finally {
+            SafeClose.close(iis);
+        }
+        assertEquals(1, cache.getHitCount());
+        assertEquals(6, cache.getMissCount());
+        assertEquals(3, cache.getEvictionCount());
+        assertEquals(3, cache.getNumberOfFrames());
+    }
+
+    @Test
+    public void testLookupTableCache() throws IOException {
+        DicomImageReadParam param = new DicomImageReadParam();
+        param.setWindowCenter(100);
+        param.setWindowWidth(200);
+        FileImageInputStream iis = new FileImageInputStream(new File(NM_MF));
+        try {
+            reader.setInput(iis);
+            byte[] expected = bytesOf(reader.read(3, param));
+            LookupTableCache cache = new LookupTableCache();
+            ((DicomImageReader) reader).setLookupTableCache(cache);
+            for (int i = 0; i < 3; i++)
+                assertArrayEquals(expected, bytesOf(reader.read(3, param)));
+            assertEquals(2, cache.getHitCount());
+            assertEquals(1, cache.getMissCount());
+        } finally {
+            SafeClose.close(iis);
+        }
+    }
+
+    @Test
+    public void testLookupConcurrently() {
+        WritableRaster src = Raster.createBandedRaster(
+                DataBuffer.TYPE_USHORT, 1024, 1023, 1, null);
+        short[] data = ((DataBufferUShort) src.getDataBuffer()).getData();
+        for (int i = 0; i < data.length; i++)
+            data[i] = (short) (i % 4096);
+        LookupTableFactory factory =
+                new LookupTableFactory(new StoredValue.Unsigned(12));
+        factory.setWindowCenter(2000);
+        factory.setWindowWidth(1000);
+        LookupTable lut = factory.createLUT(8);
+        WritableRaster expected = Raster.createBandedRaster(
+                DataBuffer.TYPE_BYTE, 1024, 1023, 1, null);
+        WritableRaster dest = Raster.createBandedRaster(
+                DataBuffer.TYPE_BYTE, 1024, 1023, 1, null);
+        lut.lookup(src, expected);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            lut.lookup(src, dest, executor, 4);
+        } finally {
+            executor.shutdown();
+        }
+        assertArrayEquals(((DataBufferByte) expected.getDataBuffer()).getData(),
+                ((DataBufferByte) dest.getDataBuffer()).getData());
+    }
+
+    private static byte[] bytesOf(BufferedImage bi) {
+        return ((DataBufferByte) bi.getRaster().getDataBuffer()).getData();
+    }
+
+    private void testReadFromAttributes(File file, int imageIndex)
+            throws IOException {
+        DicomInputStream dis = new DicomInputStream(file);
+        Attributes attrs;
+        try {
+            dis.setIncludeBulkData(DicomInputStream.IncludeBulkData.URI);
+            attrs = dis.readDataset(-1, -1);
+        } finally {
+            SafeClose.close(dis);
+        }
+        reader.setInput(new DicomMetaData(dis.getFileMetaInformation(), attrs));
+        reader.read(imageIndex, null);
+    }
+
+    private static void copy(File src, File dest) throws IOException {
+        FileInputStream in = new FileInputStream(src);
+        try {
+            FileOutputStream out = new FileOutputStream(dest);
+            try {
+                StreamUtils.copy(in, out);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
     private void testReadRasterFromImageInputStream(String pathname, int imageIndex)
             throws IOException {
         FileImageInputStream iis = new FileImageInputStream(new File(pathname));
@@ -46,6 +46,7 @@ import javax.json.stream.JsonGenerator;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.BulkData;
+import org.dcm4che3.data.ByteBufferValue;
 import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.PersonName;
 import org.dcm4che3.data.Value;
@@ -100,6 +101,8 @@ public class JSONWriter implements DicomInputHandler {
 
         gen.writeStartObject(TagUtils.toHexString(tag));
         gen.write("vr", vr.name());
+        if (value instanceof ByteBufferValue)
+            value = ((ByteBufferValue) value).toBytes(vr, attrs.bigEndian());
         if (value instanceof Value)
             writeValue((Value) value, attrs.bigEndian());
         else
@@ -127,7 +130,9 @@ public class JSONWriter implements DicomInputHandler {
                 for (Object frag : frags) {
                     gen.writeStartObject();
                     if (!(frag instanceof Value && ((Value) frag).isEmpty()))
-                        writeInlineBinary(frags.vr(), (byte[]) frag, bigEndian, true);
+                        writeInlineBinary(frags.vr(), (frag instanceof ByteBufferValue)
+                                ? ((ByteBufferValue) frag).toBytes(frags.vr(), bigEndian)
+                                : (byte[]) frag, bigEndian, true);
                     gen.writeEnd();
                 }
                 gen.writeEnd();
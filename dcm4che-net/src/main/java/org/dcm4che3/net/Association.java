@@ -40,11 +40,14 @@ package org.dcm4che3.net;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
 import java.net.Socket;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -52,6 +55,7 @@ import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.VR;
+import org.dcm4che3.net.metrics.DeviceMetrics;
 import org.dcm4che3.net.pdu.AAbort;
 import org.dcm4che3.net.pdu.AAssociateAC;
 import org.dcm4che3.net.pdu.AAssociateRJ;
@@ -83,6 +87,7 @@ public class Association {
     private final Socket sock;
     private final InputStream in;
     private final OutputStream out;
+    private final NioEndpoint nio;
     private final PDUEncoder encoder;
     private PDUDecoder decoder;
     private State state;
@@ -94,9 +99,22 @@ public class Association {
     private int maxOpsInvoked;
     private int maxPDULength;
     private int performing;
+    private Semaphore performSlots;
     private Timeout timeout;
-    private final IntHashMap<DimseRSPHandler> rspHandlerForMsgId =
-            new IntHashMap<DimseRSPHandler>();
+    private final ConcurrentHashMap<Integer,DimseRSPHandler>
+            rspHandlerForMsgId =
+                new ConcurrentHashMap<Integer,DimseRSPHandler>();
+    private final Object outstandingRSPLock = new Object();
+    private volatile Semaphore invokeSlots;
+    private volatile boolean closed;
+    private final DeviceMetrics metrics;
+    private final IntHashMap<PerformedOperation> performedOps =
+            new IntHashMap<PerformedOperation>();
+    private final DimseRQScheduler scheduler;
+    private final IntHashMap<DimseRQScheduler.Ticket> tickets =
+            new IntHashMap<DimseRQScheduler.Ticket>();
+    private volatile long bytesReceived;
+    private volatile long bytesSent;
     private final IntHashMap<CancelRQHandler> cancelHandlerForMsgId =
             new IntHashMap<CancelRQHandler>();
     private final HashMap<String,HashMap<String,PresentationContext>> pcMap =
@@ -112,10 +130,26 @@ public class Association {
              + '(' + serialNo + ')';
         this.conn = local;
         this.device = local.getDevice();
+        this.metrics = device.getMetrics();
+        this.scheduler = device.getDimseRQScheduler();
         this.sock = sock;
-        this.in = sock.getInputStream();
-        this.out = sock.getOutputStream();
-        this.encoder = new PDUEncoder(this, out);
+        if (sock.getChannel() != null) {
+            this.nio = new NioEndpoint(sock.getChannel(),
+                    device.selectorLoop(), new Runnable() {
+
+                        @Override
+                        public void run() {
+                            decodeAvailablePDUs();
+                        }
+                    });
+            this.in = nio.getInputStream();
+            this.out = nio.getOutputStream();
+        } else {
+            this.nio = null;
+            this.in = sock.getInputStream();
+            this.out = sock.getOutputStream();
+        }
+        this.encoder = new PDUEncoder(this, out, nio);
         if (requestor) {
             enterState(State.Sta4);
         } else {
@@ -290,7 +324,10 @@ public class Association {
 
     void doCloseSocket() {
         LOG.info("{}: close {}", name, sock);
-        SafeClose.close(sock);
+        if (nio != null)
+            nio.close();
+        else
+            SafeClose.close(sock);
         enterState(State.Sta1);
     }
 
@@ -325,6 +362,8 @@ public class Association {
 
     void write(AAbort aa) throws IOException  {
         LOG.info("{} << {}", name, aa);
+        if (metrics != null)
+            metrics.onAssociationAborted(this);
         encoder.write(aa);
         ex = aa;
         closeSocketDelayed();
@@ -381,15 +420,13 @@ public class Association {
 
     private void startTimeout(final int msgID, int timeout) {
         if (timeout > 0) {
-            synchronized (rspHandlerForMsgId) {
-                DimseRSPHandler rspHandler = rspHandlerForMsgId.get(msgID);
-                if (rspHandler != null) {
-                    rspHandler.setTimeout(Timeout.start(this,
-                        "{}: start " + msgID + ":DIMSE-RSP timeout of {}ms",
-                        "{}: " + msgID + ":DIMSE-RSP timeout expired",
-                        "{}: stop " + msgID + ":DIMSE-RSP timeout",
-                        timeout));
-                }
+            DimseRSPHandler rspHandler = rspHandlerForMsgId.get(msgID);
+            if (rspHandler != null) {
+                rspHandler.setTimeout(Timeout.start(this,
+                    "{}: start " + msgID + ":DIMSE-RSP timeout of {}ms",
+                    "{}: " + msgID + ":DIMSE-RSP timeout expired",
+                    "{}: stop " + msgID + ":DIMSE-RSP timeout",
+                    timeout));
             }
         }
     }
@@ -402,9 +439,9 @@ public class Association {
     }
 
     public void waitForOutstandingRSP() throws InterruptedException {
-        synchronized (rspHandlerForMsgId) {
+        synchronized (outstandingRSPLock) {
             while (!rspHandlerForMsgId.isEmpty())
-                rspHandlerForMsgId.wait();
+                outstandingRSPLock.wait();
         }
     }
 
@@ -420,6 +457,8 @@ public class Association {
 
     private void write(AAssociateAC ac) throws IOException {
         LOG.info("{} << A-ASSOCIATE-AC", name);
+        if (metrics != null)
+            metrics.onAssociationAccepted(this);
         LOG.debug("{}", ac);
         enterState(State.Sta6);
         encoder.write(ac);
@@ -428,6 +467,8 @@ public class Association {
 
     private void write(AAssociateRJ e) throws IOException {
         LOG.info("{} << {}", name, e);
+        if (metrics != null)
+            metrics.onAssociationRejected(this);
         encoder.write(e);
         closeSocketDelayed();
     }
@@ -466,7 +507,13 @@ public class Association {
         waitForEntering(State.Sta1);
     }
 
-    private void activate() {
+    private void activate() throws IOException {
+        if (nio != null) {
+            decoder = new PDUDecoder(this, in);
+            device.incrementNumberOfOpenAssociations();
+            nio.start();
+            return;
+        }
         device.execute(new Runnable() {
 
             @Override
@@ -488,22 +535,43 @@ public class Association {
         });
     }
 
+    private void decodeAvailablePDUs() {
+        decoder.bindToCurrentThread();
+        boolean suspended = false;
+        try {
+            while (!(state == State.Sta1 || state == State.Sta13)) {
+                if (suspended = nio.suspend())
+                    return;
+                decoder.nextPDU();
+            }
+        } catch (AAbort aa) {
+            abort(aa);
+        } catch (IOException e) {
+            onIOException(e);
+        } finally {
+            if (!suspended) {
+                nio.stop();
+                onClose();
+                device.decrementNumberOfOpenAssociations();
+            }
+        }
+    }
+
     private void onClose() {
         stopTimeout();
-        synchronized (rspHandlerForMsgId) {
-            IntHashMap.Visitor<DimseRSPHandler> visitor =
-                    new IntHashMap.Visitor<DimseRSPHandler>() {
-
-                @Override
-                public boolean visit(int key, DimseRSPHandler value) {
-                    value.onClose(Association.this);
-                    return true;
-                }
-            };
-            rspHandlerForMsgId.accept(visitor);
-            rspHandlerForMsgId.clear();
-            rspHandlerForMsgId.notifyAll();
-        }
+        closed = true;
+        int discarded = 0;
+        for (DimseRSPHandler rspHandler : rspHandlerForMsgId.values())
+            if (rspHandlerForMsgId.remove(rspHandler.getMessageID(), rspHandler)) {
+                rspHandler.onClose(this);
+                releaseInvokeSlot();
+                discarded++;
+            }
+        if (metrics != null)
+            metrics.onDimseRSPDiscarded(discarded);
+        notifyNoOutstandingRSP();
+        if (scheduler != null)
+            releaseTickets();
         if (ae != null)
             ae.getDevice().getAssociationHandler().onClose(this);
     }
@@ -524,6 +592,7 @@ public class Association {
             ac = device.getAssociationHandler().negotiate(this, rq);
             initPCMap();
             maxOpsInvoked = ac.getMaxOpsPerformed();
+            initInvokeSlots();
             maxPDULength = Association.minZeroAsMax(
                     rq.getMaxPDULength(), conn.getSendPDULength());
             write(ac);
@@ -543,8 +612,11 @@ public class Association {
         this.ac = ac;
         initPCMap();
         maxOpsInvoked = ac.getMaxOpsInvoked();
+        initInvokeSlots();
         maxPDULength = Association.minZeroAsMax(
                 ac.getMaxPDULength(), conn.getSendPDULength());
+        if (metrics != null)
+            metrics.onAssociationAccepted(this);
         enterState(State.Sta6);
         startIdleTimeout();
     }
@@ -555,6 +627,8 @@ public class Association {
     }
 
     void handle(AAssociateRJ rq) {
+        if (metrics != null)
+            metrics.onAssociationRejected(this);
         ex = rq;
         closeSocket();
     }
@@ -613,6 +687,8 @@ public class Association {
 
     void onAAbort(AAbort aa) {
         LOG.info("{} >> {}", name, aa);
+        if (metrics != null)
+            metrics.onAssociationAborted(this);
         stopTimeout();
         ex = aa;
         closeSocket();
@@ -645,7 +721,137 @@ public class Association {
             PDVInputStream data) throws IOException {
         stopTimeout();
         incPerforming();
-        ae.onDimseRQ(this, pc, dimse, cmd, data);
+        if (metrics != null)
+            addPerformedOperation(dimse, cmd);
+        if (scheduler != null && !schedule(pc, dimse, cmd, data))
+            return;
+        if (isAsyncDimseRQExecution())
+            executeDimseRQ(pc, dimse, cmd, data);
+        else
+            ae.onDimseRQ(this, pc, dimse, cmd, data);
+    }
+
+    private boolean schedule(PresentationContext pc, Dimse dimse,
+            Attributes cmd, PDVInputStream data) throws IOException {
+        DimseRQScheduler.Ticket ticket;
+        try {
+            ticket = scheduler.acquire(this, dimse, cmd);
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+        if (ticket == null) {
+            LOG.info("{}: refuse {} - local limit exceeded", name, dimse);
+            if (data != null)
+                data.skipAll();
+            writeDimseRSP(pc, Commands.mkRSP(cmd,
+                    scheduler.refusedStatus(dimse), dimse));
+            return false;
+        }
+        synchronized (tickets) {
+            tickets.put(cmd.getInt(Tag.MessageID, -1), ticket);
+        }
+        return true;
+    }
+
+    private void releaseTicket(Attributes rsp) {
+        DimseRQScheduler.Ticket ticket;
+        synchronized (tickets) {
+            ticket = tickets.remove(
+                    rsp.getInt(Tag.MessageIDBeingRespondedTo, -1));
+        }
+        if (ticket != null)
+            scheduler.release(ticket);
+    }
+
+    private void releaseTickets() {
+        synchronized (tickets) {
+            tickets.accept(new IntHashMap.Visitor<DimseRQScheduler.Ticket>() {
+
+                @Override
+                public boolean visit(int key, DimseRQScheduler.Ticket value) {
+                    scheduler.release(value);
+                    return true;
+                }
+            });
+            tickets.clear();
+        }
+        scheduler.onClose(this);
+    }
+
+    /**
+     * Returns the negotiated maximum number of operations this association
+     * may invoke asynchronously; 0 means unlimited.
+     */
+    public int getMaxOpsInvoked() {
+        return maxOpsInvoked;
+    }
+
+    /**
+     * Returns the negotiated maximum number of operations this association
+     * may perform asynchronously; 0 means unlimited.
+     */
+    public int getMaxOpsPerformed() {
+        return requestor ? ac.getMaxOpsPerformed() : ac.getMaxOpsInvoked();
+    }
+
+    private boolean isAsyncDimseRQExecution() {
+        return conn.isAsyncDimseRQExecution()
+                && getMaxOpsPerformed() != Connection.SYNCHRONOUS_MODE;
+    }
+
+    private void executeDimseRQ(final PresentationContext pc,
+            final Dimse dimse, final Attributes cmd, PDVInputStream data)
+            throws IOException {
+        final PDVInputStream spooled = data != null
+                ? SpooledPDVInputStream.spool(data,
+                        conn.getDimseRQSpoolThreshold())
+                : null;
+        final Semaphore slots = performSlots();
+        if (slots != null)
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                SafeClose.close(spooled);
+                throw new InterruptedIOException();
+            }
+        try {
+            device.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        ae.onDimseRQ(Association.this, pc, dimse, cmd, spooled);
+                    } catch (AAbort aa) {
+                        abort(aa);
+                    } catch (IOException e) {
+                        onIOException(e);
+                    } catch (Throwable e) {
+                        LOG.warn("{}: unexpected exception performing {}:",
+                                new Object[] { name, dimse, e });
+                        abort();
+                    } finally {
+                        SafeClose.close(spooled);
+                        if (slots != null)
+                            slots.release();
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            SafeClose.close(spooled);
+            if (slots != null)
+                slots.release();
+            throw e;
+        }
+    }
+
+    private synchronized Semaphore performSlots() {
+        int maxOpsPerformed = getMaxOpsPerformed();
+        if (maxOpsPerformed <= 0)
+            return null;
+
+        if (performSlots == null)
+            performSlots = new Semaphore(maxOpsPerformed);
+        return performSlots;
     }
 
     private synchronized void incPerforming() {
@@ -668,6 +874,10 @@ public class Association {
             throw new AAbort();
         }
         rspHandler.onDimseRSP(this, cmd, data);
+        if (metrics != null && !pending)
+            metrics.onDimseRSPReceived(rspHandler.getDimse(),
+                    rspHandler.getSOPClassUID(), status,
+                    System.nanoTime() - rspHandler.getInvokeTime());
         if (pending)
             startTimeout(msgId, dimse.isRetrieveRQ()
                     ? conn.getRetrieveTimeout()
@@ -686,30 +896,105 @@ public class Association {
             startReleaseTimeout();
     }
 
+    private void initInvokeSlots() {
+        invokeSlots = maxOpsInvoked > 0 ? new Semaphore(maxOpsInvoked) : null;
+    }
+
+    private void releaseInvokeSlot() {
+        Semaphore slots = invokeSlots;
+        if (slots != null)
+            slots.release();
+    }
+
     private void addDimseRSPHandler(DimseRSPHandler rspHandler)
-            throws InterruptedException {
-        synchronized (rspHandlerForMsgId) {
-            while (maxOpsInvoked > 0
-                    && rspHandlerForMsgId.size() >= maxOpsInvoked)
-                rspHandlerForMsgId.wait();
-            rspHandlerForMsgId.put(rspHandler.getMessageID(), rspHandler);
+            throws IOException, InterruptedException {
+        Semaphore slots = invokeSlots;
+        if (slots != null)
+            slots.acquire();
+        Integer msgId = rspHandler.getMessageID();
+        rspHandlerForMsgId.put(msgId, rspHandler);
+        if (closed && rspHandlerForMsgId.remove(msgId, rspHandler)) {
+            releaseInvokeSlot();
+            checkException();
+            throw new AssociationStateException(state);
         }
     }
 
-    private DimseRSPHandler getDimseRSPHandler(int msgId) {
-        synchronized (rspHandlerForMsgId ) {
-            return rspHandlerForMsgId.get(msgId);
+    private void notifyNoOutstandingRSP() {
+        synchronized (outstandingRSPLock) {
+            outstandingRSPLock.notifyAll();
         }
     }
 
-    private DimseRSPHandler removeDimseRSPHandler(int msgId) {
-        synchronized (rspHandlerForMsgId ) {
-            DimseRSPHandler tmp = rspHandlerForMsgId.remove(msgId);
-            rspHandlerForMsgId.notifyAll();
-            return tmp;
+    private void addPerformedOperation(Dimse dimse, Attributes cmd) {
+        PerformedOperation op = new PerformedOperation(dimse,
+                cmd.getString(dimse.tagOfSOPClassUID()));
+        synchronized (performedOps) {
+            performedOps.put(cmd.getInt(Tag.MessageID, -1), op);
         }
     }
 
+    private void onDimseRSPSent(Attributes cmd, int status) {
+        PerformedOperation op;
+        synchronized (performedOps) {
+            op = performedOps.remove(
+                    cmd.getInt(Tag.MessageIDBeingRespondedTo, -1));
+        }
+        if (op != null)
+            metrics.onDimseRSPSent(op.dimse, op.cuid, status,
+                    System.nanoTime() - op.start);
+    }
+
+    private static final class PerformedOperation {
+        final Dimse dimse;
+        final String cuid;
+        final long start = System.nanoTime();
+
+        PerformedOperation(Dimse dimse, String cuid) {
+            this.dimse = dimse;
+            this.cuid = cuid;
+        }
+    }
+
+    /**
+     * Returns the number of bytes of PDUs received on this association.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Returns the number of bytes of PDUs sent on this association.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    void onPDUReceived(int length) {
+        bytesReceived += length;
+        if (metrics != null)
+            metrics.onBytesReceived(length);
+    }
+
+    void onPDUSent(int length) {
+        bytesSent += length;
+        if (metrics != null)
+            metrics.onBytesSent(length);
+    }
+
+    private DimseRSPHandler getDimseRSPHandler(int msgId) {
+        return rspHandlerForMsgId.get(msgId);
+    }
+
+    private DimseRSPHandler removeDimseRSPHandler(int msgId) {
+        DimseRSPHandler tmp = rspHandlerForMsgId.remove(msgId);
+        if (tmp != null)
+            releaseInvokeSlot();
+        if (rspHandlerForMsgId.isEmpty())
+            notifyNoOutstandingRSP();
+        return tmp;
+    }
+
     void cancel(PresentationContext pc, int msgId) throws IOException {
         Attributes cmd = Commands.mkCCancelRQ(msgId);
         encoder.writeDIMSE(pc, cmd, null);
@@ -748,7 +1033,12 @@ public class Association {
         }
         cmd.setInt(Tag.CommandDataSetType, VR.US, datasetType);
         encoder.writeDIMSE(pc, cmd, writer);
-        if (!Status.isPending(cmd.getInt(Tag.Status, 0))) {
+        int status = cmd.getInt(Tag.Status, 0);
+        if (!Status.isPending(status)) {
+            if (metrics != null)
+                onDimseRSPSent(cmd, status);
+            if (scheduler != null)
+                releaseTicket(cmd);
             decPerforming();
             startIdleTimeout();
         }
@@ -1202,7 +1492,14 @@ public class Association {
         stopTimeout();
         checkException();
         rspHandler.setPC(pc);
-        addDimseRSPHandler(rspHandler);
+        if (metrics != null) {
+            Dimse dimse = Dimse.valueOf(cmd.getInt(Tag.CommandField, 0));
+            rspHandler.setInvoked(dimse,
+                    cmd.getString(dimse.tagOfSOPClassUID()));
+            addDimseRSPHandler(rspHandler);
+            metrics.onDimseRQInvoked(rspHandlerForMsgId.size());
+        } else
+            addDimseRSPHandler(rspHandler);
         startTimeout(rspHandler.getMessageID(), rspTimeout);
         encoder.writeDIMSE(pc, cmd, data);
     }
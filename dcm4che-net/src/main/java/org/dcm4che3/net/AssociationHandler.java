@@ -91,6 +91,11 @@ public class AssociationHandler {
             throw new AAssociateRJ(AAssociateRJ.RESULT_REJECTED_TRANSIENT,
                     AAssociateRJ.SOURCE_SERVICE_PROVIDER_PRES,
                     AAssociateRJ.REASON_LOCAL_LIMIT_EXCEEDED);
+        DimseRQScheduler scheduler = ae.getDevice().getDimseRQScheduler();
+        if (scheduler != null && !scheduler.admit(as))
+            throw new AAssociateRJ(AAssociateRJ.RESULT_REJECTED_TRANSIENT,
+                    AAssociateRJ.SOURCE_SERVICE_PROVIDER_PRES,
+                    AAssociateRJ.REASON_LOCAL_LIMIT_EXCEEDED);
         return makeAAssociateAC(as, rq, userIdentity);
     }
 
@@ -0,0 +1,379 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Pool of open associations initiated by local Application Entities, which
+ * may be leased by SCU clients instead of negotiating a new association for
+ * each task.
+ * <p>
+ * Associations are pooled per destination, identified by the local AE, the
+ * Calling and Called AE Title and the remote connection. An idle association
+ * is only leased if it accepted all abstract syntaxes of the presentation
+ * contexts of the requested {@link AAssociateRQ} with one of the proposed
+ * transfer syntaxes. Otherwise a new association is opened, as long as the
+ * number of associations to the destination does not exceed
+ * {@link #getMaxAssociationsPerDestination()}; if it does, an unsuitable
+ * idle association is released or the caller waits for the return of a
+ * leased association.
+ * <p>
+ * Leased associations must be returned by {@link #release(Association)},
+ * after all responses of invoked operations were received. Associations
+ * which stay idle longer than {@link #getIdleTimeout()} are released.
+ *
+ * @author agent <agent@local>
+ */
+public class AssociationPool {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(AssociationPool.class);
+
+    public static final int DEF_MAX_ASSOCIATIONS_PER_DESTINATION = 4;
+    public static final int DEF_IDLE_TIMEOUT = 30000;
+
+    private final HashMap<String, Destination> destinations =
+            new HashMap<String, Destination>();
+    private final IdentityHashMap<Association, Destination> leased =
+            new IdentityHashMap<Association, Destination>();
+    private int maxAssociationsPerDestination =
+            DEF_MAX_ASSOCIATIONS_PER_DESTINATION;
+    private int idleTimeout = DEF_IDLE_TIMEOUT;
+    private int leaseTimeout;
+    private boolean closed;
+
+    private static final class Destination {
+        final String key;
+        final LinkedList<Idle> idle = new LinkedList<Idle>();
+        int count;
+
+        Destination(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Idle {
+        final Association as;
+
+        Idle(Association as) {
+            this.as = as;
+        }
+    }
+
+    private interface Connector {
+        Association connect() throws IOException, InterruptedException,
+                IncompatibleConnectionException, GeneralSecurityException;
+    }
+
+    public final int getMaxAssociationsPerDestination() {
+        return maxAssociationsPerDestination;
+    }
+
+    public final void setMaxAssociationsPerDestination(int max) {
+        if (max <= 0)
+            throw new IllegalArgumentException(
+                    "maxAssociationsPerDestination: " + max);
+        this.maxAssociationsPerDestination = max;
+    }
+
+    /**
+     * Returns the time in ms after which idle associations are released;
+     * 0 if they are kept open until {@link #close()}.
+     */
+    public final int getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public final void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /**
+     * Returns the maximal time in ms {@link #lease} waits for the return of a
+     * leased association, if the maximal number of associations to the
+     * destination is reached; 0 for no limit.
+     */
+    public final int getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public final void setLeaseTimeout(int leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    public Association lease(final ApplicationEntity local,
+            final Connection remote, final AAssociateRQ rq)
+            throws IOException, InterruptedException,
+            IncompatibleConnectionException, GeneralSecurityException {
+        return lease(local, rq, remote.getHostname() + ':' + remote.getPort(),
+                new Connector() {
+
+                    @Override
+                    public Association connect() throws IOException,
+                            InterruptedException,
+                            IncompatibleConnectionException,
+                            GeneralSecurityException {
+                        return local.connect(remote, rq);
+                    }
+                });
+    }
+
+    public Association lease(final ApplicationEntity local,
+            final ApplicationEntity remote, final AAssociateRQ rq)
+            throws IOException, InterruptedException,
+            IncompatibleConnectionException, GeneralSecurityException {
+        if (rq.getCalledAET() == null)
+            rq.setCalledAET(remote.getAETitle());
+        return lease(local, rq, remote.getAETitle(), new Connector() {
+
+            @Override
+            public Association connect() throws IOException,
+                    InterruptedException, IncompatibleConnectionException,
+                    GeneralSecurityException {
+                return local.connect(remote, rq);
+            }
+        });
+    }
+
+    private Association lease(ApplicationEntity local, AAssociateRQ rq,
+            String remote, Connector connector) throws IOException,
+            InterruptedException, IncompatibleConnectionException,
+            GeneralSecurityException {
+        String callingAET = rq.getCallingAET() != null
+                ? rq.getCallingAET()
+                : local.getAETitle();
+        String key = local.getAETitle() + '/' + callingAET
+                + "->" + rq.getCalledAET() + '@' + remote;
+        Destination dest;
+        Association evict = null;
+        synchronized (this) {
+            checkOpen();
+            dest = destinations.get(key);
+            if (dest == null)
+                destinations.put(key, dest = new Destination(key));
+            long end = leaseTimeout > 0
+                    ? System.currentTimeMillis() + leaseTimeout
+                    : 0L;
+            for (;;) {
+                Association as = pollSuitable(dest, rq);
+                if (as != null) {
+                    leased.put(as, dest);
+                    LOG.debug("Lease pooled {}", as);
+                    return as;
+                }
+                if (dest.count < maxAssociationsPerDestination) {
+                    dest.count++;
+                    break;
+                }
+                if (!dest.idle.isEmpty()) {
+                    evict = dest.idle.removeLast().as;
+                    break;
+                }
+                if (end == 0L)
+                    wait();
+                else {
+                    long remaining = end - System.currentTimeMillis();
+                    if (remaining <= 0)
+                        throw new IOException("No association to " + key
+                                + " available within " + leaseTimeout + " ms");
+                    wait(remaining);
+                }
+                checkOpen();
+            }
+        }
+        if (evict != null)
+            releaseQuietly(evict);
+        Association as = null;
+        try {
+            as = connector.connect();
+        } finally {
+            if (as == null)
+                decrementCount(dest);
+        }
+        synchronized (this) {
+            leased.put(as, dest);
+        }
+        return as;
+    }
+
+    private void checkOpen() {
+        if (closed)
+            throw new IllegalStateException("AssociationPool closed");
+    }
+
+    private Association pollSuitable(Destination dest, AAssociateRQ rq) {
+        for (Iterator<Idle> iter = dest.idle.iterator(); iter.hasNext();) {
+            Association as = iter.next().as;
+            if (!as.isReadyForDataTransfer()) {
+                iter.remove();
+                dest.count--;
+            } else if (accepts(as, rq)) {
+                iter.remove();
+                return as;
+            }
+        }
+        return null;
+    }
+
+    private static boolean accepts(Association as, AAssociateRQ rq) {
+        for (PresentationContext pc : rq.getPresentationContexts()) {
+            Set<String> tss = as.getTransferSyntaxesFor(pc.getAbstractSyntax());
+            if (!containsAny(tss, pc.getTransferSyntaxes()))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean containsAny(Set<String> tss, String[] tss2) {
+        for (String ts : tss2)
+            if (tss.contains(ts))
+                return true;
+        return false;
+    }
+
+    private synchronized void decrementCount(Destination dest) {
+        dest.count--;
+        notifyAll();
+    }
+
+    /**
+     * Returns a leased association to the pool. Associations which are no
+     * longer ready for data transfer are discarded.
+     *
+     * @param as leased association
+     */
+    public void release(Association as) {
+        final Idle idle = new Idle(as);
+        boolean discard;
+        synchronized (this) {
+            final Destination dest = leased.remove(as);
+            if (dest == null)
+                throw new IllegalArgumentException("Not leased: " + as);
+
+            discard = closed || !as.isReadyForDataTransfer();
+            if (discard)
+                dest.count--;
+            else {
+                dest.idle.addFirst(idle);
+                if (idleTimeout > 0)
+                    as.getDevice().schedule(new Runnable() {
+
+                        @Override
+                        public void run() {
+                            evict(dest, idle);
+                        }
+                    }, idleTimeout, TimeUnit.MILLISECONDS);
+            }
+            notifyAll();
+        }
+        if (discard)
+            releaseQuietly(as);
+        else
+            LOG.debug("Return {} to pool", as);
+    }
+
+    private void evict(Destination dest, Idle idle) {
+        synchronized (this) {
+            if (!dest.idle.remove(idle))
+                return;
+
+            dest.count--;
+            notifyAll();
+        }
+        LOG.debug("Release idle {}", idle.as);
+        releaseQuietly(idle.as);
+    }
+
+    private static void releaseQuietly(Association as) {
+        if (!as.isReadyForDataTransfer())
+            return;
+        try {
+            as.release();
+        } catch (IOException e) {
+            LOG.info("Failed to release {}:", as, e);
+            as.abort();
+        }
+    }
+
+    public synchronized int getNumberOfIdleAssociations() {
+        int n = 0;
+        for (Destination dest : destinations.values())
+            n += dest.idle.size();
+        return n;
+    }
+
+    public synchronized int getNumberOfLeasedAssociations() {
+        return leased.size();
+    }
+
+    /**
+     * Releases all idle associations. Associations leased at that time are
+     * released on their return.
+     */
+    public void close() {
+        List<Association> list = new ArrayList<Association>();
+        synchronized (this) {
+            closed = true;
+            for (Destination dest : destinations.values()) {
+                for (Idle idle : dest.idle)
+                    list.add(idle.as);
+                dest.count -= dest.idle.size();
+                dest.idle.clear();
+            }
+            notifyAll();
+        }
+        for (Association as : list)
+            releaseQuietly(as);
+    }
+}
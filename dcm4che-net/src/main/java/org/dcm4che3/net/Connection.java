@@ -53,8 +53,11 @@ import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
 import java.net.*;
+import java.nio.channels.SocketChannel;
 import java.security.GeneralSecurityException;
 import java.util.*;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A DICOM Part 15, Annex H compliant class, <code>NetworkConnection</code>
@@ -101,9 +104,14 @@ public class Connection implements Serializable {
     public static final int DEF_BUFFERSIZE = Integer.valueOf(DEF_BUFFERSIZE_STR);
 
 
+    public static final int DEF_DIMSE_RQ_SPOOL_THRESHOLD = 0x100000; // 1MiB
+
     public static final int DEF_MAX_PDU_LENGTH = 16378;
     // to fit into SunJSSE TLS Application Data Length 16408
 
+    public static final int DEF_TLS_HANDSHAKE_TIMEOUT = 10000;
+    public static final int DEF_MAX_TLS_HANDSHAKES = 16;
+
     public static final String TLS_RSA_WITH_NULL_SHA = "SSL_RSA_WITH_NULL_SHA";
     public static final String TLS_RSA_WITH_3DES_EDE_CBC_SHA = "SSL_RSA_WITH_3DES_EDE_CBC_SHA";
     public static final String TLS_RSA_WITH_AES_128_CBC_SHA = "TLS_RSA_WITH_AES_128_CBC_SHA";
@@ -183,6 +191,16 @@ public class Connection implements Serializable {
     @ConfigurableProperty(name = "dcmTCPNoDelay", defaultValue = "true")
     private boolean tcpNoDelay = true;
 
+    private boolean nioTransport;
+
+    private boolean asyncDimseRQExecution;
+
+    private int dimseRQSpoolThreshold = DEF_DIMSE_RQ_SPOOL_THRESHOLD;
+
+    private int tlsHandshakeTimeout = DEF_TLS_HANDSHAKE_TIMEOUT;
+
+    private int maxTLSHandshakes = DEF_MAX_TLS_HANDSHAKES;
+
     @ConfigurableProperty(name = "dcmTLSNeedClientAuth", defaultValue = "true")
     private boolean tlsNeedClientAuth = true;
 
@@ -686,6 +704,49 @@ public class Connection implements Serializable {
         needRebind();
     }
 
+    public final int getTlsHandshakeTimeout() {
+        return tlsHandshakeTimeout;
+    }
+
+    /**
+     * Set the maximal time for completing the TLS handshake of an accepted
+     * or initiated connection. Connections which do not complete the
+     * handshake in time are closed. Default is
+     * {@link #DEF_TLS_HANDSHAKE_TIMEOUT}.
+     *
+     * @param timeout An int value containing the milliseconds, or 0 for no
+     *                timeout.
+     */
+    public final void setTlsHandshakeTimeout(int timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("timeout: " + timeout);
+        this.tlsHandshakeTimeout = timeout;
+    }
+
+    public final int getMaxTLSHandshakes() {
+        return maxTLSHandshakes;
+    }
+
+    /**
+     * Set the maximal number of TLS handshakes of accepted connections
+     * performed concurrently by worker threads of the device. Further
+     * connections are rejected until one of the pending handshakes completes
+     * or times out, as limited by {@link #getTlsHandshakeTimeout()}.
+     *
+     * @param maxTLSHandshakes maximal number of concurrent handshakes, or 0
+     *                         for no limit.
+     */
+    public final void setMaxTLSHandshakes(int maxTLSHandshakes) {
+        if (maxTLSHandshakes < 0)
+            throw new IllegalArgumentException(
+                    "maxTLSHandshakes: " + maxTLSHandshakes);
+        if (this.maxTLSHandshakes == maxTLSHandshakes)
+            return;
+
+        this.maxTLSHandshakes = maxTLSHandshakes;
+        needRebind();
+    }
+
     /**
      * Get the SO_RCVBUF socket value in KB.
      *
@@ -758,6 +819,52 @@ public class Connection implements Serializable {
         this.maxOpsInvoked = maxOpsInvoked;
     }
 
+    /**
+     * Determine if DIMSE requests received over associations which negotiated
+     * asynchronous operations are performed by worker threads of the device,
+     * instead of the thread reading the PDUs.
+     *
+     * @return boolean True if DIMSE requests are performed asynchronously.
+     */
+    public final boolean isAsyncDimseRQExecution() {
+        return asyncDimseRQExecution;
+    }
+
+    /**
+     * Set whether DIMSE requests received over associations which negotiated
+     * asynchronous operations shall be performed by worker threads of the
+     * device, instead of the thread reading the PDUs. Up to the negotiated
+     * maximum number of operations performed are executed concurrently. Data
+     * sets of such requests are read completely before the execution, and
+     * spooled to a temporary file if they exceed
+     * {@link #getDimseRQSpoolThreshold()}.
+     *
+     * @param asyncDimseRQExecution boolean True if DIMSE requests shall be
+     *                              performed asynchronously.
+     */
+    public final void setAsyncDimseRQExecution(boolean asyncDimseRQExecution) {
+        this.asyncDimseRQExecution = asyncDimseRQExecution;
+    }
+
+    public final int getDimseRQSpoolThreshold() {
+        return dimseRQSpoolThreshold;
+    }
+
+    /**
+     * Set the maximal size of data sets of asynchronously performed DIMSE
+     * requests kept in memory. Larger data sets are spooled to a temporary
+     * file.
+     *
+     * @param dimseRQSpoolThreshold maximal size in bytes
+     * @see #setAsyncDimseRQExecution(boolean)
+     */
+    public final void setDimseRQSpoolThreshold(int dimseRQSpoolThreshold) {
+        if (dimseRQSpoolThreshold < 0)
+            throw new IllegalArgumentException(
+                    "dimseRQSpoolThreshold: " + dimseRQSpoolThreshold);
+        this.dimseRQSpoolThreshold = dimseRQSpoolThreshold;
+    }
+
     public final boolean isPackPDV() {
         return packPDV;
     }
@@ -787,6 +894,39 @@ public class Connection implements Serializable {
         this.tcpNoDelay = tcpNoDelay;
     }
 
+    /**
+     * Determine if DICOM associations over this network connection use
+     * non-blocking I/O multiplexed by the selector threads of the device.
+     *
+     * @return boolean True if non-blocking I/O is used.
+     * @see Device#setNioSelectorThreads(int)
+     */
+    public final boolean isNioTransport() {
+        return nioTransport;
+    }
+
+    /**
+     * Set whether DICOM associations over this network connection shall use
+     * non-blocking I/O multiplexed by the selector threads of the device,
+     * so idle associations do not occupy a thread. Not applicable for TLS
+     * connections and connections through a HTTP proxy, which always use
+     * blocking I/O.
+     *
+     * @param nioTransport boolean True if non-blocking I/O shall be used.
+     */
+    public final void setNioTransport(boolean nioTransport) {
+        if (this.nioTransport == nioTransport)
+            return;
+
+        this.nioTransport = nioTransport;
+        needRebind();
+    }
+
+    private boolean useNioTransport(Connection remoteConn) {
+        return nioTransport && protocol == Protocol.DICOM && !isTls()
+                && (remoteConn == null || remoteConn.getHttpProxy() == null);
+    }
+
     /**
      * True if the Network Connection is installed on the network. If not
      * present, information about the installed status of the Network Connection
@@ -993,7 +1133,9 @@ public class Connection implements Serializable {
             TCPProtocolHandler handler = tcpHandlers.get(protocol);
             if (handler == null)
                 throw new IllegalStateException("No TCP Protocol Handler for protocol " + protocol);
-            listener = new TCPListener(this, handler);
+            listener = useNioTransport(null)
+                    ? new NioTCPListener(this, handler)
+                    : new TCPListener(this, handler);
         } else {
             UDPProtocolHandler handler = udpHandlers.get(protocol);
             if (handler == null)
@@ -1035,7 +1177,9 @@ public class Connection implements Serializable {
         int remotePort = remoteConn.getPort();
         LOG.info("Initiate connection from {} to {}:{}",
                 bindPoint, remoteHostname, remotePort);
-        Socket s = new Socket();
+        Socket s = useNioTransport(remoteConn)
+                ? SocketChannel.open().socket()
+                : new Socket();
         ConnectionMonitor monitor = device != null
                 ? device.getConnectionMonitor()
                 : null;
@@ -1172,10 +1316,41 @@ public class Connection implements Serializable {
                 intersect(remoteConn.tlsProtocols, tlsProtocols));
         ssl.setEnabledCipherSuites(
                 intersect(remoteConn.tlsCipherSuites, tlsCipherSuites));
-        ssl.startHandshake();
+        startHandshake(ssl);
         return ssl;
     }
 
+    void startHandshake(final SSLSocket s) throws IOException {
+        if (tlsHandshakeTimeout <= 0) {
+            s.startHandshake();
+            return;
+        }
+        if (device.getScheduledExecutor() == null) {
+            // limit the wait for each handshake message instead
+            int soTimeout = s.getSoTimeout();
+            s.setSoTimeout(tlsHandshakeTimeout);
+            try {
+                s.startHandshake();
+            } finally {
+                s.setSoTimeout(soTimeout);
+            }
+            return;
+        }
+        ScheduledFuture<?> timeout = device.schedule(new Runnable() {
+
+            @Override
+            public void run() {
+                LOG.warn("TLS handshake timeout expired for {}", s);
+                SafeClose.close(s);
+            }
+        }, tlsHandshakeTimeout, TimeUnit.MILLISECONDS);
+        try {
+            s.startHandshake();
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
     public void close(Socket s) {
         LOG.info("Close connection {}", s);
         SafeClose.close(s);
@@ -1255,6 +1430,11 @@ public class Connection implements Serializable {
         setMaxOpsPerformed(from.maxOpsInvoked);
         setPackPDV(from.packPDV);
         setTcpNoDelay(from.tcpNoDelay);
+        setNioTransport(from.nioTransport);
+        setAsyncDimseRQExecution(from.asyncDimseRQExecution);
+        setDimseRQSpoolThreshold(from.dimseRQSpoolThreshold);
+        setTlsHandshakeTimeout(from.tlsHandshakeTimeout);
+        setMaxTLSHandshakes(from.maxTLSHandshakes);
         setTlsNeedClientAuth(from.tlsNeedClientAuth);
         setTlsCipherSuites(from.tlsCipherSuites);
         setTlsProtocols(from.tlsProtocols);
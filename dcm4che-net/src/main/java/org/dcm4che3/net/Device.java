@@ -52,6 +52,7 @@ import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.KeyManager;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.TrustManager;
 
 import org.dcm4che3.conf.core.api.ConfigurableClass;
@@ -60,6 +61,7 @@ import org.dcm4che3.conf.core.api.ConfigurableProperty.Tag;
 import org.dcm4che3.conf.core.api.LDAP;
 import org.dcm4che3.data.Code;
 import org.dcm4che3.data.Issuer;
+import org.dcm4che3.net.metrics.DeviceMetrics;
 import org.dcm4che3.util.StringUtils;
 
 /**
@@ -184,6 +186,10 @@ public class Device implements Serializable {
     @ConfigurableProperty(name = "dcmLimitOpenAssociations")
     private int limitOpenAssociations;
 
+    private int tlsSessionCacheSize;
+
+    private int tlsSessionTimeout;
+
     @ConfigurableProperty(name = "dicomInstalled")
     private boolean installed = true;
 
@@ -220,12 +226,19 @@ public class Device implements Serializable {
     private transient AssociationHandler associationHandler = new AssociationHandler();
     private transient DimseRQHandler dimseRQHandler;
     private transient ConnectionMonitor connectionMonitor;
+    private transient DeviceMetrics metrics;
+    private transient DimseRQScheduler dimseRQScheduler;
 
     private transient int assocCount = 0;
     private transient final Object assocCountLock = new Object();
 
     private transient Executor executor;
     private transient ScheduledExecutorService scheduledExecutor;
+    private transient final TimeoutWheel timeoutWheel = new TimeoutWheel(this);
+    private transient int nioSelectorThreads =
+            Math.min(4, Runtime.getRuntime().availableProcessors());
+    private transient SelectorLoop[] selectorLoops;
+    private transient int nextSelectorLoop;
     private transient volatile SSLContext sslContext;
     private transient volatile KeyManager km;
     private transient volatile TrustManager tm;
@@ -821,6 +834,31 @@ public class Device implements Serializable {
         this.connectionMonitor = connectionMonitor;
     }
 
+    public DeviceMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Enables recording of association and DIMSE metrics by associations
+     * opened after this call; {@code null} disables it.
+     */
+    public void setMetrics(DeviceMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public DimseRQScheduler getDimseRQScheduler() {
+        return dimseRQScheduler;
+    }
+
+    /**
+     * Enables admission control and priority scheduling of associations
+     * and DIMSE requests accepted after this call; {@code null} disables
+     * it.
+     */
+    public void setDimseRQScheduler(DimseRQScheduler dimseRQScheduler) {
+        this.dimseRQScheduler = dimseRQScheduler;
+    }
+
     public void bindConnections() throws IOException, GeneralSecurityException {
         for (Connection con : connections)
             con.bind();
@@ -860,6 +898,36 @@ public class Device implements Serializable {
         this.executor = executor;
     }
 
+    public final int getNioSelectorThreads() {
+        return nioSelectorThreads;
+    }
+
+    /**
+     * Sets the number of selector threads multiplexing the channels of
+     * Connections with {@link Connection#isNioTransport()}. Only effective
+     * before the first such channel is opened.
+     *
+     * @param nioSelectorThreads number of selector threads
+     */
+    public final void setNioSelectorThreads(int nioSelectorThreads) {
+        if (nioSelectorThreads <= 0)
+            throw new IllegalArgumentException(
+                    "nioSelectorThreads: " + nioSelectorThreads);
+        this.nioSelectorThreads = nioSelectorThreads;
+    }
+
+    synchronized SelectorLoop selectorLoop() {
+        if (selectorLoops == null) {
+            selectorLoops = new SelectorLoop[nioSelectorThreads];
+            for (int i = 0; i < selectorLoops.length; i++)
+                selectorLoops[i] = new SelectorLoop(this,
+                        "Selector-" + deviceName + '-' + (i + 1));
+        }
+        SelectorLoop loop = selectorLoops[nextSelectorLoop];
+        nextSelectorLoop = (nextSelectorLoop + 1) % selectorLoops.length;
+        return loop;
+    }
+
     public final ScheduledExecutorService getScheduledExecutor() {
         return scheduledExecutor;
     }
@@ -981,6 +1049,48 @@ public class Device implements Serializable {
         this.limitOpenAssociations = limit;
     }
 
+    public final int getTlsSessionCacheSize() {
+        return tlsSessionCacheSize;
+    }
+
+    /**
+     * Set the maximal number of TLS sessions cached for resumption by
+     * subsequent connections, separately for accepted and initiated
+     * connections.
+     *
+     * @param size maximal number of cached sessions, or 0 for the default of
+     *             the JSSE provider.
+     */
+    public final void setTlsSessionCacheSize(int size) {
+        if (size < 0)
+            throw new IllegalArgumentException("size: " + size);
+
+        this.tlsSessionCacheSize = size;
+        SSLContext ctx = sslContext;
+        if (ctx != null)
+            configureSessionCache(ctx);
+    }
+
+    public final int getTlsSessionTimeout() {
+        return tlsSessionTimeout;
+    }
+
+    /**
+     * Set the lifetime of cached TLS sessions.
+     *
+     * @param timeout lifetime in seconds, or 0 for the default of the JSSE
+     *                provider.
+     */
+    public final void setTlsSessionTimeout(int timeout) {
+        if (timeout < 0)
+            throw new IllegalArgumentException("timeout: " + timeout);
+
+        this.tlsSessionTimeout = timeout;
+        SSLContext ctx = sslContext;
+        if (ctx != null)
+            configureSessionCache(ctx);
+    }
+
     public int getNumberOfOpenAssociations() {
         return assocCount;
     }
@@ -1134,10 +1244,27 @@ public class Device implements Serializable {
         if (ctx != null)
             return ctx;
 
-        sslContext = ctx = createSSLContext(km(), tm());
+        ctx = createSSLContext(km(), tm());
+        configureSessionCache(ctx);
+        sslContext = ctx;
         return ctx;
     }
 
+    private void configureSessionCache(SSLContext ctx) {
+        configureSessionCache(ctx.getServerSessionContext());
+        configureSessionCache(ctx.getClientSessionContext());
+    }
+
+    private void configureSessionCache(SSLSessionContext sessionContext) {
+        if (sessionContext == null)
+            return;
+
+        if (tlsSessionCacheSize > 0)
+            sessionContext.setSessionCacheSize(tlsSessionCacheSize);
+        if (tlsSessionTimeout > 0)
+            sessionContext.setSessionTimeout(tlsSessionTimeout);
+    }
+
     private static SSLContext createSSLContext(KeyManager km, TrustManager tm)
             throws GeneralSecurityException {
         SSLContext ctx = SSLContext.getInstance("TLS");
@@ -1162,6 +1289,10 @@ public class Device implements Serializable {
         return scheduledExecutor.schedule(command, delay, unit);
     }
 
+    TimeoutWheel getTimeoutWheel() {
+        return timeoutWheel;
+    }
+
     public ScheduledFuture<?> scheduleAtFixedRate(Runnable command,
             long initialDelay, long period, TimeUnit unit) {
         if (scheduledExecutor == null)
@@ -1240,6 +1371,8 @@ public class Device implements Serializable {
         setThisNodeCertificates(from.thisNodeCertificates);
         setVendorData(from.vendorData);
         setLimitOpenAssociations(from.limitOpenAssociations);
+        setTlsSessionCacheSize(from.tlsSessionCacheSize);
+        setTlsSessionTimeout(from.tlsSessionTimeout);
         setInstalled(from.installed);
      }
 
@@ -0,0 +1,422 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+
+/**
+ * Admission control and priority scheduling of incoming associations and
+ * DIMSE requests of a {@link Device}.
+ * <p>
+ * Association requests exceeding the quota of open associations of the
+ * Calling AE are rejected. DIMSE requests are performed concurrently up to
+ * {@link #getMaxOperations()} for the whole device, up to the quota of
+ * the Calling AE and up to the quota of the SOP Class. Further requests
+ * wait in a queue ordered by their Priority (0000,0700) - which may be
+ * overwritten per Calling AE - and are granted as soon as their quotas
+ * permit. Waiting blocks reading from the association, so the sender is
+ * slowed down by TCP flow control. Requests exceeding
+ * {@link #getMaxQueueSize()} or waiting longer than
+ * {@link #getMaxQueueTime()} are refused with Status {@code A700H}
+ * (Out of Resources), resp. {@code 0213H} (Resource Limitation) for
+ * DIMSE-N services.
+ *
+ * @author agent <agent@local>
+ * @see Device#setDimseRQScheduler(DimseRQScheduler)
+ */
+public class DimseRQScheduler {
+
+    private static final Comparator<Ticket> PRIORITY_ORDER =
+            new Comparator<Ticket>() {
+
+        @Override
+        public int compare(Ticket t1, Ticket t2) {
+            return t1.rank != t2.rank ? t1.rank - t2.rank
+                    : t1.seqNo < t2.seqNo ? -1
+                    : t1.seqNo > t2.seqNo ? 1 : 0;
+        }
+    };
+
+    private int maxOperations;
+    private int maxOperationsPerCallingAET;
+    private int maxOperationsPerSOPClass;
+    private int maxAssociationsPerCallingAET;
+    private int maxQueueSize = Integer.MAX_VALUE;
+    private int maxQueueTime;
+    private final Map<String, Integer> maxOperationsOfCallingAET =
+            new HashMap<String, Integer>();
+    private final Map<String, Integer> maxOperationsOfSOPClass =
+            new HashMap<String, Integer>();
+    private final Map<String, Integer> maxAssociationsOfCallingAET =
+            new HashMap<String, Integer>();
+    private final Map<String, Integer> priorityOfCallingAET =
+            new HashMap<String, Integer>();
+
+    private final TreeSet<Ticket> queue = new TreeSet<Ticket>(PRIORITY_ORDER);
+    private final HashMap<String, Integer> operationsOfCallingAET =
+            new HashMap<String, Integer>();
+    private final HashMap<String, Integer> operationsOfSOPClass =
+            new HashMap<String, Integer>();
+    private final HashMap<String, Integer> associationsOfCallingAET =
+            new HashMap<String, Integer>();
+    private final HashSet<Association> admitted = new HashSet<Association>();
+    private int operations;
+    private long seqNo;
+
+    /**
+     * Grant to perform a DIMSE request, returned by
+     * {@link DimseRQScheduler#acquire} and passed to
+     * {@link DimseRQScheduler#release} after the final RSP was sent.
+     */
+    public static final class Ticket {
+        private final String callingAET;
+        private final String cuid;
+        private final int rank;
+        private final long seqNo;
+        private boolean granted;
+        private boolean released;
+
+        private Ticket(String callingAET, String cuid, int rank, long seqNo) {
+            this.callingAET = callingAET;
+            this.cuid = cuid;
+            this.rank = rank;
+            this.seqNo = seqNo;
+        }
+    }
+
+    public synchronized int getMaxOperations() {
+        return maxOperations;
+    }
+
+    /**
+     * Sets the maximal number of DIMSE requests performed concurrently by
+     * the device; 0 means unlimited.
+     */
+    public synchronized void setMaxOperations(int maxOperations) {
+        this.maxOperations = checkNotNegative(maxOperations);
+    }
+
+    public synchronized int getMaxOperationsPerCallingAET() {
+        return maxOperationsPerCallingAET;
+    }
+
+    /**
+     * Sets the default maximal number of DIMSE requests performed
+     * concurrently for one Calling AE; 0 means unlimited.
+     */
+    public synchronized void setMaxOperationsPerCallingAET(int max) {
+        this.maxOperationsPerCallingAET = checkNotNegative(max);
+    }
+
+    public synchronized int getMaxOperationsPerSOPClass() {
+        return maxOperationsPerSOPClass;
+    }
+
+    /**
+     * Sets the default maximal number of DIMSE requests performed
+     * concurrently for one SOP Class; 0 means unlimited.
+     */
+    public synchronized void setMaxOperationsPerSOPClass(int max) {
+        this.maxOperationsPerSOPClass = checkNotNegative(max);
+    }
+
+    public synchronized int getMaxAssociationsPerCallingAET() {
+        return maxAssociationsPerCallingAET;
+    }
+
+    /**
+     * Sets the default maximal number of open associations initiated by one
+     * Calling AE; 0 means unlimited.
+     */
+    public synchronized void setMaxAssociationsPerCallingAET(int max) {
+        this.maxAssociationsPerCallingAET = checkNotNegative(max);
+    }
+
+    public synchronized int getMaxQueueSize() {
+        return maxQueueSize;
+    }
+
+    /**
+     * Sets the maximal number of DIMSE requests waiting to be performed;
+     * 0 refuses requests immediately if they cannot be performed.
+     */
+    public synchronized void setMaxQueueSize(int maxQueueSize) {
+        this.maxQueueSize = checkNotNegative(maxQueueSize);
+    }
+
+    public synchronized int getMaxQueueTime() {
+        return maxQueueTime;
+    }
+
+    /**
+     * Sets the maximal time in ms a DIMSE request waits to be performed
+     * before it is refused; 0 means no limit.
+     */
+    public synchronized void setMaxQueueTime(int maxQueueTime) {
+        this.maxQueueTime = checkNotNegative(maxQueueTime);
+    }
+
+    /**
+     * Overwrites the maximal number of DIMSE requests performed
+     * concurrently for the specified Calling AE; -1 removes the overwrite.
+     */
+    public synchronized void setMaxOperationsOfCallingAET(String aet,
+            int max) {
+        put(maxOperationsOfCallingAET, aet, max);
+    }
+
+    /**
+     * Overwrites the maximal number of DIMSE requests performed
+     * concurrently for the specified SOP Class; -1 removes the overwrite.
+     */
+    public synchronized void setMaxOperationsOfSOPClass(String cuid,
+            int max) {
+        put(maxOperationsOfSOPClass, cuid, max);
+    }
+
+    /**
+     * Overwrites the maximal number of open associations initiated by the
+     * specified Calling AE; -1 removes the overwrite.
+     */
+    public synchronized void setMaxAssociationsOfCallingAET(String aet,
+            int max) {
+        put(maxAssociationsOfCallingAET, aet, max);
+    }
+
+    /**
+     * Overwrites the Priority (0000,0700) of DIMSE requests from the
+     * specified Calling AE by {@link Priority#HIGH}, {@link Priority#NORMAL}
+     * or {@link Priority#LOW}; -1 removes the overwrite.
+     */
+    public synchronized void setPriorityOfCallingAET(String aet,
+            int priority) {
+        if (priority < 0)
+            priorityOfCallingAET.remove(aet);
+        else
+            priorityOfCallingAET.put(aet, checkPriority(priority));
+    }
+
+    public synchronized int getNumberOfOperations() {
+        return operations;
+    }
+
+    public synchronized int getNumberOfQueuedRequests() {
+        return queue.size();
+    }
+
+    /**
+     * Counts an accepted association against the quota of its Calling AE.
+     *
+     * @return {@code false} if the quota of the Calling AE is exhausted
+     */
+    public synchronized boolean admit(Association as) {
+        String aet = as.getCallingAET();
+        int limit = limit(maxAssociationsOfCallingAET, aet,
+                maxAssociationsPerCallingAET);
+        if (limit > 0 && count(associationsOfCallingAET, aet) >= limit)
+            return false;
+
+        if (admitted.add(as))
+            add(associationsOfCallingAET, aet, 1);
+        return true;
+    }
+
+    public synchronized void onClose(Association as) {
+        if (admitted.remove(as))
+            add(associationsOfCallingAET, as.getCallingAET(), -1);
+    }
+
+    /**
+     * Waits until the DIMSE request may be performed.
+     *
+     * @return grant to perform the request or {@code null}, if the request
+     *         shall be refused
+     */
+    public synchronized Ticket acquire(Association as, Dimse dimse,
+            Attributes cmd) throws InterruptedException {
+        String aet = as.getCallingAET();
+        Integer priority = priorityOfCallingAET.get(aet);
+        Ticket ticket = new Ticket(aet,
+                cmd.getString(dimse.tagOfSOPClassUID()),
+                rankOf(priority != null ? priority.intValue()
+                        : cmd.getInt(Tag.Priority, Priority.NORMAL)),
+                seqNo++);
+        queue.add(ticket);
+        dispatch();
+        if (ticket.granted)
+            return ticket;
+
+        if (queue.size() > maxQueueSize) {
+            queue.remove(ticket);
+            return null;
+        }
+        long end = maxQueueTime > 0
+                ? System.currentTimeMillis() + maxQueueTime
+                : 0L;
+        try {
+            while (!ticket.granted) {
+                if (end == 0L)
+                    wait();
+                else {
+                    long remaining = end - System.currentTimeMillis();
+                    if (remaining <= 0) {
+                        queue.remove(ticket);
+                        return null;
+                    }
+                    wait(remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            if (!queue.remove(ticket))
+                release(ticket);
+            throw e;
+        }
+        return ticket;
+    }
+
+    public synchronized void release(Ticket ticket) {
+        if (!ticket.granted || ticket.released)
+            return;
+
+        ticket.released = true;
+        operations--;
+        add(operationsOfCallingAET, ticket.callingAET, -1);
+        add(operationsOfSOPClass, ticket.cuid, -1);
+        dispatch();
+    }
+
+    /**
+     * Returns the Status of the RSP to a refused DIMSE request.
+     */
+    public int refusedStatus(Dimse dimse) {
+        return dimse.commandField() >= Dimse.N_EVENT_REPORT_RQ.commandField()
+                ? Status.ResourceLimitation
+                : Status.OutOfResources;
+    }
+
+    private void dispatch() {
+        boolean granted = false;
+        for (Iterator<Ticket> iter = queue.iterator(); iter.hasNext();) {
+            if (maxOperations > 0 && operations >= maxOperations)
+                break;
+
+            Ticket ticket = iter.next();
+            if (withinQuota(ticket)) {
+                iter.remove();
+                ticket.granted = true;
+                operations++;
+                add(operationsOfCallingAET, ticket.callingAET, 1);
+                add(operationsOfSOPClass, ticket.cuid, 1);
+                granted = true;
+            }
+        }
+        if (granted)
+            notifyAll();
+    }
+
+    private boolean withinQuota(Ticket ticket) {
+        int limit = limit(maxOperationsOfCallingAET, ticket.callingAET,
+                maxOperationsPerCallingAET);
+        if (limit > 0 && count(operationsOfCallingAET, ticket.callingAET)
+                >= limit)
+            return false;
+
+        limit = limit(maxOperationsOfSOPClass, ticket.cuid,
+                maxOperationsPerSOPClass);
+        return limit == 0 || count(operationsOfSOPClass, ticket.cuid) < limit;
+    }
+
+    private static int rankOf(int priority) {
+        switch (priority) {
+        case Priority.HIGH:
+            return 0;
+        case Priority.LOW:
+            return 2;
+        default:
+            return 1;
+        }
+    }
+
+    private static int limit(Map<String, Integer> limits, String key,
+            int defaultLimit) {
+        Integer limit = limits.get(key);
+        return limit != null ? limit.intValue() : defaultLimit;
+    }
+
+    private static int count(Map<String, Integer> counts, String key) {
+        Integer count = counts.get(key);
+        return count != null ? count.intValue() : 0;
+    }
+
+    private static void add(Map<String, Integer> counts, String key, int n) {
+        int count = count(counts, key) + n;
+        if (count > 0)
+            counts.put(key, count);
+        else
+            counts.remove(key);
+    }
+
+    private static void put(Map<String, Integer> limits, String key,
+            int limit) {
+        if (limit < 0)
+            limits.remove(key);
+        else
+            limits.put(key, limit);
+    }
+
+    private static int checkNotNegative(int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("value: " + value);
+        return value;
+    }
+
+    private static int checkPriority(int priority) {
+        if (priority > Priority.LOW)
+            throw new IllegalArgumentException("priority: " + priority);
+        return priority;
+    }
+}
@@ -51,7 +51,10 @@ public class DimseRSPHandler {
 
     private final int msgId;
     private PresentationContext pc;
-    private Timeout timeout;
+    private volatile Timeout timeout;
+    private Dimse dimse;
+    private String cuid;
+    private long invokeTime;
 
     public DimseRSPHandler(int msgId) {
         this.msgId = msgId;
@@ -61,6 +64,24 @@ public class DimseRSPHandler {
         this.pc = pc;
     }
 
+    final void setInvoked(Dimse dimse, String cuid) {
+        this.dimse = dimse;
+        this.cuid = cuid;
+        this.invokeTime = System.nanoTime();
+    }
+
+    final Dimse getDimse() {
+        return dimse;
+    }
+
+    final String getSOPClassUID() {
+        return cuid;
+    }
+
+    final long getInvokeTime() {
+        return invokeTime;
+    }
+
     public final int getMessageID() {
         return msgId;
     }
@@ -0,0 +1,83 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.dcm4che3.util.SafeClose;
+
+/**
+ * Writes the data set from a region of a file, which is already encoded in
+ * the negotiated Transfer Syntax. Over the NIO transport, the bytes are
+ * transferred from the file to the socket without copying them through a
+ * heap buffer.
+ *
+ * @author agent <agent@local>
+ */
+public class FileDataWriter implements DataWriter {
+
+    private final File file;
+    private final long offset;
+    private final long length;
+
+    public FileDataWriter(File file, long offset, long length) {
+        if (file == null)
+            throw new NullPointerException();
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    public FileDataWriter(File file, long offset) {
+        this(file, offset, file.length() - offset);
+    }
+
+    @Override
+    public void writeTo(PDVOutputStream out, String tsuid) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            out.copyFrom(in.getChannel(), offset, length);
+        } finally {
+            SafeClose.close(in);
+        }
+    }
+
+}
@@ -0,0 +1,337 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import org.dcm4che3.util.SafeClose;
+
+/**
+ * Non-blocking socket channel of an {@link Association} with
+ * {@link Connection#isNioTransport()}.
+ * <p>
+ * While the association is idle, its channel is only watched by the
+ * {@link SelectorLoop} and no thread is bound to it. On arrival of data,
+ * the decode task is dispatched to the executor of the {@link Device},
+ * which reads and processes PDUs by the {@link InputStream} of the
+ * endpoint, until {@link #suspend()} finds no more data available.
+ * Reads and writes which cannot complete immediately wait for the
+ * readiness of the channel signaled by the selector thread.
+ *
+ * @author agent <agent@local>
+ */
+class NioEndpoint implements SelectorLoop.Handler {
+
+    private static final int BUF_SIZE = 0x4000;
+
+    private final SocketChannel ch;
+    private final SelectorLoop loop;
+    private final Runnable decodeTask;
+    private final ByteBuffer rbuf = ByteBuffer.allocate(BUF_SIZE);
+    private final InputStream in = new In();
+    private final OutputStream out = new Out();
+    private SelectionKey key;
+    private int interestOps;
+    private boolean readReady;
+    private boolean writeReady;
+    private boolean dispatched;
+    private boolean stopped;
+    private boolean closed;
+    private boolean eof;
+
+    NioEndpoint(SocketChannel ch, SelectorLoop loop, Runnable decodeTask)
+            throws IOException {
+        this.ch = ch;
+        this.loop = loop;
+        this.decodeTask = decodeTask;
+        ch.configureBlocking(false);
+        rbuf.flip();
+    }
+
+    public InputStream getInputStream() {
+        return in;
+    }
+
+    public OutputStream getOutputStream() {
+        return out;
+    }
+
+    /**
+     * Transfers a region of a file directly to the channel by
+     * {@link FileChannel#transferTo}, without copying it through a heap
+     * buffer.
+     */
+    public void transferFrom(FileChannel src, long position, long count)
+            throws IOException {
+        synchronized (out) {
+            while (count > 0) {
+                long n = src.transferTo(position, count, ch);
+                if (n == 0) {
+                    if (position >= src.size())
+                        throw new EOFException();
+                    awaitWritable();
+                }
+                position += n;
+                count -= n;
+            }
+        }
+    }
+
+    /**
+     * Registers the channel for read readiness with the selector thread,
+     * which dispatches the decode task on arrival of data.
+     */
+    public synchronized void start() throws IOException {
+        interestOps = SelectionKey.OP_READ;
+        loop.register(ch, SelectionKey.OP_READ, this);
+    }
+
+    @Override
+    public synchronized void onRegistered(SelectionKey key) {
+        this.key = key;
+        key.interestOps(interestOps);
+    }
+
+    @Override
+    public synchronized void onReady(SelectionKey key) {
+        int readyOps = key.readyOps();
+        interestOps &= ~readyOps;
+        key.interestOps(interestOps);
+        if ((readyOps & SelectionKey.OP_WRITE) != 0)
+            writeReady = true;
+        if ((readyOps & SelectionKey.OP_READ) != 0) {
+            readReady = true;
+            if (!dispatched && !stopped)
+                dispatch();
+        }
+        notifyAll();
+    }
+
+    private void dispatch() {
+        dispatched = true;
+        try {
+            loop.getDevice().execute(decodeTask);
+        } catch (RuntimeException e) {
+            dispatched = false;
+            Connection.LOG.error("Failed to dispatch decoding of {}:", ch, e);
+            close();
+        }
+    }
+
+    /**
+     * Releases the decoding thread, if no more data is available. In that
+     * case, the decode task will be dispatched again on arrival of data.
+     *
+     * @return {@code true} if the decode task shall return, {@code false}
+     *         if further data is available or the channel was closed
+     */
+    public synchronized boolean suspend() throws IOException {
+        if (closed || eof || rbuf.hasRemaining())
+            return false;
+
+        if (fill() != 0)
+            return false;
+
+        dispatched = false;
+        readReady = false;
+        addInterestOps(SelectionKey.OP_READ);
+        return true;
+    }
+
+    /**
+     * Disables dispatching of the decode task on arrival of data.
+     */
+    public synchronized void stop() {
+        stopped = true;
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Closes the channel and dispatches the decode task, if no thread is
+     * bound to it, to notify the association about the close.
+     */
+    public synchronized void close() {
+        if (closed)
+            return;
+
+        closed = true;
+        SafeClose.close(ch.socket());
+        loop.wakeup();
+        notifyAll();
+        if (!dispatched && !stopped)
+            dispatch();
+    }
+
+    private int fill() throws IOException {
+        rbuf.compact();
+        try {
+            int n = ch.read(rbuf);
+            if (n < 0)
+                eof = true;
+            return n;
+        } finally {
+            rbuf.flip();
+        }
+    }
+
+    private void addInterestOps(int ops) {
+        if ((interestOps & ops) == ops)
+            return;
+
+        interestOps |= ops;
+        if (key == null) // registration pending
+            return;
+
+        loop.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                synchronized (NioEndpoint.this) {
+                    if (key.isValid())
+                        key.interestOps(interestOps);
+                }
+            }
+        });
+    }
+
+    private synchronized void awaitReadable() throws IOException {
+        readReady = false;
+        addInterestOps(SelectionKey.OP_READ);
+        while (!readReady && !closed)
+            waitForReady();
+        checkClosed();
+    }
+
+    private synchronized void awaitWritable() throws IOException {
+        writeReady = false;
+        addInterestOps(SelectionKey.OP_WRITE);
+        while (!writeReady && !closed)
+            waitForReady();
+        checkClosed();
+    }
+
+    private void waitForReady() throws InterruptedIOException {
+        try {
+            wait();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+        }
+    }
+
+    private void checkClosed() throws SocketException {
+        if (closed)
+            throw new SocketException("Socket closed");
+    }
+
+    private class In extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            if (!rbuf.hasRemaining() && !await())
+                return -1;
+
+            return rbuf.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+
+            if (!rbuf.hasRemaining() && !await())
+                return -1;
+
+            int n = Math.min(len, rbuf.remaining());
+            rbuf.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return rbuf.remaining();
+        }
+
+        private boolean await() throws IOException {
+            int n;
+            while ((n = fill()) == 0)
+                awaitReadable();
+
+            return n > 0;
+        }
+
+        @Override
+        public void close() {
+            NioEndpoint.this.close();
+        }
+    }
+
+    private class Out extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len)
+                throws IOException {
+            ByteBuffer src = ByteBuffer.wrap(b, off, len);
+            while (src.hasRemaining())
+                if (ch.write(src) == 0)
+                    awaitWritable();
+        }
+
+        @Override
+        public void close() {
+            NioEndpoint.this.close();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Listener accepting connections by a {@link SelectorLoop} of the
+ * {@link Device}, used for DICOM connections with
+ * {@link Connection#isNioTransport()}.
+ *
+ * @author agent <agent@local>
+ */
+class NioTCPListener implements Listener, SelectorLoop.Handler {
+
+    private final Connection conn;
+    private final TCPProtocolHandler handler;
+    private final ServerSocketChannel ssc;
+    private final SelectorLoop loop;
+
+    public NioTCPListener(Connection conn, TCPProtocolHandler handler)
+            throws IOException {
+        this.conn = conn;
+        this.handler = handler;
+        this.loop = conn.getDevice().selectorLoop();
+        ssc = ServerSocketChannel.open();
+        try {
+            conn.setReceiveBufferSize(ssc.socket());
+            ssc.socket().bind(conn.getBindPoint(), conn.getBacklog());
+            ssc.configureBlocking(false);
+            loop.register(ssc, SelectionKey.OP_ACCEPT, this);
+        } catch (IOException e) {
+            ssc.close();
+            throw new IOException("Unable to start NioTCPListener on "
+                    + conn.getHostname() + ":" + conn.getPort(), e);
+        }
+        Connection.LOG.info("Start NIO TCP Listener on {}",
+                ssc.socket().getLocalSocketAddress());
+    }
+
+    @Override
+    public void onRegistered(SelectionKey key) {
+    }
+
+    @Override
+    public void onReady(SelectionKey key) throws IOException {
+        SocketChannel ch;
+        while ((ch = ssc.accept()) != null)
+            onAccept(ch.socket());
+    }
+
+    private void onAccept(Socket s) {
+        ConnectionMonitor monitor = conn.getDevice().getConnectionMonitor();
+        if (conn.isBlackListed(s.getInetAddress())) {
+            if (monitor != null)
+                monitor.onConnectionRejectedBlacklisted(conn, s);
+            Connection.LOG.info("Reject blacklisted connection {}", s);
+            conn.close(s);
+            return;
+        }
+        try {
+            conn.setSocketSendOptions(s);
+        } catch (Throwable e) {
+            if (monitor != null)
+                monitor.onConnectionRejected(conn, s, e);
+            Connection.LOG.warn("Reject connection {}:", s, e);
+            conn.close(s);
+            return;
+        }
+        if (monitor != null)
+            monitor.onConnectionAccepted(conn, s);
+        Connection.LOG.info("Accept connection {}", s);
+        try {
+            handler.onAccept(conn, s);
+        } catch (Throwable e) {
+            Connection.LOG.warn("Exception on accepted connection {}:", s, e);
+            conn.close(s);
+        }
+    }
+
+    @Override
+    public SocketAddress getEndPoint() {
+        return ssc.socket().getLocalSocketAddress();
+    }
+
+    @Override
+    public void close() throws IOException {
+        Connection.LOG.info("Stop NIO TCP Listener on {}", getEndPoint());
+        try {
+            ssc.close();
+        } catch (Throwable e) {
+            // Ignore errors when closing the server socket.
+        }
+        loop.wakeup();
+    }
+}
@@ -89,7 +89,7 @@ class PDUDecoder extends PDVInputStream {
 
     private final Association as;
     private final InputStream in;
-    private final Thread th;
+    private Thread th;
     private byte[] buf = new byte[6 + Connection.DEF_MAX_PDU_LENGTH];
     private int pos;
     private int pdutype;
@@ -104,6 +104,14 @@ class PDUDecoder extends PDVInputStream {
         this.th = Thread.currentThread();
     }
 
+    /**
+     * Binds this decoder to the current thread, which continues decoding
+     * of PDUs received by a non-blocking channel.
+     */
+    void bindToCurrentThread() {
+        th = Thread.currentThread();
+    }
+
     private int remaining() {
         return pdulen + 6 - pos;
     }
@@ -163,6 +171,7 @@ class PDUDecoder extends PDVInputStream {
         pdulen = getInt();
         Association.LOG.trace("{} >> PDU[type={}, len={}]",
                 new Object[] { as, pdutype, pdulen & 0xFFFFFFFFL });
+        as.onPDUReceived(6 + pdulen);
         switch (pdutype) {
         case PDUType.A_ASSOCIATE_RQ:
             readPDU();
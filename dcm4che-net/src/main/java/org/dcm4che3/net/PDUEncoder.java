@@ -42,6 +42,8 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
@@ -67,6 +69,7 @@ class PDUEncoder extends PDVOutputStream {
 
     private Association as;
     private OutputStream out;
+    private NioEndpoint nio;
     private byte[] buf = new byte[Connection.DEF_MAX_PDU_LENGTH + 6];
     private int pos;
     private int pdvpcid;
@@ -75,10 +78,18 @@ class PDUEncoder extends PDVOutputStream {
     private int maxpdulen;
     private Thread th;
     private Object dimseLock = new Object();
+    private FileChannel region;
+    private long regionPos;
+    private int regionLen;
 
     public PDUEncoder(Association as, OutputStream out) {
+        this(as, out, null);
+    }
+
+    public PDUEncoder(Association as, OutputStream out, NioEndpoint nio) {
         this.as = as;
         this.out = out;
+        this.nio = nio;
     }
 
     public void write(AAssociateRQ rq) throws IOException {
@@ -121,12 +132,16 @@ class PDUEncoder extends PDVOutputStream {
         };
         out.write(b);
         out.flush();
+        as.onPDUSent(b.length);
     }
 
     private synchronized void writePDU(int pdulen) throws IOException {
         try {
-            out.write(buf, 0, 6 + pdulen);
+            out.write(buf, 0, 6 + pdulen - regionLen);
             out.flush();
+            if (regionLen > 0)
+                nio.transferFrom(region, regionPos, regionLen);
+            as.onPDUSent(6 + pdulen);
         } catch (IOException e) {
             as.onIOException(e);
             throw e;
@@ -355,6 +370,52 @@ class PDUEncoder extends PDVOutputStream {
         }
     }
 
+    /**
+     * Transfers full P-DATA-TF PDUs directly from the file to the socket
+     * channel, if the association uses the NIO transport. Only the remaining
+     * bytes, which do not fill a whole PDU, are copied into the PDU buffer.
+     */
+    @Override
+    public void copyFrom(FileChannel src, long position, long length)
+            throws IOException {
+        if (nio == null) {
+            super.copyFrom(src, position, length);
+            return;
+        }
+        checkThread();
+        for (;;) {
+            flushPDataTF();
+            int free = free();
+            if (length <= free)
+                break;
+            transferPDataTF(src, position, free);
+            position += free;
+            length -= free;
+        }
+        ByteBuffer dst = ByteBuffer.wrap(buf, pos, (int) length);
+        while (dst.hasRemaining())
+            if (src.read(dst, position + dst.position() - pos) == -1)
+                throw new EOFException();
+        pos += (int) length;
+    }
+
+    private void transferPDataTF(FileChannel src, long position, int length)
+            throws IOException {
+        int datapos = pos;
+        pos += length;
+        encodePDVHeader(PDVType.PENDING);
+        pos = datapos;
+        region = src;
+        regionPos = position;
+        regionLen = length;
+        try {
+            as.writePDataTF();
+        } finally {
+            region = null;
+            regionLen = 0;
+        }
+    }
+
     private void checkThread() {
         if (th != Thread.currentThread())
             throw new IllegalStateException("Entered by wrong thread");
@@ -384,7 +445,7 @@ class PDUEncoder extends PDVOutputStream {
     }
 
     public void writePDataTF() throws IOException {
-        int pdulen = pos - 6;
+        int pdulen = pos - 6 + regionLen;
         pos = 0;
         put(PDUType.P_DATA_TF);
         put(0);
@@ -38,11 +38,14 @@
 
 package org.dcm4che3.net;
 
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -59,4 +62,79 @@ public abstract class PDVInputStream extends InputStream {
 
     public abstract long skipAll() throws IOException;
 
+    /**
+     * Copies the remaining data to <code>out</code> in a single pass, while
+     * parsing the dataset up to <code>stopTag</code>, so the received object
+     * does not have to be read back from the written file to get its
+     * attributes.
+     *
+     * @param out
+     *            destination of the complete data, unchanged
+     * @param tsuid
+     *            Transfer Syntax UID of the data
+     * @param stopTag
+     *            tag of the first attribute which is not parsed, or -1 to
+     *            parse the whole dataset
+     * @return attributes preceding <code>stopTag</code>, without bulk data
+     * @throws IOException
+     */
+    public Attributes copyTo(OutputStream out, String tsuid, int stopTag)
+            throws IOException {
+        DicomInputStream din = new DicomInputStream(
+                new TeeInputStream(this, out), tsuid);
+        din.setIncludeBulkData(IncludeBulkData.NO);
+        Attributes attrs = din.readDataset(-1, stopTag);
+        copyTo(out);
+        return attrs;
+    }
+
+    private static final class TeeInputStream extends FilterInputStream {
+
+        private final OutputStream out;
+        private byte[] skipBuffer;
+
+        TeeInputStream(InputStream in, OutputStream out) {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0)
+                out.write(b);
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = in.read(b, off, len);
+            if (n > 0)
+                out.write(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            if (skipBuffer == null)
+                skipBuffer = new byte[4096];
+            long remaining = n;
+            int read;
+            while (remaining > 0 && (read = read(skipBuffer, 0,
+                    (int) Math.min(skipBuffer.length, remaining))) > 0)
+                remaining -= read;
+            return n - remaining;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() {
+            // leave closing of the PDV stream and the destination to caller
+        }
+    }
+
 }
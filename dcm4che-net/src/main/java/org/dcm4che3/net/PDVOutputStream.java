@@ -41,6 +41,8 @@ package org.dcm4che3.net;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 /**
  * @author Gunter Zeilinger <gunterze@gmail.com>
@@ -52,4 +54,20 @@ public abstract class PDVOutputStream extends OutputStream {
             throws IOException;
 
     public abstract void copyFrom(InputStream in) throws IOException;
+
+    /**
+     * Copies {@code length} bytes of a file starting at {@code position}.
+     * Sub-classes may transfer the bytes directly from the file to the
+     * socket, without copying them through a heap buffer.
+     */
+    public void copyFrom(FileChannel src, long position, long length)
+            throws IOException {
+        src.position(position);
+        InputStream in = Channels.newInputStream(src);
+        while (length > 0) {
+            int n = (int) Math.min(length, Integer.MAX_VALUE);
+            copyFrom(in, n);
+            length -= n;
+        }
+    }
 }
@@ -0,0 +1,208 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Selector thread multiplexing the non-blocking channels of
+ * {@link Connection}s with {@link Connection#isNioTransport()}.
+ * The thread is started by the first registration and terminates
+ * as soon as no channel is registered any more.
+ *
+ * @author agent <agent@local>
+ */
+class SelectorLoop implements Runnable {
+
+    interface Handler {
+        void onRegistered(SelectionKey key);
+        void onReady(SelectionKey key) throws IOException;
+    }
+
+    private final Device device;
+    private final String name;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private Selector selector;
+    private boolean running;
+
+    SelectorLoop(Device device, String name) {
+        this.device = device;
+        this.name = name;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public Device getDevice() {
+        return device;
+    }
+
+    /**
+     * Registers the channel with the selector of this loop. The returned
+     * key must only be modified by tasks passed to {@link #execute}.
+     */
+    public void register(final SelectableChannel ch, final int ops,
+            final Handler handler) throws IOException {
+        synchronized (this) {
+            if (selector == null)
+                selector = Selector.open();
+            tasks.add(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        handler.onRegistered(ch.register(selector, ops, handler));
+                    } catch (ClosedChannelException e) {
+                        Connection.LOG.debug("{}: channel closed before registration", name);
+                    }
+                }
+            });
+            if (!running) {
+                running = true;
+                try {
+                    device.execute(this);
+                } catch (RuntimeException e) {
+                    running = false;
+                    tasks.clear();
+                    throw e;
+                }
+                return;
+            }
+        }
+        selector.wakeup();
+    }
+
+    /**
+     * Executes the task by the selector thread.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        wakeup();
+    }
+
+    public synchronized void wakeup() {
+        if (selector != null)
+            selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        Thread th = Thread.currentThread();
+        String prevName = th.getName();
+        th.setName(name);
+        Connection.LOG.debug("Start {}", name);
+        try {
+            Selector selector;
+            synchronized (this) {
+                selector = this.selector;
+            }
+            while (runTasks(selector)) {
+                selector.select();
+                Iterator<SelectionKey> iter = selector.selectedKeys().iterator();
+                while (iter.hasNext()) {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    if (key.isValid())
+                        onReady(key);
+                }
+            }
+        } catch (Throwable e) {
+            Connection.LOG.error("{}: unexpected exception:", name, e);
+            close();
+        } finally {
+            Connection.LOG.debug("Stop {}", name);
+            th.setName(prevName);
+        }
+    }
+
+    private static void onReady(SelectionKey key) {
+        try {
+            ((Handler) key.attachment()).onReady(key);
+        } catch (Throwable e) {
+            Connection.LOG.warn("Failed to handle ready operations of {}:",
+                    key.channel(), e);
+            key.cancel();
+        }
+    }
+
+    private boolean runTasks(Selector selector) throws IOException {
+        Runnable task;
+        while ((task = tasks.poll()) != null)
+            try {
+                task.run();
+            } catch (CancelledKeyException e) {
+                // channel closed meanwhile
+            }
+
+        synchronized (this) {
+            if (!tasks.isEmpty() || !selector.keys().isEmpty())
+                return true;
+
+            running = false;
+            this.selector = null;
+        }
+        selector.close();
+        return false;
+    }
+
+    private synchronized void close() {
+        running = false;
+        if (selector != null) {
+            for (SelectionKey key : selector.keys())
+                try {
+                    key.channel().close();
+                } catch (IOException ignore) {}
+            try {
+                selector.close();
+            } catch (IOException ignore) {}
+            selector = null;
+        }
+        tasks.clear();
+    }
+}
@@ -0,0 +1,202 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.util.SafeClose;
+import org.dcm4che3.util.StreamUtils;
+
+/**
+ * {@link PDVInputStream} providing the data set of a DIMSE request
+ * received by an association, which performs operations asynchronously
+ * by {@link Connection#isAsyncDimseRQExecution()}. The data set is kept in
+ * memory, or spooled to a temporary file if it exceeds
+ * {@link Connection#getDimseRQSpoolThreshold()}.
+ *
+ * @author agent <agent@local>
+ */
+class SpooledPDVInputStream extends PDVInputStream {
+
+    private final InputStream in;
+    private final File file;
+
+    private SpooledPDVInputStream(InputStream in, File file) {
+        this.in = in;
+        this.file = file;
+    }
+
+    /**
+     * Reads the remaining data set from the specified stream.
+     */
+    public static SpooledPDVInputStream spool(PDVInputStream data,
+            int threshold) throws IOException {
+        SpoolOutputStream out = new SpoolOutputStream(threshold);
+        try {
+            data.copyTo(out);
+        } catch (IOException e) {
+            out.delete();
+            throw e;
+        } finally {
+            SafeClose.close(out);
+        }
+        return out.file != null
+            ? new SpooledPDVInputStream(new FileInputStream(out.file), out.file)
+            : new SpooledPDVInputStream(out.toInputStream(), null);
+    }
+
+    @Override
+    public Attributes readDataset(String tsuid) throws IOException {
+        DicomInputStream dis = new DicomInputStream(this, tsuid);
+        return dis.readDataset(-1, -1);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return in.read();
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        return in.read(b, off, len);
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        return in.skip(n);
+    }
+
+    @Override
+    public int available() throws IOException {
+        return in.available();
+    }
+
+    @Override
+    public void copyTo(OutputStream out, int length) throws IOException {
+        StreamUtils.copy(in, out, length);
+    }
+
+    @Override
+    public void copyTo(OutputStream out) throws IOException {
+        StreamUtils.copy(in, out);
+    }
+
+    @Override
+    public long skipAll() throws IOException {
+        byte[] buf = new byte[4096];
+        long n = 0;
+        int read;
+        while ((read = in.read(buf)) > 0)
+            n += read;
+        return n;
+    }
+
+    /**
+     * Closes the stream and deletes the spool file.
+     */
+    @Override
+    public void close() {
+        SafeClose.close(in);
+        if (file != null)
+            file.delete();
+    }
+
+    private static class SpoolOutputStream extends OutputStream {
+
+        private final int threshold;
+        private ByteArrayOutputStream buffer = new Buffer();
+        private OutputStream fout;
+        private File file;
+
+        SpoolOutputStream(int threshold) {
+            this.threshold = threshold;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (fout == null && buffer.size() + len > threshold) {
+                file = File.createTempFile("dimse", ".spool");
+                fout = new FileOutputStream(file);
+                buffer.writeTo(fout);
+                buffer = null;
+            }
+            if (fout != null)
+                fout.write(b, off, len);
+            else
+                buffer.write(b, off, len);
+        }
+
+        InputStream toInputStream() {
+            return ((Buffer) buffer).toInputStream();
+        }
+
+        void delete() {
+            SafeClose.close(fout);
+            if (file != null)
+                file.delete();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (fout != null)
+                fout.close();
+        }
+    }
+
+    private static class Buffer extends ByteArrayOutputStream {
+
+        InputStream toInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+}
@@ -43,6 +43,7 @@ import java.net.ServerSocket;
 import java.net.Socket;
 import java.net.SocketAddress;
 import java.security.GeneralSecurityException;
+import java.util.concurrent.Semaphore;
 
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLServerSocket;
@@ -58,6 +59,7 @@ class TCPListener implements Listener {
     private final Connection conn;
     private final TCPProtocolHandler handler;
     private final ServerSocket ss;
+    private final Semaphore handshakes;
 
     public TCPListener(Connection conn, TCPProtocolHandler handler)
             throws IOException, GeneralSecurityException {
@@ -65,6 +67,9 @@ class TCPListener implements Listener {
         
             this.conn = conn;
             this.handler = handler;
+            this.handshakes = conn.getMaxTLSHandshakes() > 0
+                    ? new Semaphore(conn.getMaxTLSHandshakes())
+                    : null;
             ss = conn.isTls() ? createTLSServerSocket(conn) : new ServerSocket();
             conn.setReceiveBufferSize(ss);
             ss.bind(conn.getBindPoint(), conn.getBacklog());
@@ -108,26 +113,14 @@ class TCPListener implements Listener {
                 } else {
                     try {
                         conn.setSocketSendOptions(s);
-                        if (s instanceof SSLSocket) {
-                            ((SSLSocket) s).startHandshake();
-                        }
                     } catch (Throwable e) {
-                        if (monitor != null)
-                            monitor.onConnectionRejected(conn, s, e);
-                        Connection.LOG.warn("Reject connection {}:",s, e);
-                        conn.close(s);
+                        reject(s, monitor, e);
                         continue;
                     }
-
-                    if (monitor != null)
-                        monitor.onConnectionAccepted(conn, s);
-                    Connection.LOG.info("Accept connection {}", s);
-                    try {
-                        handler.onAccept(conn, s);
-                    } catch (Throwable e) {
-                        Connection.LOG.warn("Exception on accepted connection {}:",s, e);
-                        conn.close(s);
-                    }
+                    if (s instanceof SSLSocket)
+                        handshake((SSLSocket) s, monitor);
+                    else
+                        accept(s, monitor);
                 }
             }
         } catch (Throwable e) {
@@ -137,6 +130,64 @@ class TCPListener implements Listener {
         Connection.LOG.info("Stop TCP Listener on {}", sockAddr);
     }
 
+    /**
+     * Performs the TLS handshake by a thread of the device executor, so a
+     * slow or stalled peer does not block the acceptance of other
+     * connections. The number of concurrent handshakes is limited by
+     * {@link Connection#getMaxTLSHandshakes()}; if the limit is reached,
+     * the connection is rejected, so the acceptor thread never waits for
+     * pending handshakes.
+     */
+    private void handshake(final SSLSocket s, final ConnectionMonitor monitor) {
+        if (handshakes != null && !handshakes.tryAcquire()) {
+            reject(s, monitor, new IOException(
+                    "Maximal number of pending TLS handshakes reached: "
+                    + conn.getMaxTLSHandshakes()));
+            return;
+        }
+        try {
+            conn.getDevice().execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        conn.startHandshake(s);
+                    } catch (Throwable e) {
+                        reject(s, monitor, e);
+                        return;
+                    } finally {
+                        if (handshakes != null)
+                            handshakes.release();
+                    }
+                    accept(s, monitor);
+                }
+            });
+        } catch (Throwable e) {
+            if (handshakes != null)
+                handshakes.release();
+            reject(s, monitor, e);
+        }
+    }
+
+    private void reject(Socket s, ConnectionMonitor monitor, Throwable e) {
+        if (monitor != null)
+            monitor.onConnectionRejected(conn, s, e);
+        Connection.LOG.warn("Reject connection {}:",s, e);
+        conn.close(s);
+    }
+
+    private void accept(Socket s, ConnectionMonitor monitor) {
+        if (monitor != null)
+            monitor.onConnectionAccepted(conn, s);
+        Connection.LOG.info("Accept connection {}", s);
+        try {
+            handler.onAccept(conn, s);
+        } catch (Throwable e) {
+            Connection.LOG.warn("Exception on accepted connection {}:",s, e);
+            conn.close(s);
+        }
+    }
+
 
     @Override
     public SocketAddress getEndPoint() {
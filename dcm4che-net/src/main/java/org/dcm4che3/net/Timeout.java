@@ -38,15 +38,16 @@
 
 package org.dcm4che3.net;
 
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Schedules an association.abort() on the given association
- * using the scheduledExecutor assigned to the device of that association.
+ * using the timeout wheel of the device of that association, which is
+ * driven by the scheduledExecutor assigned to that device.
  *
  * @author Gunter Zeilinger <gunterze@gmail.com>
  *
@@ -55,18 +56,34 @@ public class Timeout implements Runnable {
 
     public static Logger LOG = LoggerFactory.getLogger(Timeout.class);
 
+    private static final int PENDING = 0;
+    private static final int STOPPED = 1;
+    private static final int EXPIRED = 2;
+    private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
     private final Association as;
     private final String expiredMsg;
     private final String cancelMsg;
-    private final ScheduledFuture<?> future;
-    
+    private final TimeoutWheel wheel;
+    private volatile int state;
+
+    // accessed only by the ticking thread of the wheel
+    final long deadline;
+    long remainingRounds;
+    int bucket = -1;
+    Timeout prev;
+    Timeout next;
+
     private Timeout(Association as, String expiredMsg, String cancelMsg,
             int timeout) {
         this.as = as;
         this.expiredMsg = expiredMsg;
         this.cancelMsg = cancelMsg;
-        this.future = as.getDevice()
-                .schedule(this, timeout, TimeUnit.MILLISECONDS);
+        this.deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.wheel = as.getDevice().getTimeoutWheel();
+        wheel.add(this);
     }
 
     public static Timeout start(Association as, String startMsg,
@@ -80,7 +97,21 @@ public class Timeout implements Runnable {
      */
     public void stop() {
         LOG.debug(cancelMsg, as);
-        future.cancel(false);
+        if (STATE.compareAndSet(this, PENDING, STOPPED))
+            wheel.remove(this);
+    }
+
+    boolean isStopped() {
+        return state == STOPPED;
+    }
+
+    void expire() {
+        if (STATE.compareAndSet(this, PENDING, EXPIRED))
+            try {
+                run();
+            } catch (RuntimeException e) {
+                LOG.warn("{}: failed to abort on expired timeout", as, e);
+            }
     }
 
     @Override
@@ -0,0 +1,174 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timing wheel shared by all {@link Timeout}s of a {@link Device}.
+ * Pending timeouts are kept in buckets indexed by their expiration tick,
+ * which are advanced by a single task on the scheduled executor of the
+ * device, running only as long as there are pending timeouts. Starting and
+ * stopping a timeout just enqueues it; only the ticking thread touches the
+ * buckets.
+ *
+ * @author agent <agent@local>
+ */
+class TimeoutWheel implements Runnable {
+
+    static final long TICK_MILLIS = 10;
+    private static final long TICK_NANOS =
+            TimeUnit.MILLISECONDS.toNanos(TICK_MILLIS);
+    private static final int WHEEL_SIZE = 1024;
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    private final Device device;
+    private final Timeout[] buckets = new Timeout[WHEEL_SIZE];
+    private final ConcurrentLinkedQueue<Timeout> started =
+            new ConcurrentLinkedQueue<Timeout>();
+    private final ConcurrentLinkedQueue<Timeout> stopped =
+            new ConcurrentLinkedQueue<Timeout>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private ScheduledFuture<?> ticker;
+    private long startTime;
+    private long tick;
+
+    TimeoutWheel(Device device) {
+        this.device = device;
+    }
+
+    int getNumberOfPendingTimeouts() {
+        return pending.get();
+    }
+
+    void add(Timeout timeout) {
+        started.offer(timeout);
+        if (pending.getAndIncrement() == 0)
+            startTicker();
+    }
+
+    void remove(Timeout timeout) {
+        stopped.offer(timeout);
+    }
+
+    private synchronized void startTicker() {
+        if (ticker != null)
+            return;
+
+        startTime = System.nanoTime();
+        tick = 0;
+        try {
+            ticker = device.scheduleAtFixedRate(this,
+                    TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            started.clear();
+            pending.set(0);
+            throw e;
+        }
+    }
+
+    private synchronized void stopTickerIfIdle() {
+        if (pending.get() == 0 && ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        Timeout timeout;
+        while ((timeout = started.poll()) != null)
+            schedule(timeout);
+        while ((timeout = stopped.poll()) != null)
+            if (timeout.bucket >= 0) {
+                unlink(timeout);
+                pending.decrementAndGet();
+            }
+        long target = (System.nanoTime() - startTime) / TICK_NANOS;
+        while (tick <= target)
+            expire(tick++);
+        if (pending.get() == 0)
+            stopTickerIfIdle();
+    }
+
+    private void schedule(Timeout timeout) {
+        if (timeout.isStopped()) {
+            pending.decrementAndGet();
+            return;
+        }
+        long due = Math.max(tick, (timeout.deadline - startTime
+                + TICK_NANOS - 1) / TICK_NANOS);
+        timeout.remainingRounds = (due - tick) / WHEEL_SIZE;
+        int index = (int) (due & MASK);
+        Timeout head = buckets[index];
+        timeout.bucket = index;
+        timeout.prev = null;
+        timeout.next = head;
+        if (head != null)
+            head.prev = timeout;
+        buckets[index] = timeout;
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout.prev != null)
+            timeout.prev.next = timeout.next;
+        else
+            buckets[timeout.bucket] = timeout.next;
+        if (timeout.next != null)
+            timeout.next.prev = timeout.prev;
+        timeout.prev = timeout.next = null;
+        timeout.bucket = -1;
+    }
+
+    private void expire(long tick) {
+        Timeout timeout = buckets[(int) (tick & MASK)];
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds-- <= 0) {
+                unlink(timeout);
+                pending.decrementAndGet();
+                timeout.expire();
+            }
+            timeout = next;
+        }
+    }
+}
@@ -0,0 +1,358 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.Dimse;
+import org.dcm4che3.util.TagUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Association and DIMSE metrics of a {@link Device}, recorded by its
+ * associations after {@link Device#setMetrics(DeviceMetrics)}. All counters
+ * are updated without locking.
+ *
+ * @author agent <agent@local>
+ */
+public class DeviceMetrics implements DeviceMetricsMXBean {
+
+    private static final Logger LOG =
+            LoggerFactory.getLogger(DeviceMetrics.class);
+
+    private final ConcurrentMap<String, AtomicLong> accepted =
+            new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> rejected =
+            new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> aborted =
+            new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, AtomicLong> statusCodes =
+            new ConcurrentHashMap<String, AtomicLong>();
+    private final ConcurrentMap<String, Histogram> invoked =
+            new ConcurrentHashMap<String, Histogram>();
+    private final ConcurrentMap<String, Histogram> performed =
+            new ConcurrentHashMap<String, Histogram>();
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicInteger outstandingRSP = new AtomicInteger();
+    private final Histogram outstandingRSPDepth = new Histogram();
+
+    public void onAssociationAccepted(Association as) {
+        increment(accepted, aePair(as));
+    }
+
+    public void onAssociationRejected(Association as) {
+        increment(rejected, aePair(as));
+    }
+
+    public void onAssociationAborted(Association as) {
+        increment(aborted, aePair(as));
+    }
+
+    public void onBytesReceived(int n) {
+        bytesReceived.addAndGet(n);
+    }
+
+    public void onBytesSent(int n) {
+        bytesSent.addAndGet(n);
+    }
+
+    /**
+     * Records an invoked DIMSE operation.
+     *
+     * @param outstanding
+     *            number of outstanding RSPs on the association, including
+     *            the invoked operation
+     */
+    public void onDimseRQInvoked(int outstanding) {
+        outstandingRSP.incrementAndGet();
+        outstandingRSPDepth.record(outstanding);
+    }
+
+    public void onDimseRSPReceived(Dimse dimse, String cuid, int status,
+            long nanos) {
+        outstandingRSP.decrementAndGet();
+        histogram(invoked, operation(dimse, cuid)).record(nanos / 1000);
+        increment(statusCodes, statusCode(dimse, status));
+    }
+
+    /**
+     * Records invoked DIMSE operations, for which no final RSP will be
+     * received, because the association was closed.
+     */
+    public void onDimseRSPDiscarded(int count) {
+        outstandingRSP.addAndGet(-count);
+    }
+
+    public void onDimseRSPSent(Dimse dimse, String cuid, int status,
+            long nanos) {
+        histogram(performed, operation(dimse, cuid)).record(nanos / 1000);
+        increment(statusCodes, statusCode(dimse, status));
+    }
+
+    /**
+     * Periodically invokes the specified exporter using the scheduled
+     * executor of the device.
+     */
+    public ScheduledFuture<?> scheduleExport(Device device,
+            final MetricsExporter exporter, long period, TimeUnit unit) {
+        return device.scheduleAtFixedRate(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    exporter.export(DeviceMetrics.this);
+                } catch (RuntimeException e) {
+                    LOG.warn("Failed to export metrics by {}:", exporter, e);
+                }
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Registers this MXBean at the platform MBean server with name
+     * {@code org.dcm4che3.net:type=DeviceMetrics,device=<device name>}.
+     */
+    public ObjectName registerMBean(Device device) throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        return server.registerMBean(this, objectName(device)).getObjectName();
+    }
+
+    public void unregisterMBean(Device device) throws JMException {
+        ManagementFactory.getPlatformMBeanServer()
+                .unregisterMBean(objectName(device));
+    }
+
+    private static ObjectName objectName(Device device) throws JMException {
+        return new ObjectName("org.dcm4che3.net:type=DeviceMetrics,device="
+                + ObjectName.quote(device.getDeviceName()));
+    }
+
+    public Map<String, Histogram> getInvokedOperationLatencies() {
+        return new TreeMap<String, Histogram>(invoked);
+    }
+
+    public Map<String, Histogram> getPerformedOperationLatencies() {
+        return new TreeMap<String, Histogram>(performed);
+    }
+
+    public Histogram getOutstandingRSPDepth() {
+        return outstandingRSPDepth;
+    }
+
+    @Override
+    public Map<String, Long> getAssociationsAccepted() {
+        return snapshot(accepted);
+    }
+
+    @Override
+    public Map<String, Long> getAssociationsRejected() {
+        return snapshot(rejected);
+    }
+
+    @Override
+    public Map<String, Long> getAssociationsAborted() {
+        return snapshot(aborted);
+    }
+
+    @Override
+    public Map<String, Long> getInvokedOperations() {
+        return counts(invoked);
+    }
+
+    @Override
+    public Map<String, Long> getInvokedOperationsMeanLatency() {
+        return means(invoked);
+    }
+
+    @Override
+    public Map<String, Long> getInvokedOperations99thPercentileLatency() {
+        return percentiles(invoked, 99);
+    }
+
+    @Override
+    public Map<String, Long> getInvokedOperationsMaxLatency() {
+        return maxima(invoked);
+    }
+
+    @Override
+    public Map<String, Long> getPerformedOperations() {
+        return counts(performed);
+    }
+
+    @Override
+    public Map<String, Long> getPerformedOperationsMeanLatency() {
+        return means(performed);
+    }
+
+    @Override
+    public Map<String, Long> getPerformedOperations99thPercentileLatency() {
+        return percentiles(performed, 99);
+    }
+
+    @Override
+    public Map<String, Long> getPerformedOperationsMaxLatency() {
+        return maxima(performed);
+    }
+
+    @Override
+    public Map<String, Long> getStatusCodes() {
+        return snapshot(statusCodes);
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.get();
+    }
+
+    @Override
+    public int getOutstandingRSP() {
+        return outstandingRSP.get();
+    }
+
+    @Override
+    public long getMaxOutstandingRSP() {
+        return outstandingRSPDepth.getMax();
+    }
+
+    @Override
+    public void reset() {
+        accepted.clear();
+        rejected.clear();
+        aborted.clear();
+        statusCodes.clear();
+        invoked.clear();
+        performed.clear();
+        bytesReceived.set(0);
+        bytesSent.set(0);
+        outstandingRSPDepth.reset();
+    }
+
+    private static String aePair(Association as) {
+        return as.getCallingAET() + "->" + as.getCalledAET();
+    }
+
+    private static String operation(Dimse dimse, String cuid) {
+        return cuid != null ? dimse.name() + ' ' + cuid : dimse.name();
+    }
+
+    private static String statusCode(Dimse dimse, int status) {
+        return Dimse.valueOf(dimse.commandField() | 0x8000).name() + ' '
+                + TagUtils.shortToHexString(status) + 'H';
+    }
+
+    private static void increment(ConcurrentMap<String, AtomicLong> map,
+            String key) {
+        AtomicLong counter = map.get(key);
+        if (counter == null) {
+            AtomicLong prev = map.putIfAbsent(key, counter = new AtomicLong());
+            if (prev != null)
+                counter = prev;
+        }
+        counter.incrementAndGet();
+    }
+
+    private static Histogram histogram(ConcurrentMap<String, Histogram> map,
+            String key) {
+        Histogram histogram = map.get(key);
+        if (histogram == null) {
+            Histogram prev = map.putIfAbsent(key, histogram = new Histogram());
+            if (prev != null)
+                histogram = prev;
+        }
+        return histogram;
+    }
+
+    private static Map<String, Long> snapshot(Map<String, AtomicLong> map) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, AtomicLong> entry : map.entrySet())
+            result.put(entry.getKey(), entry.getValue().get());
+        return result;
+    }
+
+    private static Map<String, Long> counts(Map<String, Histogram> map) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> entry : map.entrySet())
+            result.put(entry.getKey(), entry.getValue().getCount());
+        return result;
+    }
+
+    private static Map<String, Long> means(Map<String, Histogram> map) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> entry : map.entrySet())
+            result.put(entry.getKey(), entry.getValue().getMean());
+        return result;
+    }
+
+    private static Map<String, Long> percentiles(Map<String, Histogram> map,
+            double percentile) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> entry : map.entrySet())
+            result.put(entry.getKey(),
+                    entry.getValue().getPercentile(percentile));
+        return result;
+    }
+
+    private static Map<String, Long> maxima(Map<String, Histogram> map) {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Map.Entry<String, Histogram> entry : map.entrySet())
+            result.put(entry.getKey(), entry.getValue().getMax());
+        return result;
+    }
+}
@@ -38,12 +38,17 @@
 
 package org.dcm4che3.net.service;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Observable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
 
 import org.dcm4che3.data.Attributes;
 import org.dcm4che3.data.Tag;
@@ -52,15 +57,22 @@ import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.net.Association;
 import org.dcm4che3.net.DataWriter;
 import org.dcm4che3.net.DimseRSPHandler;
+import org.dcm4che3.net.FileDataWriter;
 import org.dcm4che3.net.InputStreamDataWriter;
 import org.dcm4che3.net.Status;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Sends a list of instances to one or more Store Associations. Each
+ * association keeps up to {@link #getWindow()} C-STORE-RQs outstanding and
+ * pulls the next instance from a shared queue only when one of its RSPs has
+ * been received, so instances shift to the associations that keep up.
+ * 
  * @param <T>
  *            instance locator type
  * 
+ * @author agent <agent@local>
  * @author Umberto Cappellini <umberto.cappellini@agfa.com>
  */
 public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
@@ -77,6 +89,29 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
     protected List<T> failed = Collections.synchronizedList(new ArrayList<T>());
     protected int outstandingRSP = 0;
     protected Object outstandingRSPLock = new Object();
+    protected int window;
+
+    private final ArrayDeque<T> pending = new ArrayDeque<T>();
+    private Map<Association, Sender> senders = Collections.emptyMap();
+    private int liveSenders;
+
+    /**
+     * Returns the maximal number of outstanding C-STORE-RQs per Store
+     * Association.
+     * 
+     * @return maximal number of outstanding C-STORE-RQs per association or
+     *         {@code 0}, if only limited by the negotiated Maximum Number of
+     *         Operations Invoked
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    public void setWindow(int window) {
+        if (window < 0)
+            throw new IllegalArgumentException("window: " + window);
+        this.window = window;
+    }
 
     @Override
     public int getStatus() {
@@ -125,56 +160,168 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
         if (storeas == null)
             throw new IllegalStateException("null Store Association");
 
+        return cstore(instances, Collections.singletonList(storeas), priority);
+    }
+
+    /**
+     * Distributes the C-STORE sub-operations over several Store
+     * Associations to the same destination.
+     */
+    public BasicCStoreSCUResp cstore(List<T> instances,
+            List<Association> storeas, int priority) {
+
+        if (storeas == null || storeas.isEmpty() || storeas.contains(null))
+            throw new IllegalStateException("null Store Association");
+
         if (instances == null)
             throw new IllegalStateException("null Store Instances");
 
         nr_instances = instances.size();
 
         try {
-            for (Iterator<T> iter = instances.iterator(); iter.hasNext();) {
-                T inst = iter.next();
-                String tsuid;
-                DataWriter dataWriter;
+            CountDownLatch done = new CountDownLatch(storeas.size());
+            Map<Association, Sender> map =
+                    new IdentityHashMap<Association, Sender>(storeas.size());
+            for (Association as : storeas)
+                map.put(as, new Sender(as, done));
+            synchronized (pending) {
+                pending.addAll(instances);
+                senders = map;
+                liveSenders = map.size();
+            }
+            Sender first = map.get(storeas.get(0));
+            for (Sender sender : map.values())
+                if (sender != first)
+                    sender.as.getDevice().execute(sender);
+            first.run();
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                LOG.warn("Failed to wait for completion of C-STORE sub-operations",
+                        e);
+            }
+            waitForOutstandingCStoreRSP(storeas.get(0));
+            
+            setFinalStatus();
+            
+            return makeRSP(status);
+        } finally {
+            try {
+                close();
+            } catch (Throwable e) {
+                LOG.warn("Exception thrown by {}.close()",
+                        getClass().getName(), e);
+            }
+        }
+    }
+
+    private T nextInstance() {
+        synchronized (pending) {
+            return pending.poll();
+        }
+    }
 
-                if (status == Status.Cancel)
-                    break;
+    private void retry(T inst) {
+        synchronized (pending) {
+            if (liveSenders > 1) {
+                pending.add(inst);
+                return;
+            }
+        }
+        failed.add(inst);
+    }
+
+    private void retire() {
+        synchronized (pending) {
+            if (--liveSenders > 0)
+                return;
+            failed.addAll(pending);
+            pending.clear();
+        }
+    }
 
+    private Sender senderOf(Association as) {
+        synchronized (pending) {
+            return senders.get(as);
+        }
+    }
+
+    private final class Sender implements Runnable {
+
+        final Association as;
+        final CountDownLatch done;
+        final Semaphore slots;
+
+        Sender(Association as, CountDownLatch done) {
+            this.as = as;
+            this.done = done;
+            int maxOpsInvoked = as.getMaxOpsInvoked();
+            int slots = window == 0 ? maxOpsInvoked
+                    : maxOpsInvoked == 0 ? window
+                    : Math.min(window, maxOpsInvoked);
+            this.slots = slots > 0 ? new Semaphore(slots) : null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                send();
+            } catch (InterruptedException e) {
+                LOG.warn("Interrupted sending to {}", as.getRemoteAET(), e);
+            } finally {
+                retire();
+                done.countDown();
+            }
+        }
+
+        private void send() throws InterruptedException {
+            while (status != Status.Cancel && as.isReadyForDataTransfer()) {
+                acquire();
+                T inst = nextInstance();
+                if (inst == null) {
+                    release();
+                    return;
+                }
+                String tsuid;
+                DataWriter dataWriter;
                 try {
-                    tsuid = selectTransferSyntaxFor(storeas, inst);
+                    tsuid = selectTransferSyntaxFor(as, inst);
                     dataWriter = createDataWriter(inst, tsuid);
                 } catch (Exception e) {
                     LOG.info("Unable to store {}/{} to {}",
                             UID.nameOf(inst.cuid), UID.nameOf(inst.tsuid),
-                            storeas.getRemoteAET(), e);
+                            as.getRemoteAET(), e);
                     failed.add(inst);
+                    release();
                     continue;
                 }
                 try {
-                    cstore(storeas, inst, tsuid, dataWriter);
+                    cstore(as, inst, tsuid, dataWriter);
                 } catch (Throwable e) {
                     LOG.warn(
                             "Unable to perform sub-operation on association to {}",
-                            storeas.getRemoteAET(), e);
-                    failed.add(inst);
-                    while (iter.hasNext())
-                        failed.add(iter.next());
+                            as.getRemoteAET(), e);
+                    if (as.isReadyForDataTransfer()) {
+                        failed.add(inst);
+                        continue;
+                    }
+                    retry(inst);
+                    return;
                 }
             }
-            waitForOutstandingCStoreRSP(storeas);
-            
-            setFinalStatus();
-            
-            return makeRSP(status);
-        } finally {
-            try {
-                close();
-            } catch (Throwable e) {
-                LOG.warn("Exception thrown by {}.close()",
-                        getClass().getName(), e);
-            }
+        }
+
+        void acquire() throws InterruptedException {
+            if (slots != null)
+                slots.acquire();
+        }
+
+        void release() {
+            if (slots != null)
+                slots.release();
         }
     }
-    
+
     private void setFinalStatus() {
         
         if (status!=Status.Cancel) {
@@ -214,18 +361,30 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
     protected int cstore(Association storeas, T inst, String tsuid,
             DataWriter dataWriter) throws IOException, InterruptedException {
         int messageID = storeas.nextMessageID();
-        DimseRSPHandler rspHandler = new CStoreRSPHandler(messageID, inst);
-        storeas.cstore(inst.cuid, inst.iuid, priority, dataWriter, tsuid,
-                rspHandler);
+        CStoreRSPHandler rspHandler = new CStoreRSPHandler(messageID, inst);
         synchronized (outstandingRSPLock) {
             outstandingRSP++;
         }
+        try {
+            storeas.cstore(inst.cuid, inst.iuid, priority, dataWriter, tsuid,
+                    rspHandler);
+        } catch (IOException e) {
+            if (rspHandler.discard(storeas))
+                throw e;
+        } catch (InterruptedException e) {
+            if (rspHandler.discard(storeas))
+                throw e;
+        } catch (RuntimeException e) {
+            if (rspHandler.discard(storeas))
+                throw e;
+        }
         return messageID;
     }
 
     private final class CStoreRSPHandler extends DimseRSPHandler {
 
         private final T inst;
+        private boolean done;
 
         public CStoreRSPHandler(int msgId, T inst) {
             super(msgId);
@@ -235,6 +394,9 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
         @Override
         public void onDimseRSP(Association as, Attributes cmd, Attributes data) {
             super.onDimseRSP(as, cmd, data);
+            if (!complete(as))
+                return;
+
             int storeStatus = cmd.getInt(Tag.Status, -1);
             if (storeStatus == Status.Success)
                 completed.add(inst);
@@ -243,10 +405,7 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
             else
                 failed.add(inst);
 
-            synchronized (outstandingRSPLock) {
-                if (--outstandingRSP == 0)
-                    outstandingRSPLock.notify();
-            }
+            decrementOutstandingRSP();
             
             setChanged();
             notifyObservers(); // notify observers of received rsp
@@ -255,10 +414,44 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
         @Override
         public void onClose(Association as) {
             super.onClose(as);
-            synchronized (outstandingRSPLock) {
-                outstandingRSP = 0;
-                outstandingRSPLock.notify();
+            if (!complete(as))
+                return;
+
+            failed.add(inst);
+            decrementOutstandingRSP();
+        }
+
+        /**
+         * Withdraws a C-STORE-RQ which could not be sent.
+         * 
+         * @return {@code false}, if the sub-operation was already accounted
+         *         by {@link #onClose}
+         */
+        boolean discard(Association as) {
+            if (!complete(as))
+                return false;
+
+            decrementOutstandingRSP();
+            return true;
+        }
+
+        private boolean complete(Association as) {
+            synchronized (this) {
+                if (done)
+                    return false;
+                done = true;
             }
+            Sender sender = senderOf(as);
+            if (sender != null)
+                sender.release();
+            return true;
+        }
+    }
+
+    private void decrementOutstandingRSP() {
+        synchronized (outstandingRSPLock) {
+            if (--outstandingRSP == 0)
+                outstandingRSPLock.notifyAll();
         }
     }
 
@@ -269,8 +462,16 @@ public class BasicCStoreSCU<T extends InstanceLocator> extends Observable
 
     protected DataWriter createDataWriter(T inst, String tsuid)
             throws Exception {
-        DicomInputStream in = new DicomInputStream(inst.getFile());
+        File file = inst.getFile();
+        DicomInputStream in = new DicomInputStream(file);
         in.readFileMetaInformation();
+        if (tsuid.equals(in.getTransferSyntax())
+                && !tsuid.equals(UID.DeflatedExplicitVRLittleEndian)
+                && !tsuid.equals(UID.JPIPReferencedDeflate)) {
+            long offset = in.getPosition();
+            in.close();
+            return new FileDataWriter(file, offset);
+        }
         return new InputStreamDataWriter(in);
     }
 
@@ -42,6 +42,7 @@ import java.io.IOException;
 import java.util.NoSuchElementException;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.net.Association;
@@ -60,6 +61,7 @@ public class BasicQueryTask implements QueryTask {
     protected final Attributes keys;
     protected volatile boolean canceled;
     protected boolean optionalKeysNotSupported = false;
+    private AttributesMatcher matcher;
 
     public BasicQueryTask(Association as, PresentationContext pc,
             Attributes rq, Attributes keys) {
@@ -77,6 +79,25 @@ public class BasicQueryTask implements QueryTask {
         this.optionalKeysNotSupported = optionalKeysNotSupported;
     }
 
+    /**
+     * Returns matcher compiled from the Matching Keys of the C-FIND RQ,
+     * which may be used by sub-classes to filter candidates returned by
+     * {@link #nextMatch}.
+     */
+    public AttributesMatcher getMatcher() {
+        if (matcher == null)
+            matcher = new AttributesMatcher(keys, false, false);
+        return matcher;
+    }
+
+    public void setMatcher(AttributesMatcher matcher) {
+        this.matcher = matcher;
+    }
+
+    protected boolean matches(Attributes attrs) {
+        return getMatcher().matches(attrs);
+    }
+
     @Override
     public void onCancelRQ(Association as) {
         canceled = true;
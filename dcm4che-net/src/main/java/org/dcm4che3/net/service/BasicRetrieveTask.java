@@ -40,6 +40,7 @@ package org.dcm4che3.net.service;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Observable;
@@ -77,6 +78,7 @@ public class BasicRetrieveTask<T extends InstanceLocator> implements
     protected final Dimse rq;
     protected final Association rqas;
     protected final Association storeas;
+    protected final List<Association> storeAssociations;
     protected final PresentationContext pc;
     protected final Attributes rqCmd;
     protected final int msgId;
@@ -92,9 +94,21 @@ public class BasicRetrieveTask<T extends InstanceLocator> implements
     public BasicRetrieveTask(Dimse rq, Association rqas,
             PresentationContext pc, Attributes rqCmd, List<T> insts,
             Association storeas, CStoreSCU<T> storescu) {
+        this(rq, rqas, pc, rqCmd, insts,
+                Collections.singletonList(storeas), storescu);
+    }
+
+    /**
+     * Creates a retrieve task, which distributes the C-STORE sub-operations
+     * over several Store Associations to the same destination.
+     */
+    public BasicRetrieveTask(Dimse rq, Association rqas,
+            PresentationContext pc, Attributes rqCmd, List<T> insts,
+            List<Association> storeAssociations, CStoreSCU<T> storescu) {
         this.rq = rq;
         this.rqas = rqas;
-        this.storeas = storeas;
+        this.storeas = storeAssociations.get(0);
+        this.storeAssociations = storeAssociations;
         this.pc = pc;
         this.rqCmd = rqCmd;
         this.insts = insts;
@@ -123,6 +137,10 @@ public class BasicRetrieveTask<T extends InstanceLocator> implements
         return storeas;
     }
 
+    public List<Association> getStoreAssociations() {
+        return storeAssociations;
+    }
+
     @Override
     public void onCancelRQ(Association as) {
         storescu.cancel();
@@ -135,9 +153,15 @@ public class BasicRetrieveTask<T extends InstanceLocator> implements
         try {
             if (pendingRSPInterval > 0)
                 startWritingAsyncRSP();
-            storescu.cstore(insts, storeas, priority);
+            if (storeAssociations.size() > 1
+                    && storescu instanceof BasicCStoreSCU)
+                ((BasicCStoreSCU<T>) storescu).cstore(insts,
+                        storeAssociations, priority);
+            else
+                storescu.cstore(insts, storeas, priority);
             if (isCMove())
-                releaseStoreAssociation(storeas);
+                for (Association as : storeAssociations)
+                    releaseStoreAssociation(as);
             stopWritingAsyncRSP();
             writeRSP(); //last response
         } finally {
@@ -176,7 +200,7 @@ public class BasicRetrieveTask<T extends InstanceLocator> implements
         }
     }
 
-    private void writeRSP() {
+    private synchronized void writeRSP() {
         try {
 
             Attributes cmd = Commands.mkRSP(rqCmd, storescu.getStatus(), rq);
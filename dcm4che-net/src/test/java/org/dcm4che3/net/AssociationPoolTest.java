@@ -0,0 +1,180 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class AssociationPoolTest {
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+    private ApplicationEntity scuAE;
+    private AssociationPool pool;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = createConnection(freePort());
+        scp = createDevice("pool-scp", scpConn, executor,
+                scheduledExecutor);
+        ApplicationEntity ae = scp.getApplicationEntity("POOL-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null,
+                UID.VerificationSOPClass, TransferCapability.Role.SCP,
+                UID.ImplicitVRLittleEndian));
+        ae.addTransferCapability(new TransferCapability(null,
+                UID.CTImageStorage, TransferCapability.Role.SCP,
+                UID.ImplicitVRLittleEndian));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCEchoSCP());
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+        scuAE = createDevice("pool-scu", createConnection(0), executor,
+                scheduledExecutor)
+                .getApplicationEntity("POOL-SCU");
+        scuAE.setAssociationInitiator(true);
+        pool = new AssociationPool();
+        pool.setMaxAssociationsPerDestination(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        Association as1 = pool.lease(scuAE, scpConn, echoRQ());
+        as1.cecho().next();
+        pool.release(as1);
+        assertEquals(1, pool.getNumberOfIdleAssociations());
+        Association as2 = pool.lease(scuAE, scpConn, echoRQ());
+        assertSame(as1, as2);
+        Association as3 = pool.lease(scuAE, scpConn, echoRQ());
+        assertNotSame(as1, as3);
+        assertEquals(2, pool.getNumberOfLeasedAssociations());
+        pool.release(as2);
+        pool.release(as3);
+        assertEquals(2, pool.getNumberOfIdleAssociations());
+    }
+
+    @Test
+    public void testLeaseTimeout() throws Exception {
+        pool.setLeaseTimeout(100);
+        Association as1 = pool.lease(scuAE, scpConn, echoRQ());
+        Association as2 = pool.lease(scuAE, scpConn, echoRQ());
+        try {
+            pool.lease(scuAE, scpConn, echoRQ());
+            fail("IOException expected");
+        } catch (IOException expected) {
+        }
+        pool.release(as1);
+        assertSame(as1, pool.lease(scuAE, scpConn, echoRQ()));
+        pool.release(as1);
+        pool.release(as2);
+    }
+
+    @Test
+    public void testUnsuitableAssociation() throws Exception {
+        Association as1 = pool.lease(scuAE, scpConn, echoRQ());
+        pool.release(as1);
+        AAssociateRQ rq = echoRQ();
+        rq.addPresentationContext(new PresentationContext(3,
+                UID.CTImageStorage, UID.ImplicitVRLittleEndian));
+        Association as2 = pool.lease(scuAE, scpConn, rq);
+        assertNotSame(as1, as2);
+        assertEquals(1, pool.getNumberOfIdleAssociations());
+        pool.release(as2);
+        assertSame(as2, pool.lease(scuAE, scpConn, echoRQ()));
+        pool.release(as2);
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        pool.setIdleTimeout(100);
+        Association as = pool.lease(scuAE, scpConn, echoRQ());
+        pool.release(as);
+        as.waitForSocketClose();
+        assertEquals(0, pool.getNumberOfIdleAssociations());
+        assertFalse(as.isReadyForDataTransfer());
+        Association as2 = pool.lease(scuAE, scpConn, echoRQ());
+        assertNotSame(as, as2);
+        assertTrue(as2.isReadyForDataTransfer());
+        pool.release(as2);
+    }
+
+    private static AAssociateRQ echoRQ() {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET("POOL-SCP");
+        rq.addPresentationContext(new PresentationContext(1,
+                UID.VerificationSOPClass, UID.ImplicitVRLittleEndian));
+        return rq;
+    }
+}
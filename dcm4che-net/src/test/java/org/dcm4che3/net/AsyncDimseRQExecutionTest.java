@@ -0,0 +1,168 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCStoreSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class AsyncDimseRQExecutionTest {
+
+    private static final String CUID = UID.SecondaryCaptureImageStorage;
+    private static final String TSUID = UID.ExplicitVRLittleEndian;
+    private static final int MAX_OPS = 4;
+    private static final int PIXEL_DATA_LENGTH = 0x10000;
+
+    private final AtomicInteger performing = new AtomicInteger();
+    private final AtomicInteger maxPerforming = new AtomicInteger();
+    private final AtomicInteger stored = new AtomicInteger();
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = createConnection(freePort(), MAX_OPS);
+        scpConn.setAsyncDimseRQExecution(true);
+        scpConn.setDimseRQSpoolThreshold(PIXEL_DATA_LENGTH / 2);
+        scp = createDevice("async-scp", scpConn, executor,
+                scheduledExecutor);
+        ApplicationEntity ae = scp.getApplicationEntity("ASYNC-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null, "*",
+                TransferCapability.Role.SCP, "*"));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCStoreSCP() {
+
+            @Override
+            protected void store(Association as, PresentationContext pc,
+                    Attributes rq, PDVInputStream data, Attributes rsp)
+                    throws IOException {
+                int n = performing.incrementAndGet();
+                int max;
+                while (n > (max = maxPerforming.get())
+                        && !maxPerforming.compareAndSet(max, n));
+                try {
+                    Attributes ds = data.readDataset(pc.getTransferSyntax());
+                    Thread.sleep(200);
+                    if (ds.getBytes(Tag.PixelData).length == PIXEL_DATA_LENGTH)
+                        stored.incrementAndGet();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    performing.decrementAndGet();
+                }
+            }
+        });
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+    }
+
+    @After
+    public void tearDown() {
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testAsyncCStore() throws Exception {
+        Device scu = createDevice("async-scu", createConnection(0, MAX_OPS), executor,
+                scheduledExecutor);
+        ApplicationEntity ae = scu.getApplicationEntity("ASYNC-SCU");
+        ae.setAssociationInitiator(true);
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET("ASYNC-SCP");
+        rq.addPresentationContext(new PresentationContext(1, CUID, TSUID));
+        rq.setMaxOpsInvoked(MAX_OPS);
+        rq.setMaxOpsPerformed(MAX_OPS);
+        Association as = ae.connect(scpConn, rq);
+        assertEquals(MAX_OPS, as.getAAssociateAC().getMaxOpsInvoked());
+        List<DimseRSP> rsps = new ArrayList<DimseRSP>();
+        for (int i = 0; i < 2 * MAX_OPS; i++)
+            rsps.add(as.cstore(CUID, "1.2.3." + i, 0,
+                    new DataWriterAdapter(createDataset(i)), TSUID));
+        for (DimseRSP rsp : rsps) {
+            rsp.next();
+            assertEquals(Status.Success,
+                    rsp.getCommand().getInt(Tag.Status, -1));
+        }
+        as.release();
+        as.waitForSocketClose();
+        assertEquals(2 * MAX_OPS, stored.get());
+        assertTrue("max concurrent operations: " + maxPerforming,
+                maxPerforming.get() > 1 && maxPerforming.get() <= MAX_OPS);
+    }
+
+    private static Attributes createDataset(int i) {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI, CUID);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3." + i);
+        attrs.setBytes(Tag.PixelData, VR.OB, new byte[PIXEL_DATA_LENGTH]);
+        return attrs;
+    }
+}
@@ -0,0 +1,240 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRJ;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCStoreSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class DimseRQSchedulerTest {
+
+    private static final String CUID = UID.CTImageStorage;
+    private static final String TSUID = UID.ImplicitVRLittleEndian;
+
+    private final List<String> performed =
+            Collections.synchronizedList(new ArrayList<String>());
+    private final CountDownLatch proceed = new CountDownLatch(1);
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+    private ApplicationEntity scuAE;
+    private DimseRQScheduler scheduler;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = createConnection(freePort());
+        scp = createDevice("sched-scp", scpConn, executor,
+                scheduledExecutor);
+        scheduler = new DimseRQScheduler();
+        scheduler.setMaxOperations(1);
+        scp.setDimseRQScheduler(scheduler);
+        ApplicationEntity ae = scp.getApplicationEntity("SCHED-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null, CUID,
+                TransferCapability.Role.SCP, TSUID));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCStoreSCP() {
+
+            @Override
+            protected void store(Association as, PresentationContext pc,
+                    Attributes rq, PDVInputStream data, Attributes rsp)
+                    throws IOException {
+                data.readDataset(pc.getTransferSyntax());
+                String iuid = rq.getString(Tag.AffectedSOPInstanceUID);
+                performed.add(iuid);
+                if (iuid.equals("block"))
+                    try {
+                        proceed.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+            }
+        });
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+        scuAE = createDevice("sched-scu", createConnection(0), executor,
+                scheduledExecutor)
+                .getApplicationEntity("SCHED-SCU");
+        scuAE.setAssociationInitiator(true);
+    }
+
+    @After
+    public void tearDown() {
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        Association blocking = connect("BULK");
+        Association low = connect("BULK");
+        Association high = connect("ED");
+        DimseRSP rsp0 = blocking.cstore(CUID, "block", Priority.NORMAL,
+                dataWriter("block"), TSUID);
+        awaitPerformed(1);
+        DimseRSP rsp1 = low.cstore(CUID, "low", Priority.LOW,
+                dataWriter("low"), TSUID);
+        awaitQueued(1);
+        DimseRSP rsp2 = high.cstore(CUID, "high", Priority.HIGH,
+                dataWriter("high"), TSUID);
+        awaitQueued(2);
+        proceed.countDown();
+        for (DimseRSP rsp : new DimseRSP[] { rsp0, rsp1, rsp2 }) {
+            rsp.next();
+            assertEquals(Status.Success,
+                    rsp.getCommand().getInt(Tag.Status, -1));
+        }
+        assertEquals(Arrays.asList("block", "high", "low"),
+                performed);
+        release(blocking, low, high);
+        assertEquals(0, scheduler.getNumberOfOperations());
+    }
+
+    @Test
+    public void testQueueFull() throws Exception {
+        scheduler.setMaxQueueSize(0);
+        Association blocking = connect("BULK");
+        Association refused = connect("ED");
+        DimseRSP rsp0 = blocking.cstore(CUID, "block", Priority.NORMAL,
+                dataWriter("block"), TSUID);
+        awaitPerformed(1);
+        DimseRSP rsp1 = refused.cstore(CUID, "refused", Priority.HIGH,
+                dataWriter("refused"), TSUID);
+        rsp1.next();
+        assertEquals(Status.OutOfResources,
+                rsp1.getCommand().getInt(Tag.Status, -1));
+        proceed.countDown();
+        rsp0.next();
+        assertEquals(Status.Success,
+                rsp0.getCommand().getInt(Tag.Status, -1));
+        release(blocking, refused);
+    }
+
+    @Test
+    public void testAssociationQuota() throws Exception {
+        scheduler.setMaxAssociationsPerCallingAET(1);
+        Association as = connect("BULK");
+        try {
+            connect("BULK");
+            fail("AAssociateRJ expected");
+        } catch (AAssociateRJ expected) {
+            assertEquals(AAssociateRJ.REASON_LOCAL_LIMIT_EXCEEDED,
+                    expected.getReason());
+        }
+        Association other = connect("ED");
+        release(as, other);
+        awaitClosed();
+        release(connect("BULK"));
+    }
+
+    private void awaitPerformed(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (performed.size() < count && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+    }
+
+    private void awaitQueued(int count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (scheduler.getNumberOfQueuedRequests() < count
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+    }
+
+    private void awaitClosed() throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (scp.getNumberOfOpenAssociations() > 0
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+    }
+
+    private static DataWriter dataWriter(String iuid) {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI, CUID);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, iuid);
+        return new DataWriterAdapter(attrs);
+    }
+
+    private Association connect(String callingAET) throws Exception {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCallingAET(callingAET);
+        rq.setCalledAET("SCHED-SCP");
+        rq.addPresentationContext(new PresentationContext(1, CUID, TSUID));
+        return scuAE.connect(scpConn, rq);
+    }
+
+    private static void release(Association... ass) throws Exception {
+        for (Association as : ass) {
+            as.release();
+            as.waitForSocketClose();
+        }
+    }
+}
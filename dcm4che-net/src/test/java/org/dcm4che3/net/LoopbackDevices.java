@@ -0,0 +1,103 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Creates Devices and Connections on the loopback interface, for tests
+ * running SCP and SCU in the same JVM.
+ *
+ * @author agent <agent@local>
+ */
+public class LoopbackDevices {
+
+    private LoopbackDevices() {}
+
+    /**
+     * Creates a Connection to 127.0.0.1, listening on the specified port if
+     * it is greater than 0.
+     */
+    public static Connection createConnection(int port) {
+        Connection conn = new Connection();
+        conn.setHostname("127.0.0.1");
+        if (port > 0)
+            conn.setPort(port);
+        return conn;
+    }
+
+    /**
+     * Creates a Connection to 127.0.0.1, which proposes and accepts the
+     * specified Maximum Number of Operations Invoked and Performed.
+     */
+    public static Connection createConnection(int port, int maxOps) {
+        Connection conn = createConnection(port);
+        conn.setMaxOpsInvoked(maxOps);
+        conn.setMaxOpsPerformed(maxOps);
+        return conn;
+    }
+
+    /**
+     * Creates a Device with the specified Connection and one Application
+     * Entity with the upper-cased name as AE Title.
+     */
+    public static Device createDevice(String name, Connection conn,
+            Executor executor, ScheduledExecutorService scheduledExecutor) {
+        Device device = new Device(name);
+        device.setExecutor(executor);
+        device.setScheduledExecutor(scheduledExecutor);
+        device.addConnection(conn);
+        ApplicationEntity ae = new ApplicationEntity(name.toUpperCase());
+        ae.addConnection(conn);
+        device.addApplicationEntity(ae);
+        return device;
+    }
+
+    public static int freePort() throws IOException {
+        ServerSocket ss = new ServerSocket(0);
+        try {
+            return ss.getLocalPort();
+        } finally {
+            ss.close();
+        }
+    }
+}
@@ -0,0 +1,280 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomEncodingOptions;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.BasicCStoreSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class NioTransportTest {
+
+    private static final String CUID = UID.SecondaryCaptureImageStorage;
+    private static final String TSUID = UID.ExplicitVRLittleEndian;
+
+    private ThreadPoolExecutor scpExecutor;
+    private ExecutorService scuExecutor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+    private volatile int stored;
+    private volatile boolean tee;
+
+    @Before
+    public void setUp() throws Exception {
+        scpExecutor = (ThreadPoolExecutor) Executors.newCachedThreadPool();
+        scuExecutor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = createConnection(freePort());
+        scpConn.setNioTransport(true);
+        scp = createDevice("nio-scp", scpConn, scpExecutor, scheduledExecutor);
+        scp.setNioSelectorThreads(1);
+        ApplicationEntity ae = scp.getApplicationEntity("NIO-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null, "*",
+                TransferCapability.Role.SCP, "*"));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCEchoSCP());
+        serviceRegistry.addDicomService(new BasicCStoreSCP() {
+
+            @Override
+            protected void store(Association as, PresentationContext pc,
+                    Attributes rq, PDVInputStream data, Attributes rsp)
+                    throws IOException {
+                String tsuid = pc.getTransferSyntax();
+                if (tee) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    Attributes attrs = data.copyTo(out, tsuid, Tag.PixelData);
+                    Attributes ds = new DicomInputStream(
+                            new ByteArrayInputStream(out.toByteArray()), tsuid)
+                            .readDataset(-1, -1);
+                    if (!attrs.contains(Tag.PixelData)
+                            && attrs.getString(Tag.SOPInstanceUID).equals(
+                                    ds.getString(Tag.SOPInstanceUID))
+                            && isPixelData(ds.getBytes(Tag.PixelData)))
+                        stored++;
+                } else {
+                    Attributes ds = data.readDataset(tsuid);
+                    if (isPixelData(ds.getBytes(Tag.PixelData)))
+                        stored++;
+                }
+            }
+        });
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+    }
+
+    @After
+    public void tearDown() {
+        scp.unbindConnections();
+        scpExecutor.shutdown();
+        scuExecutor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testBlockingSCU() throws Exception {
+        testEchoAndStore(false);
+    }
+
+    @Test
+    public void testNioSCU() throws Exception {
+        testEchoAndStore(true);
+    }
+
+    @Test
+    public void testIdleAssociationsReleaseThreads() throws Exception {
+        ApplicationEntity ae = createSCU(false);
+        List<Association> list = new ArrayList<Association>();
+        for (int i = 0; i < 20; i++)
+            list.add(ae.connect(scpConn, createAAssociateRQ()));
+        for (Association as : list)
+            as.cecho().next();
+        long end = System.currentTimeMillis() + 5000;
+        while (scpExecutor.getActiveCount() > 1
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        // only the selector thread remains active
+        assertEquals(1, scpExecutor.getActiveCount());
+        assertEquals(20, scp.getNumberOfOpenAssociations());
+        for (Association as : list) {
+            as.release();
+            as.waitForSocketClose();
+        }
+        end = System.currentTimeMillis() + 5000;
+        while (scp.getNumberOfOpenAssociations() > 0
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+        assertEquals(0, scp.getNumberOfOpenAssociations());
+    }
+
+    private void testEchoAndStore(boolean nio) throws Exception {
+        Association as = createSCU(nio).connect(scpConn, createAAssociateRQ());
+        DimseRSP rsp = as.cecho();
+        rsp.next();
+        assertEquals(Status.Success, rsp.getCommand().getInt(Tag.Status, -1));
+        for (int i = 0; i < 3; i++) {
+            rsp = as.cstore(CUID, "1.2.3." + i, 0,
+                    new DataWriterAdapter(createDataset(i)), TSUID);
+            rsp.next();
+            assertEquals(Status.Success,
+                    rsp.getCommand().getInt(Tag.Status, -1));
+        }
+        as.release();
+        as.waitForSocketClose();
+        assertEquals(3, stored);
+        assertTrue(as.getSocket().isClosed());
+    }
+
+    @Test
+    public void testCopyToWhileParsing() throws Exception {
+        tee = true;
+        testEchoAndStore(true);
+    }
+
+    @Test
+    public void testBlockingFileDataWriter() throws Exception {
+        testStoreFile(false);
+    }
+
+    @Test
+    public void testNioFileDataWriter() throws Exception {
+        testStoreFile(true);
+    }
+
+    private void testStoreFile(boolean nio) throws Exception {
+        File file = File.createTempFile("test", ".dcm");
+        try {
+            Attributes ds = createDataset(0);
+            DicomOutputStream out = new DicomOutputStream(file);
+            try {
+                out.writeDataset(
+                        ds.createFileMetaInformation(TSUID), ds);
+            } finally {
+                out.close();
+            }
+            long offset = file.length() - ds.calcLength(
+                    DicomEncodingOptions.DEFAULT, true);
+            Association as = createSCU(nio).connect(scpConn,
+                    createAAssociateRQ());
+            for (int i = 0; i < 3; i++) {
+                DimseRSP rsp = as.cstore(CUID, "1.2.3.0", 0,
+                        new FileDataWriter(file, offset), TSUID);
+                rsp.next();
+                assertEquals(Status.Success,
+                        rsp.getCommand().getInt(Tag.Status, -1));
+            }
+            as.release();
+            as.waitForSocketClose();
+            assertEquals(3, stored);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private ApplicationEntity createSCU(boolean nio) {
+        Connection conn = createConnection(0);
+        conn.setNioTransport(nio);
+        Device scu = createDevice("nio-scu", conn, scuExecutor,
+                scheduledExecutor);
+        ApplicationEntity ae = scu.getApplicationEntity("NIO-SCU");
+        ae.setAssociationInitiator(true);
+        return ae;
+    }
+
+    private static AAssociateRQ createAAssociateRQ() {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET("NIO-SCP");
+        rq.addPresentationContext(
+                new PresentationContext(1, UID.VerificationSOPClass, TSUID));
+        rq.addPresentationContext(new PresentationContext(3, CUID, TSUID));
+        return rq;
+    }
+
+    private static Attributes createDataset(int i) {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI, CUID);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3." + i);
+        byte[] b = new byte[0x100000];
+        for (int j = 0; j < b.length; j++)
+            b[j] = (byte) j;
+        attrs.setBytes(Tag.PixelData, VR.OB, b);
+        return attrs;
+    }
+
+    private static boolean isPixelData(byte[] b) {
+        if (b.length != 0x100000)
+            return false;
+        for (int j = 0; j < b.length; j++)
+            if (b[j] != (byte) j)
+                return false;
+        return true;
+    }
+}
@@ -0,0 +1,174 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomInputStream;
+import org.dcm4che3.io.DicomOutputStream;
+import org.dcm4che3.util.StreamUtils;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class PDVInputStreamTest {
+
+    @Test
+    public void testCopyToExplicitVRLittleEndian() throws Exception {
+        assertCopyTo(UID.ExplicitVRLittleEndian, Tag.PixelData);
+    }
+
+    @Test
+    public void testCopyToImplicitVRLittleEndian() throws Exception {
+        assertCopyTo(UID.ImplicitVRLittleEndian, Tag.PixelData);
+    }
+
+    @Test
+    public void testCopyToDeflatedExplicitVRLittleEndian() throws Exception {
+        assertCopyTo(UID.DeflatedExplicitVRLittleEndian, Tag.PixelData);
+    }
+
+    @Test
+    public void testCopyToWithoutStopTag() throws Exception {
+        assertCopyTo(UID.ExplicitVRLittleEndian, -1);
+        assertCopyTo(UID.DeflatedExplicitVRLittleEndian, -1);
+    }
+
+    private static void assertCopyTo(String tsuid, int stopTag)
+            throws Exception {
+        Attributes dataset = createDataset();
+        byte[] encoded = encode(dataset, tsuid);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Attributes attrs = new BytesPDVInputStream(encoded)
+                .copyTo(out, tsuid, stopTag);
+        assertArrayEquals(encoded, out.toByteArray());
+        assertFalse(attrs.contains(Tag.PixelData));
+        dataset.remove(Tag.PixelData);
+        assertEquals(dataset, attrs);
+    }
+
+    private static Attributes createDataset() {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI,
+                UID.SecondaryCaptureImageStorage);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3.4");
+        attrs.setString(Tag.PatientName, VR.PN, "Doe^John");
+        attrs.setString(Tag.PatientID, VR.LO, "PID-4711");
+        Attributes item = new Attributes(2);
+        item.setString(Tag.CodeValue, VR.SH, "CTTHORAX");
+        item.setString(Tag.CodingSchemeDesignator, VR.SH, "99DCM4CHE");
+        attrs.newSequence(Tag.ProcedureCodeSequence, 1).add(item);
+        attrs.setInt(Tag.Rows, VR.US, 64);
+        attrs.setInt(Tag.Columns, VR.US, 64);
+        byte[] pixelData = new byte[64 * 64 * 2];
+        for (int i = 0; i < pixelData.length; i++)
+            pixelData[i] = (byte) (i * 31);
+        attrs.setBytes(Tag.PixelData, VR.OW, pixelData);
+        return attrs;
+    }
+
+    private static byte[] encode(Attributes attrs, String tsuid)
+            throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        DicomOutputStream out = new DicomOutputStream(bout, tsuid);
+        try {
+            out.writeDataset(null, attrs);
+        } finally {
+            out.close();
+        }
+        return bout.toByteArray();
+    }
+
+    /**
+     * Provides the data in chunks of a few bytes, as received in several
+     * P-DATA-TF PDUs.
+     */
+    private static class BytesPDVInputStream extends PDVInputStream {
+
+        private static final int CHUNK = 7;
+
+        private final ByteArrayInputStream in;
+
+        BytesPDVInputStream(byte[] data) {
+            this.in = new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public int read() {
+            return in.read();
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            return in.read(b, off, Math.min(len, CHUNK));
+        }
+
+        @Override
+        public Attributes readDataset(String tsuid) throws IOException {
+            return new DicomInputStream(this, tsuid).readDataset(-1, -1);
+        }
+
+        @Override
+        public void copyTo(OutputStream out, int length) throws IOException {
+            StreamUtils.copy(this, out, length);
+        }
+
+        @Override
+        public void copyTo(OutputStream out) throws IOException {
+            StreamUtils.copy(this, out);
+        }
+
+        @Override
+        public long skipAll() {
+            return in.skip(Long.MAX_VALUE);
+        }
+    }
+}
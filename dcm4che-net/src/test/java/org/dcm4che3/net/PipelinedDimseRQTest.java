@@ -0,0 +1,238 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCStoreSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class PipelinedDimseRQTest {
+
+    private static final String CUID = UID.SecondaryCaptureImageStorage;
+    private static final String TSUID = UID.ExplicitVRLittleEndian;
+    private static final int MAX_OPS = 4;
+    private static final int THREADS = 8;
+    private static final int RQS_PER_THREAD = 50;
+
+    private final AtomicInteger performing = new AtomicInteger();
+    private final AtomicInteger maxPerforming = new AtomicInteger();
+    private volatile long delay;
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = createConnection(freePort(), MAX_OPS);
+        scpConn.setAsyncDimseRQExecution(true);
+        scp = createDevice("pipelined-scp", scpConn, executor,
+                scheduledExecutor);
+        ApplicationEntity ae = scp.getApplicationEntity("PIPELINED-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null, "*",
+                TransferCapability.Role.SCP, "*"));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCStoreSCP() {
+
+            @Override
+            protected void store(Association as, PresentationContext pc,
+                    Attributes rq, PDVInputStream data, Attributes rsp)
+                    throws IOException {
+                int n = performing.incrementAndGet();
+                int max;
+                while (n > (max = maxPerforming.get())
+                        && !maxPerforming.compareAndSet(max, n));
+                try {
+                    data.readDataset(pc.getTransferSyntax());
+                    if (delay > 0)
+                        Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                } finally {
+                    performing.decrementAndGet();
+                }
+            }
+        });
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+    }
+
+    @After
+    public void tearDown() {
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testPipelinedCStoreFromConcurrentThreads() throws Exception {
+        Connection conn = createConnection(0, MAX_OPS);
+        conn.setResponseTimeout(10000);
+        Device scu = createDevice("pipelined-scu", conn, executor,
+                scheduledExecutor);
+        final Association as = connect(scu);
+        final AtomicInteger succeeded = new AtomicInteger();
+        final List<Exception> failures = new ArrayList<Exception>();
+        final CountDownLatch done = new CountDownLatch(THREADS);
+        for (int t = 0; t < THREADS; t++) {
+            final int offset = t * RQS_PER_THREAD;
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        List<DimseRSP> rsps = new ArrayList<DimseRSP>();
+                        for (int i = offset; i < offset + RQS_PER_THREAD; i++)
+                            rsps.add(as.cstore(CUID, "1.2.3." + i, 0,
+                                    new DataWriterAdapter(createDataset(i)),
+                                    TSUID));
+                        for (DimseRSP rsp : rsps) {
+                            rsp.next();
+                            if (rsp.getCommand().getInt(Tag.Status, -1)
+                                    == Status.Success)
+                                succeeded.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            });
+        }
+        done.await();
+        as.waitForOutstandingRSP();
+        assertTrue("failures: " + failures, failures.isEmpty());
+        assertEquals(THREADS * RQS_PER_THREAD, succeeded.get());
+        assertTrue("max concurrent operations: " + maxPerforming,
+                maxPerforming.get() <= MAX_OPS);
+        as.release();
+        as.waitForSocketClose();
+        waitForNoPendingTimeouts(scu);
+    }
+
+    @Test
+    public void testResponseTimeout() throws Exception {
+        delay = 2000;
+        Connection conn = createConnection(0, MAX_OPS);
+        conn.setResponseTimeout(200);
+        Device scu = createDevice("pipelined-scu", conn, executor,
+                scheduledExecutor);
+        Association as = connect(scu);
+        long start = System.currentTimeMillis();
+        DimseRSP rsp = as.cstore(CUID, "1.2.3.1", 0,
+                new DataWriterAdapter(createDataset(1)), TSUID);
+        try {
+            rsp.next();
+            fail("expected response timeout");
+        } catch (IOException expected) {
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue("aborted after " + elapsed + "ms",
+                elapsed >= 200 && elapsed < delay);
+        try {
+            as.waitForSocketClose();
+        } catch (IOException expected) {
+        }
+        assertFalse(as.isReadyForDataTransfer());
+        waitForNoPendingTimeouts(scu);
+    }
+
+    private Association connect(Device scu) throws Exception {
+        ApplicationEntity ae = scu.getApplicationEntity("PIPELINED-SCU");
+        ae.setAssociationInitiator(true);
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET("PIPELINED-SCP");
+        rq.addPresentationContext(new PresentationContext(1, CUID, TSUID));
+        rq.setMaxOpsInvoked(MAX_OPS);
+        rq.setMaxOpsPerformed(MAX_OPS);
+        return ae.connect(scpConn, rq);
+    }
+
+    private static void waitForNoPendingTimeouts(Device device)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (device.getTimeoutWheel().getNumberOfPendingTimeouts() > 0
+                && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(0,
+                device.getTimeoutWheel().getNumberOfPendingTimeouts());
+    }
+
+    private static Attributes createDataset(int i) {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI, CUID);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3." + i);
+        attrs.setBytes(Tag.PixelData, VR.OB, new byte[256]);
+        return attrs;
+    }
+}
@@ -0,0 +1,225 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.X509TrustManager;
+
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class TLSHandshakeTest {
+
+    private static final String[] PROTOCOLS = { "TLSv1.2" };
+    private static final String[] CIPHERS =
+            { "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256" };
+    private static final int HANDSHAKE_TIMEOUT = 500;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = tlsConnection(freePort());
+        scpConn.setTlsHandshakeTimeout(HANDSHAKE_TIMEOUT);
+        scpConn.setTlsNeedClientAuth(false);
+        scp = tlsDevice("tls-scp", scpConn);
+        ApplicationEntity ae = scp.getApplicationEntity("TLS-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null,
+                UID.VerificationSOPClass, TransferCapability.Role.SCP,
+                UID.ImplicitVRLittleEndian));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCEchoSCP());
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+    }
+
+    @After
+    public void tearDown() {
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testSessionResumption() throws Exception {
+        ApplicationEntity ae = createSCU();
+        byte[] sessionId = null;
+        for (int i = 0; i < 2; i++) {
+            Association as = ae.connect(scpConn, createAAssociateRQ());
+            byte[] id = ((SSLSocket) as.getSocket()).getSession().getId();
+            if (sessionId == null)
+                sessionId = id;
+            else
+                assertArrayEquals(sessionId, id);
+            cecho(as);
+        }
+    }
+
+    @Test
+    public void testStalledHandshakeDoesNotBlockAcceptor() throws Exception {
+        Socket stalled = new Socket(scpConn.getHostname(), scpConn.getPort());
+        try {
+            long start = System.currentTimeMillis();
+            cecho(createSCU().connect(scpConn, createAAssociateRQ()));
+            assertTrue(System.currentTimeMillis() - start < HANDSHAKE_TIMEOUT);
+            stalled.setSoTimeout(5000);
+            // closed by the acceptor after a TLS alert, at most
+            InputStream in = stalled.getInputStream();
+            while (in.read() != -1);
+        } finally {
+            stalled.close();
+        }
+    }
+
+    @Test
+    public void testRejectExceedingMaxTLSHandshakes() throws Exception {
+        scpConn.setMaxTLSHandshakes(1);
+        scp.rebindConnections();
+        Socket stalled = new Socket(scpConn.getHostname(), scpConn.getPort());
+        try {
+            Socket exceeding = new Socket(scpConn.getHostname(),
+                    scpConn.getPort());
+            try {
+                long start = System.currentTimeMillis();
+                exceeding.setSoTimeout(5000);
+                assertEquals(-1, exceeding.getInputStream().read());
+                assertTrue(System.currentTimeMillis() - start
+                        < HANDSHAKE_TIMEOUT);
+            } finally {
+                exceeding.close();
+            }
+        } finally {
+            stalled.close();
+        }
+        Thread.sleep(HANDSHAKE_TIMEOUT);
+        cecho(createSCU().connect(scpConn, createAAssociateRQ()));
+    }
+
+    private static void cecho(Association as) throws Exception {
+        DimseRSP rsp = as.cecho();
+        rsp.next();
+        assertEquals(Status.Success, rsp.getCommand().getInt(Tag.Status, -1));
+        as.release();
+        as.waitForSocketClose();
+    }
+
+    private ApplicationEntity createSCU() {
+        Connection conn = tlsConnection(0);
+        conn.setTlsHandshakeTimeout(HANDSHAKE_TIMEOUT);
+        Device scu = tlsDevice("tls-scu", conn);
+        ApplicationEntity ae = scu.getApplicationEntity("TLS-SCU");
+        ae.setAssociationInitiator(true);
+        return ae;
+    }
+
+    private static AAssociateRQ createAAssociateRQ() {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET("TLS-SCP");
+        rq.addPresentationContext(new PresentationContext(1,
+                UID.VerificationSOPClass, UID.ImplicitVRLittleEndian));
+        return rq;
+    }
+
+    private static Connection tlsConnection(int port) {
+        Connection conn = createConnection(port);
+        conn.setTlsProtocols(PROTOCOLS);
+        conn.setTlsCipherSuites(CIPHERS);
+        return conn;
+    }
+
+    private Device tlsDevice(String name, Connection conn) {
+        Device device = createDevice(name, conn, executor, scheduledExecutor);
+        device.setKeyStoreURL(
+                TLSHandshakeTest.class.getResource("/key.jks").toString());
+        device.setKeyStoreType("JKS");
+        device.setKeyStorePin("secret");
+        device.setTrustManager(new TrustAll());
+        device.setTlsSessionCacheSize(10);
+        device.setTlsSessionTimeout(60);
+        return device;
+    }
+
+    private static class TrustAll implements X509TrustManager {
+
+        @Override
+        public void checkClientTrusted(X509Certificate[] chain,
+                String authType) {
+        }
+
+        @Override
+        public void checkServerTrusted(X509Certificate[] chain,
+                String authType) {
+        }
+
+        @Override
+        public X509Certificate[] getAcceptedIssuers() {
+            return new X509Certificate[0];
+        }
+    }
+}
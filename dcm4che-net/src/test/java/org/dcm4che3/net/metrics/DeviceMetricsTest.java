@@ -0,0 +1,209 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.metrics;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.DimseRSP;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.pdu.AAssociateRJ;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.dcm4che3.net.service.BasicCEchoSCP;
+import org.dcm4che3.net.service.DicomServiceRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class DeviceMetricsTest {
+
+    private static final String ECHO = "C_ECHO_RQ " + UID.VerificationSOPClass;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+    private Device scu;
+    private DeviceMetrics scpMetrics = new DeviceMetrics();
+    private DeviceMetrics scuMetrics = new DeviceMetrics();
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = createConnection(freePort());
+        scp = createDevice("metrics-scp", scpConn, executor,
+                scheduledExecutor);
+        scp.setMetrics(scpMetrics);
+        ApplicationEntity ae = scp.getApplicationEntity("METRICS-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null,
+                UID.VerificationSOPClass, TransferCapability.Role.SCP,
+                UID.ImplicitVRLittleEndian));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCEchoSCP());
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+        scu = createDevice("metrics-scu", createConnection(0), executor,
+                scheduledExecutor);
+        scu.setMetrics(scuMetrics);
+        scu.getApplicationEntity("METRICS-SCU").setAssociationInitiator(true);
+    }
+
+    @After
+    public void tearDown() {
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testEcho() throws Exception {
+        Association as = connect("METRICS-SCP");
+        for (int i = 0; i < 3; i++) {
+            DimseRSP rsp = as.cecho();
+            rsp.next();
+            assertEquals(Status.Success,
+                    rsp.getCommand().getInt(Tag.Status, -1));
+        }
+        as.release();
+        as.waitForSocketClose();
+
+        Map<String, Long> accepted = Collections.singletonMap(
+                "METRICS-SCU->METRICS-SCP", 1L);
+        assertEquals(accepted, scuMetrics.getAssociationsAccepted());
+        assertEquals(Long.valueOf(3),
+                scuMetrics.getInvokedOperations().get(ECHO));
+        assertEquals(Long.valueOf(3),
+                scuMetrics.getStatusCodes().get("C_ECHO_RSP 0000H"));
+        assertEquals(0, scuMetrics.getOutstandingRSP());
+        assertEquals(1, scuMetrics.getMaxOutstandingRSP());
+        assertEquals(as.getBytesSent(), scuMetrics.getBytesSent());
+        assertEquals(as.getBytesReceived(), scuMetrics.getBytesReceived());
+        assertTrue(as.getBytesSent() > 0 && as.getBytesReceived() > 0);
+
+        awaitPerformed(3);
+        assertEquals(accepted, scpMetrics.getAssociationsAccepted());
+        assertEquals(Long.valueOf(3),
+                scpMetrics.getPerformedOperations().get(ECHO));
+        assertEquals(scuMetrics.getBytesSent(), scpMetrics.getBytesReceived());
+    }
+
+    @Test
+    public void testRejected() throws Exception {
+        try {
+            connect("UNKNOWN");
+        } catch (AAssociateRJ expected) {
+        }
+        assertEquals(Collections.singletonMap("METRICS-SCU->UNKNOWN", 1L),
+                scuMetrics.getAssociationsRejected());
+        assertTrue(scuMetrics.getAssociationsAccepted().isEmpty());
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        ObjectName name = scuMetrics.registerMBean(scu);
+        try {
+            Association as = connect("METRICS-SCP");
+            as.cecho().next();
+            as.release();
+            as.waitForSocketClose();
+            TabularData invoked = (TabularData) ManagementFactory
+                    .getPlatformMBeanServer()
+                    .getAttribute(name, "InvokedOperations");
+            CompositeData row = invoked.get(new Object[] { ECHO });
+            assertEquals(1L, row.get("value"));
+        } finally {
+            scuMetrics.unregisterMBean(scu);
+        }
+    }
+
+    @Test
+    public void testHistogram() {
+        Histogram h = new Histogram();
+        for (int i = 1; i <= 100; i++)
+            h.record(i);
+        assertEquals(100, h.getCount());
+        assertEquals(50, h.getMean());
+        assertEquals(100, h.getMax());
+        assertEquals(63, h.getPercentile(50));
+        assertEquals(100, h.getPercentile(99));
+    }
+
+    private void awaitPerformed(long count) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000;
+        while (!Long.valueOf(count).equals(
+                    scpMetrics.getPerformedOperations().get(ECHO))
+                && System.currentTimeMillis() < end)
+            Thread.sleep(10);
+    }
+
+    private Association connect(String calledAET) throws Exception {
+        AAssociateRQ rq = new AAssociateRQ();
+        rq.setCalledAET(calledAET);
+        rq.addPresentationContext(new PresentationContext(1,
+                UID.VerificationSOPClass, UID.ImplicitVRLittleEndian));
+        return scu.getApplicationEntity("METRICS-SCU").connect(scpConn, rq);
+    }
+}
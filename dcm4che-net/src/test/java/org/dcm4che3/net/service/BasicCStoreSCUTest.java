@@ -0,0 +1,223 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.net.service;
+
+import static org.dcm4che3.net.LoopbackDevices.createConnection;
+import static org.dcm4che3.net.LoopbackDevices.createDevice;
+import static org.dcm4che3.net.LoopbackDevices.freePort;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.net.ApplicationEntity;
+import org.dcm4che3.net.Association;
+import org.dcm4che3.net.Connection;
+import org.dcm4che3.net.DataWriter;
+import org.dcm4che3.net.DataWriterAdapter;
+import org.dcm4che3.net.Device;
+import org.dcm4che3.net.PDVInputStream;
+import org.dcm4che3.net.Status;
+import org.dcm4che3.net.TransferCapability;
+import org.dcm4che3.net.pdu.AAssociateRQ;
+import org.dcm4che3.net.pdu.PresentationContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @author agent <agent@local>
+ */
+public class BasicCStoreSCUTest {
+
+    private static final String CUID = UID.CTImageStorage;
+    private static final String TSUID = UID.ImplicitVRLittleEndian;
+    private static final int NUM_INSTANCES = 30;
+    private static final int NUM_ASSOCIATIONS = 3;
+    private static final int WINDOW = 2;
+
+    private final ConcurrentHashMap<String, AtomicInteger> stored =
+            new ConcurrentHashMap<String, AtomicInteger>();
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+    private Connection scpConn;
+    private Device scp;
+    private ApplicationEntity scuAE;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newCachedThreadPool();
+        scheduledExecutor = Executors.newSingleThreadScheduledExecutor();
+        scpConn = createConnection(freePort(), 0);
+        scp = createDevice("store-scp", scpConn, executor,
+                scheduledExecutor);
+        ApplicationEntity ae = scp.getApplicationEntity("STORE-SCP");
+        ae.setAssociationAcceptor(true);
+        ae.addTransferCapability(new TransferCapability(null, CUID,
+                TransferCapability.Role.SCP, TSUID));
+        DicomServiceRegistry serviceRegistry = new DicomServiceRegistry();
+        serviceRegistry.addDicomService(new BasicCStoreSCP() {
+
+            @Override
+            protected void store(Association as, PresentationContext pc,
+                    Attributes rq, PDVInputStream data, Attributes rsp)
+                    throws IOException {
+                data.readDataset(pc.getTransferSyntax());
+                String callingAET = as.getCallingAET();
+                AtomicInteger count = stored.get(callingAET);
+                if (count == null) {
+                    stored.putIfAbsent(callingAET, new AtomicInteger());
+                    count = stored.get(callingAET);
+                }
+                int n = count.incrementAndGet();
+                if (callingAET.equals("ABORT") && n == 3) {
+                    as.abort();
+                    return;
+                }
+                if (callingAET.equals("SLOW"))
+                    try {
+                        Thread.sleep(100);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+            }
+        });
+        scp.setDimseRQHandler(serviceRegistry);
+        scp.bindConnections();
+        scuAE = createDevice("store-scu", createConnection(0, 0), executor,
+                scheduledExecutor)
+                .getApplicationEntity("STORE-SCU");
+        scuAE.setAssociationInitiator(true);
+    }
+
+    @After
+    public void tearDown() {
+        scp.unbindConnections();
+        executor.shutdown();
+        scheduledExecutor.shutdown();
+    }
+
+    @Test
+    public void testFanOut() throws Exception {
+        List<Association> storeas = connect("SLOW", "FAST1", "FAST2");
+        BasicCStoreSCU<InstanceLocator> storescu = createCStoreSCU();
+        BasicCStoreSCUResp rsp = storescu.cstore(instances(), storeas, 0);
+        release(storeas);
+        assertEquals(Status.Success, rsp.getStatus());
+        assertEquals(NUM_INSTANCES, rsp.getCompleted());
+        assertEquals(0, storescu.getRemaining());
+        int slow = stored.get("SLOW").get();
+        assertTrue("stored on slow association: " + slow,
+                slow < NUM_INSTANCES / NUM_ASSOCIATIONS);
+        assertEquals(NUM_INSTANCES, slow + stored.get("FAST1").get()
+                + stored.get("FAST2").get());
+    }
+
+    @Test
+    public void testAbortedAssociation() throws Exception {
+        List<Association> storeas = connect("ABORT", "FAST1", "FAST2");
+        BasicCStoreSCU<InstanceLocator> storescu = createCStoreSCU();
+        BasicCStoreSCUResp rsp = storescu.cstore(instances(), storeas, 0);
+        release(storeas);
+        assertEquals(0, storescu.getRemaining());
+        assertEquals(NUM_INSTANCES, rsp.getCompleted() + rsp.getFailed());
+        assertTrue("failed: " + rsp.getFailed(), rsp.getFailed() <= WINDOW);
+    }
+
+    private BasicCStoreSCU<InstanceLocator> createCStoreSCU() {
+        BasicCStoreSCU<InstanceLocator> storescu =
+                new BasicCStoreSCU<InstanceLocator>() {
+
+            @Override
+            protected DataWriter createDataWriter(InstanceLocator inst,
+                    String tsuid) {
+                Attributes attrs = new Attributes();
+                attrs.setString(Tag.SOPClassUID, VR.UI, inst.cuid);
+                attrs.setString(Tag.SOPInstanceUID, VR.UI, inst.iuid);
+                attrs.setBytes(Tag.PixelData, VR.OW, new byte[1024]);
+                return new DataWriterAdapter(attrs);
+            }
+        };
+        storescu.setWindow(WINDOW);
+        return storescu;
+    }
+
+    private static List<InstanceLocator> instances() {
+        List<InstanceLocator> insts = new ArrayList<InstanceLocator>();
+        for (int i = 0; i < NUM_INSTANCES; i++)
+            insts.add(new InstanceLocator(CUID, "1.2.3." + i, TSUID, null));
+        return insts;
+    }
+
+    private List<Association> connect(String... callingAETs)
+            throws Exception {
+        List<Association> storeas = new ArrayList<Association>();
+        for (String callingAET : callingAETs) {
+            AAssociateRQ rq = new AAssociateRQ();
+            rq.setCallingAET(callingAET);
+            rq.setCalledAET("STORE-SCP");
+            rq.addPresentationContext(new PresentationContext(1, CUID, TSUID));
+            storeas.add(scuAE.connect(scpConn, rq));
+        }
+        return storeas;
+    }
+
+    private static void release(List<Association> storeas)
+            throws Exception {
+        for (Association as : storeas) {
+            try {
+                as.release();
+                as.waitForSocketClose();
+            } catch (IOException e) {
+                // aborted by SCP
+            }
+        }
+    }
+}
@@ -167,6 +167,7 @@ public class CLIUtils {
                 .withLongOpt("max-ops-performed")
                 .create(null));
         opts.addOption(null, "not-async", false, rb.getString("not-async"));
+        opts.addOption(null, "perform-async", false, rb.getString("perform-async"));
         opts.addOption(null, "not-pack-pdv", false, rb.getString("not-pack-pdv"));
         opts.addOption(OptionBuilder
                 .hasArg()
@@ -225,6 +226,7 @@ public class CLIUtils {
                 .withLongOpt("sorcv-buffer")
                 .create(null));
         opts.addOption(null, "tcp-delay", false, rb.getString("tcp-delay"));
+        opts.addOption(null, "nio", false, rb.getString("nio"));
     }
 
     @SuppressWarnings("static-access")
@@ -458,6 +460,7 @@ public class CLIUtils {
         } else {
             conn.setMaxOpsInvoked(getIntOption(cl, "max-ops-invoked", 0));
             conn.setMaxOpsPerformed(getIntOption(cl, "max-ops-performed", 0));
+            conn.setAsyncDimseRQExecution(cl.hasOption("perform-async"));
         }
         conn.setPackPDV(!cl.hasOption("not-pack-pdv"));
         conn.setConnectTimeout(getIntOption(cl, "connect-timeout", 0));
@@ -472,6 +475,7 @@ public class CLIUtils {
         conn.setSendBufferSize(getIntOption(cl, "sosnd-buffer", 0));
         conn.setReceiveBufferSize(getIntOption(cl, "sorcv-buffer", 0));
         conn.setTcpNoDelay(!cl.hasOption("tcp-delay"));
+        conn.setNioTransport(cl.hasOption("nio"));
         configureTLS(conn, cl);
     }
 
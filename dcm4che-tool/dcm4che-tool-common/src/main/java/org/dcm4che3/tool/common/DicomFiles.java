@@ -39,7 +39,17 @@
 package org.dcm4che3.tool.common;
 
 import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -60,11 +70,23 @@ public abstract class DicomFiles {
 
     private static SAXParser saxParser;
 
+    private static final ThreadLocal<SAXParser> saxParsers =
+            new ThreadLocal<SAXParser>();
+
     public interface Callback {
         boolean dicomFile(File f, Attributes fmi, long dsPos, Attributes ds)
                 throws Exception;
     }
 
+    /**
+     * Marks a {@link Callback} which may be invoked concurrently by several
+     * threads of a parallel {@link #scan(List, boolean, Callback, int)}.
+     * Other callbacks are invoked by the calling thread, in the order of
+     * the scanned files.
+     */
+    public interface ConcurrentCallback extends Callback {
+    }
+
     public static void scan(List<String> fnames, Callback scb) {
         scan(fnames, true, scb); //default printout = true
     }
@@ -74,6 +96,45 @@ public abstract class DicomFiles {
             scan(new File(fname), printout, scb);
     }
     
+    /**
+     * Scans files and directories by {@code parallelism} threads. Directories
+     * are listed and files parsed - up to the Pixel Data - concurrently, but
+     * the results are passed to a non-{@link ConcurrentCallback} and printed
+     * in the same order as by a sequential scan. The number of parsed files
+     * not yet passed to the callback is bounded.
+     *
+     * @param fnames paths of files and directories to scan
+     * @param printout print '.' or 'I' for each accepted or ignored file
+     * @param scb callback invoked for each scanned file
+     * @param parallelism number of threads; a value &lt;= 1 scans
+     *        sequentially by the calling thread
+     */
+    public static void scan(List<String> fnames, boolean printout,
+            Callback scb, int parallelism) {
+        if (parallelism <= 1) {
+            scan(fnames, printout, scb);
+            return;
+        }
+        ExecutorService executor =
+                Executors.newFixedThreadPool(parallelism, DAEMON_THREADS);
+        try {
+            new ParallelScan(executor, parallelism, printout, scb)
+                    .scan(fnames);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "DicomFiles-scan");
+            t.setDaemon(true);
+            return t;
+        }
+    };
+
     private static void scan(File f, boolean printout, Callback scb) {
         if (f.isDirectory()) {
             for (String s : f.list())
@@ -121,4 +182,211 @@ public abstract class DicomFiles {
             }
         }
     }
+
+    private static final class ScanResult {
+        final File file;
+        Attributes fmi;
+        long dsPos = -1;
+        Attributes ds;
+        boolean accepted;
+        Exception exception;
+
+        ScanResult(File file) {
+            this.file = file;
+        }
+    }
+
+    private static ScanResult parse(File f, Callback scb) {
+        ScanResult result = new ScanResult(f);
+        try {
+            if (f.getName().endsWith(".xml")) {
+                SAXParser p = saxParsers.get();
+                if (p == null) {
+                    p = SAXParserFactory.newInstance().newSAXParser();
+                    saxParsers.set(p);
+                }
+                Attributes ds = new Attributes();
+                ContentHandlerAdapter ch = new ContentHandlerAdapter(ds);
+                p.parse(f, ch);
+                Attributes fmi = ch.getFileMetaInformation();
+                if (fmi == null)
+                    fmi = ds.createFileMetaInformation(UID.ExplicitVRLittleEndian);
+                result.fmi = fmi;
+                result.ds = ds;
+            } else {
+                DicomInputStream in = new DicomInputStream(f);
+                try {
+                    in.setIncludeBulkData(IncludeBulkData.NO);
+                    Attributes fmi = in.readFileMetaInformation();
+                    result.dsPos = in.getPosition();
+                    Attributes ds = in.readDataset(-1, Tag.PixelData);
+                    if (fmi == null || !fmi.containsValue(Tag.TransferSyntaxUID)
+                            || !fmi.containsValue(Tag.MediaStorageSOPClassUID)
+                            || !fmi.containsValue(Tag.MediaStorageSOPInstanceUID))
+                        fmi = ds.createFileMetaInformation(in.getTransferSyntax());
+                    result.fmi = fmi;
+                    result.ds = ds;
+                } finally {
+                    SafeClose.close(in);
+                }
+            }
+            if (scb instanceof ConcurrentCallback)
+                invoke(result, scb);
+        } catch (Exception e) {
+            result.exception = e;
+        }
+        return result;
+    }
+
+    private static void invoke(ScanResult result, Callback scb)
+            throws Exception {
+        result.accepted = scb.dicomFile(result.file, result.fmi, result.dsPos,
+                result.ds);
+        result.fmi = null;
+        result.ds = null;
+    }
+
+    private static File[] list(File dir) {
+        String[] names = dir.list();
+        if (names == null)
+            return new File[0];
+
+        File[] files = new File[names.length];
+        for (int i = 0; i < names.length; i++)
+            files[i] = new File(dir, names[i]);
+        return files;
+    }
+
+    /**
+     * Traverses the files depth-first in the order of a sequential scan.
+     * Directories are listed by the executor ahead of their traversal.
+     */
+    private static final class ParallelScan {
+        final ExecutorService executor;
+        final int maxPending;
+        final boolean printout;
+        final Callback scb;
+        final Deque<Iterator<Object>> stack = new ArrayDeque<Iterator<Object>>();
+        final Deque<Future<ScanResult>> pending =
+                new ArrayDeque<Future<ScanResult>>();
+
+        ParallelScan(ExecutorService executor, int parallelism,
+                boolean printout, Callback scb) {
+            this.executor = executor;
+            this.maxPending = parallelism * 16;
+            this.printout = printout;
+            this.scb = scb;
+        }
+
+        void scan(List<String> fnames) {
+            List<Object> entries = new ArrayList<Object>(fnames.size());
+            for (String fname : fnames)
+                entries.add(classify(new File(fname)));
+            stack.push(entries.iterator());
+            File f;
+            while ((f = nextFile()) != null) {
+                submit(f);
+                if (pending.size() >= maxPending)
+                    complete(pending.poll());
+            }
+            while (!pending.isEmpty())
+                complete(pending.poll());
+        }
+
+        private Object classify(File f) {
+            return f.isDirectory() ? listAsync(f) : f;
+        }
+
+        private Future<List<Object>> listAsync(final File dir) {
+            return executor.submit(new Callable<List<Object>>() {
+
+                @Override
+                public List<Object> call() {
+                    File[] files = list(dir);
+                    List<Object> entries = new ArrayList<Object>(files.length);
+                    for (File f : files)
+                        entries.add(f.isDirectory() ? new Directory(f) : f);
+                    return entries;
+                }
+            });
+        }
+
+        @SuppressWarnings("unchecked")
+        private File nextFile() {
+            while (!stack.isEmpty()) {
+                Iterator<Object> iter = stack.peek();
+                if (!iter.hasNext()) {
+                    stack.pop();
+                    continue;
+                }
+                Object entry = iter.next();
+                if (entry instanceof File)
+                    return (File) entry;
+
+                Future<List<Object>> listing = entry instanceof Directory
+                        ? listAsync(((Directory) entry).file)
+                        : (Future<List<Object>>) entry;
+                stack.push(prefetch(get(listing)).iterator());
+            }
+            return null;
+        }
+
+        private List<Object> prefetch(List<Object> entries) {
+            for (int i = 0, n = entries.size(); i < n; i++) {
+                Object entry = entries.get(i);
+                if (entry instanceof Directory)
+                    entries.set(i, listAsync(((Directory) entry).file));
+            }
+            return entries;
+        }
+
+        private void submit(final File f) {
+            pending.add(executor.submit(new Callable<ScanResult>() {
+
+                @Override
+                public ScanResult call() {
+                    return parse(f, scb);
+                }
+            }));
+        }
+
+        private void complete(Future<ScanResult> future) {
+            ScanResult result = get(future);
+            if (result.exception == null && !(scb instanceof ConcurrentCallback))
+                try {
+                    invoke(result, scb);
+                } catch (Exception e) {
+                    result.exception = e;
+                }
+            if (result.exception != null) {
+                System.out.println();
+                System.out.println((result.file.getName().endsWith(".xml")
+                        ? "Failed to parse file "
+                        : "Failed to scan file ")
+                        + result.file + ": " + result.exception.getMessage());
+                result.exception.printStackTrace(System.out);
+            } else if (printout) {
+                System.out.print(result.accepted ? '.' : 'I');
+            }
+        }
+
+        private static <T> T get(Future<T> future) {
+            try {
+                return future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private static final class Directory {
+        final File file;
+
+        Directory(File file) {
+            this.file = file;
+        }
+    }
 }
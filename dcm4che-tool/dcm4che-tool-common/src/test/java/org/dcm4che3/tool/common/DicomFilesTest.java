@@ -0,0 +1,203 @@
+/* ***** BEGIN LICENSE BLOCK *****
+ * Version: MPL 1.1/GPL 2.0/LGPL 2.1
+ *
+ * The contents of this file are subject to the Mozilla Public License Version
+ * 1.1 (the "License"); you may not use this file except in compliance with
+ * the License. You may obtain a copy of the License at
+ * http://www.mozilla.org/MPL/
+ *
+ * Software distributed under the License is distributed on an "AS IS" basis,
+ * WITHOUT WARRANTY OF ANY KIND, either express or implied. See the License
+ * for the specific language governing rights and limitations under the
+ * License.
+ *
+ * The Original Code is part of dcm4che, an implementation of DICOM(TM) in
+ * Java(TM), hosted at https://github.com/gunterze/dcm4che.
+ *
+ * The Initial Developer of the Original Code is
+ * Agfa Healthcare.
+ * Portions created by the Initial Developer are Copyright (C) 2015
+ * the Initial Developer. All Rights Reserved.
+ *
+ * Contributor(s):
+ * See @authors listed below
+ *
+ * Alternatively, the contents of this file may be used under the terms of
+ * either the GNU General Public License Version 2 or later (the "GPL"), or
+ * the GNU Lesser General Public License Version 2.1 or later (the "LGPL"),
+ * in which case the provisions of the GPL or the LGPL are applicable instead
+ * of those above. If you wish to allow use of your version of this file only
+ * under the terms of either the GPL or the LGPL, and not to allow others to
+ * use your version of this file under the terms of the MPL, indicate your
+ * decision by deleting the provisions above and replace them with the notice
+ * and other provisions required by the GPL or the LGPL. If you do not delete
+ * the provisions above, a recipient may use your version of this file under
+ * the terms of any one of the MPL, the GPL or the LGPL.
+ *
+ * ***** END LICENSE BLOCK ***** */
+
+package org.dcm4che3.tool.common;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.Tag;
+import org.dcm4che3.data.UID;
+import org.dcm4che3.data.VR;
+import org.dcm4che3.io.DicomOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @author agent <agent@local>
+ */
+public class DicomFilesTest {
+
+    private static final int PARALLELISM = 4;
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    private List<String> fnames;
+    private File corrupt;
+    private File rejected;
+    private PrintStream stdout;
+    private ByteArrayOutputStream printout;
+
+    @Before
+    public void setUp() throws Exception {
+        File root = tmp.getRoot();
+        int n = 0;
+        for (String dir : new String[] { "a", "b", "b/c", "b/c/d", "e" }) {
+            File d = new File(root, dir);
+            d.mkdirs();
+            for (int i = 0; i < 8; i++)
+                writeDicomFile(new File(d, i + ".dcm"), ++n);
+        }
+        File single = new File(root, "single.dcm");
+        writeDicomFile(single, ++n);
+        corrupt = new File(root, "b/c/corrupt.dcm");
+        FileOutputStream out = new FileOutputStream(corrupt);
+        try {
+            out.write("no DICOM".getBytes("US-ASCII"));
+        } finally {
+            out.close();
+        }
+        rejected = new File(root, "b/c/d/3.dcm");
+        fnames = Arrays.asList(new File(root, "b").getPath(),
+                single.getPath(), root.getPath());
+        stdout = System.out;
+        printout = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(printout, true));
+    }
+
+    @After
+    public void tearDown() {
+        System.setOut(stdout);
+    }
+
+    private static void writeDicomFile(File f, int instanceNumber)
+            throws IOException {
+        Attributes attrs = new Attributes();
+        attrs.setString(Tag.SOPClassUID, VR.UI,
+                UID.SecondaryCaptureImageStorage);
+        attrs.setString(Tag.SOPInstanceUID, VR.UI, "1.2.3." + instanceNumber);
+        attrs.setInt(Tag.InstanceNumber, VR.IS, instanceNumber);
+        DicomOutputStream out = new DicomOutputStream(f);
+        try {
+            out.writeDataset(
+                    attrs.createFileMetaInformation(UID.ExplicitVRLittleEndian),
+                    attrs);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void testParallelScanKeepsOrder() {
+        RecordingCallback sequential = new RecordingCallback();
+        DicomFiles.scan(fnames, true, sequential, 1);
+        String sequentialPrintout = printout.toString();
+        printout.reset();
+        RecordingCallback parallel = new RecordingCallback();
+        DicomFiles.scan(fnames, true, parallel, PARALLELISM);
+        // b/ contains 24 files, the root 41, besides the corrupt file
+        assertEquals(24 + 1 + 41, sequential.files.size());
+        assertEquals(sequential.files, parallel.files);
+        assertEquals(progressOf(sequentialPrintout),
+                progressOf(printout.toString()));
+    }
+
+    @Test
+    public void testParallelScanReportsErrors() {
+        RecordingCallback callback = new RecordingCallback();
+        DicomFiles.scan(fnames, true, callback, PARALLELISM);
+        assertFalse(callback.files.contains(corrupt));
+        assertTrue(callback.files.contains(rejected));
+        assertEquals(2, count(printout.toString(),
+                "Failed to scan file " + corrupt));
+        assertEquals(2, count(printout.toString(),
+                "Failed to scan file " + rejected + ": rejected"));
+    }
+
+    @Test
+    public void testParallelScanWithConcurrentCallback() {
+        RecordingCallback sequential = new RecordingCallback();
+        DicomFiles.scan(fnames, false, sequential, 1);
+        ConcurrentRecordingCallback concurrent =
+                new ConcurrentRecordingCallback();
+        DicomFiles.scan(fnames, false, concurrent, PARALLELISM);
+        assertEquals(new HashSet<File>(sequential.files),
+                new HashSet<File>(concurrent.files));
+        assertEquals(sequential.files.size(), concurrent.files.size());
+    }
+
+    private static String progressOf(String printout) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : printout.split("\n"))
+            if (!line.startsWith("\t") && !line.startsWith("Failed")
+                    && !line.contains("Exception"))
+                sb.append(line);
+        return sb.toString();
+    }
+
+    private static int count(String s, String part) {
+        int n = 0;
+        for (int i = s.indexOf(part); i >= 0; i = s.indexOf(part, i + 1))
+            n++;
+        return n;
+    }
+
+    private class RecordingCallback implements DicomFiles.Callback {
+
+        final List<File> files =
+                Collections.synchronizedList(new ArrayList<File>());
+
+        @Override
+        public boolean dicomFile(File f, Attributes fmi, long dsPos,
+                Attributes ds) throws Exception {
+            files.add(f);
+            if (f.equals(rejected))
+                throw new IOException("rejected");
+            return ds.getInt(Tag.InstanceNumber, 0) % 2 == 0;
+        }
+    }
+
+    private class ConcurrentRecordingCallback extends RecordingCallback
+            implements DicomFiles.ConcurrentCallback {
+    }
+}
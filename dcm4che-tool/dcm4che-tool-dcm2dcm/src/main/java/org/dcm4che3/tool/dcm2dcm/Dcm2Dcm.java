@@ -39,11 +39,15 @@
 package org.dcm4che3.tool.dcm2dcm;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.OptionBuilder;
@@ -58,6 +62,8 @@ import org.dcm4che3.data.Fragments;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.imageio.codec.Compressor;
 import org.dcm4che3.imageio.codec.Decompressor;
+import org.dcm4che3.imageio.codec.StreamCompressor;
+import org.dcm4che3.imageio.codec.StreamDecompressor;
 import org.dcm4che3.imageio.codec.TransferSyntaxType;
 import org.dcm4che3.io.DicomEncodingOptions;
 import org.dcm4che3.io.DicomInputStream;
@@ -81,6 +87,7 @@ public class Dcm2Dcm {
     private boolean nofmi;
     private DicomEncodingOptions encOpts = DicomEncodingOptions.DEFAULT;
     private final List<Property> params = new ArrayList<Property>();
+    private Executor pipelineExecutor;
 
     public final void setTransferSyntax(String uid) {
         this.tsuid = uid;
@@ -103,6 +110,10 @@ public class Dcm2Dcm {
         this.encOpts = encOpts;
     }
 
+    public final void setPipelineExecutor(Executor pipelineExecutor) {
+        this.pipelineExecutor = pipelineExecutor;
+    }
+
     public void addCompressionParam(String name, Object value) {
         params.add(new Property(name, value));
     }
@@ -187,6 +198,10 @@ public class Dcm2Dcm {
                 .withType(PatternOptionBuilder.NUMBER_VALUE)
                 .withDescription(rb.getString("encoding-rate"))
                 .create("Q"));
+        opts.addOption(OptionBuilder
+                .withLongOpt("pipeline")
+                .withDescription(rb.getString("pipeline"))
+                .create());
         opts.addOption(OptionBuilder
                 .hasArgs()
                 .withArgName("name=value")
@@ -243,8 +258,16 @@ public class Dcm2Dcm {
                     && !dest.isDirectory())
                 throw new ParseException(
                         MessageFormat.format(rb.getString("nodestdir"), dest));
-            for (String src : argList.subList(0, argc-1))
-                main.mtranscode(new File(src), dest);
+            ExecutorService executor = null;
+            if (cl.hasOption("pipeline"))
+                main.setPipelineExecutor(executor = Executors.newCachedThreadPool());
+            try {
+                for (String src : argList.subList(0, argc-1))
+                    main.mtranscode(new File(src), dest);
+            } finally {
+                if (executor != null)
+                    executor.shutdown();
+            }
         } catch (ParseException e) {
             System.err.println("dcm2dcm: " + e.getMessage());
             System.err.println(rb.getString("try"));
@@ -291,6 +314,9 @@ public class Dcm2Dcm {
      }
 
      public void transcode(File src, File dest) throws IOException {
+        if (pipelineExecutor != null && transcodeStream(src, dest))
+            return;
+
         Attributes fmi;
         Attributes dataset;
         DicomInputStream dis = new DicomInputStream(src);
@@ -322,7 +348,9 @@ public class Dcm2Dcm {
                 fmi.setString(Tag.TransferSyntaxUID, VR.UI, tsuid);
             else
                 fmi = dataset.createFileMetaInformation(tsuid);
-            dos = new DicomOutputStream(dest);
+            dos = new DicomOutputStream(
+                    new FileOutputStream(dest).getChannel(),
+                    UID.ExplicitVRLittleEndian);
             dos.setEncodingOptions(encOpts);
             dos.writeDataset(fmi, dataset);
         } finally {
@@ -331,6 +359,67 @@ public class Dcm2Dcm {
         }
      }
 
+    private boolean transcodeStream(File src, File dest) throws IOException {
+        Attributes fmi;
+        Attributes dataset;
+        String srcTsuid;
+        DicomInputStream dis = new DicomInputStream(src);
+        try {
+            fmi = dis.readFileMetaInformation();
+            dataset = dis.readDataset(-1, Tag.PixelData);
+            srcTsuid = dis.getTransferSyntax();
+        } finally {
+            dis.close();
+        }
+        TransferSyntaxType srcTsType = TransferSyntaxType.forUID(srcTsuid);
+        if (srcTsType == null || srcTsuid.equals(this.tsuid)
+                || !srcTsType.isPixeldataEncapsulated()
+                    && !tstype.isPixeldataEncapsulated())
+            return false;
+
+        String tsuid = this.tsuid;
+        if (tstype.isPixeldataEncapsulated())
+            tsuid = adjustTransferSyntax(tsuid,
+                    dataset.getInt(Tag.BitsStored, 8));
+        if (nofmi)
+            fmi = null;
+        else if (retainfmi && fmi != null)
+            fmi.setString(Tag.TransferSyntaxUID, VR.UI, tsuid);
+        else
+            fmi = dataset.createFileMetaInformation(tsuid);
+        StreamDecompressor transcoder = null;
+        DicomOutputStream dos = null;
+        dis = new DicomInputStream(src);
+        try {
+            dis.readFileMetaInformation();
+            dos = new DicomOutputStream(
+                    new FileOutputStream(dest).getChannel(),
+                    fmi != null ? UID.ExplicitVRLittleEndian : tsuid);
+            dos.setEncodingOptions(encOpts);
+            if (fmi != null)
+                dos.writeFileMetaInformation(fmi);
+            if (tstype.isPixeldataEncapsulated()) {
+                StreamCompressor compressor =
+                        new StreamCompressor(dis, srcTsuid, dos);
+                transcoder = compressor;
+                compressor.setPipelineExecutor(pipelineExecutor);
+                compressor.setExecutor(pipelineExecutor);
+                compressor.compress(tsuid,
+                        params.toArray(new Property[params.size()]));
+            } else {
+                transcoder = new StreamDecompressor(dis, srcTsuid, dos);
+                transcoder.setPipelineExecutor(pipelineExecutor);
+                transcoder.decompress();
+            }
+        } finally {
+            SafeClose.close(dis);
+            SafeClose.close(dos);
+            if (transcoder != null)
+                transcoder.dispose();
+        }
+        return true;
+    }
+
     private String adjustTransferSyntax(String tsuid, int bitsStored) {
         switch (tstype) {
         case JPEG_BASELINE:
@@ -61,11 +61,10 @@ import org.apache.commons.cli.ParseException;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.UID;
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
 import org.dcm4che3.data.Sequence;
 import org.dcm4che3.data.VR;
-import org.dcm4che3.io.DicomInputStream;
 import org.dcm4che3.io.DicomOutputStream;
-import org.dcm4che3.io.DicomInputStream.IncludeBulkData;
 import org.dcm4che3.media.DicomDirReader;
 import org.dcm4che3.media.DicomDirWriter;
 import org.dcm4che3.media.RecordFactory;
@@ -138,6 +137,8 @@ public class DcmQRSCP<T extends InstanceLocator> {
     private boolean stgCmtOnSameAssoc;
     private boolean sendPendingCGet;
     private int sendPendingCMoveInterval;
+    private int storeAssociations = 1;
+    private int storeWindow;
     private final FilesetInfo fsInfo = new FilesetInfo();
     private DicomDirReader ddReader;
     private DicomDirWriter ddWriter;
@@ -160,8 +161,7 @@ public class DcmQRSCP<T extends InstanceLocator> {
             try {
                 Attributes fmi = as
                         .createFileMetaInformation(iuid, cuid, tsuid);
-                storeTo(as, fmi, data, file);
-                Attributes attrs = parse(file);
+                Attributes attrs = storeTo(as, fmi, data, file);
                 File dest = getDestinationFile(attrs);
                 renameTo(as, file, dest);
                 file = dest;
@@ -334,18 +334,39 @@ public class DcmQRSCP<T extends InstanceLocator> {
             if (matches.isEmpty())
                 return null;
 
-            AAssociateRQ aarq = makeAAssociateRQ(as.getLocalAET(), moveDest,
-                    matches);
-            Association storeas = openStoreAssociation(as, remote, aarq);
+            List<Association> storeas = openStoreAssociations(as, remote,
+                    moveDest, matches);
+            BasicCStoreSCU<T> storescu = new BasicCStoreSCU<T>();
+            storescu.setWindow(storeWindow);
 
             BasicRetrieveTask<T> retrieveTask = new BasicRetrieveTask<T>(
-                    Dimse.C_MOVE_RQ, as, pc, rq, matches, storeas,
-                    new BasicCStoreSCU<T>());
+                    Dimse.C_MOVE_RQ, as, pc, rq, matches, storeas, storescu);
             retrieveTask
                     .setSendPendingRSPInterval(getSendPendingCMoveInterval());
             return retrieveTask;
         }
 
+        private List<Association> openStoreAssociations(Association as,
+                Connection remote, String moveDest, List<T> matches)
+                throws DicomServiceException {
+            int n = Math.max(1, Math.min(storeAssociations, matches.size()));
+            List<Association> storeas = new ArrayList<Association>(n);
+            storeas.add(openStoreAssociation(as, remote,
+                    makeAAssociateRQ(as.getLocalAET(), moveDest, matches)));
+            for (int i = 1; i < n; i++) {
+                try {
+                    storeas.add(openStoreAssociation(as, remote,
+                            makeAAssociateRQ(as.getLocalAET(), moveDest,
+                                    matches)));
+                } catch (DicomServiceException e) {
+                    LOG.info("{}: failed to open additional association to {}",
+                            as, moveDest, e);
+                    break;
+                }
+            }
+            return storeas;
+        }
+
         private Association openStoreAssociation(Association as,
                 Connection remote, AAssociateRQ aarq)
                 throws DicomServiceException {
@@ -393,14 +414,15 @@ public class DcmQRSCP<T extends InstanceLocator> {
         device.setDimseRQHandler(createServiceRegistry());
     }
 
-    private void storeTo(Association as, Attributes fmi, PDVInputStream data,
-            File file) throws IOException {
+    private Attributes storeTo(Association as, Attributes fmi,
+            PDVInputStream data, File file) throws IOException {
         LOG.info("{}: M-WRITE {}", as, file);
         file.getParentFile().mkdirs();
         DicomOutputStream out = new DicomOutputStream(file);
         try {
             out.writeFileMetaInformation(fmi);
-            data.copyTo(out);
+            return data.copyTo(out, fmi.getString(Tag.TransferSyntaxUID),
+                    Tag.PixelData);
         } finally {
             SafeClose.close(out);
         }
@@ -422,16 +444,6 @@ public class DcmQRSCP<T extends InstanceLocator> {
             throw new IOException("Failed to rename " + from + " to " + dest);
     }
 
-    private static Attributes parse(File file) throws IOException {
-        DicomInputStream in = new DicomInputStream(file);
-        try {
-            in.setIncludeBulkData(IncludeBulkData.NO);
-            return in.readDataset(-1, Tag.PixelData);
-        } finally {
-            SafeClose.close(in);
-        }
-    }
-
     private static void deleteFile(Association as, File file) {
         if (file.delete())
             LOG.info("{}: M-DELETE {}", as, file);
@@ -544,6 +556,27 @@ public class DcmQRSCP<T extends InstanceLocator> {
         this.recFact = recFact;
     }
 
+    public final void setStoreAssociations(int storeAssociations) {
+        if (storeAssociations < 1)
+            throw new IllegalArgumentException(
+                    "storeAssociations: " + storeAssociations);
+        this.storeAssociations = storeAssociations;
+    }
+
+    public final int getStoreAssociations() {
+        return storeAssociations;
+    }
+
+    public final void setStoreWindow(int storeWindow) {
+        if (storeWindow < 0)
+            throw new IllegalArgumentException("storeWindow: " + storeWindow);
+        this.storeWindow = storeWindow;
+    }
+
+    public final int getStoreWindow() {
+        return storeWindow;
+    }
+
     public final RecordFactory getRecordFactory() {
         return recFact;
     }
@@ -586,6 +619,12 @@ public class DcmQRSCP<T extends InstanceLocator> {
         opts.addOption(OptionBuilder.hasArg().withArgName("s")
                 .withDescription(rb.getString("pending-cmove"))
                 .withLongOpt("pending-cmove").create());
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("store-assocs"))
+                .withLongOpt("store-assocs").create());
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("store-window"))
+                .withLongOpt("store-window").create());
     }
 
     @SuppressWarnings("static-access")
@@ -677,6 +716,12 @@ public class DcmQRSCP<T extends InstanceLocator> {
         if (cl.hasOption("pending-cmove"))
             main.setSendPendingCMoveInterval(Integer.parseInt(cl
                     .getOptionValue("pending-cmove")));
+        if (cl.hasOption("store-assocs"))
+            main.setStoreAssociations(Integer.parseInt(cl
+                    .getOptionValue("store-assocs")));
+        if (cl.hasOption("store-window"))
+            main.setStoreWindow(Integer.parseInt(cl
+                    .getOptionValue("store-window")));
     }
 
     private static void configureTransferCapability(DcmQRSCP<InstanceLocator> main,
@@ -795,16 +840,25 @@ public class DcmQRSCP<T extends InstanceLocator> {
             String[] studyIUIDs = keys.getStrings(Tag.StudyInstanceUID);
             String[] seriesIUIDs = keys.getStrings(Tag.SeriesInstanceUID);
             String[] sopIUIDs = keys.getStrings(Tag.SOPInstanceUID);
+            AttributesMatcher patMatcher =
+                    DicomDirReader.patientMatcher(patIDs);
+            AttributesMatcher studyMatcher =
+                    DicomDirReader.studyMatcher(studyIUIDs);
+            AttributesMatcher seriesMatcher =
+                    DicomDirReader.seriesMatcher(seriesIUIDs);
+            AttributesMatcher instMatcher =
+                    DicomDirReader.instanceMatcher(sopIUIDs);
             DicomDirReader ddr = ddReader;
-            Attributes patRec = ddr.findPatientRecord(patIDs);
+            Attributes patRec = ddr.findRootDirectoryRecord(false, patMatcher);
             while (patRec != null) {
-                Attributes studyRec = ddr.findStudyRecord(patRec, studyIUIDs);
+                Attributes studyRec = ddr.findLowerDirectoryRecord(patRec,
+                        false, studyMatcher);
                 while (studyRec != null) {
-                    Attributes seriesRec = ddr.findSeriesRecord(studyRec,
-                            seriesIUIDs);
+                    Attributes seriesRec = ddr.findLowerDirectoryRecord(
+                            studyRec, false, seriesMatcher);
                     while (seriesRec != null) {
-                        Attributes instRec = ddr.findLowerInstanceRecord(
-                                seriesRec, true, sopIUIDs);
+                        Attributes instRec = ddr.findLowerDirectoryRecord(
+                                seriesRec, true, instMatcher);
                         while (instRec != null) {
                             String cuid = instRec
                                     .getString(Tag.ReferencedSOPClassUIDInFile);
@@ -819,24 +873,26 @@ public class DcmQRSCP<T extends InstanceLocator> {
                             if (sopIUIDs != null && sopIUIDs.length == 1)
                                 break;
 
-                            instRec = ddr.findNextInstanceRecord(instRec, true,
-                                    sopIUIDs);
+                            instRec = ddr.findNextDirectoryRecord(instRec, true,
+                                    instMatcher);
                         }
                         if (seriesIUIDs != null && seriesIUIDs.length == 1)
                             break;
 
-                        seriesRec = ddr.findNextSeriesRecord(seriesRec,
-                                seriesIUIDs);
+                        seriesRec = ddr.findNextDirectoryRecord(seriesRec,
+                                false, seriesMatcher);
                     }
                     if (studyIUIDs != null && studyIUIDs.length == 1)
                         break;
 
-                    studyRec = ddr.findNextStudyRecord(studyRec, studyIUIDs);
+                    studyRec = ddr.findNextDirectoryRecord(studyRec, false,
+                            studyMatcher);
                 }
                 if (patIDs != null && patIDs.length == 1)
                     break;
 
-                patRec = ddr.findNextPatientRecord(patRec, patIDs);
+                patRec = ddr.findNextDirectoryRecord(patRec, false,
+                        patMatcher);
             }
             return list;
         } catch (IOException e) {
@@ -868,6 +924,8 @@ public class DcmQRSCP<T extends InstanceLocator> {
             map.put(sopIUIDs[i] = item.getString(Tag.ReferencedSOPInstanceUID),
                     item.getString(Tag.ReferencedSOPClassUID));
         }
+        AttributesMatcher instMatcher =
+                DicomDirReader.instanceMatcher(sopIUIDs);
         DicomDirReader ddr = ddReader;
         try {
             Attributes patRec = ddr.findPatientRecord();
@@ -876,8 +934,8 @@ public class DcmQRSCP<T extends InstanceLocator> {
                 while (studyRec != null) {
                     Attributes seriesRec = ddr.findSeriesRecord(studyRec);
                     while (seriesRec != null) {
-                        Attributes instRec = ddr.findLowerInstanceRecord(
-                                seriesRec, true, sopIUIDs);
+                        Attributes instRec = ddr.findLowerDirectoryRecord(
+                                seriesRec, true, instMatcher);
                         while (instRec != null) {
                             String iuid = instRec
                                     .getString(Tag.ReferencedSOPInstanceUIDInFile);
@@ -889,8 +947,8 @@ public class DcmQRSCP<T extends InstanceLocator> {
                             else
                                 failedSeq.add(refSOP(iuid, cuid,
                                         Status.ClassInstanceConflict));
-                            instRec = ddr.findNextInstanceRecord(instRec, true,
-                                    sopIUIDs);
+                            instRec = ddr.findNextDirectoryRecord(instRec, true,
+                                    instMatcher);
                         }
                         seriesRec = ddr.findNextSeriesRecord(seriesRec);
                     }
@@ -41,6 +41,7 @@ package org.dcm4che3.tool.dcmqrscp;
 import java.io.IOException;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.media.DicomDirReader;
 import org.dcm4che3.net.Association;
@@ -52,12 +53,14 @@ import org.dcm4che3.util.StringUtils;
 class InstanceQueryTask extends SeriesQueryTask {
 
     protected final String[] sopIUIDs;
+    protected final AttributesMatcher instMatcher;
     protected Attributes instRec;
 
     public InstanceQueryTask(Association as, PresentationContext pc, Attributes rq, Attributes keys,
             DicomDirReader ddr, String availability) throws DicomServiceException {
         super(as, pc, rq, keys, ddr, availability);
         sopIUIDs = StringUtils.maskNull(keys.getStrings(Tag.SOPInstanceUID));
+        instMatcher = DicomDirReader.instanceMatcher(sopIUIDs);
         wrappedFindNextInstance();
     }
 
@@ -93,14 +96,14 @@ class InstanceQueryTask extends SeriesQueryTask {
             return false;
 
         if (instRec == null)
-            instRec = ddr.findLowerInstanceRecord(seriesRec, true, sopIUIDs);
+            instRec = ddr.findLowerDirectoryRecord(seriesRec, true, instMatcher);
         else if (sopIUIDs != null && sopIUIDs.length == 1)
             instRec = null;
         else
-            instRec = ddr.findNextInstanceRecord(instRec, true, sopIUIDs);
+            instRec = ddr.findNextDirectoryRecord(instRec, true, instMatcher);
 
         while (instRec == null && super.findNextSeries())
-            instRec = ddr.findLowerInstanceRecord(seriesRec, true, sopIUIDs);
+            instRec = ddr.findLowerDirectoryRecord(seriesRec, true, instMatcher);
 
         return instRec != null;
     }
@@ -41,6 +41,7 @@ package org.dcm4che3.tool.dcmqrscp;
 import java.io.IOException;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.data.VR;
 import org.dcm4che3.media.DicomDirReader;
@@ -55,6 +56,7 @@ class PatientQueryTask extends BasicQueryTask {
     protected final DicomDirReader ddr;
     protected final String availability;
     protected final String[] patIDs;
+    protected final AttributesMatcher patMatcher;
     protected Attributes patRec;
 
     public PatientQueryTask(Association as, PresentationContext pc, Attributes rq, Attributes keys,
@@ -63,6 +65,7 @@ class PatientQueryTask extends BasicQueryTask {
         this.ddr = ddr;
         this.availability = availability;
         this.patIDs = keys.getStrings(Tag.PatientID);
+        this.patMatcher = DicomDirReader.patientMatcher(patIDs);
         wrappedFindNextPatient();
     }
 
@@ -113,11 +116,11 @@ class PatientQueryTask extends BasicQueryTask {
 
     protected boolean findNextPatient() throws IOException {
         if (patRec == null)
-            patRec = ddr.findPatientRecord(patIDs);
+            patRec = ddr.findRootDirectoryRecord(false, patMatcher);
         else if (patIDs != null && patIDs.length == 1)
             patRec = null;
         else
-            patRec = ddr.findNextPatientRecord(patRec, patIDs);
+            patRec = ddr.findNextDirectoryRecord(patRec, false, patMatcher);
 
         return patRec != null;
     }
@@ -41,6 +41,7 @@ package org.dcm4che3.tool.dcmqrscp;
 import java.io.IOException;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.media.DicomDirReader;
 import org.dcm4che3.net.Association;
@@ -52,6 +53,7 @@ import org.dcm4che3.util.StringUtils;
 class SeriesQueryTask extends StudyQueryTask {
 
     protected final String[] seriesIUIDs;
+    protected final AttributesMatcher seriesMatcher;
     protected Attributes seriesRec;
 
     public SeriesQueryTask(Association as, PresentationContext pc, Attributes rq, Attributes keys,
@@ -59,6 +61,7 @@ class SeriesQueryTask extends StudyQueryTask {
         super(as, pc, rq, keys, ddr, availability);
         seriesIUIDs = StringUtils.maskNull(
                 keys.getStrings(Tag.SeriesInstanceUID));
+        seriesMatcher = DicomDirReader.seriesMatcher(seriesIUIDs);
         wrappedFindNextSeries();
    }
 
@@ -92,14 +95,14 @@ class SeriesQueryTask extends StudyQueryTask {
             return false;
 
         if (seriesRec == null)
-            seriesRec = ddr.findSeriesRecord(studyRec, seriesIUIDs);
+            seriesRec = ddr.findLowerDirectoryRecord(studyRec, false, seriesMatcher);
         else if (seriesIUIDs != null && seriesIUIDs.length == 1)
             seriesRec = null;
         else
-            seriesRec = ddr.findNextSeriesRecord(seriesRec, seriesIUIDs);
+            seriesRec = ddr.findNextDirectoryRecord(seriesRec, false, seriesMatcher);
 
         while (seriesRec == null && super.findNextStudy())
-            seriesRec = ddr.findSeriesRecord(studyRec, seriesIUIDs);
+            seriesRec = ddr.findLowerDirectoryRecord(studyRec, false, seriesMatcher);
 
         return seriesRec != null;
     }
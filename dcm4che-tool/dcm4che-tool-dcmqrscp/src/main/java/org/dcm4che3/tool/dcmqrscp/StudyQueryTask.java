@@ -41,6 +41,7 @@ package org.dcm4che3.tool.dcmqrscp;
 import java.io.IOException;
 
 import org.dcm4che3.data.Attributes;
+import org.dcm4che3.data.AttributesMatcher;
 import org.dcm4che3.data.Tag;
 import org.dcm4che3.media.DicomDirReader;
 import org.dcm4che3.net.Association;
@@ -52,12 +53,14 @@ import org.dcm4che3.util.StringUtils;
 class StudyQueryTask extends PatientQueryTask {
 
     protected final String[] studyIUIDs;
+    protected final AttributesMatcher studyMatcher;
     protected Attributes studyRec;
 
     public StudyQueryTask(Association as, PresentationContext pc, Attributes rq, Attributes keys,
             DicomDirReader ddr, String availability) throws DicomServiceException {
         super(as, pc, rq, keys, ddr, availability);
         studyIUIDs = StringUtils.maskNull(keys.getStrings(Tag.StudyInstanceUID));
+        studyMatcher = DicomDirReader.studyMatcher(studyIUIDs);
         wrappedFindNextStudy();
     }
 
@@ -88,14 +91,14 @@ class StudyQueryTask extends PatientQueryTask {
             return false;
 
         if (studyRec == null)
-            studyRec = ddr.findStudyRecord(patRec, studyIUIDs);
+            studyRec = ddr.findLowerDirectoryRecord(patRec, false, studyMatcher);
         else if (studyIUIDs != null && studyIUIDs.length == 1)
             studyRec = null;
         else
-            studyRec = ddr.findNextStudyRecord(studyRec, studyIUIDs);
+            studyRec = ddr.findNextDirectoryRecord(studyRec, false, studyMatcher);
 
         while (studyRec == null && super.findNextPatient())
-            studyRec = ddr.findStudyRecord(patRec, studyIUIDs);
+            studyRec = ddr.findLowerDirectoryRecord(patRec, false, studyMatcher);
 
         return studyRec != null;
     }
@@ -162,14 +162,14 @@ public class MkKOS {
             final MkKOS main = new MkKOS();
             configure(main, cl);
             System.out.println(rb.getString("scanning"));
-            DicomFiles.scan(cl.getArgList(), new DicomFiles.Callback() {
+            DicomFiles.scan(cl.getArgList(), true, new DicomFiles.Callback() {
                 
                 @Override
                 public boolean dicomFile(File f, Attributes fmi,
                         long dsPos, Attributes ds) {
                     return main.addInstance(ds);
                 }
-            });
+            }, CLIUtils.getIntOption(cl, "scan-threads", 1));
             System.out.println();
             main.writeKOS();
             System.out.println(
@@ -259,6 +259,12 @@ public class MkKOS {
                .withDescription(rb.getString("uid-suffix"))
                .withLongOpt("uid-suffix")
                .create(null));
+       opts.addOption(OptionBuilder
+               .hasArg()
+               .withArgName("no")
+               .withDescription(rb.getString("scan-threads"))
+               .withLongOpt("scan-threads")
+               .create(null));
        CLIUtils.addEncodingOptions(opts);
    }
 
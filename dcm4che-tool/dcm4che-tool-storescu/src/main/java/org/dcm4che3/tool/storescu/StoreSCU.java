@@ -76,8 +76,8 @@ import org.dcm4che3.net.DataWriterAdapter;
 import org.dcm4che3.net.Device;
 import org.dcm4che3.net.DimseRSP;
 import org.dcm4che3.net.DimseRSPHandler;
+import org.dcm4che3.net.FileDataWriter;
 import org.dcm4che3.net.IncompatibleConnectionException;
-import org.dcm4che3.net.InputStreamDataWriter;
 import org.dcm4che3.net.Status;
 import org.dcm4che3.net.pdu.AAssociateRQ;
 import org.dcm4che3.net.pdu.PresentationContext;
@@ -110,6 +110,7 @@ public class StoreSCU {
     private String uidSuffix;
     private boolean relExtNeg;
     private int priority;
+    private int scanThreads = 1;
     private String tmpPrefix = "storescu-";
     private String tmpSuffix;
     private File tmpDir;
@@ -201,6 +202,7 @@ public class StoreSCU {
         addRelatedSOPClassOptions(opts);
         addAttributesOption(opts);
         addUIDSuffixOption(opts);
+        addScanThreadsOption(opts);
         return CLIUtils.parseComandLine(args, opts, rb, StoreSCU.class);
     }
 
@@ -218,6 +220,13 @@ public class StoreSCU {
                 .withLongOpt("uid-suffix").create(null));
     }
 
+    @SuppressWarnings("static-access")
+    public static void addScanThreadsOption(Options opts) {
+        opts.addOption(OptionBuilder.hasArg().withArgName("no")
+                .withDescription(rb.getString("scan-threads"))
+                .withLongOpt("scan-threads").create(null));
+    }
+
     @SuppressWarnings("static-access")
     public static void addTmpFileOptions(Options opts) {
         opts.addOption(OptionBuilder.hasArg().withArgName("directory")
@@ -262,6 +271,7 @@ public class StoreSCU {
             CLIUtils.addAttributes(main.attrs, cl.getOptionValues("s"));
             main.setUIDSuffix(cl.getOptionValue("uid-suffix"));
             main.setPriority(CLIUtils.priorityOf(cl));
+            main.setScanThreads(CLIUtils.getIntOption(cl, "scan-threads", 1));
             List<String> argList = cl.getArgList();
             boolean echo = argList.isEmpty();
             if (!echo) {
@@ -348,6 +358,19 @@ public class StoreSCU {
         relExtNeg = enable;
     }
 
+    public final int getScanThreads() {
+        return scanThreads;
+    }
+
+    /**
+     * Sets the number of threads used to scan the files to send.
+     *
+     * @param scanThreads number of threads; 1 by default
+     */
+    public final void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
     public void scanFiles(List<String> fnames) throws IOException {
         this.scanFiles(fnames, true);
     }
@@ -370,7 +393,7 @@ public class StoreSCU {
                     filesScanned++;
                     return true;
                 }
-            });
+            }, scanThreads);
         } finally {
             fileInfos.close();
         }
@@ -464,15 +487,9 @@ public class StoreSCU {
                     rspHandlerFactory.createDimseRSPHandler(f));
         } else {
             if (uidSuffix == null && attrs.isEmpty() && ts.equals(filets)) {
-                FileInputStream in = new FileInputStream(f);
-                try {
-                    in.skip(fmiEndPos);
-                    InputStreamDataWriter data = new InputStreamDataWriter(in);
-                    as.cstore(cuid, iuid, priority, data, ts,
-                            rspHandlerFactory.createDimseRSPHandler(f));
-                } finally {
-                    SafeClose.close(in);
-                }
+                as.cstore(cuid, iuid, priority,
+                        new FileDataWriter(f, fmiEndPos), ts,
+                        rspHandlerFactory.createDimseRSPHandler(f));
             } else {
                 DicomInputStream in = new DicomInputStream(f);
                 try {